@@ -0,0 +1,253 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Tests the import of metric values from a large XML file.
+ * Classes and dependency names are added to hash-indexed collections, so that the import time is linear in the number of classes.
+ * Instead of measuring the time, the collections are checked not to scan their elements when an element is tested or added.
+ * @author Katsuhisa Maruyama
+ */
+public class ForestDataImporterTest {
+    
+    /**
+     * The number of classes in the large snapshot.
+     */
+    private static final int CLASSES = 200000;
+    
+    /**
+     * The number of packages, each of which contains thousands of classes in the large snapshot.
+     */
+    private static final int PACKAGES = 20;
+    
+    /**
+     * The number of afferent and efferent class names of each class.
+     */
+    private static final int NAMES = 4;
+    
+    /**
+     * The number of elements in the list whose accesses are counted.
+     */
+    private static final int ELEMENTS = 5000;
+    
+    /**
+     * The number of times elements in the list were compared.
+     */
+    private static int comparisons = 0;
+    
+    /**
+     * The directory containing the synthetic snapshots.
+     */
+    private File dir;
+    
+    /**
+     * Creates the directory containing the synthetic snapshots.
+     * @throws IOException if the directory cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("codeforest", "");
+        dir.delete();
+        dir.mkdir();
+    }
+    
+    /**
+     * Deletes the synthetic snapshots.
+     */
+    @After
+    public void tearDown() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+    
+    /**
+     * Imports a synthetic snapshot of 200,000 classes, whose duplicate names of related classes are removed.
+     * @throws IOException if the snapshot cannot be written
+     */
+    @Test
+    public void testImport() throws IOException {
+        File large = createSnapshot("large.xml", CLASSES);
+        MetricsManager manager = new MetricsManager();
+        
+        ProjectMetrics mproject = manager.readXML(large.getPath());
+        assertEquals(CLASSES, mproject.getClassMetrics().size());
+        assertEquals(PACKAGES, mproject.getPackageMetrics().size());
+        for (ClassMetrics cm : mproject.getClassMetrics()) {
+            assertEquals(NAMES, cm.getAfferentClassNames().size());
+            assertEquals(NAMES, cm.getEfferentClassNames().size());
+        }
+    }
+    
+    /**
+     * Tests and adds elements of a list of thousands of elements, counting how many times the elements are read or compared.
+     * The list neither reads its elements by position nor compares more than one element for each test,
+     * while a list that scans its elements would compare millions of elements.
+     */
+    @Test
+    public void testHashedListWithoutScan() {
+        CountingList list = new CountingList();
+        comparisons = 0;
+        for (int i = 0; i < ELEMENTS; i++) {
+            Element element = new Element(i);
+            if (!list.contains(element)) {
+                list.add(element);
+            }
+        }
+        assertEquals(ELEMENTS, list.size());
+        assertEquals(0, list.reads);
+        assertEquals(0, comparisons);
+        
+        for (int i = 0; i < ELEMENTS; i++) {
+            assertTrue(list.contains(new Element(i)));
+            assertFalse(list.contains(new Element(ELEMENTS + i)));
+        }
+        assertEquals(0, list.reads);
+        assertTrue("elements were compared " + comparisons + " times", comparisons <= ELEMENTS);
+        
+        list.add(new Element(0));
+        assertEquals(ELEMENTS + 1, list.size());
+        assertTrue(list.remove(new Element(0)));
+        assertTrue(list.contains(new Element(0)));
+    }
+    
+    /**
+     * Writes a synthetic snapshot, in which the classes are evenly distributed over the packages.
+     * Each class refers to the next classes and is referred to by the previous classes in the same package, with duplicate names.
+     * @param name the name of the file
+     * @param classes the number of classes
+     * @return the file storing the snapshot
+     * @throws IOException if the snapshot cannot be written
+     */
+    private File createSnapshot(String name, int classes) throws IOException {
+        File file = new File(dir, name);
+        Writer writer = new BufferedWriter(new FileWriter(file));
+        try {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+            writer.write("<" + MetricsManager.TopElem + ">\n");
+            writer.write("<" + MetricsManager.ProjectElem + " " + MetricsManager.NameAttr + "=\"Synthetic\" " + MetricsManager.TimeAttr + "=\"1\">\n");
+            writer.write("<" + MetricsManager.MetricsElem + "/>\n");
+            
+            int size = classes / PACKAGES;
+            for (int p = 0; p < PACKAGES; p++) {
+                String pname = "p" + p;
+                writer.write("<" + MetricsManager.PackageElem + " " + MetricsManager.NameAttr + "=\"" + pname + "\">\n");
+                writer.write("<" + MetricsManager.MetricsElem + "/>\n");
+                
+                for (int c = 0; c < size; c++) {
+                    writer.write("<" + MetricsManager.ClassElem + " " + MetricsManager.NameAttr + "=\"C" + c + "\" "
+                            + MetricsManager.FqnAttr + "=\"" + pname + ".C" + c + "\" " + MetricsManager.ModifiersAttr + "=\"1\" "
+                            + MetricsManager.PathAttr + "=\"/Synthetic/src/" + pname + "/C" + c + ".java\">\n");
+                    writer.write("<" + MetricsManager.CodeElem + " " + MetricsManager.StartPositionAttr + "=\"0\" "
+                            + MetricsManager.CodeLengthAttr + "=\"10\" " + MetricsManager.UpperLineNumberAttr + "=\"1\" "
+                            + MetricsManager.BottomLineNumberAttr + "=\"2\"/>\n");
+                    writer.write("<" + MetricsManager.SuperClassElem + " " + MetricsManager.FqnAttr + "=\"java.lang.Object\"/>\n");
+                    for (int i = 1; i <= NAMES; i++) {
+                        writeName(writer, MetricsManager.AfferentElem, pname + ".C" + ((c + size - i) % size));
+                        writeName(writer, MetricsManager.AfferentElem, pname + ".C" + ((c + size - i) % size));
+                    }
+                    for (int i = 1; i <= NAMES; i++) {
+                        writeName(writer, MetricsManager.EfferentElem, pname + ".C" + ((c + i) % size));
+                        writeName(writer, MetricsManager.EfferentElem, pname + ".C" + ((c + i) % size));
+                    }
+                    writer.write("<" + MetricsManager.MetricsElem + "/>\n");
+                    writer.write("</" + MetricsManager.ClassElem + ">\n");
+                }
+                writer.write("</" + MetricsManager.PackageElem + ">\n");
+            }
+            
+            writer.write("</" + MetricsManager.ProjectElem + ">\n");
+            writer.write("</" + MetricsManager.TopElem + ">\n");
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+    
+    /**
+     * A list that counts how many times its elements are read by position.
+     */
+    private static class CountingList extends HashedList<Element> {
+        
+        /**
+         * The number of times the elements were read by position.
+         */
+        int reads = 0;
+        
+        /**
+         * Returns the element at a given position, and counts the read.
+         * @param index the position of the element
+         * @return the element
+         */
+        @Override
+        public Element get(int index) {
+            reads++;
+            return super.get(index);
+        }
+    }
+    
+    /**
+     * An element whose comparisons are counted.
+     */
+    private static class Element {
+        
+        /**
+         * The identification number of this element.
+         */
+        private int id;
+        
+        /**
+         * Creates an element.
+         * @param id the identification number of the element
+         */
+        Element(int id) {
+            this.id = id;
+        }
+        
+        /**
+         * Tests if this element equals to a given object, and counts the comparison.
+         * @param obj the object
+         * @return <code>true</code> if the object is an element with the same identification number, otherwise <code>false</code>
+         */
+        @Override
+        public boolean equals(Object obj) {
+            comparisons++;
+            return (obj instanceof Element) && ((Element)obj).id == id;
+        }
+        
+        /**
+         * Returns the hash code of this element.
+         * @return the identification number
+         */
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+    
+    /**
+     * Writes an element with a qualified name.
+     * @param writer the writer of the snapshot
+     * @param elem the name of the element
+     * @param fqn the qualified name
+     * @throws IOException if the element cannot be written
+     */
+    private void writeName(Writer writer, String elem, String fqn) throws IOException {
+        writer.write("<" + elem + " " + MetricsManager.FqnAttr + "=\"" + fqn + "\"/>\n");
+    }
+}
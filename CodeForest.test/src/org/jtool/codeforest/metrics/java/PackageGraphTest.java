@@ -0,0 +1,73 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests the package metrics calculated from a dependency graph of two packages.
+ * A class in the package <code>app</code> uses an interface in the package <code>lib</code>, which is implemented within <code>lib</code>.
+ * @author Katsuhisa Maruyama
+ */
+public class PackageGraphTest {
+    
+    /**
+     * The allowed error of calculated values.
+     */
+    private static final double DELTA = 1.0E-9;
+    
+    /**
+     * Calculates the instability, abstractness, and distance of a using package and a used package.
+     */
+    @Test
+    public void testInstability() {
+        ProjectMetrics mproject = new ProjectMetrics("Fixture", "/Fixture", 1);
+        PackageMetrics app = new PackageMetrics("app", mproject);
+        PackageMetrics lib = new PackageMetrics("lib", mproject);
+        mproject.add(app);
+        mproject.add(lib);
+        
+        ClassMetrics main = createClass("Main", false, app);
+        ClassMetrics api = createClass("Api", true, lib);
+        ClassMetrics impl = createClass("Impl", false, lib);
+        main.addEfferentClassName("lib.Api");
+        api.addAfferentClassName("app.Main");
+        impl.addEfferentClassName("lib.Api");
+        api.addAfferentClassName("lib.Impl");
+        
+        PackageGraph graph = PackageGraph.create(mproject);
+        assertEquals(1.0, graph.getInstability("app"), DELTA);
+        assertEquals(0.0, graph.getInstability("lib"), DELTA);
+        assertEquals(0.0, graph.getAbstractness("app"), DELTA);
+        assertEquals(0.5, graph.getAbstractness("lib"), DELTA);
+        assertEquals(0.0, graph.getDistance("app"), DELTA);
+        assertEquals(0.5, graph.getDistance("lib"), DELTA);
+        assertEquals(0, graph.getCycleSize("app"));
+        assertTrue(graph.getCycles().isEmpty());
+        
+        impl.addEfferentClassName("app.Main");
+        main.addAfferentClassName("lib.Impl");
+        graph = PackageGraph.create(mproject);
+        assertEquals(0.5, graph.getInstability("app"), DELTA);
+        assertEquals(0.5, graph.getInstability("lib"), DELTA);
+        assertEquals(2, graph.getCycleSize("lib"));
+    }
+    
+    /**
+     * Creates the metrics of a class and adds them to a package.
+     * @param name the simple name of the class
+     * @param isInterface <code>true</code> if the class is an interface, otherwise <code>false</code>
+     * @param pm the metrics of the package containing the class
+     * @return the metrics of the class
+     */
+    private ClassMetrics createClass(String name, boolean isInterface, PackageMetrics pm) {
+        String fqn = pm.getName() + "." + name;
+        ClassMetrics cm = new ClassMetrics(name, fqn, 1, isInterface, false, "/Fixture/src/" + fqn.replace('.', '/') + ".java", pm);
+        pm.add(cm);
+        return cm;
+    }
+}
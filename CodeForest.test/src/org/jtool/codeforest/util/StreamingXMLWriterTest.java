@@ -0,0 +1,122 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Tests that the streaming writer writes the same bytes as the writer of DOM instances.
+ * @author Katsuhisa Maruyama
+ */
+public class StreamingXMLWriterTest {
+    
+    /**
+     * An attribute value containing the characters that are escaped by the transformer, including tabs and line breaks.
+     */
+    private static final String VALUE = "tab\there\nlf\rcr & <lt> \"quot\" 'apos' \u00e9\u3042\u2028 end";
+    
+    /**
+     * The file written from a DOM instance.
+     */
+    private File domFile;
+    
+    /**
+     * The file written by the streaming writer.
+     */
+    private File streamFile;
+    
+    /**
+     * Creates the files.
+     * @throws IOException if the files cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        domFile = File.createTempFile("codeforest-dom", ".xml");
+        streamFile = File.createTempFile("codeforest-stream", ".xml");
+    }
+    
+    /**
+     * Deletes the files.
+     */
+    @After
+    public void tearDown() {
+        domFile.delete();
+        streamFile.delete();
+    }
+    
+    /**
+     * Writes the same nested elements with escaped, empty and unordered attributes in both ways and compares the bytes.
+     * @throws Exception if the files cannot be written or read
+     */
+    @Test
+    public void testByteIdenticalOutput() throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element rootElem = doc.createElement("codeForest");
+        rootElem.setAttribute("date", VALUE);
+        doc.appendChild(rootElem);
+        Element projectElem = doc.createElement("project");
+        projectElem.setAttribute("name", VALUE);
+        projectElem.setAttribute("b", "x");
+        rootElem.appendChild(projectElem);
+        Element metricsElem = doc.createElement("metrics");
+        metricsElem.setAttribute("z", "1.0");
+        metricsElem.setAttribute("a", "");
+        projectElem.appendChild(metricsElem);
+        XMLWriter.write(domFile, doc);
+        
+        StreamingXMLWriter writer = new StreamingXMLWriter(streamFile);
+        try {
+            writer.startDocument();
+            writer.startElement("codeForest");
+            writer.addAttribute("date", VALUE);
+            writer.startElement("project");
+            writer.addAttribute("name", VALUE);
+            writer.addAttribute("b", "x");
+            writer.startElement("metrics");
+            writer.addAttribute("z", "1.0");
+            writer.addAttribute("a", null);
+            writer.endElement();
+            writer.endElement();
+            writer.endElement();
+            writer.endDocument();
+        } finally {
+            writer.close();
+        }
+        
+        assertArrayEquals(read(domFile), read(streamFile));
+    }
+    
+    /**
+     * Reads the bytes of a file.
+     * @param file the file
+     * @return the bytes
+     * @throws IOException if the file cannot be read
+     */
+    private byte[] read(File file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buf = new byte[4096];
+            int len;
+            while ((len = in.read(buf)) > 0) {
+                out.write(buf, 0, len);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+}
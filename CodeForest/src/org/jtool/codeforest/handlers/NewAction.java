@@ -6,10 +6,17 @@ package org.jtool.codeforest.handlers;
 
 import org.jtool.eclipse.model.java.JavaModelFactory;
 import org.jtool.eclipse.model.java.JavaProject;
+import org.jtool.codeforest.Activator;
 import org.jtool.codeforest.metrics.java.CFFileInfoCollector;
+import org.jtool.codeforest.metrics.java.IMetricsBuildListener;
+import org.jtool.codeforest.metrics.java.IncrementalMetricsUpdater;
 import org.jtool.codeforest.metrics.java.MetricsManager;
+import org.jtool.codeforest.metrics.java.PackageMetrics;
+import org.jtool.codeforest.metrics.java.ProgressiveMetricsBuilder;
 import org.jtool.codeforest.metrics.java.ProjectMetrics;
 import org.jtool.codeforest.ui.CodeForestFrame;
+import org.jtool.codeforest.ui.preference.CodeForestPreferencePage;
+import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.core.commands.AbstractHandler;
@@ -80,15 +87,34 @@ public class NewAction extends AbstractHandler {
             }
             
             if (project != null) {
-                factory = new JavaModelFactory(project);
-                factory.setJavaASTVisitor(new CFFileInfoCollector());
-                JavaProject jproject = factory.create();
-                
                 MetricsManager manager = new MetricsManager();
-                ProjectMetrics mproject = manager.create(jproject);
+                configure(manager);
+                
+                if (manager.isProgressiveMode()) {
+                    openProgressive(manager, project);
+                    return null;
+                }
+                
+                ProjectMetrics mproject;
+                if (manager.isPipelineMode() || manager.isCacheEnabled() || manager.isSyntacticMode()) {
+                    mproject = manager.create(project);
+                } else {
+                    factory = new JavaModelFactory(project);
+                    factory.setJavaASTVisitor(new CFFileInfoCollector());
+                    JavaProject jproject = factory.create();
+                    mproject = manager.create(jproject);
+                }
+                if (mproject == null) {
+                    return null;
+                }
                 manager.writeXML(mproject);
                 
-                CodeForestFrame frame = new CodeForestFrame(window.getShell(), mproject);
+                Shell shell = window.getShell();
+                IncrementalMetricsUpdater updater = manager.createUpdater(project, mproject, shell.getDisplay());
+                if (updater != null && mproject.isSyntactic()) {
+                    resolveBindings(manager, updater);
+                }
+                CodeForestFrame frame = new CodeForestFrame(shell, mproject, updater);
                 frame.dispose();
                 
                 System.out.println("Code Forest fin.");
@@ -97,6 +123,90 @@ public class NewAction extends AbstractHandler {
         return null;
     }
     
+    /**
+     * Sets the modes of collecting metric values, which are selected on the preference page.
+     * Metric values collected without resolving bindings are completed by the updater, so the syntactic mode turns on the incremental mode.
+     * @param manager the manager of the metric values
+     */
+    private void configure(MetricsManager manager) {
+        IPreferenceStore store = Activator.getDefault().getPreferenceStore();
+        boolean syntactic = store.getBoolean(CodeForestPreferencePage.SYNTACTIC_MODE);
+        
+        manager.setNumberOfThreads(store.getInt(CodeForestPreferencePage.THREADS));
+        manager.setPipelineMode(store.getBoolean(CodeForestPreferencePage.PIPELINE_MODE));
+        manager.setCacheEnabled(store.getBoolean(CodeForestPreferencePage.CACHE_ENABLED));
+        manager.setSyntacticMode(syntactic);
+        manager.setProgressiveMode(store.getBoolean(CodeForestPreferencePage.PROGRESSIVE_MODE));
+        manager.setIncrementalMode(store.getBoolean(CodeForestPreferencePage.INCREMENTAL_MODE) || syntactic);
+        manager.setCompressionEnabled(store.getBoolean(CodeForestPreferencePage.COMPRESSION_ENABLED));
+    }
+    
+    /**
+     * Resolves the bindings of a project whose metric values were collected without resolving them,
+     * and exports the completed metric values again in the background when they are resolved.
+     * @param manager the manager of the metric values
+     * @param updater the object that updates the project metrics
+     */
+    private void resolveBindings(final MetricsManager manager, final IncrementalMetricsUpdater updater) {
+        updater.setResolvedAction(new Runnable() {
+            
+            /**
+             * Exports the completed metric values, which replace the ones collected without resolving bindings.
+             */
+            public void run() {
+                manager.writeXML(updater.getProjectMetrics());
+            }
+        });
+        updater.resolveBindings();
+    }
+    
+    /**
+     * Opens a forest before the metric values of a project are collected, and shows each package as soon as its values are collected.
+     * The metric values are exported when the collection is completed.
+     * @param manager the manager of the metric values
+     * @param project the project whose metric values are collected
+     */
+    private void openProgressive(final MetricsManager manager, IJavaProject project) {
+        Shell shell = window.getShell();
+        ProgressiveMetricsBuilder builder = manager.createProgressive(project, shell.getDisplay());
+        final IncrementalMetricsUpdater updater = manager.createUpdater(project, builder.getProjectMetrics(), shell.getDisplay());
+        
+        builder.addListener(new IMetricsBuildListener() {
+            
+            /**
+             * Does nothing when a package is added.
+             * @param pm the metrics of the package
+             */
+            public void packageAdded(PackageMetrics pm) {
+            }
+            
+            /**
+             * Exports the metric values in the background if the collection succeeded.
+             * The metric values collected without resolving bindings are exported after the bindings are resolved.
+             * @param mproject the project metrics
+             * @param succeeded <code>true</code> if the collection succeeded, otherwise <code>false</code>
+             */
+            public void buildCompleted(ProjectMetrics mproject, boolean succeeded) {
+                if (!succeeded) {
+                    return;
+                }
+                if (updater != null) {
+                    updater.setProjectMetrics(mproject);
+                    if (mproject.isSyntactic()) {
+                        resolveBindings(manager, updater);
+                        return;
+                    }
+                }
+                manager.writeXMLInBackground(mproject);
+            }
+        });
+        
+        CodeForestFrame frame = new CodeForestFrame(shell, builder, updater);
+        frame.dispose();
+        
+        System.out.println("Code Forest fin.");
+    }
+    
     /**
      * Returns the shell in which the workbench of this editor site resides.
      * @param part the workbench part
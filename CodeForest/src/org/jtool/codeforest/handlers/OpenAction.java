@@ -58,7 +58,7 @@ public class OpenAction extends AbstractHandler {
         path = open();
         
         MetricsManager manager = new MetricsManager();
-        ProjectMetrics mproject = manager.readXML(path);
+        ProjectMetrics mproject = manager.read(path);
         
         if (mproject == null) {
             System.out.println("Cannot read: " + path);
@@ -75,6 +75,8 @@ public class OpenAction extends AbstractHandler {
     
     public String open() {
         FileDialog dialog = new FileDialog(window.getShell(), SWT.NULL);
+        dialog.setFilterNames(new String[] { "Code Forest Files (*.xml, *.cfb, *.gz)", "All Files (*.*)" });
+        dialog.setFilterExtensions(new String[] { "*.xml;*.xml.gz;*.cfb;*.cfb.gz", "*.*" });
         String path = dialog.open();
         
         if (path != null) {
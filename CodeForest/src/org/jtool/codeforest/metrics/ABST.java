@@ -0,0 +1,95 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics;
+
+import org.jtool.codeforest.metrics.java.ClassMetrics;
+import org.jtool.codeforest.metrics.java.PackageMetrics;
+import org.jtool.codeforest.metrics.java.ProjectMetrics;
+
+/**
+ * Measures the abstractness of a package, that is, the ratio of abstract classes and interfaces to all its classes.
+ * @author Katsuhisa Maruyama
+ */
+public class ABST extends Metric {
+    
+    private static final String Name = "ABST";
+    
+    private static final String Description = "Abstractness of the package";
+    
+    /**
+     * Creates an object returning a metric measurement.
+     */
+    public ABST() {
+        super(Name, Description);
+    }
+    
+    /**
+     * Returns the metric value with respect to a given package.
+     * @param mpackage the package to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getValue(PackageMetrics mpackage) throws UnsupportedMetricsException {
+        return mpackage.getMetricValueWithException(MetricSort.ABSTRACTNESS);
+    }
+    
+    /**
+     * Returns the maximum metric value with respect to a given package.
+     * @param mpackage the package to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getMaximumValue(PackageMetrics mpackage) throws UnsupportedMetricsException {
+        ProjectMetrics mproject = mpackage.getProjectMetrics();
+        return mproject.getMetricValueWithException(MetricSort.MAX_ABSTRACTNESS);
+    }
+    
+    /**
+     * Test if this metric is related to a package.
+     * @return always <code>true</code>
+     */
+    public boolean isPackageMetric() {
+        return true;
+    }
+    
+    /**
+     * Returns the metric value with respect to a given class, which is the value of its package.
+     * @param mclass the class to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getValue(ClassMetrics mclass) throws UnsupportedMetricsException {
+        return getValue(mclass.getPackageMetrics());
+    }
+    
+    /**
+     * Returns the total metric value with respect to a given class, which is weighted by the numbers of classes in packages.
+     * @param mclass the class to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getTotalValue(ClassMetrics mclass) throws UnsupportedMetricsException {
+        ProjectMetrics mproject = mclass.getPackageMetrics().getProjectMetrics();
+        return mproject.getMetricValueWithException(MetricSort.TOTAL_ABSTRACTNESS);
+    }
+    
+    /**
+     * Returns the maximum metric value with respect to a given class.
+     * @param mclass the class to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getMaximumValue(ClassMetrics mclass) throws UnsupportedMetricsException {
+        return getMaximumValue(mclass.getPackageMetrics());
+    }
+    
+    /**
+     * Test if this metric is related to a class.
+     * @return always <code>true</code>
+     */
+    public boolean isClassMetric() {
+        return true;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics;
+
+import org.jtool.codeforest.metrics.java.CommonMetrics;
+
+/**
+ * An interface for providers that calculate additional metrics of methods, classes, or packages.
+ * Providers are contributed through the <code>CodeForest.metricProviders</code> extension point or
+ * as Java services listed in <code>META-INF/services/org.jtool.codeforest.metrics.IMetricProvider</code>.
+ * A provider of method metrics that traverse method bodies should implement <code>IVisitingMetricProvider</code>.
+ * @author Katsuhisa Maruyama
+ */
+public interface IMetricProvider {
+    
+    /**
+     * The level of a provider that calculates a metric of each method.
+     */
+    public static final int METHOD_LEVEL = 0;
+    
+    /**
+     * The level of a provider that calculates a metric of each class.
+     */
+    public static final int CLASS_LEVEL = 1;
+    
+    /**
+     * The level of a provider that calculates a metric of each package.
+     */
+    public static final int PACKAGE_LEVEL = 2;
+    
+    /**
+     * The cost of a provider that only looks at values of other metrics.
+     */
+    public static final int LOW_COST = 1;
+    
+    /**
+     * The cost of a provider that traverses the model of a class or a method.
+     */
+    public static final int MEDIUM_COST = 10;
+    
+    /**
+     * The cost of a provider that traverses relations between classes or methods.
+     */
+    public static final int HIGH_COST = 100;
+    
+    /**
+     * Returns the sort of the metric calculated by this provider, which must differ from the sorts in <code>MetricSort</code>.
+     * The total and maximum values of a method-level or class-level metric are stored in the project metrics
+     * with the sorts prefixed by <code>TOTAL_</code> and <code>MAX_</code>.
+     * @return the sort of the metric
+     */
+    public String getSort();
+    
+    /**
+     * Returns the level of elements whose metric is calculated by this provider.
+     * @return <code>METHOD_LEVEL</code>, <code>CLASS_LEVEL</code>, or <code>PACKAGE_LEVEL</code>
+     */
+    public int getLevel();
+    
+    /**
+     * Returns the sorts of metrics that this provider reads.
+     * The metrics calculated by other providers are calculated before this provider, and the core metrics in <code>MetricSort</code>
+     * are collected before all the providers. A provider that reads total or maximum values, which are aggregated after all the providers,
+     * or reads unknown metrics is not used.
+     * @return the array of the sorts, which is empty if this provider reads no metric
+     */
+    public String[] getInputs();
+    
+    /**
+     * Tests if this provider needs resolved bindings, i.e., relations between classes, methods, and fields.
+     * Such a provider is not used for projects measured without resolving bindings.
+     * @return <code>true</code> if the bindings are needed, otherwise <code>false</code>
+     */
+    public boolean requiresBindings();
+    
+    /**
+     * Returns the relative cost of the calculation by this provider.
+     * Expensive providers are started first among providers that can run at the same time.
+     * @return the cost (e.g., <code>LOW_COST</code>, <code>MEDIUM_COST</code>, or <code>HIGH_COST</code>)
+     */
+    public int getCost();
+    
+    /**
+     * Calculates the metric value of an element. The element is a <code>MethodMetrics</code>,
+     * <code>ClassMetrics</code>, or <code>PackageMetrics</code> object according to the level of this provider,
+     * and provides the model of the element (e.g., <code>ClassMetrics.getJavaClass()</code>).
+     * This method may be called from several threads at the same time for different elements.
+     * @param element the metrics object of the element
+     * @return the metric value
+     * @throws UnsupportedMetricsException if the metric is not supported in the element
+     */
+    public double calculate(CommonMetrics element) throws UnsupportedMetricsException;
+    
+    /**
+     * Returns the metric that can be selected to form visual objects.
+     * @return the metric, or <code>null</code> if the metric calculated by this provider is not selectable
+     */
+    public IMetric getMetric();
+}
@@ -0,0 +1,35 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+
+/**
+ * An interface for visitors that calculate the metric value of a method while its AST nodes are visited by the collector of Java files.
+ * The nodes of classes and methods nested in the method are also passed to the visitor.
+ * @see IVisitingMetricProvider
+ * @author Katsuhisa Maruyama
+ */
+public interface IMetricVisitor {
+    
+    /**
+     * Receives a node when its visit starts.
+     * @param node the visited node
+     */
+    public void enter(ASTNode node);
+    
+    /**
+     * Receives a node when its visit finishes.
+     * @param node the visited node
+     */
+    public void exit(ASTNode node);
+    
+    /**
+     * Returns the metric value of the method after all its nodes were visited.
+     * @return the metric value
+     * @throws UnsupportedMetricsException if the metric is not supported in the method
+     */
+    public double getValue() throws UnsupportedMetricsException;
+}
@@ -0,0 +1,22 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics;
+
+/**
+ * An interface for providers of method metrics that are calculated while the collector of Java files traverses the body of each method,
+ * so that method bodies are not walked again by the providers. The level of such a provider must be <code>METHOD_LEVEL</code>.
+ * The <code>calculate</code> method is called only for methods whose values were not calculated in the traversal,
+ * for example, methods imported from files.
+ * @author Katsuhisa Maruyama
+ */
+public interface IVisitingMetricProvider extends IMetricProvider {
+    
+    /**
+     * Creates a visitor that calculates the metric value of a method.
+     * This method is called for each method from the thread that collects the information of its file.
+     * @return the visitor
+     */
+    public IMetricVisitor createVisitor();
+}
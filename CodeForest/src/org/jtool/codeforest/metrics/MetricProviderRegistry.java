@@ -0,0 +1,164 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics;
+
+import org.jtool.codeforest.Activator;
+import org.jtool.codeforest.metrics.java.ClassMetrics;
+import org.jtool.codeforest.metrics.java.MethodMetrics;
+import org.jtool.codeforest.metrics.java.MetricAggregator;
+import org.jtool.codeforest.metrics.java.MetricIndex;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.IExtensionRegistry;
+import org.eclipse.core.runtime.Platform;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Manages the providers of additional metrics.
+ * The providers are collected from the extension point and the Java services when they are requested for the first time.
+ * @author Katsuhisa Maruyama
+ */
+public class MetricProviderRegistry {
+    
+    /**
+     * The identifier of the extension point for metric providers.
+     */
+    public static final String EXTENSION_POINT_ID = Activator.PLUGIN_ID + ".metricProviders";
+    
+    /**
+     * The name of the element that declares a metric provider in the extension point.
+     */
+    private static final String ProviderElem = "provider";
+    
+    /**
+     * The name of the attribute that specifies the class of a metric provider in the extension point.
+     */
+    private static final String ClassAttr = "class";
+    
+    /**
+     * The prefix of the sorts of total values of provided metrics.
+     */
+    public static final String TOTAL_PREFIX = "TOTAL_";
+    
+    /**
+     * The prefix of the sorts of maximum values of provided metrics.
+     */
+    public static final String MAX_PREFIX = "MAX_";
+    
+    /**
+     * The registered providers.
+     */
+    private static List<IMetricProvider> providers = null;
+    
+    /**
+     * Returns all the registered providers.
+     * @return the collection of the providers
+     */
+    public static synchronized List<IMetricProvider> getProviders() {
+        if (providers == null) {
+            providers = new ArrayList<IMetricProvider>();
+            loadExtensions();
+            loadServices();
+        }
+        return new ArrayList<IMetricProvider>(providers);
+    }
+    
+    /**
+     * Registers a provider in addition to the providers contributed through the extension point and the Java services.
+     * @param provider the provider
+     * @return <code>true</code> if the provider was registered, otherwise <code>false</code>
+     */
+    public static synchronized boolean register(IMetricProvider provider) {
+        if (providers == null) {
+            getProviders();
+        }
+        
+        String sort = provider.getSort();
+        if (sort == null || MetricIndex.getOrdinal(sort) >= 0) {
+            System.err.println("Metric provider " + provider.getClass().getName() + " uses an invalid sort: " + sort);
+            return false;
+        }
+        for (IMetricProvider p : providers) {
+            if (p.getSort().equals(sort)) {
+                System.err.println("Metric provider " + provider.getClass().getName() + " duplicates the sort: " + sort);
+                return false;
+            }
+        }
+        
+        providers.add(provider);
+        if (provider.getLevel() == IMetricProvider.CLASS_LEVEL) {
+            MetricAggregator.register(ClassMetrics.Id, sort, TOTAL_PREFIX + sort, MAX_PREFIX + sort);
+        } else if (provider.getLevel() == IMetricProvider.METHOD_LEVEL) {
+            MetricAggregator.register(MethodMetrics.Id, sort, TOTAL_PREFIX + sort, MAX_PREFIX + sort);
+        }
+        return true;
+    }
+    
+    /**
+     * Collects the providers contributed through the extension point.
+     */
+    private static void loadExtensions() {
+        IExtensionRegistry registry = Platform.getExtensionRegistry();
+        if (registry == null) {
+            return;
+        }
+        
+        for (IConfigurationElement elem : registry.getConfigurationElementsFor(EXTENSION_POINT_ID)) {
+            if (!elem.getName().equals(ProviderElem)) {
+                continue;
+            }
+            
+            try {
+                Object provider = elem.createExecutableExtension(ClassAttr);
+                if (provider instanceof IMetricProvider) {
+                    register((IMetricProvider)provider);
+                } else {
+                    System.err.println("Metric provider " + elem.getAttribute(ClassAttr) + " does not implement IMetricProvider");
+                }
+            } catch (CoreException e) {
+                System.err.println("Cannot create metric provider " + elem.getAttribute(ClassAttr) + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Collects the providers contributed as Java services.
+     */
+    private static void loadServices() {
+        ServiceLoader<IMetricProvider> loader = ServiceLoader.load(IMetricProvider.class, MetricProviderRegistry.class.getClassLoader());
+        Iterator<IMetricProvider> it = loader.iterator();
+        while (true) {
+            try {
+                if (!it.hasNext()) {
+                    break;
+                }
+                register(it.next());
+            } catch (ServiceConfigurationError e) {
+                System.err.println("Cannot create metric provider: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Returns all the metrics that can be selected to form visual objects, including the metrics of the providers.
+     * @return the array of the metrics
+     */
+    public static IMetric[] getSelectableMetrics() {
+        List<IMetric> metrics = new ArrayList<IMetric>();
+        for (IMetric metric : MetricSort.ALL_SELECTABLE) {
+            metrics.add(metric);
+        }
+        for (IMetricProvider provider : getProviders()) {
+            if (provider.getMetric() != null) {
+                metrics.add(provider.getMetric());
+            }
+        }
+        return (IMetric[])metrics.toArray(new IMetric[0]);
+    }
+}
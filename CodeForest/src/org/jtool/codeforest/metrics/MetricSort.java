@@ -20,11 +20,14 @@ public interface MetricSort {
     public static final String NUMBER_OF_METHODS_AND_FIELDS = "NOMF";
     
     public static final String COUPLING_BETWEEN_OBJECTS = "CBO";
+    public static final String DIRECT_COUPLING_BETWEEN_OBJECTS = "DCBO";
     public static final String DEPTH_OF_INHERITANCE_TREE = "DIT";
     public static final String NUMBER_OF_CHILDREN = "NOC";
+    public static final String NUMBER_OF_DESCENDANTS = "NOD";
     public static final String RESPONSE_FOR_CLASS = "RFC";
     public static final String WEIGHTED_METHODS_PER_CLASS = "WMC";
     public static final String LACK_OF_COHESION_OF_METHODS = "LCOM";
+    public static final String LACK_OF_COHESION_OF_METHODS_4 = "LCOM4";
     public static final String NUMBER_OF_PUBLIC_METHODS = "NOPM";
     
     public static final String NUMBER_OF_PARAMETERS = "NOPT";
@@ -40,6 +43,12 @@ public interface MetricSort {
     public static final String NUMBER_OF_AFFERENT_FIELDS = "NOAFD";
     public static final String NUMBER_OF_EFFERENT_FIELDS = "NOEFD";
     
+    public static final String INSTABILITY = "INST";
+    public static final String ABSTRACTNESS = "ABST";
+    public static final String DISTANCE_FROM_MAIN_SEQUENCE = "DMS";
+    public static final String SIZE_OF_PACKAGE_CYCLE = "SOPC";
+    public static final String NUMBER_OF_PACKAGE_CYCLES = "NOPC";
+    
     public static final String TOTAL_LINE_OF_CODE = "TOTAL_LOC";
     public static final String TOTAL_NUMBER_OF_STATEMENTS = "TOTAL_NOST";
     
@@ -51,11 +60,14 @@ public interface MetricSort {
     public static final String TOTAL_NUMBER_OF_METHODS_AND_FIELDS = "TOTAL_NOMF";
     
     public static final String TOTAL_COUPLING_BETWEEN_OBJECTS = "TOTAL_CBO";
+    public static final String TOTAL_DIRECT_COUPLING_BETWEEN_OBJECTS = "TOTAL_DCBO";
     public static final String TOTAL_DEPTH_OF_INHERITANCE_TREE = "TOTAL_DIT";
     public static final String TOTAL_NUMBER_OF_CHILDREN = "TOTAL_NOC";
+    public static final String TOTAL_NUMBER_OF_DESCENDANTS = "TOTAL_NOD";
     public static final String TOTAL_RESPONSE_FOR_CLASS = "TOTAL_RFC";
     public static final String TOTAL_WEIGHTED_METHODS_PER_CLASS = "TOTAL_WMC";
     public static final String TOTAL_LACK_OF_COHESION_OF_METHODS = "TOTAL_LCOM";
+    public static final String TOTAL_LACK_OF_COHESION_OF_METHODS_4 = "TOTAL_LCOM4";
     public static final String TOTAL_NUMBER_OF_PUBLIC_METHODS = "TOTAL_NOPM";
     
     public static final String TOTAL_NUMBER_OF_PARAMETERS = "TOTAL_NOPT";
@@ -71,6 +83,11 @@ public interface MetricSort {
     public static final String TOTAL_NUMBER_OF_AFFERENT_FIELDS = "TOTAL_NOAFD";
     public static final String TOTAL_NUMBER_OF_EFFERENT_FIELDS = "TOTAL_NOEFD";
     
+    public static final String TOTAL_INSTABILITY = "TOTAL_INST";
+    public static final String TOTAL_ABSTRACTNESS = "TOTAL_ABST";
+    public static final String TOTAL_DISTANCE_FROM_MAIN_SEQUENCE = "TOTAL_DMS";
+    public static final String TOTAL_SIZE_OF_PACKAGE_CYCLE = "TOTAL_SOPC";
+    
     public static final String MAX_LINE_OF_CODE = "MAX_LOC";
     public static final String MAX_NUMBER_OF_STATEMENTS = "MAX_NOST";
     
@@ -82,11 +99,14 @@ public interface MetricSort {
     public static final String MAX_NUMBER_OF_METHODS_AND_FIELDS = "MAX_NOMF";
     
     public static final String MAX_COUPLING_BETWEEN_OBJECTS = "MAX_CBO";
+    public static final String MAX_DIRECT_COUPLING_BETWEEN_OBJECTS = "MAX_DCBO";
     public static final String MAX_DEPTH_OF_INHERITANCE_TREE = "MAX_DIT";
     public static final String MAX_NUMBER_OF_CHILDREN = "MAX_NOC";
+    public static final String MAX_NUMBER_OF_DESCENDANTS = "MAX_NOD";
     public static final String MAX_RESPONSE_FOR_CLASS = "MAX_RFC";
     public static final String MAX_WEIGHTED_METHODS_PER_CLASS = "MAX_WMC";
     public static final String MAX_LACK_OF_COHESION_OF_METHODS = "MAX_LCOM";
+    public static final String MAX_LACK_OF_COHESION_OF_METHODS_4 = "MAX_LCOM4";
     public static final String MAX_NUMBER_OF_PUBLIC_METHODS = "MAX_NOPM";
     
     public static final String MAX_NUMBER_OF_PARAMETERS = "MAX_NOPT";
@@ -102,10 +122,15 @@ public interface MetricSort {
     public static final String MAX_NUMBER_OF_AFFERENT_FIELDS = "MAX_NOAFD";
     public static final String MAX_NUMBER_OF_EFFERENT_FIELDS = "MAX_NOEFD";
     
+    public static final String MAX_INSTABILITY = "MAX_INST";
+    public static final String MAX_ABSTRACTNESS = "MAX_ABST";
+    public static final String MAX_DISTANCE_FROM_MAIN_SEQUENCE = "MAX_DMS";
+    public static final String MAX_SIZE_OF_PACKAGE_CYCLE = "MAX_SOPC";
+    
     public static final IMetric[] ALL_SELECTABLE = {
         new LOC(), new NOST(), new NOMD(), new NOFD(), new NOMF(), new NOPM(), new NOACL(), new NOECL(),
-        new CBO(), new DIT(), new NOC(), new RFC(), new WMC(), new LCOM(),
-        new NOPT(), new CC(), new MNON()
+        new CBO(), new DCBO(), new DIT(), new NOC(), new NOD(), new RFC(), new WMC(), new LCOM(), new LCOM4(),
+        new NOPT(), new CC(), new MNON(), new INST(), new ABST(), new DMS(), new SOPC()
     };
     
     public static final IMetric DEFAULT_METRIC = new Default();
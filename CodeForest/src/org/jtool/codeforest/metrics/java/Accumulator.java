@@ -0,0 +1,137 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+/**
+ * An object accumulating values of a metric, which provides their count, sum, maximum, minimum, mean, and variance.
+ * The mean and the variance are updated incrementally with Welford's method.
+ * @author Katsuhisa Maruyama
+ */
+public class Accumulator {
+    
+    /**
+     * The number of the accumulated values.
+     */
+    private int count = 0;
+    
+    /**
+     * The sum of the accumulated values.
+     */
+    private double sum = 0;
+    
+    /**
+     * The maximum of the accumulated values.
+     */
+    private double max = Double.NEGATIVE_INFINITY;
+    
+    /**
+     * The minimum of the accumulated values.
+     */
+    private double min = Double.POSITIVE_INFINITY;
+    
+    /**
+     * The mean of the accumulated values.
+     */
+    private double mean = 0;
+    
+    /**
+     * The sum of squared differences from the current mean.
+     */
+    private double squaredDifferences = 0;
+    
+    /**
+     * Creates a new, empty accumulator.
+     */
+    public Accumulator() {
+        super();
+    }
+    
+    /**
+     * Accumulates a value.
+     * @param value the value to be accumulated
+     */
+    public void add(double value) {
+        count++;
+        sum = sum + value;
+        max = Math.max(max, value);
+        min = Math.min(min, value);
+        
+        double delta = value - mean;
+        mean = mean + delta / count;
+        squaredDifferences = squaredDifferences + delta * (value - mean);
+    }
+    
+    /**
+     * Discards all the accumulated values.
+     */
+    public void clear() {
+        count = 0;
+        sum = 0;
+        max = Double.NEGATIVE_INFINITY;
+        min = Double.POSITIVE_INFINITY;
+        mean = 0;
+        squaredDifferences = 0;
+    }
+    
+    /**
+     * Returns the number of the accumulated values.
+     * @return the number of the values
+     */
+    public int getCount() {
+        return count;
+    }
+    
+    /**
+     * Returns the sum of the accumulated values.
+     * @return the sum, or <code>0</code> if no value was accumulated
+     */
+    public double getSum() {
+        return sum;
+    }
+    
+    /**
+     * Returns the maximum of the accumulated values.
+     * @return the maximum, or <code>NaN</code> if no value was accumulated
+     */
+    public double getMax() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        return max;
+    }
+    
+    /**
+     * Returns the minimum of the accumulated values.
+     * @return the minimum, or <code>NaN</code> if no value was accumulated
+     */
+    public double getMin() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        return min;
+    }
+    
+    /**
+     * Returns the mean of the accumulated values.
+     * @return the mean, or <code>NaN</code> if no value was accumulated
+     */
+    public double getMean() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        return mean;
+    }
+    
+    /**
+     * Returns the population variance of the accumulated values.
+     * @return the variance, or <code>NaN</code> if no value was accumulated
+     */
+    public double getVariance() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        return squaredDifferences / count;
+    }
+}
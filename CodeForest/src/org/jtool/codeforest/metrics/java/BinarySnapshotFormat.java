@@ -0,0 +1,478 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Defines the layout of a binary file storing metric values within a project.
+ * The file consists of a header, a string table, and five tables of elements for the project, packages, classes, methods, and fields.
+ * Each table stores the properties of its elements in columns of integers, names in lists of string indexes,
+ * and metric values in one column of doubles per metric. All the values are written in big-endian order.
+ * @author Katsuhisa Maruyama
+ */
+final class BinarySnapshotFormat {
+    
+    /**
+     * The magic number at the beginning of a binary file, which reads as "CFSB".
+     */
+    static final int MAGIC = 0x43465342;
+    
+    /**
+     * The version of the layout.
+     */
+    static final int VERSION = 1;
+    
+    /**
+     * The string index representing a <code>null</code> string.
+     */
+    static final int NONE = -1;
+    
+    /**
+     * The column of the name of the project.
+     */
+    static final int PROJECT_NAME = 0;
+    
+    /**
+     * The number of integer columns of the project table.
+     */
+    static final int PROJECT_COLUMNS = 1;
+    
+    /**
+     * The number of lists of the project table.
+     */
+    static final int PROJECT_LISTS = 0;
+    
+    /**
+     * The column of the name of a package.
+     */
+    static final int PACKAGE_NAME = 0;
+    
+    /**
+     * The column of the index of the first class within a package.
+     */
+    static final int PACKAGE_FIRST_CLASS = 1;
+    
+    /**
+     * The column of the number of classes within a package.
+     */
+    static final int PACKAGE_CLASS_COUNT = 2;
+    
+    /**
+     * The number of integer columns of the package table.
+     */
+    static final int PACKAGE_COLUMNS = 3;
+    
+    /**
+     * The list of the names of afferent packages.
+     */
+    static final int PACKAGE_AFFERENTS = 0;
+    
+    /**
+     * The list of the names of efferent packages.
+     */
+    static final int PACKAGE_EFFERENTS = 1;
+    
+    /**
+     * The number of lists of the package table.
+     */
+    static final int PACKAGE_LISTS = 2;
+    
+    /**
+     * The column of the name of a class.
+     */
+    static final int CLASS_NAME = 0;
+    
+    /**
+     * The column of the fully-qualified name of a class.
+     */
+    static final int CLASS_FQN = 1;
+    
+    /**
+     * The column of the modifiers of a class.
+     */
+    static final int CLASS_MODIFIERS = 2;
+    
+    /**
+     * The column of the flags of a class.
+     */
+    static final int CLASS_FLAGS = 3;
+    
+    /**
+     * The column of the path of a class.
+     */
+    static final int CLASS_PATH = 4;
+    
+    /**
+     * The column of the name of the super class of a class.
+     */
+    static final int CLASS_SUPERCLASS = 5;
+    
+    /**
+     * The first of the four columns of the code properties of a class.
+     */
+    static final int CLASS_CODE = 6;
+    
+    /**
+     * The column of the index of the first method within a class.
+     */
+    static final int CLASS_FIRST_METHOD = 10;
+    
+    /**
+     * The column of the number of methods within a class.
+     */
+    static final int CLASS_METHOD_COUNT = 11;
+    
+    /**
+     * The column of the index of the first field within a class.
+     */
+    static final int CLASS_FIRST_FIELD = 12;
+    
+    /**
+     * The column of the number of fields within a class.
+     */
+    static final int CLASS_FIELD_COUNT = 13;
+    
+    /**
+     * The number of integer columns of the class table.
+     */
+    static final int CLASS_COLUMNS = 14;
+    
+    /**
+     * The list of the names of the interfaces that a class implements.
+     */
+    static final int CLASS_SUPERINTERFACES = 0;
+    
+    /**
+     * The list of the names of afferent classes.
+     */
+    static final int CLASS_AFFERENTS = 1;
+    
+    /**
+     * The list of the names of efferent classes.
+     */
+    static final int CLASS_EFFERENTS = 2;
+    
+    /**
+     * The number of lists of the class table.
+     */
+    static final int CLASS_LISTS = 3;
+    
+    /**
+     * The column of the name of a method.
+     */
+    static final int METHOD_NAME = 0;
+    
+    /**
+     * The column of the signature of a method.
+     */
+    static final int METHOD_SIGNATURE = 1;
+    
+    /**
+     * The column of the return type of a method.
+     */
+    static final int METHOD_TYPE = 2;
+    
+    /**
+     * The column of the modifiers of a method.
+     */
+    static final int METHOD_MODIFIERS = 3;
+    
+    /**
+     * The column of the flags of a method.
+     */
+    static final int METHOD_FLAGS = 4;
+    
+    /**
+     * The first of the four columns of the code properties of a method.
+     */
+    static final int METHOD_CODE = 5;
+    
+    /**
+     * The number of integer columns of the method table.
+     */
+    static final int METHOD_COLUMNS = 9;
+    
+    /**
+     * The number of lists of the method table.
+     */
+    static final int METHOD_LISTS = 0;
+    
+    /**
+     * The column of the name of a field.
+     */
+    static final int FIELD_NAME = 0;
+    
+    /**
+     * The column of the type of a field.
+     */
+    static final int FIELD_TYPE = 1;
+    
+    /**
+     * The column of the modifiers of a field.
+     */
+    static final int FIELD_MODIFIERS = 2;
+    
+    /**
+     * The column of the flags of a field.
+     */
+    static final int FIELD_FLAGS = 3;
+    
+    /**
+     * The first of the four columns of the code properties of a field.
+     */
+    static final int FIELD_CODE = 4;
+    
+    /**
+     * The number of integer columns of the field table.
+     */
+    static final int FIELD_COLUMNS = 8;
+    
+    /**
+     * The number of lists of the field table.
+     */
+    static final int FIELD_LISTS = 0;
+    
+    /**
+     * The flag of an interface, a constructor, or an enum constant.
+     */
+    static final int FLAG_FIRST = 1;
+    
+    /**
+     * The flag of an enum or an initializer.
+     */
+    static final int FLAG_SECOND = 2;
+    
+    /**
+     * The number of elements converted at once when arrays are read or written.
+     */
+    private static final int CHUNK = 8192;
+    
+    /**
+     * Prohibits the instantiation.
+     */
+    private BinarySnapshotFormat() {
+    }
+    
+    /**
+     * Tests if a file starts with the magic number of the binary format after it is decompressed if needed.
+     * @param file the file
+     * @return <code>true</code> if the file is a binary file, otherwise <code>false</code>
+     */
+    static boolean isBinary(File file) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(SnapshotCompression.openInputStream(file));
+            return in.readInt() == MAGIC;
+            
+        } catch (IOException e) {
+            return false;
+        } finally {
+            close(in);
+        }
+    }
+    
+    /**
+     * Writes the header of a binary file.
+     * @param out the output stream
+     * @param time the time when the metric values were collected
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeHeader(DataOutputStream out, long time) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(time);
+    }
+    
+    /**
+     * Reads the header of a binary file.
+     * @param in the input stream
+     * @return the time when the metric values were collected
+     * @throws IOException if the file is not a binary file of the supported version
+     */
+    static long readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a binary snapshot");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported version " + version + " of a binary snapshot");
+        }
+        return in.readLong();
+    }
+    
+    /**
+     * Writes a string table.
+     * @param out the output stream
+     * @param strings the strings to be written
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String str : strings) {
+            byte[] bytes = str.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+    
+    /**
+     * Reads a string table.
+     * @param in the input stream
+     * @return the strings
+     * @throws IOException if an I/O error occurs
+     */
+    static String[] readStrings(DataInputStream in) throws IOException {
+        String[] strings = new String[in.readInt()];
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < strings.length; i++) {
+            int length = in.readInt();
+            if (length > bytes.length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            in.readFully(bytes, 0, length);
+            strings[i] = new String(bytes, 0, length, "UTF-8");
+        }
+        return strings;
+    }
+    
+    /**
+     * Writes integers.
+     * @param out the output stream
+     * @param values the array of the integers
+     * @param length the number of the integers to be written
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeInts(DataOutputStream out, int[] values, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(Math.min(length, CHUNK) * 4);
+        for (int offset = 0; offset < length; offset = offset + CHUNK) {
+            int size = Math.min(length - offset, CHUNK);
+            buf.clear();
+            buf.asIntBuffer().put(values, offset, size);
+            out.write(buf.array(), 0, size * 4);
+        }
+    }
+    
+    /**
+     * Reads integers.
+     * @param in the input stream
+     * @param values the array that stores the integers
+     * @throws IOException if an I/O error occurs
+     */
+    static void readInts(DataInputStream in, int[] values) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(Math.min(values.length, CHUNK) * 4);
+        for (int offset = 0; offset < values.length; offset = offset + CHUNK) {
+            int size = Math.min(values.length - offset, CHUNK);
+            in.readFully(buf.array(), 0, size * 4);
+            buf.clear();
+            buf.asIntBuffer().get(values, offset, size);
+        }
+    }
+    
+    /**
+     * Writes long integers.
+     * @param out the output stream
+     * @param values the array of the long integers
+     * @param length the number of the long integers to be written
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeLongs(DataOutputStream out, long[] values, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(Math.min(length, CHUNK) * 8);
+        for (int offset = 0; offset < length; offset = offset + CHUNK) {
+            int size = Math.min(length - offset, CHUNK);
+            buf.clear();
+            buf.asLongBuffer().put(values, offset, size);
+            out.write(buf.array(), 0, size * 8);
+        }
+    }
+    
+    /**
+     * Reads long integers.
+     * @param in the input stream
+     * @param values the array that stores the long integers
+     * @throws IOException if an I/O error occurs
+     */
+    static void readLongs(DataInputStream in, long[] values) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(Math.min(values.length, CHUNK) * 8);
+        for (int offset = 0; offset < values.length; offset = offset + CHUNK) {
+            int size = Math.min(values.length - offset, CHUNK);
+            in.readFully(buf.array(), 0, size * 8);
+            buf.clear();
+            buf.asLongBuffer().get(values, offset, size);
+        }
+    }
+    
+    /**
+     * Writes double values.
+     * @param out the output stream
+     * @param values the array of the double values
+     * @param length the number of the double values to be written
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeDoubles(DataOutputStream out, double[] values, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(Math.min(length, CHUNK) * 8);
+        for (int offset = 0; offset < length; offset = offset + CHUNK) {
+            int size = Math.min(length - offset, CHUNK);
+            buf.clear();
+            buf.asDoubleBuffer().put(values, offset, size);
+            out.write(buf.array(), 0, size * 8);
+        }
+    }
+    
+    /**
+     * Reads double values.
+     * @param in the input stream
+     * @param values the array that stores the double values
+     * @throws IOException if an I/O error occurs
+     */
+    static void readDoubles(DataInputStream in, double[] values) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(Math.min(values.length, CHUNK) * 8);
+        for (int offset = 0; offset < values.length; offset = offset + CHUNK) {
+            int size = Math.min(values.length - offset, CHUNK);
+            in.readFully(buf.array(), 0, size * 8);
+            buf.clear();
+            buf.asDoubleBuffer().get(values, offset, size);
+        }
+    }
+    
+    /**
+     * Returns the number of long integers of a bit set that has a flag for each of given rows.
+     * @param rows the number of the rows
+     * @return the number of the long integers
+     */
+    static int getBitSetLength(int rows) {
+        return (rows + 63) >>> 6;
+    }
+    
+    /**
+     * Tests if the flag of a row is set in a bit set.
+     * @param bits the bit set
+     * @param row the index of the row
+     * @return <code>true</code> if the flag is set, otherwise <code>false</code>
+     */
+    static boolean isSet(long[] bits, int row) {
+        return (bits[row >>> 6] & (1L << (row & 63))) != 0;
+    }
+    
+    /**
+     * Closes a stream quietly.
+     * @param stream the stream to be closed
+     */
+    static void close(Closeable stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                System.err.println("Binary: Close error occurred: " + e.getMessage() + ".");
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An input stream reading bytes from the current position of a byte buffer such as a mapped file.
+ * The position of the buffer is moved forward as the bytes are read.
+ * @author Katsuhisa Maruyama
+ */
+class ByteBufferInputStream extends InputStream {
+    
+    /**
+     * The byte buffer.
+     */
+    private ByteBuffer buffer;
+    
+    /**
+     * Creates an input stream reading a byte buffer.
+     * @param buffer the byte buffer
+     */
+    ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+    
+    /**
+     * Reads the next byte.
+     * @return the byte, or <code>-1</code> if the end of the buffer is reached
+     */
+    @Override
+    public int read() {
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        return buffer.get() & 0xff;
+    }
+    
+    /**
+     * Reads bytes into an array.
+     * @param bytes the array that stores the bytes
+     * @param offset the offset in the array at which the bytes are stored
+     * @param length the maximum number of the bytes to be read
+     * @return the number of the bytes read, or <code>-1</code> if the end of the buffer is reached
+     */
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int size = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, size);
+        return size;
+    }
+}
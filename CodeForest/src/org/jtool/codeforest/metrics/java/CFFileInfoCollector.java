@@ -4,11 +4,16 @@
 
 package org.jtool.codeforest.metrics.java;
 
+import org.jtool.codeforest.metrics.IMetricProvider;
+import org.jtool.codeforest.metrics.IVisitingMetricProvider;
+import org.jtool.codeforest.metrics.MetricProviderRegistry;
 import org.jtool.eclipse.model.java.JavaASTVisitor;
 import org.jtool.eclipse.model.java.JavaPackage;
 import org.jtool.eclipse.model.java.JavaClass;
-import org.jtool.eclipse.model.java.JavaMethod;
 import org.jtool.eclipse.model.java.JavaField;
+import org.jtool.eclipse.model.java.JavaFile;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.PackageDeclaration;
 import org.eclipse.jdt.core.dom.TypeDeclaration;
 import org.eclipse.jdt.core.dom.EnumDeclaration;
@@ -19,10 +24,14 @@ import org.eclipse.jdt.core.dom.Initializer;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 import org.eclipse.jdt.core.dom.EnumConstantDeclaration;
 import java.util.List;
+import java.util.ArrayList;
 import java.util.Stack;
 
 /**
  * Visits a Java program and stores its information.
+ * Information on statements enclosed methods, on fields, methods, and types referred to in the methods,
+ * and on the metrics of the registered visiting metric providers is collected during this visit,
+ * so that method bodies are not walked again for it.
  * @author Katsuhisa Maruyama
  */
 public class CFFileInfoCollector extends JavaASTVisitor {
@@ -37,11 +46,45 @@ public class CFFileInfoCollector extends JavaASTVisitor {
      */
     private PackageDeclaration packageNode = null;
     
+    /**
+     * A stack which stores counters of statements for the methods being visited.
+     * Statements in a nested method are also counted for its enclosing methods.
+     */
+    private Stack<CFStatementCounter> counterStack = new Stack<CFStatementCounter>();
+    
+    /**
+     * A stack which stores recorders of references for the methods being visited.
+     * References in a nested method are also recorded for its enclosing methods.
+     */
+    private Stack<CFReferenceRecorder> recorderStack = new Stack<CFReferenceRecorder>();
+    
+    /**
+     * A stack which stores calculators of provided metrics for the methods being visited.
+     * Nodes in a nested method are also passed to the calculators for its enclosing methods.
+     */
+    private Stack<CFProvidedMetricCounter> providedCounterStack = new Stack<CFProvidedMetricCounter>();
+    
+    /**
+     * The registered providers of method metrics that are calculated during this visit.
+     */
+    private List<IVisitingMetricProvider> visitingProviders = new ArrayList<IVisitingMetricProvider>();
+    
+    /**
+     * The collection of classes created while visiting since this visitor was opened or last closed.
+     */
+    private List<JavaClass> visitedClasses = new ArrayList<JavaClass>();
+    
     /**
      * Creates a new object for visiting a Java program. 
      */
     public CFFileInfoCollector() {
         super();
+        
+        for (IMetricProvider provider : MetricProviderRegistry.getProviders()) {
+            if (provider instanceof IVisitingMetricProvider && provider.getLevel() == IMetricProvider.METHOD_LEVEL) {
+                visitingProviders.add((IVisitingMetricProvider)provider);
+            }
+        }
     }
     
     /**
@@ -51,9 +94,126 @@ public class CFFileInfoCollector extends JavaASTVisitor {
         super.close();
         
         classStack.clear();
+        counterStack.clear();
+        recorderStack.clear();
+        providedCounterStack.clear();
+        visitedClasses.clear();
         packageNode = null;
     }
     
+    /**
+     * Sets the file to be visited, which is used when this visitor is applied to a compilation unit directly.
+     * @param jfile the file containing the compilation unit
+     */
+    public void setJavaFile(JavaFile jfile) {
+        this.jfile = jfile;
+    }
+    
+    /**
+     * Returns the classes created while visiting since this visitor was opened or last closed.
+     * @return the collection of the classes
+     */
+    public List<JavaClass> getVisitedClasses() {
+        return visitedClasses;
+    }
+    
+    /**
+     * Counts a node as a statement and records it as a reference of the methods being visited before the node is visited.
+     * The node is also passed to the calculators of provided metrics.
+     * @param node the node to be visited
+     */
+    public void preVisit(ASTNode node) {
+        for (CFStatementCounter counter : counterStack) {
+            counter.enter(node);
+        }
+        for (CFReferenceRecorder recorder : recorderStack) {
+            recorder.enter(node);
+        }
+        for (CFProvidedMetricCounter counter : providedCounterStack) {
+            counter.enter(node);
+        }
+    }
+    
+    /**
+     * Counts a node as a statement of the methods being visited after the node is visited.
+     * The node is also passed to the calculators of provided metrics.
+     * @param node the visited node
+     */
+    public void postVisit(ASTNode node) {
+        for (CFStatementCounter counter : counterStack) {
+            counter.exit(node);
+        }
+        for (CFProvidedMetricCounter counter : providedCounterStack) {
+            counter.exit(node);
+        }
+    }
+    
+    /**
+     * Counts statements and records references in the children of a node, which are not visited by this visitor.
+     * @param node the node
+     */
+    private void collectInside(ASTNode node) {
+        if (!counterStack.empty()) {
+            node.accept(new ASTVisitor() {
+                
+                /**
+                 * Passes a node to the counters and the recorders before the node is visited.
+                 * @param node the node to be visited
+                 */
+                public void preVisit(ASTNode node) {
+                    CFFileInfoCollector.this.preVisit(node);
+                }
+                
+                /**
+                 * Passes a node to the counters after the node is visited.
+                 * @param node the visited node
+                 */
+                public void postVisit(ASTNode node) {
+                    CFFileInfoCollector.this.postVisit(node);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Starts counting statements, recording references, and calculating provided metrics of a method.
+     * Providers that need resolved bindings are not used if the bindings of the method are not resolved.
+     * @param jmethod the method
+     * @param node the AST node for the method
+     */
+    private void startCounting(CFJavaMethod jmethod, ASTNode node) {
+        counterStack.push(new CFStatementCounter(jmethod));
+        recorderStack.push(new CFReferenceRecorder(jmethod));
+        
+        if (visitingProviders.size() > 0) {
+            List<IVisitingMetricProvider> providers = new ArrayList<IVisitingMetricProvider>();
+            for (IVisitingMetricProvider provider : visitingProviders) {
+                if (!provider.requiresBindings() || node.getAST().hasResolvedBindings()) {
+                    providers.add(provider);
+                }
+            }
+            providedCounterStack.push(new CFProvidedMetricCounter(jmethod, providers));
+        }
+    }
+    
+    /**
+     * Finishes counting statements, recording references, and calculating provided metrics of a method and stores the information.
+     */
+    private void finishCounting() {
+        if (!counterStack.empty()) {
+            CFStatementCounter counter = counterStack.pop();
+            counter.store();
+        }
+        if (!recorderStack.empty()) {
+            CFReferenceRecorder recorder = recorderStack.pop();
+            recorder.store();
+        }
+        if (!providedCounterStack.empty()) {
+            CFProvidedMetricCounter counter = providedCounterStack.pop();
+            counter.store();
+        }
+    }
+    
     /**
      * Visits a package declaration node (<code>package</code>) and stores its information.
      * @param node the package declaration node
@@ -80,6 +240,7 @@ public class CFFileInfoCollector extends JavaASTVisitor {
             jc.addJavaInnerClass(jclass);
         }
         classStack.push(jclass);
+        visitedClasses.add(jclass);
         jclass.clearASTNode();
         
         return true;
@@ -111,6 +272,7 @@ public class CFFileInfoCollector extends JavaASTVisitor {
         }
         
         classStack.push(jclass);
+        visitedClasses.add(jclass);
         jclass.clearASTNode();
         
         return true;
@@ -140,6 +302,7 @@ public class CFFileInfoCollector extends JavaASTVisitor {
         }
         
         classStack.push(jclass);
+        visitedClasses.add(jclass);
         jclass.clearASTNode();
         
         return true;
@@ -163,8 +326,9 @@ public class CFFileInfoCollector extends JavaASTVisitor {
         }
         
         JavaClass jclass = classStack.peek(); 
-        JavaMethod jmethod = new CFJavaMethod(node, jclass);
+        CFJavaMethod jmethod = new CFJavaMethod(node, jclass, false);
         jmethod.clearASTNode();
+        startCounting(jmethod, node);
         
         return true;
     }
@@ -173,6 +337,7 @@ public class CFFileInfoCollector extends JavaASTVisitor {
      * Finishes the visit for a method declaration node.
      */
     public void endVisit(MethodDeclaration node) {
+        finishCounting();
     }
     
     /**
@@ -186,8 +351,9 @@ public class CFFileInfoCollector extends JavaASTVisitor {
         }
         
         JavaClass jclass = classStack.peek();
-        JavaMethod jmethod = new CFJavaMethod(node, jclass);
+        CFJavaMethod jmethod = new CFJavaMethod(node, jclass, false);
         jmethod.clearASTNode();
+        startCounting(jmethod, node);
         
         return true;
     }
@@ -196,6 +362,7 @@ public class CFFileInfoCollector extends JavaASTVisitor {
      * Finishes the visit for an initializer node.
      */
     public void endVisit(Initializer node) {
+        finishCounting();
     }
     
     /**
@@ -215,6 +382,7 @@ public class CFFileInfoCollector extends JavaASTVisitor {
             jfield.clearASTNode();
         }
         
+        collectInside(node);
         return false;
     }
     
@@ -232,6 +400,7 @@ public class CFFileInfoCollector extends JavaASTVisitor {
         JavaField jfield = new CFJavaField(node, jclass);
         jfield.clearASTNode();
         
+        collectInside(node);
         return false;
     }
 }
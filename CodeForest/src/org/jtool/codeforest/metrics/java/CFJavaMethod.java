@@ -5,12 +5,21 @@
 package org.jtool.codeforest.metrics.java;
 
 import org.jtool.eclipse.model.java.JavaClass;
+import org.jtool.eclipse.model.java.JavaField;
 import org.jtool.eclipse.model.java.JavaMethod;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.IMethodBinding;
 import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.eclipse.jdt.core.dom.Initializer;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.Type;
+import java.util.Set;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Collections;
 
 /**
  * An object representing a method, a constructor, or an initializer.
@@ -38,6 +47,11 @@ public class CFJavaMethod extends JavaMethod {
      */
     private int cyclomaticNumber;
     
+    /**
+     * The values of metrics calculated by the providers while this method was visited, or <code>null</code> if there is no value.
+     */
+    private Map<String, Double> providedValues = null;
+    
     /**
      * Creates a new, empty object.
      */
@@ -51,6 +65,17 @@ public class CFJavaMethod extends JavaMethod {
      * @param jc the class declaring this method
      */
     public CFJavaMethod(MethodDeclaration node, JavaClass jc) {
+        this(node, jc, true);
+    }
+    
+    /**
+     * Creates a new object representing a method.
+     * @param node an AST node for this method
+     * @param jc the class declaring this method
+     * @param walkBody <code>true</code> if information on statements and references is collected by walking the method body,
+     * or <code>false</code> if it is set by the visitor creating this object
+     */
+    public CFJavaMethod(MethodDeclaration node, JavaClass jc, boolean walkBody) {
         super(node);
         
         declaringClass = jc;
@@ -59,11 +84,12 @@ public class CFJavaMethod extends JavaMethod {
         IMethodBinding binding = node.resolveBinding();
         if (binding != null) {
             
-            collectAccessedFields(node);
-            collectCalledMethods(node);
-            collectUsedTypes(node);
-            
-            collectStatementInfo(node);
+            if (walkBody) {
+                collectAccessedFields(node);
+                collectCalledMethods(node);
+                collectUsedTypes(node);
+                collectStatementInfo(node);
+            }
             
             name = binding.getName();
             signature = getSignature(binding);
@@ -76,8 +102,11 @@ public class CFJavaMethod extends JavaMethod {
             }
             
         } else {
-            name = ".UNKNOWN";
-            signature = ".UNKNOWN";
+            collectDeclarationInfo(node);
+            
+            if (walkBody) {
+                collectStatementInfo(node);
+            }
             bindingOk = false;
         }
         
@@ -87,18 +116,31 @@ public class CFJavaMethod extends JavaMethod {
     /**
      * Creates a new object representing an initializer.
      * @param node the AST node for this initializer
+     * @param jc the class declaring this initializer
      */
     public CFJavaMethod(Initializer node, JavaClass jc) {
+        this(node, jc, true);
+    }
+    
+    /**
+     * Creates a new object representing an initializer.
+     * @param node the AST node for this initializer
+     * @param jc the class declaring this initializer
+     * @param walkBody <code>true</code> if information on statements and references is collected by walking the initializer body,
+     * or <code>false</code> if it is set by the visitor creating this object
+     */
+    public CFJavaMethod(Initializer node, JavaClass jc, boolean walkBody) {
         super(node);
         
         declaringClass = jc;
         numberOfParameters = 0;
         
-        collectAccessedFields(node);
-        collectCalledMethods(node);
-        collectUsedTypes(node);
-        
-        collectStatementInfo(node);
+        if (walkBody) {
+            collectAccessedFields(node);
+            collectCalledMethods(node);
+            collectUsedTypes(node);
+            collectStatementInfo(node);
+        }
         
         name = InitializerName;
         signature = name;
@@ -124,6 +166,44 @@ public class CFJavaMethod extends JavaMethod {
         super(name, sig, type, modifiers, isConstructor, isInitializer, jc);
     }
     
+    /**
+     * Collects information on the declaration of this method from its AST node, which is used when the binding is not resolved.
+     * Type names are not fully qualified since they are obtained from the source code.
+     * @param node the AST node for this method
+     */
+    private void collectDeclarationInfo(MethodDeclaration node) {
+        name = node.getName().getIdentifier();
+        
+        StringBuffer buf = new StringBuffer();
+        buf.append(name);
+        buf.append("(");
+        for (int i = 0; i < node.parameters().size(); i++) {
+            SingleVariableDeclaration param = (SingleVariableDeclaration)node.parameters().get(i);
+            if (i > 0) {
+                buf.append(", ");
+            }
+            buf.append(param.getType().toString());
+            if (param.isVarargs()) {
+                buf.append("...");
+            }
+        }
+        buf.append(")");
+        signature = buf.toString();
+        
+        Type rtype = node.getReturnType2();
+        if (rtype != null && !node.isConstructor()) {
+            type = rtype.toString();
+        } else {
+            type = "void";
+        }
+        modifiers = node.getModifiers();
+        isConstructor = node.isConstructor();
+        isInitializer = false;
+        for (Object obj : node.thrownExceptions()) {
+            exceptionNames.add(((Name)obj).getFullyQualifiedName());
+        }
+    }
+    
     /**
      * Collects local variables declared in this method.
      * @param node the AST node for this method
@@ -137,6 +217,65 @@ public class CFJavaMethod extends JavaMethod {
         cyclomaticNumber = svisitor.getCyclomaticNumber();
     }
     
+    /**
+     * Sets information on statements enclosed this method, which was collected by another visitor.
+     * @param nost the number of statements
+     * @param mnon the maximum number of nesting with respect to statements
+     * @param cc the cyclomatic number
+     */
+    protected void setStatementInfo(int nost, int mnon, int cc) {
+        numberOfStatements = nost;
+        maxNumberOfNesting = mnon;
+        cyclomaticNumber = cc;
+    }
+    
+    /**
+     * Sets fields, methods, and types referred to in this method, which were recorded by another visitor.
+     * The references are stored in the same way as they are collected by walking the method body.
+     * They are ignored if the binding of this method is not resolved.
+     * @param fields the bindings of the accessed fields
+     * @param methods the bindings of the called methods and constructors
+     * @param types the bindings of the used types
+     */
+    protected void setReferenceInfo(Set<IVariableBinding> fields, Set<IMethodBinding> methods, Set<ITypeBinding> types) {
+        if (!bindingOk) {
+            return;
+        }
+        
+        for (IVariableBinding vbinding : fields) {
+            accessedFields.add(JavaField.create(vbinding));
+        }
+        for (IMethodBinding mbinding : methods) {
+            calledMethods.add(JavaMethod.create(mbinding));
+        }
+        for (ITypeBinding tbinding : types) {
+            usedTypes.add(JavaClass.create(tbinding));
+        }
+    }
+    
+    /**
+     * Sets the value of a metric calculated by a provider while this method was visited by another visitor.
+     * @param sort the sort of the metric
+     * @param value the metric value
+     */
+    protected void setProvidedValue(String sort, double value) {
+        if (providedValues == null) {
+            providedValues = new HashMap<String, Double>();
+        }
+        providedValues.put(sort, new Double(value));
+    }
+    
+    /**
+     * Returns the values of metrics calculated by the providers while this method was visited.
+     * @return the unmodifiable map between the sorts of the metrics and their values
+     */
+    public Map<String, Double> getProvidedValues() {
+        if (providedValues == null) {
+            return Collections.emptyMap();
+        }
+        return Collections.unmodifiableMap(providedValues);
+    }
+    
     /**
      * Returns the number of parameters of this method.
      * @return the number of parameters
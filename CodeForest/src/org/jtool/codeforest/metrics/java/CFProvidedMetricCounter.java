@@ -0,0 +1,117 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.metrics.IMetricVisitor;
+import org.jtool.codeforest.metrics.IVisitingMetricProvider;
+import org.jtool.codeforest.metrics.UnsupportedMetricsException;
+import org.eclipse.jdt.core.dom.ASTNode;
+import java.util.List;
+import java.util.ArrayList;
+
+/**
+ * Calculates the metrics of providers for a method while its AST nodes are visited by another visitor.
+ * @see IVisitingMetricProvider
+ * @author Katsuhisa Maruyama
+ */
+public class CFProvidedMetricCounter {
+    
+    /**
+     * The method whose metrics are calculated.
+     */
+    private CFJavaMethod jmethod;
+    
+    /**
+     * The providers of the metrics.
+     */
+    private List<IVisitingMetricProvider> providers = new ArrayList<IVisitingMetricProvider>();
+    
+    /**
+     * The visitors of the respective providers, which are <code>null</code> for providers that failed.
+     */
+    private List<IMetricVisitor> visitors = new ArrayList<IMetricVisitor>();
+    
+    /**
+     * Creates a new object for calculating the metrics of a method.
+     * @param jmethod the method whose metrics are calculated
+     * @param providers the providers of the metrics
+     */
+    public CFProvidedMetricCounter(CFJavaMethod jmethod, List<IVisitingMetricProvider> providers) {
+        super();
+        
+        this.jmethod = jmethod;
+        for (IVisitingMetricProvider provider : providers) {
+            try {
+                visitors.add(provider.createVisitor());
+                this.providers.add(provider);
+            } catch (RuntimeException e) {
+                fail(provider, e);
+            }
+        }
+    }
+    
+    /**
+     * Passes a node to the visitors when its visit starts.
+     * @param node the visited node
+     */
+    public void enter(ASTNode node) {
+        for (int i = 0; i < visitors.size(); i++) {
+            IMetricVisitor visitor = visitors.get(i);
+            if (visitor != null) {
+                try {
+                    visitor.enter(node);
+                } catch (RuntimeException e) {
+                    fail(providers.get(i), e);
+                    visitors.set(i, null);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Passes a node to the visitors when its visit finishes.
+     * @param node the visited node
+     */
+    public void exit(ASTNode node) {
+        for (int i = 0; i < visitors.size(); i++) {
+            IMetricVisitor visitor = visitors.get(i);
+            if (visitor != null) {
+                try {
+                    visitor.exit(node);
+                } catch (RuntimeException e) {
+                    fail(providers.get(i), e);
+                    visitors.set(i, null);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Stores the calculated metric values into the method.
+     */
+    public void store() {
+        for (int i = 0; i < visitors.size(); i++) {
+            IMetricVisitor visitor = visitors.get(i);
+            if (visitor != null) {
+                try {
+                    jmethod.setProvidedValue(providers.get(i).getSort(), visitor.getValue());
+                } catch (UnsupportedMetricsException e) {
+                    continue;
+                } catch (RuntimeException e) {
+                    fail(providers.get(i), e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Reports a failure of a provider.
+     * @param provider the provider
+     * @param e the exception thrown by the provider
+     */
+    private void fail(IVisitingMetricProvider provider, RuntimeException e) {
+        System.err.println("Metric provider " + provider.getSort() + " failed: " + e);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.ConstructorInvocation;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SuperConstructorInvocation;
+import org.eclipse.jdt.core.dom.SuperMethodInvocation;
+import org.eclipse.jdt.core.dom.Type;
+import java.util.Set;
+import java.util.LinkedHashSet;
+
+/**
+ * Records fields, methods, and types referred to in a method while its AST nodes are visited by another visitor.
+ * This object collects the same references as the accessed fields, called methods, and used types of a method,
+ * so that they can be collected without walking the method body again.
+ * @see CFStatementCounter
+ * @author Katsuhisa Maruyama
+ */
+public class CFReferenceRecorder {
+    
+    /**
+     * The method whose references are recorded.
+     */
+    private CFJavaMethod jmethod;
+    
+    /**
+     * The bindings of fields accessed in a method.
+     */
+    private Set<IVariableBinding> fields = new LinkedHashSet<IVariableBinding>();
+    
+    /**
+     * The bindings of methods and constructors called in a method.
+     */
+    private Set<IMethodBinding> methods = new LinkedHashSet<IMethodBinding>();
+    
+    /**
+     * The bindings of types used in a method.
+     */
+    private Set<ITypeBinding> types = new LinkedHashSet<ITypeBinding>();
+    
+    /**
+     * Creates a new object for recording references in a method.
+     * @param jmethod the method whose references are recorded
+     */
+    public CFReferenceRecorder(CFJavaMethod jmethod) {
+        super();
+        
+        this.jmethod = jmethod;
+    }
+    
+    /**
+     * Returns the method whose references are recorded.
+     * @return the method
+     */
+    public CFJavaMethod getJavaMethod() {
+        return jmethod;
+    }
+    
+    /**
+     * Records a node when its visit starts.
+     * @param node the visited node
+     */
+    public void enter(ASTNode node) {
+        switch (node.getNodeType()) {
+            case ASTNode.SIMPLE_NAME:
+                SimpleName name = (SimpleName)node;
+                if (!name.isDeclaration()) {
+                    addField(name.resolveBinding());
+                }
+                break;
+                
+            case ASTNode.METHOD_INVOCATION:
+                addMethod(((MethodInvocation)node).resolveMethodBinding());
+                break;
+                
+            case ASTNode.SUPER_METHOD_INVOCATION:
+                addMethod(((SuperMethodInvocation)node).resolveMethodBinding());
+                break;
+                
+            case ASTNode.CLASS_INSTANCE_CREATION:
+                addMethod(((ClassInstanceCreation)node).resolveConstructorBinding());
+                break;
+                
+            case ASTNode.CONSTRUCTOR_INVOCATION:
+                addMethod(((ConstructorInvocation)node).resolveConstructorBinding());
+                break;
+                
+            case ASTNode.SUPER_CONSTRUCTOR_INVOCATION:
+                addMethod(((SuperConstructorInvocation)node).resolveConstructorBinding());
+                break;
+                
+            default:
+                if (node instanceof Type) {
+                    addType(((Type)node).resolveBinding());
+                }
+                break;
+        }
+    }
+    
+    /**
+     * Records an accessed field.
+     * @param binding the binding of a name, which is ignored unless it denotes a field
+     */
+    private void addField(IBinding binding) {
+        if (binding instanceof IVariableBinding) {
+            IVariableBinding vbinding = (IVariableBinding)binding;
+            if (vbinding.isField()) {
+                fields.add(vbinding.getVariableDeclaration());
+            }
+        }
+    }
+    
+    /**
+     * Records a called method or constructor.
+     * @param binding the binding of the method, or <code>null</code> if it is not resolved
+     */
+    private void addMethod(IMethodBinding binding) {
+        if (binding != null) {
+            methods.add(binding.getMethodDeclaration());
+        }
+    }
+    
+    /**
+     * Records a used type.
+     * @param binding the binding of the type, or <code>null</code> if it is not resolved
+     */
+    private void addType(ITypeBinding binding) {
+        if (binding != null) {
+            if (binding.isArray()) {
+                binding = binding.getElementType();
+            }
+            if (!binding.isPrimitive()) {
+                types.add(binding.getErasure());
+            }
+        }
+    }
+    
+    /**
+     * Stores the recorded references into the method.
+     */
+    public void store() {
+        jmethod.setReferenceInfo(fields, methods, types);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+
+/**
+ * Counts statements appearing in a method while its AST nodes are visited by another visitor.
+ * This object follows the same rules as <code>CFStatementInfoCollector</code>, so that
+ * the information on statements can be collected without walking the method body again.
+ * @see CFStatementInfoCollector
+ * @author Katsuhisa Maruyama
+ */
+public class CFStatementCounter {
+    
+    /**
+     * The method whose statements are counted.
+     */
+    private CFJavaMethod jmethod;
+    
+    /**
+     * The number of statements enclosed a method.
+     */
+    private int numberOfStatements = 0;
+    
+    /**
+     * The number of nesting with respect to statements enclosed a method.
+     */
+    private int numberOfNesting = 0;
+    
+    /**
+     * The maximum number of nesting with respect to statements.
+     */
+    private int maxNumberOfNesting = 0;
+    
+    /**
+     * The cyclomatic number for measuring complexity of a method.
+     */
+    private int cyclomaticNumber = 1;
+    
+    /**
+     * Creates a new object for counting statements enclosed a method.
+     * @param jmethod the method whose statements are counted
+     */
+    public CFStatementCounter(CFJavaMethod jmethod) {
+        super();
+        
+        this.jmethod = jmethod;
+    }
+    
+    /**
+     * Returns the method whose statements are counted.
+     * @return the method
+     */
+    public CFJavaMethod getJavaMethod() {
+        return jmethod;
+    }
+    
+    /**
+     * Counts a node when its visit starts.
+     * @param node the visited node
+     */
+    public void enter(ASTNode node) {
+        switch (node.getNodeType()) {
+            case ASTNode.DO_STATEMENT:
+            case ASTNode.ENHANCED_FOR_STATEMENT:
+            case ASTNode.FOR_STATEMENT:
+            case ASTNode.IF_STATEMENT:
+            case ASTNode.SWITCH_CASE:
+            case ASTNode.TRY_STATEMENT:
+            case ASTNode.WHILE_STATEMENT:
+                numberOfStatements++;
+                cyclomaticNumber++;
+                numberOfNesting++;
+                if (maxNumberOfNesting < numberOfNesting) {
+                    maxNumberOfNesting = numberOfNesting;
+                }
+                break;
+                
+            case ASTNode.ASSERT_STATEMENT:
+            case ASTNode.BREAK_STATEMENT:
+            case ASTNode.CONSTRUCTOR_INVOCATION:
+            case ASTNode.CONTINUE_STATEMENT:
+            case ASTNode.EXPRESSION_STATEMENT:
+            case ASTNode.LABELED_STATEMENT:
+            case ASTNode.RETURN_STATEMENT:
+            case ASTNode.SUPER_CONSTRUCTOR_INVOCATION:
+            case ASTNode.SWITCH_STATEMENT:
+            case ASTNode.SYNCHRONIZED_STATEMENT:
+            case ASTNode.THROW_STATEMENT:
+            case ASTNode.TYPE_DECLARATION_STATEMENT:
+            case ASTNode.VARIABLE_DECLARATION_STATEMENT:
+                numberOfStatements++;
+                break;
+                
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * Counts a node when its visit finishes.
+     * @param node the visited node
+     */
+    public void exit(ASTNode node) {
+        switch (node.getNodeType()) {
+            case ASTNode.DO_STATEMENT:
+            case ASTNode.ENHANCED_FOR_STATEMENT:
+            case ASTNode.FOR_STATEMENT:
+            case ASTNode.IF_STATEMENT:
+            case ASTNode.SWITCH_CASE:
+            case ASTNode.TRY_STATEMENT:
+            case ASTNode.WHILE_STATEMENT:
+                numberOfNesting--;
+                break;
+                
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * Stores the collected information into the method.
+     */
+    public void store() {
+        jmethod.setStatementInfo(numberOfStatements, maxNumberOfNesting, cyclomaticNumber);
+    }
+}
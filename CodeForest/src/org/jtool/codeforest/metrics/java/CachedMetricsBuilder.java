@@ -0,0 +1,423 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.Activator;
+import org.jtool.codeforest.util.Time;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jface.operation.IRunnableWithProgress;
+import org.eclipse.ui.IWorkbenchWindow;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.HashSet;
+
+/**
+ * Builds project metrics by parsing Java files through a pipeline with bounded memory.
+ * If the cache is used, the metric values of unchanged files are reused from the cache.
+ * Only files whose content was changed and files related to classes declared in the changed files are parsed again.
+ * The files related to the classes whose relations were changed by the parsing are parsed again in turn, until no relation is changed.
+ * @author Katsuhisa Maruyama
+ */
+public class CachedMetricsBuilder {
+    
+    /**
+     * The project whose metrics are built.
+     */
+    private IJavaProject project;
+    
+    /**
+     * The cache storing the metric values of respective files, or <code>null</code> if the cache is not used.
+     */
+    private MetricsCache cache;
+    
+    /**
+     * A flag indicating whether Java files are parsed without resolving bindings.
+     */
+    private boolean syntactic;
+    
+    /**
+     * The number of threads that parse Java files in parallel.
+     */
+    private int threads = 1;
+    
+    /**
+     * The number of files that were parsed in the last build.
+     */
+    private int numberOfParsedFiles = 0;
+    
+    /**
+     * Creates a builder for a project.
+     * @param project the project whose metrics are built
+     */
+    public CachedMetricsBuilder(IJavaProject project) {
+        this(project, false);
+    }
+    
+    /**
+     * Creates a builder for a project.
+     * @param project the project whose metrics are built
+     * @param syntactic <code>true</code> if Java files are parsed without resolving bindings, otherwise <code>false</code>
+     */
+    public CachedMetricsBuilder(IJavaProject project, boolean syntactic) {
+        this(project, syntactic, true);
+    }
+    
+    /**
+     * Creates a builder for a project.
+     * @param project the project whose metrics are built
+     * @param syntactic <code>true</code> if Java files are parsed without resolving bindings, otherwise <code>false</code>
+     * @param cacheEnabled <code>true</code> if the metric values of unchanged files are reused from the cache,
+     * or <code>false</code> if all the files are parsed
+     */
+    public CachedMetricsBuilder(IJavaProject project, boolean syntactic, boolean cacheEnabled) {
+        this.project = project;
+        this.syntactic = syntactic;
+        if (cacheEnabled) {
+            this.cache = new MetricsCache(project, syntactic);
+        }
+    }
+    
+    /**
+     * Sets the number of threads that parse Java files in parallel.
+     * @param threads the number of threads, or <code>1</code> for a single parser thread
+     */
+    public void setNumberOfThreads(int threads) {
+        if (threads > 0) {
+            this.threads = threads;
+        }
+    }
+    
+    /**
+     * Returns the number of files that were parsed in the last build.
+     * @return the number of the parsed files
+     */
+    public int getNumberOfParsedFiles() {
+        return numberOfParsedFiles;
+    }
+    
+    /**
+     * Builds the metrics of the project.
+     * @return the project metrics, or <code>null</code> if the build was canceled or failed
+     */
+    public ProjectMetrics build() {
+        String path = project.getProject().getLocation().toOSString();
+        final ProjectMetrics mproject = new ProjectMetrics(project.getElementName(), path, Time.getCurrentTime());
+        mproject.setSyntactic(syntactic);
+        
+        try {
+            IWorkbenchWindow workbenchWindow = Activator.getWorkbenchWindow();
+            workbenchWindow.run(true, true, new IRunnableWithProgress() {
+                
+                /**
+                 * Builds the metrics of the project by parsing changed Java files.
+                 * @param monitor the progress monitor to use to display progress and receive requests for cancellation
+                 * @exception InvocationTargetException if the run method must propagate a checked exception
+                 * @exception InterruptedException if the operation detects a request to cancel
+                 */
+                @Override
+                public void run(IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
+                    try {
+                        Map<String, ICompilationUnit> units = collectCompilationUnits(project);
+                        monitor.beginTask("Calculating metrics ... ", units.size() * 2);
+                        
+                        collect(units, mproject, monitor);
+                        
+                        collectEfferentClassNames(mproject);
+                        mproject.collectMetricsInfoAfterMerge(units.size());
+                        mproject.sortPackages();
+                        monitor.done();
+                        
+                    } catch (JavaModelException e) {
+                        throw new InvocationTargetException(e);
+                    }
+                }
+                
+            });
+            
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            System.out.println("# InvocationTargetException because " + cause);
+            for (StackTraceElement elem : e.getStackTrace()) {
+                System.err.println(elem.toString());
+            }
+            return null;
+        } catch (InterruptedException e) {
+            return null;
+        }
+        
+        return mproject;
+    }
+    
+    /**
+     * Collects the metrics of classes declared in the files of the project, reusing the cached metric values if the cache is used.
+     * The metric values of the whole project are not collected by this method.
+     * @param units the map between the paths and the compilation units of all the files
+     * @param mproject the project metrics to which the metrics of the classes are added
+     * @param monitor the progress monitor, on which the work for each file is reported twice
+     * @throws JavaModelException if the contents of the project cannot be obtained
+     * @throws InvocationTargetException if the parsing fails
+     * @throws InterruptedException if the build is canceled
+     */
+    void collect(Map<String, ICompilationUnit> units, ProjectMetrics mproject, IProgressMonitor monitor) throws JavaModelException, InvocationTargetException, InterruptedException {
+        if (cache != null) {
+            build(units, mproject, monitor);
+        } else {
+            numberOfParsedFiles = parse(new ArrayList<String>(units.keySet()), units, mproject, monitor).size();
+        }
+    }
+    
+    /**
+     * Builds the metrics of the project by reusing the cached metric values of unchanged files.
+     * @param units the map between the paths and the compilation units of all the files
+     * @param mproject the project metrics to be built
+     * @param monitor the progress monitor
+     * @throws JavaModelException if the contents of the project cannot be obtained
+     * @throws InvocationTargetException if the parsing fails
+     * @throws InterruptedException if the build is canceled
+     */
+    private void build(Map<String, ICompilationUnit> units, ProjectMetrics mproject, IProgressMonitor monitor) throws JavaModelException, InvocationTargetException, InterruptedException {
+        Map<String, String> keys = new HashMap<String, String>();
+        Set<String> changedPaths = new LinkedHashSet<String>();
+        Set<String> cleanPaths = new LinkedHashSet<String>();
+        for (String path : units.keySet()) {
+            String key = cache.getKey(units.get(path));
+            keys.put(path, key);
+            cache.record(path, key);
+            
+            if (key.equals(cache.getPreviousKey(path)) && cache.contains(key)) {
+                cleanPaths.add(path);
+            } else {
+                changedPaths.add(path);
+            }
+        }
+        
+        Set<String> dirtyNames = new HashSet<String>();
+        Set<String> dirtyRelatedNames = new HashSet<String>();
+        for (String path : cache.getPreviousPaths()) {
+            if (!units.containsKey(path) || changedPaths.contains(path)) {
+                String key = cache.getPreviousKey(path);
+                if (cache.contains(key)) {
+                    MetricsCache.Summary summary = cache.readSummary(key);
+                    dirtyNames.addAll(summary.declaredNames);
+                    dirtyRelatedNames.addAll(summary.relatedNames);
+                }
+            }
+        }
+        
+        Map<String, List<ClassMetrics>> parsedClasses = parse(new ArrayList<String>(changedPaths), units, mproject, monitor);
+        for (List<ClassMetrics> classes : parsedClasses.values()) {
+            for (ClassMetrics cm : classes) {
+                dirtyNames.add(cm.getQualifiedName());
+                dirtyRelatedNames.addAll(cm.getAfferentClassNames());
+                dirtyRelatedNames.addAll(cm.getEfferentClassNames());
+            }
+        }
+        
+        Map<String, MetricsCache.Summary> summaries = new HashMap<String, MetricsCache.Summary>();
+        Map<String, String> superClassNames = new HashMap<String, String>();
+        for (String path : cleanPaths) {
+            MetricsCache.Summary summary = cache.readSummary(keys.get(path));
+            summaries.put(path, summary);
+            superClassNames.putAll(summary.superClassNames);
+        }
+        for (List<ClassMetrics> classes : parsedClasses.values()) {
+            for (ClassMetrics cm : classes) {
+                superClassNames.put(cm.getQualifiedName(), cm.getSuperClassName());
+            }
+        }
+        
+        List<String> invalidatedPaths = new ArrayList<String>();
+        for (String path : cleanPaths) {
+            if (isInvalidated(summaries.get(path), dirtyNames, dirtyRelatedNames, superClassNames)) {
+                invalidatedPaths.add(path);
+            }
+        }
+        
+        while (invalidatedPaths.size() > 0) {
+            cleanPaths.removeAll(invalidatedPaths);
+            Map<String, List<ClassMetrics>> reparsedClasses = parse(invalidatedPaths, units, mproject, monitor);
+            parsedClasses.putAll(reparsedClasses);
+            
+            Set<String> changedRelatedNames = new HashSet<String>();
+            for (String path : invalidatedPaths) {
+                collectChangedRelatedNames(summaries.get(path), reparsedClasses.get(path), changedRelatedNames);
+            }
+            changedRelatedNames.removeAll(dirtyRelatedNames);
+            dirtyRelatedNames.addAll(changedRelatedNames);
+            
+            invalidatedPaths = new ArrayList<String>();
+            for (String path : cleanPaths) {
+                if (isInvalidated(summaries.get(path), changedRelatedNames)) {
+                    invalidatedPaths.add(path);
+                }
+            }
+        }
+        
+        for (String path : cleanPaths) {
+            if (monitor.isCanceled()) {
+                monitor.done();
+                throw new InterruptedException();
+            }
+            monitor.subTask("Loading " + path);
+            
+            cache.load(keys.get(path), mproject);
+            monitor.worked(2);
+        }
+        
+        for (String path : parsedClasses.keySet()) {
+            cache.store(keys.get(path), mproject, parsedClasses.get(path));
+        }
+        cache.save();
+        numberOfParsedFiles = parsedClasses.size();
+    }
+    
+    /**
+     * Tests if the cached metric values of a file must be calculated again.
+     * @param summary the summary of the cache entry for the file
+     * @param dirtyNames the names of classes that were changed
+     * @param dirtyRelatedNames the names of classes related to the changed classes
+     * @param superClassNames the map between classes and their super classes
+     * @return <code>true</code> if the metric values must be calculated again, otherwise <code>false</code>
+     */
+    private boolean isInvalidated(MetricsCache.Summary summary, Set<String> dirtyNames, Set<String> dirtyRelatedNames, Map<String, String> superClassNames) {
+        for (String name : summary.declaredNames) {
+            if (dirtyRelatedNames.contains(name)) {
+                return true;
+            }
+        }
+        
+        for (String name : summary.relatedNames) {
+            if (dirtyNames.contains(name)) {
+                return true;
+            }
+        }
+        
+        for (String name : summary.declaredNames) {
+            Set<String> visited = new HashSet<String>();
+            String sname = superClassNames.get(name);
+            while (sname != null && visited.add(sname)) {
+                if (dirtyNames.contains(sname)) {
+                    return true;
+                }
+                sname = superClassNames.get(sname);
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Tests if the cached metric values of a file must be calculated again because the relations of the declared classes were changed.
+     * @param summary the summary of the cache entry for the file
+     * @param changedRelatedNames the names of classes whose afferent or efferent classes were changed
+     * @return <code>true</code> if the metric values must be calculated again, otherwise <code>false</code>
+     */
+    private boolean isInvalidated(MetricsCache.Summary summary, Set<String> changedRelatedNames) {
+        for (String name : summary.declaredNames) {
+            if (changedRelatedNames.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Collects the names of classes whose relations to the classes declared in a file were changed by parsing the file again.
+     * These are the classes that are related to the declared classes either in the cache entry or in the parsed file, but not in both.
+     * @param summary the summary of the cache entry for the file
+     * @param classes the metrics of the classes declared in the parsed file, or <code>null</code> if the file was not parsed
+     * @param changedRelatedNames the collection that stores the names of the classes
+     */
+    private void collectChangedRelatedNames(MetricsCache.Summary summary, List<ClassMetrics> classes, Set<String> changedRelatedNames) {
+        Set<String> relatedNames = new HashSet<String>();
+        if (classes != null) {
+            for (ClassMetrics cm : classes) {
+                relatedNames.addAll(cm.getAfferentClassNames());
+                relatedNames.addAll(cm.getEfferentClassNames());
+            }
+        }
+        
+        for (String name : relatedNames) {
+            if (!summary.relatedNames.contains(name)) {
+                changedRelatedNames.add(name);
+            }
+        }
+        for (String name : summary.relatedNames) {
+            if (!relatedNames.contains(name)) {
+                changedRelatedNames.add(name);
+            }
+        }
+    }
+    
+    /**
+     * Parses Java files and calculates the metrics of classes declared in them.
+     * @param paths the paths of the files to be parsed
+     * @param units the map between the paths and the compilation units of all the files
+     * @param mproject the project metrics to which the calculated metrics are added
+     * @param monitor the progress monitor
+     * @return the map between the parsed files and the metrics of the classes declared in them
+     * @throws InvocationTargetException if the parsing fails
+     * @throws InterruptedException if the parsing is canceled
+     */
+    private Map<String, List<ClassMetrics>> parse(List<String> paths, Map<String, ICompilationUnit> units, ProjectMetrics mproject, IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
+        List<ICompilationUnit> icus = new ArrayList<ICompilationUnit>(paths.size());
+        for (String path : paths) {
+            icus.add(units.get(path));
+        }
+        
+        MetricsPipeline pipeline = new MetricsPipeline(project, syntactic);
+        pipeline.setNumberOfThreads(threads);
+        return pipeline.run(icus, mproject, monitor);
+    }
+    
+    /**
+     * Adds the names of efferent classes that are derived from the afferent classes of the other classes.
+     * The efferent classes of a parsed class cannot be obtained from classes whose metrics were loaded from the cache.
+     * @param mproject the project metrics
+     */
+    static void collectEfferentClassNames(ProjectMetrics mproject) {
+        Map<String, ClassMetrics> classes = new HashMap<String, ClassMetrics>();
+        for (ClassMetrics cm : mproject.getClassMetrics()) {
+            classes.put(cm.getQualifiedName(), cm);
+        }
+        
+        for (ClassMetrics cm : classes.values()) {
+            for (String name : cm.getAfferentClassNames()) {
+                ClassMetrics target = classes.get(name);
+                if (target != null && target != cm) {
+                    target.addEfferentClassName(cm.getQualifiedName());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Collects the compilation units in the source folders of a project.
+     * @param project the project
+     * @return the map between the paths of the files and their compilation units
+     * @throws JavaModelException if the contents of the project cannot be obtained
+     */
+    static Map<String, ICompilationUnit> collectCompilationUnits(IJavaProject project) throws JavaModelException {
+        Map<String, ICompilationUnit> units = new LinkedHashMap<String, ICompilationUnit>();
+        for (IPackageFragment fragment : project.getPackageFragments()) {
+            if (fragment.getKind() == IPackageFragmentRoot.K_SOURCE) {
+                for (ICompilationUnit icu : fragment.getCompilationUnits()) {
+                    units.put(icu.getPath().toString(), icu);
+                }
+            }
+        }
+        return units;
+    }
+}
@@ -13,10 +13,14 @@ import org.jtool.eclipse.model.java.JavaMethod;
 import org.jtool.eclipse.model.java.JavaPackage;
 import org.jtool.eclipse.model.java.JavaProject;
 import java.util.Set;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Collection;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.concurrent.locks.Lock;
 
 /**
  * An object storing metric information on a class, an interface, or an enum.
@@ -29,6 +33,33 @@ public class ClassMetrics extends CommonMetrics {
      */
     public static final String Id = "ClassMetrics";
     
+    /**
+     * The sorts of metrics that are expensive to calculate and are therefore calculated on first access,
+     * or for all the classes in parallel when the metrics of the project are built.
+     */
+    public static final String[] LAZY_SORTS = {
+        MetricSort.RESPONSE_FOR_CLASS,
+        MetricSort.COUPLING_BETWEEN_OBJECTS,
+        MetricSort.DIRECT_COUPLING_BETWEEN_OBJECTS,
+        MetricSort.LACK_OF_COHESION_OF_METHODS,
+        MetricSort.LACK_OF_COHESION_OF_METHODS_4
+    };
+    
+    /**
+     * The bit indicating that the response for this class has not been calculated yet.
+     */
+    private static final int RESPONSE = 1;
+    
+    /**
+     * The bit indicating that the coupling of this class has not been calculated yet.
+     */
+    private static final int COUPLING = 2;
+    
+    /**
+     * The bit indicating that the cohesion of this class has not been calculated yet.
+     */
+    private static final int COHESION = 4;
+    
     /**
      * An object representing a class, an interface, or an enum.
      */
@@ -42,22 +73,33 @@ public class ClassMetrics extends CommonMetrics {
     /**
      * The collection of all method metrics for this class.
      */
-    protected List<MethodMetrics> methodMetrics = new ArrayList<MethodMetrics>();
+    protected List<MethodMetrics> methodMetrics = new HashedList<MethodMetrics>();
     
     /**
      * The collection of all field metrics for this class.
      */
-    protected List<FieldMetrics> fieldMetrics = new ArrayList<FieldMetrics>();
+    protected List<FieldMetrics> fieldMetrics = new HashedList<FieldMetrics>();
     
     /**
      * The collection of names of afferent classes for this class.
      */
-    protected List<String> afferentClassNames = new ArrayList<String>();
+    protected SymbolList afferentClassNames;
     
     /**
      * The collection of names of afferent classes for this class.
      */
-    protected List<String> efferentClassNames = new ArrayList<String>();
+    protected SymbolList efferentClassNames;
+    
+    /**
+     * The bits indicating which lazily calculated metrics of this class have not been calculated yet.
+     */
+    private volatile int pending = 0;
+    
+    /**
+     * The loader that creates the method and field metrics of this class on first access,
+     * or <code>null</code> if they have already been created.
+     */
+    private volatile IMemberLoader memberLoader = null;
     
     /**
      * Creates a new object representing a class, an interface, or an enum.
@@ -79,6 +121,7 @@ public class ClassMetrics extends CommonMetrics {
         
         jclass = JavaClass.create(name, fqn, modifiers, isInterface, isEnum, jfile, jpackage);
         this.packageMetrics = pm;
+        createClassNameLists();
     }
     
     /**
@@ -91,6 +134,7 @@ public class ClassMetrics extends CommonMetrics {
         
         this.jclass = jclass;
         packageMetrics = pm;
+        createClassNameLists();
         
         for (JavaMethod jm : jclass.getJavaMethods()) {
             if (jm instanceof CFJavaMethod) {
@@ -115,6 +159,47 @@ public class ClassMetrics extends CommonMetrics {
         collectMetricInfo();
     }
     
+    /**
+     * Creates a new object storing the same metric values as given class metrics, which shares the object representing the class.
+     * The lazily calculated metrics that have not been calculated yet are left to be calculated on first access.
+     * @param cm the class metrics to be copied
+     * @param pm a metrics object for a package containing this class
+     */
+    protected ClassMetrics(ClassMetrics cm, PackageMetrics pm) {
+        super();
+        
+        jclass = cm.jclass;
+        packageMetrics = pm;
+        createClassNameLists();
+        
+        for (MethodMetrics mm : cm.getMethodMetrics()) {
+            methodMetrics.add(new MethodMetrics(mm, this));
+        }
+        for (FieldMetrics fm : cm.getFieldMetrics()) {
+            fieldMetrics.add(new FieldMetrics(fm, this));
+        }
+        
+        synchronized (cm) {
+            copyMetricValues(cm);
+            for (String name : cm.getAfferentClassNames()) {
+                afferentClassNames.add(name);
+            }
+            for (String name : cm.getEfferentClassNames()) {
+                efferentClassNames.add(name);
+            }
+            pending = cm.pending;
+        }
+    }
+    
+    /**
+     * Creates the lists of names of afferent and efferent classes, which share the symbol table of the project.
+     */
+    private void createClassNameLists() {
+        SymbolTable symbolTable = packageMetrics.getProjectMetrics().getSymbolTable();
+        afferentClassNames = new SymbolList(symbolTable);
+        efferentClassNames = new SymbolList(symbolTable);
+    }
+    
     /**
      * Sets the code properties with respect to positions and line numbers of this class.
      * @param start the character index indicating where the code fragment for this class begins
@@ -168,6 +253,14 @@ public class ClassMetrics extends CommonMetrics {
         }
     }
     
+    /**
+     * Removes the names of afferent classes for this class.
+     * @param names the collection of the afferent class names
+     */
+    public void removeAfferentClassNames(Collection<String> names) {
+        afferentClassNames.removeAll(names);
+    }
+    
     /**
      * Returns the names of afferent classes for this class.
      * @return the collection of the afferent class names
@@ -176,6 +269,14 @@ public class ClassMetrics extends CommonMetrics {
         return afferentClassNames;
     }
     
+    /**
+     * Returns the identification numbers of the names of afferent classes in the symbol table of the project.
+     * @return the array of the identification numbers
+     */
+    public int[] getAfferentClassIds() {
+        return afferentClassNames.getIds();
+    }
+    
     /**
      * Adds the name of an efferent class for this class.
      * @param name the efferent class name
@@ -186,6 +287,14 @@ public class ClassMetrics extends CommonMetrics {
         }
     }
     
+    /**
+     * Removes the names of efferent classes for this class.
+     * @param names the collection of the efferent class names
+     */
+    public void removeEfferentClassNames(Collection<String> names) {
+        efferentClassNames.removeAll(names);
+    }
+    
     /**
      * Returns the names of efferent classes for this class.
      * @return the collection of the efferent class names
@@ -194,6 +303,14 @@ public class ClassMetrics extends CommonMetrics {
         return efferentClassNames;
     }
     
+    /**
+     * Returns the identification numbers of the names of efferent classes in the symbol table of the project.
+     * @return the array of the identification numbers
+     */
+    public int[] getEfferentClassIds() {
+        return efferentClassNames.getIds();
+    }
+    
     /**
      * Returns the metrics object for a package containing this class.
      * @return the package metrics
@@ -207,6 +324,7 @@ public class ClassMetrics extends CommonMetrics {
      * @return the collection of method metrics
      */
     public List<MethodMetrics> getMethodMetrics() {
+        loadMembers();
         return methodMetrics;
     }
     
@@ -225,6 +343,7 @@ public class ClassMetrics extends CommonMetrics {
      * @return the collection of field metrics
      */
     public List<FieldMetrics> getFieldMetrics() {
+        loadMembers();
         return fieldMetrics;
     }
     
@@ -238,6 +357,37 @@ public class ClassMetrics extends CommonMetrics {
         }
     }
     
+    /**
+     * Sets the loader that creates the method and field metrics of this class on first access.
+     * @param loader the loader
+     */
+    void setMemberLoader(IMemberLoader loader) {
+        memberLoader = loader;
+    }
+    
+    /**
+     * Tests if the method and field metrics of this class have been created.
+     * @return <code>true</code> if they have been created, otherwise <code>false</code>
+     */
+    boolean isMemberLoaded() {
+        return memberLoader == null;
+    }
+    
+    /**
+     * Creates the method and field metrics of this class if they have not been created yet.
+     */
+    private void loadMembers() {
+        if (memberLoader != null) {
+            synchronized (this) {
+                IMemberLoader loader = memberLoader;
+                if (loader != null) {
+                    loader.load(this);
+                    memberLoader = null;
+                }
+            }
+        }
+    }
+    
     /**
      * Returns the object representing this class.
      * @return the class object
@@ -315,16 +465,11 @@ public class ClassMetrics extends CommonMetrics {
      */
     private void collectMetricInfo() {
         try {
-            metrics.put(MetricSort.LINES_OF_CODE, new Double(jclass.getLoc()));
-            metrics.put(MetricSort.NUMBER_OF_METHODS, new Double(jclass.getJavaMethods().size()));
-            metrics.put(MetricSort.NUMBER_OF_FIELDS, new Double(jclass.getJavaFields().size()));
-            metrics.put(MetricSort.NUMBER_OF_METHODS_AND_FIELDS, new Double(jclass.getJavaMethods().size() + jclass.getJavaFields().size()));
-            metrics.put(MetricSort.NUMBER_OF_AFFERENT_CLASSES, new Double(jclass.getAfferentJavaClassesInProject().size()));
-            metrics.put(MetricSort.NUMBER_OF_EFFERENT_CLASSES, new Double(jclass.getEfferentJavaClassesInProject().size()));
-            
-            metrics.put(MetricSort.NUMBER_OF_STATEMENTS, sum(MetricSort.NUMBER_OF_STATEMENTS));
-            metrics.put(MetricSort.NUMBER_OF_CHILDREN, new Double(jclass.getChildren().size()));
-            metrics.put(MetricSort.DEPTH_OF_INHERITANCE_TREE, new Double(jclass.getAllSuperClasses().size()));
+            putMetricValue(MetricSort.LINES_OF_CODE, jclass.getLoc());
+            putMetricValue(MetricSort.NUMBER_OF_METHODS, jclass.getJavaMethods().size());
+            putMetricValue(MetricSort.NUMBER_OF_FIELDS, jclass.getJavaFields().size());
+            putMetricValue(MetricSort.NUMBER_OF_METHODS_AND_FIELDS, jclass.getJavaMethods().size() + jclass.getJavaFields().size());
+            putMetricValue(MetricSort.NUMBER_OF_STATEMENTS, sum(MetricSort.NUMBER_OF_STATEMENTS));
             
             double nopm = 0;
             for (JavaMethod jm : jclass.getJavaMethods()) {
@@ -332,29 +477,17 @@ public class ClassMetrics extends CommonMetrics {
                     nopm++;
                 }
             }
-            metrics.put(MetricSort.NUMBER_OF_PUBLIC_METHODS, new Double(nopm));
-            
-            List<JavaMethod> calledMethods = new ArrayList<JavaMethod>();
-            for (JavaMethod jm : jclass.getJavaMethods()) {
-                for (JavaMethod m : jm.getCalledJavaMethodsInProject()) {
-                    calledMethods.add(m);
-                }
-            }
-            double rfc = jclass.getJavaMethods().size() + calledMethods.size();
-            metrics.put(MetricSort.RESPONSE_FOR_CLASS, new Double(rfc));
-            
-            List<JavaClass> classes = new ArrayList<JavaClass>();
-            collectCoupledClasses(jclass, classes);
-            metrics.put(MetricSort.COUPLING_BETWEEN_OBJECTS, new Double(classes.size()));
-            
-            double lcom = getLCOM();
-            metrics.put(MetricSort.LACK_OF_COHESION_OF_METHODS, new Double(lcom));
+            putMetricValue(MetricSort.NUMBER_OF_PUBLIC_METHODS, nopm);
             
             double wmc  = 0;
             for (MethodMetrics mm : methodMetrics) {
                 wmc = wmc + mm.getMetricValueWithException(MetricSort.CYCLOMATIC_COMPLEXITY);
             }
-            metrics.put(MetricSort.WEIGHTED_METHODS_PER_CLASS, new Double(wmc));
+            putMetricValue(MetricSort.WEIGHTED_METHODS_PER_CLASS, wmc);
+            
+            if (!packageMetrics.getProjectMetrics().isSyntactic()) {
+                collectBindingMetricInfo();
+            }
             
         } catch (UnsupportedMetricsException e) {
             System.out.println(e.getMessage() + " in the class: " + getName());
@@ -362,58 +495,207 @@ public class ClassMetrics extends CommonMetrics {
     }
     
     /**
-     * Obtains the difference value between methods accessing disjoint sets of fields and methods sharing the same one.
-     * @return the difference value (the value of LCOM) 
+     * Collects information on this class, which depends on resolved bindings.
+     * Metrics that are expensive to calculate are left to be calculated on first access.
      */
-    private int getLCOM() {
-        int accessedMethods = 0;
-        int cohesiveMethods = 0;
+    private void collectBindingMetricInfo() {
+        DependencyIndex index = packageMetrics.getProjectMetrics().getDependencyIndex();
+        int id = -1;
+        if (index != null) {
+            id = index.getClassId(jclass);
+        }
         
-        ArrayList<JavaMethod> jmethods = new ArrayList<JavaMethod>(jclass.getJavaMethods());
-        for (int i = 0; i < jmethods.size(); i++) {
-            for (int j = i + 1; j < jmethods.size(); j++) {
-                JavaMethod jm1 = jmethods.get(i);
-                JavaMethod jm2 = jmethods.get(j);
-                
-                for (JavaField jf1 : jm1.getAccessedJavaFieldsInProject()) {
-                    for (JavaField jf2 : jm2.getAccessedJavaFieldsInProject()) {
-                        if (jf1.equals(jf2)) {
-                            cohesiveMethods++;
-                        } else {
-                            accessedMethods++;
-                        }
-                    }
-                }
-            }
+        if (id >= 0) {
+            putMetricValue(MetricSort.NUMBER_OF_AFFERENT_CLASSES, index.getNumberOfAfferentClasses(id));
+            putMetricValue(MetricSort.NUMBER_OF_EFFERENT_CLASSES, index.getNumberOfEfferentClasses(id));
+            collectInheritanceInfo(index.getInheritanceHierarchy());
+            
+        } else {
+            putMetricValue(MetricSort.NUMBER_OF_AFFERENT_CLASSES, jclass.getAfferentJavaClassesInProject().size());
+            putMetricValue(MetricSort.NUMBER_OF_EFFERENT_CLASSES, jclass.getEfferentJavaClassesInProject().size());
+            putMetricValue(MetricSort.NUMBER_OF_CHILDREN, jclass.getChildren().size());
+            putMetricValue(MetricSort.DEPTH_OF_INHERITANCE_TREE, jclass.getAllSuperClasses().size());
         }
         
-        if (accessedMethods > cohesiveMethods) {
-            return accessedMethods - cohesiveMethods;
+        pending = RESPONSE | COUPLING | COHESION;
+    }
+    
+    /**
+     * Tests if a metric with a given sort is calculated on first access.
+     * @param sort the sort of the metric
+     * @return <code>true</code> if the metric is calculated lazily, otherwise <code>false</code>
+     */
+    public static boolean isLazySort(String sort) {
+        return getLazyGroup(sort) != 0;
+    }
+    
+    /**
+     * Returns the bit indicating a group of lazily calculated metrics that contains a metric with a given sort.
+     * @param sort the sort of the metric
+     * @return the bit of the group, or <code>0</code> if the metric is not calculated lazily
+     */
+    private static int getLazyGroup(String sort) {
+        if (sort.equals(MetricSort.RESPONSE_FOR_CLASS)) {
+            return RESPONSE;
+        }
+        if (sort.equals(MetricSort.COUPLING_BETWEEN_OBJECTS) || sort.equals(MetricSort.DIRECT_COUPLING_BETWEEN_OBJECTS)) {
+            return COUPLING;
+        }
+        if (sort.equals(MetricSort.LACK_OF_COHESION_OF_METHODS) || sort.equals(MetricSort.LACK_OF_COHESION_OF_METHODS_4)) {
+            return COHESION;
         }
         return 0;
     }
     
     /**
-     * Obtains all classes coupled to a given class.
-     * @param jc the originating class
-     * @param classes the collection of the coupled classes
+     * Calculates the value of a lazily calculated metric with a given sort if it has not been calculated yet.
+     * Metrics in the same group (e.g., LCOM and LCOM4) are calculated together.
+     * @param sort the sort of the metric
+     */
+    public void evaluate(String sort) {
+        if (pending == 0) {
+            return;
+        }
+        
+        int group = getLazyGroup(sort);
+        if (group != 0) {
+            evaluateGroup(group);
+        }
+    }
+    
+    /**
+     * Tests if the value of a lazily calculated metric with a given sort has already been calculated.
+     * @param sort the sort of the metric
+     * @return <code>true</code> if the value has been calculated or the metric is not calculated lazily, otherwise <code>false</code>
+     */
+    public boolean isEvaluated(String sort) {
+        return (pending & getLazyGroup(sort)) == 0;
+    }
+    
+    /**
+     * Calculates the values of all the lazily calculated metrics that have not been calculated yet.
+     */
+    public void evaluateAll() {
+        if (pending == 0) {
+            return;
+        }
+        
+        evaluateGroup(RESPONSE);
+        evaluateGroup(COUPLING);
+        evaluateGroup(COHESION);
+    }
+    
+    /**
+     * Calculates the values of a group of lazily calculated metrics.
+     * @param group the bit indicating the group
+     */
+    private synchronized void evaluateGroup(int group) {
+        if ((pending & group) == 0) {
+            return;
+        }
+        
+        Lock lock = packageMetrics.getProjectMetrics().getModelLock().readLock();
+        lock.lock();
+        try {
+            if (group == RESPONSE) {
+                collectResponseInfo();
+            } else if (group == COUPLING) {
+                CouplingGraph coupling = packageMetrics.getProjectMetrics().getCouplingGraph();
+                if (coupling != null) {
+                    collectCouplingInfo(coupling);
+                }
+            } else if (group == COHESION) {
+                CohesionCalculator cohesion = new CohesionCalculator(jclass.getJavaMethods());
+                putMetricValue(MetricSort.LACK_OF_COHESION_OF_METHODS, cohesion.getLCOM());
+                putMetricValue(MetricSort.LACK_OF_COHESION_OF_METHODS_4, cohesion.getLCOM4());
+            }
+        } finally {
+            lock.unlock();
+        }
+        pending = pending & ~group;
+    }
+    
+    /**
+     * Collects information on methods that can be executed in response to messages received by this class.
      */
-    private void collectCoupledClasses(JavaClass jc, List<JavaClass> classes) {
-        for (JavaClass c : jc.getAfferentJavaClassesInProject()) {
-            if (!classes.contains(c)) {
-                classes.add(c);
-                collectCoupledClasses(c, classes);
+    private void collectResponseInfo() {
+        DependencyIndex index = packageMetrics.getProjectMetrics().getDependencyIndex();
+        int id = -1;
+        if (index != null) {
+            id = index.getClassId(jclass);
+        }
+        
+        if (id >= 0) {
+            putMetricValue(MetricSort.RESPONSE_FOR_CLASS, index.getNumberOfMethods(id) + index.getNumberOfCalledMethods(id));
+            
+        } else {
+            List<JavaMethod> calledMethods = new ArrayList<JavaMethod>();
+            for (JavaMethod jm : jclass.getJavaMethods()) {
+                for (JavaMethod m : jm.getCalledJavaMethodsInProject()) {
+                    calledMethods.add(m);
+                }
             }
+            double rfc = jclass.getJavaMethods().size() + calledMethods.size();
+            putMetricValue(MetricSort.RESPONSE_FOR_CLASS, rfc);
         }
     }
     
+    /**
+     * Returns the value of a metric with a given sort, calculating it if it is calculated lazily.
+     * @param sort the sort of the metric
+     * @return the metric value
+     * @throws UnsupportedMetricsException if the metric value is not obtained
+     */
+    @Override
+    public double getMetricValueWithException(String sort) throws UnsupportedMetricsException {
+        evaluate(sort);
+        return super.getMetricValueWithException(sort);
+    }
+    
+    /**
+     * Returns the value of a metric with a given sort, calculating it if it is calculated lazily.
+     * @param sort the sort of the metric
+     * @return the metric value
+     */
+    @Override
+    public double getMetricValue(String sort) {
+        evaluate(sort);
+        return super.getMetricValue(sort);
+    }
+    
+    /**
+     * Obtains the map view of the stored metric values, after calculating all the lazily calculated metrics.
+     * @return the metric values
+     */
+    @Override
+    public Map<String, Double> getMetricValues() {
+        evaluateAll();
+        return super.getMetricValues();
+    }
+    
+    /**
+     * Obtains the map view of the stored metric values without calculating the lazily calculated metrics.
+     * @return the metric values, which exclude lazily calculated metrics that have not been calculated yet
+     */
+    Map<String, Double> getEvaluatedMetricValues() {
+        return metrics;
+    }
+    
+    /**
+     * Returns the groups of lazily calculated metrics that have not been calculated yet.
+     * @return the bits of the groups, or <code>0</code> if all the metrics have been calculated
+     */
+    int getPendingGroups() {
+        return pending;
+    }
+    
     /**
      * Obtains the sum of values with respect to a metric with a given name.
      * @param sort the metric name
      * @return the sum of the values
      * @throws UnsupportedMetricsException if the metric value is not obtained
      */
-    private Double sum(String sort) throws UnsupportedMetricsException {
+    private double sum(String sort) throws UnsupportedMetricsException {
         double value = 0;
         for (MethodMetrics mm : methodMetrics) {
             value = value + mm.getMetricValueWithException(sort);
@@ -421,83 +703,80 @@ public class ClassMetrics extends CommonMetrics {
         for (FieldMetrics fm : fieldMetrics) {
             value = value + fm.getMetricValueWithException(sort);
         }
-        return new Double(value);
+        return value;
     }
     
     /**
-     * Collects information on this class, which is related to total metric values.
+     * Collects information on classes coupled to this class.
+     * @param coupling the dependency graph of classes within the project
      */
-    protected void collectMetricInfoForTotal() {
-        double totalLOC = 0;
-        double totalNOST = 0;
-        double totalNOPT = 0;
-        double totalCC = 0;
-        double totalMNON = 0;
-        double totalNOAMD = 0;
-        double totalNOEMD = 0;
-        
-        for (MethodMetrics mm : getMethodMetrics()) {
-            try {
-                totalLOC = totalLOC + mm.getMetricValueWithException(MetricSort.LINES_OF_CODE);
-                totalNOST = totalNOST + mm.getMetricValueWithException(MetricSort.NUMBER_OF_STATEMENTS);
-                totalNOPT = totalNOPT + mm.getMetricValueWithException(MetricSort.NUMBER_OF_PARAMETERS);
-                totalCC = totalCC + mm.getMetricValueWithException(MetricSort.CYCLOMATIC_COMPLEXITY);
-                totalMNON = totalMNON + mm.getMetricValueWithException(MetricSort.MAX_NUMBER_OF_NESTING);
-                totalNOAMD = totalNOAMD + mm.getMetricValueWithException(MetricSort.NUMBER_OF_AFFERENT_METHODS);
-                totalNOEMD = totalNOEMD + mm.getMetricValueWithException(MetricSort.NUMBER_OF_EFFERENT_METHODS);
-            } catch (UnsupportedMetricsException e) {
-                System.out.println(e.getMessage() + " in the class: " + getName());
+    protected synchronized void collectCouplingInfo(CouplingGraph coupling) {
+        putMetricValue(MetricSort.COUPLING_BETWEEN_OBJECTS, coupling.getCouplingCount(jclass));
+        putMetricValue(MetricSort.DIRECT_COUPLING_BETWEEN_OBJECTS, coupling.getDirectCouplingCount(jclass));
+        pending = pending & ~COUPLING;
+    }
+    
+    /**
+     * Collects the numbers of afferent and efferent classes within the project from the names of related classes.
+     * The names must have been completed for all the classes in the project.
+     * @param classNames the collection of the names of all the classes in the project
+     */
+    protected synchronized void collectRelationCountInfo(Set<String> classNames) {
+        putMetricValue(MetricSort.NUMBER_OF_AFFERENT_CLASSES, countClassNames(afferentClassNames, classNames));
+        putMetricValue(MetricSort.NUMBER_OF_EFFERENT_CLASSES, countClassNames(efferentClassNames, classNames));
+    }
+    
+    /**
+     * Counts the names of related classes that are declared in the project, excluding this class.
+     * @param names the collection of the names of related classes
+     * @param classNames the collection of the names of all the classes in the project
+     * @return the number of the distinct names
+     */
+    private int countClassNames(List<String> names, Set<String> classNames) {
+        Set<String> counted = new HashSet<String>();
+        String self = getQualifiedName();
+        for (String name : names) {
+            if (classNames.contains(name) && !name.equals(self)) {
+                counted.add(name);
             }
         }
-        
-        putMetricValue(MetricSort.TOTAL_LINE_OF_CODE, totalLOC);
-        putMetricValue(MetricSort.TOTAL_NUMBER_OF_STATEMENTS, totalNOST);
-        putMetricValue(MetricSort.TOTAL_NUMBER_OF_PARAMETERS, totalNOPT);
-        putMetricValue(MetricSort.TOTAL_CYCLOMATIC_COMPLEXITY, totalCC);
-        putMetricValue(MetricSort.TOTAL_MAX_NUMBER_OF_NESTING, totalMNON);
-        putMetricValue(MetricSort.TOTAL_NUMBER_OF_AFFERENT_METHODS, totalNOAMD);
-        putMetricValue(MetricSort.TOTAL_NUMBER_OF_EFFERENT_METHODS, totalNOEMD);
-    }
-    
-    /**
-     * Collects information on this class, which is related to maximum metric values.
-     */
-    protected void collectMetricInfoForMax() {
-        double maxLOC = 0;
-        double maxNOST = 0;
-        double maxNOPT = 0;
-        double maxCC = 0;
-        double maxMNON = 0;
-        double maxNOAMD = 0;
-        double maxNOEMD = 0;
-        
-        for (MethodMetrics mm : getMethodMetrics()) {
-            try {
-                maxLOC = Math.max(maxLOC, mm.getMetricValueWithException(MetricSort.LINES_OF_CODE));
-                maxNOST = Math.max(maxNOST, mm.getMetricValueWithException(MetricSort.NUMBER_OF_STATEMENTS));
-                maxNOPT = Math.max(maxNOPT, mm.getMetricValueWithException(MetricSort.NUMBER_OF_PARAMETERS));
-                maxCC = Math.max(maxCC, mm.getMetricValueWithException(MetricSort.CYCLOMATIC_COMPLEXITY));
-                maxMNON = Math.max(maxMNON, mm.getMetricValueWithException(MetricSort.MAX_NUMBER_OF_NESTING));
-                maxNOAMD = Math.max(maxNOAMD, mm.getMetricValueWithException(MetricSort.NUMBER_OF_AFFERENT_METHODS));
-                maxNOEMD = Math.max(maxNOEMD, mm.getMetricValueWithException(MetricSort.NUMBER_OF_EFFERENT_METHODS));
-            } catch (UnsupportedMetricsException e) {
-                System.out.println(e.getMessage() + " in the class: " + getName());
-            }
+        return counted.size();
+    }
+    
+    /**
+     * Collects information on the position of this class in the inheritance hierarchy.
+     * @param hierarchy the inheritance hierarchy of classes within the project
+     */
+    protected void collectInheritanceInfo(InheritanceHierarchy hierarchy) {
+        int id = hierarchy.getClassId(getQualifiedName());
+        if (id >= 0) {
+            putMetricValue(MetricSort.DEPTH_OF_INHERITANCE_TREE, hierarchy.getDepth(id));
+            putMetricValue(MetricSort.NUMBER_OF_CHILDREN, hierarchy.getNumberOfChildren(id));
+            putMetricValue(MetricSort.NUMBER_OF_DESCENDANTS, hierarchy.getNumberOfDescendants(id));
+        }
+    }
+    
+    /**
+     * Collects information on this class, which is related to total and maximum metric values.
+     * The values imported with this class are kept if its method metrics have not been created yet.
+     * @param aggregator the aggregator for metric values of methods, which must be empty
+     */
+    protected void collectAggregatedMetricInfo(MetricAggregator aggregator) {
+        if (!isMemberLoaded()) {
+            return;
         }
         
-        putMetricValue(MetricSort.MAX_LINE_OF_CODE, maxLOC);
-        putMetricValue(MetricSort.MAX_NUMBER_OF_STATEMENTS, maxNOST);
-        putMetricValue(MetricSort.MAX_NUMBER_OF_PARAMETERS, maxNOPT);
-        putMetricValue(MetricSort.MAX_CYCLOMATIC_COMPLEXITY, maxCC);
-        putMetricValue(MetricSort.MAX_MAX_NUMBER_OF_NESTING, maxMNON);
-        putMetricValue(MetricSort.MAX_NUMBER_OF_AFFERENT_METHODS, maxNOAMD);
-        putMetricValue(MetricSort.MAX_NUMBER_OF_EFFERENT_METHODS, maxNOEMD);
+        for (MethodMetrics mm : methodMetrics) {
+            aggregator.add(mm);
+        }
+        aggregator.store(this);
     }
     
     /**
      * Sorts the method metrics in dictionary order of their names.
      */
     public void sortMethods() {
+        loadMembers();
         Collections.sort(methodMetrics, new Comparator<MethodMetrics>() {
             
             public int compare(MethodMetrics m1, MethodMetrics m2) {
@@ -510,6 +789,7 @@ public class ClassMetrics extends CommonMetrics {
      * Sorts the field metrics in dictionary order of their names.
      */
     public void sortFields() {
+        loadMembers();
         Collections.sort(fieldMetrics, new Comparator<FieldMetrics>() {
             
             public int compare(FieldMetrics m1, FieldMetrics m2) {
@@ -0,0 +1,258 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable view of the metrics of a class at the time when a snapshot of its project was published.
+ * The mutable state of the class metrics is copied, and the names, methods, and fields are sorted in dictionary order.
+ * Lazily calculated metrics are not calculated when a snapshot is taken, so that publishing a snapshot stays cheap.
+ * The method and field metrics are shared with the class metrics since they are never changed after the class was measured.
+ * If they have not been created when a snapshot is taken, they are sorted on first access so that they are not created in vain.
+ * @author Katsuhisa Maruyama
+ */
+public final class ClassSnapshot {
+    
+    /**
+     * The metrics of the class from which this snapshot was taken.
+     */
+    private final ClassMetrics classMetrics;
+    
+    /**
+     * The metric values of the class, excluding lazily calculated ones that were not calculated yet.
+     */
+    private final Map<String, Double> metricValues;
+    
+    /**
+     * The groups of lazily calculated metrics that were not calculated when this snapshot was taken.
+     */
+    private final int pendingGroups;
+    
+    /**
+     * The sorted names of afferent classes.
+     */
+    private final List<String> afferentClassNames;
+    
+    /**
+     * The sorted names of efferent classes.
+     */
+    private final List<String> efferentClassNames;
+    
+    /**
+     * The method metrics sorted by their signatures, or <code>null</code> if they have not been sorted yet.
+     */
+    private volatile List<MethodMetrics> methodMetrics = null;
+    
+    /**
+     * The field metrics sorted by their names, or <code>null</code> if they have not been sorted yet.
+     */
+    private volatile List<FieldMetrics> fieldMetrics = null;
+    
+    /**
+     * Takes a snapshot of the metrics of a class.
+     * @param cm the class metrics
+     */
+    ClassSnapshot(ClassMetrics cm) {
+        classMetrics = cm;
+        Map<String, Double> values;
+        synchronized (cm) {
+            pendingGroups = cm.getPendingGroups();
+            values = new LinkedHashMap<String, Double>(cm.getEvaluatedMetricValues());
+        }
+        metricValues = Collections.unmodifiableMap(values);
+        
+        afferentClassNames = sortedCopy(cm.getAfferentClassNames());
+        efferentClassNames = sortedCopy(cm.getEfferentClassNames());
+        
+        if (cm.isMemberLoaded()) {
+            methodMetrics = sortMethods(cm);
+            fieldMetrics = sortFields(cm);
+        }
+    }
+    
+    /**
+     * Returns an unmodifiable copy of the method metrics of a class sorted by their signatures.
+     * @param cm the class metrics
+     * @return the sorted copy
+     */
+    private static List<MethodMetrics> sortMethods(ClassMetrics cm) {
+        List<MethodMetrics> methods = new ArrayList<MethodMetrics>(cm.getMethodMetrics());
+        Collections.sort(methods, new Comparator<MethodMetrics>() {
+            
+            public int compare(MethodMetrics m1, MethodMetrics m2) {
+                return m1.getSignature().compareTo(m2.getSignature());
+            }
+        });
+        return Collections.unmodifiableList(methods);
+    }
+    
+    /**
+     * Returns an unmodifiable copy of the field metrics of a class sorted by their names.
+     * @param cm the class metrics
+     * @return the sorted copy
+     */
+    private static List<FieldMetrics> sortFields(ClassMetrics cm) {
+        List<FieldMetrics> fields = new ArrayList<FieldMetrics>(cm.getFieldMetrics());
+        Collections.sort(fields, new Comparator<FieldMetrics>() {
+            
+            public int compare(FieldMetrics m1, FieldMetrics m2) {
+                return m1.getName().compareTo(m2.getName());
+            }
+        });
+        return Collections.unmodifiableList(fields);
+    }
+    
+    /**
+     * Returns an unmodifiable copy of names sorted in dictionary order.
+     * @param names the names
+     * @return the sorted copy
+     */
+    static List<String> sortedCopy(List<String> names) {
+        List<String> copy = new ArrayList<String>(names);
+        Collections.sort(copy);
+        return Collections.unmodifiableList(copy);
+    }
+    
+    /**
+     * Tests if this snapshot still reflects the current state of given class metrics.
+     * This holds if the class metrics represent the same class as the ones from which this snapshot was taken, which might have been copied
+     * into a later version of the project metrics, no lazily calculated metric was calculated since then, and neither the metric values
+     * nor the names of related classes were changed since then. The values might be changed without changing the class itself,
+     * for example, when coupling and inheritance metrics are collected again after other classes were changed.
+     * @param cm the class metrics
+     * @return <code>true</code> if this snapshot can be shared with the next version, otherwise <code>false</code>
+     */
+    boolean isUpToDate(ClassMetrics cm) {
+        if (classMetrics != cm && classMetrics.getJavaClass() != cm.getJavaClass()) {
+            return false;
+        }
+        
+        synchronized (cm) {
+            if (pendingGroups != cm.getPendingGroups() || !metricValues.equals(cm.getEvaluatedMetricValues())) {
+                return false;
+            }
+        }
+        return afferentClassNames.size() == cm.getAfferentClassNames().size() &&
+               efferentClassNames.size() == cm.getEfferentClassNames().size() &&
+               new HashSet<String>(afferentClassNames).equals(new HashSet<String>(cm.getAfferentClassNames())) &&
+               new HashSet<String>(efferentClassNames).equals(new HashSet<String>(cm.getEfferentClassNames()));
+    }
+    
+    /**
+     * Tests if all the lazily calculated metrics had been calculated when this snapshot was taken.
+     * @return <code>true</code> if all the metric values are contained, otherwise <code>false</code>
+     */
+    public boolean isComplete() {
+        return pendingGroups == 0;
+    }
+    
+    /**
+     * Returns the metrics of the class from which this snapshot was taken, which might belong to an earlier version of the project metrics
+     * if this snapshot is shared with later versions. Its mutable state must not be read from threads other than the one that updates the project metrics.
+     * @return the class metrics
+     */
+    public ClassMetrics getClassMetrics() {
+        return classMetrics;
+    }
+    
+    /**
+     * Returns the name of the class.
+     * @return the class name
+     */
+    public String getName() {
+        return classMetrics.getName();
+    }
+    
+    /**
+     * Returns the fully qualified name of the class.
+     * @return the fully qualified name
+     */
+    public String getQualifiedName() {
+        return classMetrics.getQualifiedName();
+    }
+    
+    /**
+     * Returns the name of the superclass of the class.
+     * @return the name of the superclass
+     */
+    public String getSuperClassName() {
+        return classMetrics.getSuperClassName();
+    }
+    
+    /**
+     * Returns the names of the interfaces that the class implements.
+     * @return the collection of the interface names
+     */
+    public Set<String> getSuperInterfaceNames() {
+        return classMetrics.getSuperInterfaceNames();
+    }
+    
+    /**
+     * Returns the sorted names of afferent classes.
+     * @return the unmodifiable collection of the afferent class names
+     */
+    public List<String> getAfferentClassNames() {
+        return afferentClassNames;
+    }
+    
+    /**
+     * Returns the sorted names of efferent classes.
+     * @return the unmodifiable collection of the efferent class names
+     */
+    public List<String> getEfferentClassNames() {
+        return efferentClassNames;
+    }
+    
+    /**
+     * Returns the method metrics sorted by their signatures.
+     * @return the unmodifiable collection of the method metrics
+     */
+    public List<MethodMetrics> getMethodMetrics() {
+        List<MethodMetrics> methods = methodMetrics;
+        if (methods == null) {
+            methods = sortMethods(classMetrics);
+            methodMetrics = methods;
+        }
+        return methods;
+    }
+    
+    /**
+     * Returns the field metrics sorted by their names.
+     * @return the unmodifiable collection of the field metrics
+     */
+    public List<FieldMetrics> getFieldMetrics() {
+        List<FieldMetrics> fields = fieldMetrics;
+        if (fields == null) {
+            fields = sortFields(classMetrics);
+            fieldMetrics = fields;
+        }
+        return fields;
+    }
+    
+    /**
+     * Returns the metric values of the class.
+     * @return the unmodifiable map of the metric values
+     */
+    public Map<String, Double> getMetricValues() {
+        return metricValues;
+    }
+    
+    /**
+     * Returns the value of a metric with a given sort.
+     * @param sort the sort of the metric
+     * @return the metric value, or <code>-1</code> if the value is not contained
+     */
+    public double getMetricValue(String sort) {
+        return MetricsSnapshot.getValue(metricValues, sort);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.eclipse.model.java.JavaField;
+import org.jtool.eclipse.model.java.JavaMethod;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calculates cohesion metrics of a class from a bitmap that records which methods access which fields.
+ * The bitmap is built once per class. It stores a bit set of accessing methods for each field,
+ * so the numbers of method pairs are obtained by counting bits word by word.
+ * @author Katsuhisa Maruyama
+ */
+public class CohesionCalculator {
+    
+    /**
+     * The number of methods in a class.
+     */
+    private int methodNumber;
+    
+    /**
+     * The bit sets of methods accessing respective fields.
+     */
+    private long[][] accessors;
+    
+    /**
+     * The numbers of fields accessed by respective methods.
+     */
+    private int[] accessCounts;
+    
+    /**
+     * Creates an object that calculates cohesion metrics.
+     * @param jmethods the collection of methods in a class
+     */
+    public CohesionCalculator(Collection<JavaMethod> jmethods) {
+        methodNumber = jmethods.size();
+        accessCounts = new int[methodNumber];
+        
+        int words = (methodNumber + 63) >>> 6;
+        Map<String, Integer> fieldIds = new HashMap<String, Integer>();
+        List<long[]> columns = new ArrayList<long[]>();
+        
+        int index = 0;
+        for (JavaMethod jm : jmethods) {
+            for (JavaField jf : jm.getAccessedJavaFieldsInProject()) {
+                Integer id = fieldIds.get(jf.getQualifiedName());
+                if (id == null) {
+                    id = new Integer(columns.size());
+                    fieldIds.put(jf.getQualifiedName(), id);
+                    columns.add(new long[words]);
+                }
+                
+                long[] column = columns.get(id.intValue());
+                long bit = 1L << (index & 63);
+                if ((column[index >>> 6] & bit) == 0) {
+                    column[index >>> 6] |= bit;
+                    accessCounts[index]++;
+                }
+            }
+            index++;
+        }
+        
+        accessors = columns.toArray(new long[columns.size()][]);
+    }
+    
+    /**
+     * Obtains the difference value between the pairs of methods accessing disjoint sets of fields and the pairs sharing the same one.
+     * Every pair of methods contributes the number of fields accessed by both methods to the sharing count,
+     * and the number of the remaining combinations of their accessed fields to the disjoint count.
+     * @return the difference value (the value of LCOM)
+     */
+    public int getLCOM() {
+        long total = 0;
+        long squares = 0;
+        for (int count : accessCounts) {
+            total = total + count;
+            squares = squares + (long)count * count;
+        }
+        
+        long cohesivePairs = 0;
+        for (long[] column : accessors) {
+            long count = bitCount(column);
+            cohesivePairs = cohesivePairs + count * (count - 1) / 2;
+        }
+        
+        long accessedPairs = (total * total - squares) / 2 - cohesivePairs;
+        if (accessedPairs > cohesivePairs) {
+            return (int)Math.min(accessedPairs - cohesivePairs, Integer.MAX_VALUE);
+        }
+        return 0;
+    }
+    
+    /**
+     * Obtains the number of connected components of methods, where two methods are connected if they access the same field.
+     * @return the number of the connected components (the value of LCOM4)
+     */
+    public int getLCOM4() {
+        int[] parents = new int[methodNumber];
+        for (int i = 0; i < methodNumber; i++) {
+            parents[i] = i;
+        }
+        
+        int components = methodNumber;
+        for (long[] column : accessors) {
+            int first = -1;
+            for (int w = 0; w < column.length; w++) {
+                long word = column[w];
+                while (word != 0) {
+                    int index = (w << 6) + Long.numberOfTrailingZeros(word);
+                    word = word & (word - 1);
+                    
+                    if (first < 0) {
+                        first = index;
+                    } else if (union(parents, first, index)) {
+                        components--;
+                    }
+                }
+            }
+        }
+        return components;
+    }
+    
+    /**
+     * Counts the bits set in a bit set.
+     * @param bits the bit set
+     * @return the number of the set bits
+     */
+    private static long bitCount(long[] bits) {
+        long count = 0;
+        for (long word : bits) {
+            count = count + Long.bitCount(word);
+        }
+        return count;
+    }
+    
+    /**
+     * Merges two sets of methods.
+     * @param parents the parents of respective methods in the union-find forest
+     * @param x the index of a method in one set
+     * @param y the index of a method in the other set
+     * @return <code>true</code> if the two sets were disjoint, otherwise <code>false</code>
+     */
+    private static boolean union(int[] parents, int x, int y) {
+        int rx = find(parents, x);
+        int ry = find(parents, y);
+        if (rx == ry) {
+            return false;
+        }
+        parents[ry] = rx;
+        return true;
+    }
+    
+    /**
+     * Finds the representative of a set containing a given method, compressing the path to it.
+     * @param parents the parents of respective methods in the union-find forest
+     * @param x the index of the method
+     * @return the index of the representative
+     */
+    private static int find(int[] parents, int x) {
+        int root = x;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        while (parents[x] != root) {
+            int next = parents[x];
+            parents[x] = root;
+            x = next;
+        }
+        return root;
+    }
+}
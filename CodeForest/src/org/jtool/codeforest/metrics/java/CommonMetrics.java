@@ -7,7 +7,6 @@ package org.jtool.codeforest.metrics.java;
 import org.jtool.codeforest.metrics.UnsupportedMetricsException;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -20,7 +19,7 @@ public class CommonMetrics {
     /**
      * The collection of metric names and their values.
      */
-    protected Map<String, Double> metrics = new HashMap<String, Double>();
+    protected MetricValues metrics = new MetricValues();
     
     /**
      * Creates a new object storing metrics.
@@ -35,9 +34,9 @@ public class CommonMetrics {
      * @throws UnsupportedMetricsException if the metric value is not obtained
      */
     public double getMetricValueWithException(String sort) throws UnsupportedMetricsException {
-        Double value = metrics.get(sort);
-        if (value != null) {
-            return value.doubleValue();
+        double value = metrics.getValue(sort);
+        if (!Double.isNaN(value)) {
+            return value;
         }
         throw new UnsupportedMetricsException("Cannot obtain the metric value of " + sort);
     }
@@ -48,9 +47,9 @@ public class CommonMetrics {
      * @return the metric value
      */
     public double getMetricValue(String sort) {
-        Double value = metrics.get(sort);
-        if (value != null) {
-            return value.doubleValue();
+        double value = metrics.getValue(sort);
+        if (!Double.isNaN(value)) {
+            return value;
         }
         return -1.0;
     }
@@ -61,11 +60,21 @@ public class CommonMetrics {
      * @param value the metric value
      */
     public void putMetricValue(String sort, double value) {
-        metrics.put(sort, new Double(value));
+        metrics.putValue(sort, value);
     }
     
     /**
-     * Obtains the map storing metric values.
+     * Stores the metric values stored in other metrics, without calculating their lazily calculated metrics.
+     * @param source the metrics whose values are stored
+     */
+    protected void copyMetricValues(CommonMetrics source) {
+        for (Map.Entry<String, Double> entry : source.metrics.entrySet()) {
+            metrics.putValue(entry.getKey(), entry.getValue().doubleValue());
+        }
+    }
+    
+    /**
+     * Obtains the map view of the stored metric values.
      * @return the metric values
      */
     public Map<String, Double> getMetricValues() {
@@ -0,0 +1,488 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.eclipse.model.java.JavaClass;
+import org.jtool.eclipse.model.java.JavaProject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dependency graph of classes within a project, which calculates the number of coupled classes for every class.
+ * Classes are identified by integer numbers and their dependencies are stored in adjacency arrays.
+ * The graph is condensed into strongly connected components, and the coupled classes are counted
+ * in a single pass over the components in reverse topological order.
+ * @author Katsuhisa Maruyama
+ */
+public class CouplingGraph {
+    
+    /**
+     * The maximum number of components for which the sets of reachable components are memoized as bit sets.
+     * The reachable components are traversed component by component for a larger graph.
+     */
+    private static final int MAX_MEMOIZED_COMPONENTS = 20000;
+    
+    /**
+     * The map between the fully-qualified name of a class and its identification number.
+     */
+    private Map<String, Integer> classIds = new HashMap<String, Integer>();
+    
+    /**
+     * The offsets into the array of targets for respective classes.
+     */
+    private int[] offsets;
+    
+    /**
+     * The identification numbers of classes that respective classes depend on.
+     */
+    private int[] targets;
+    
+    /**
+     * The identification numbers of the components containing respective classes.
+     */
+    private int[] components;
+    
+    /**
+     * The numbers of classes coupled to respective classes.
+     */
+    private int[] couplingCounts;
+    
+    /**
+     * Creates a dependency graph of classes within a project.
+     * @param jproject the project
+     */
+    public CouplingGraph(JavaProject jproject) {
+        create(jproject.getJavaClasses());
+    }
+    
+    /**
+     * Creates a dependency graph of given classes.
+     * @param classes the collection of the classes
+     */
+    public CouplingGraph(Collection<JavaClass> classes) {
+        create(classes);
+    }
+    
+    /**
+     * Creates an empty dependency graph.
+     */
+    private CouplingGraph() {
+    }
+    
+    /**
+     * Creates a dependency graph of classes from the afferent classes stored in a dependency index.
+     * @param index the dependency index of a project
+     * @return the dependency graph
+     */
+    public static CouplingGraph createFromIndex(DependencyIndex index) {
+        CouplingGraph graph = new CouplingGraph();
+        graph.classIds.putAll(index.getClassIds());
+        
+        DependencyIndex.Adjacency afferents = index.getAfferentClasses();
+        graph.offsets = afferents.offsets;
+        graph.targets = afferents.targets;
+        graph.condense();
+        graph.countCoupledClasses();
+        return graph;
+    }
+    
+    /**
+     * Creates a dependency graph of classes from the names of their afferent classes.
+     * This is used for class metrics that are not backed by parsed classes, e.g., metrics loaded from a cache.
+     * @param classes the collection of the class metrics
+     * @return the dependency graph
+     */
+    public static CouplingGraph createFromNames(List<ClassMetrics> classes) {
+        CouplingGraph graph = new CouplingGraph();
+        if (classes.isEmpty()) {
+            graph.initialize(new ArrayList<int[]>(), 0);
+            return graph;
+        }
+        
+        SymbolTable symbolTable = classes.get(0).getPackageMetrics().getProjectMetrics().getSymbolTable();
+        int[] symbols = new int[classes.size()];
+        for (int i = 0; i < classes.size(); i++) {
+            ClassMetrics cm = classes.get(i);
+            symbols[i] = symbolTable.getId(cm.getQualifiedName());
+            if (!graph.classIds.containsKey(cm.getQualifiedName())) {
+                graph.classIds.put(cm.getQualifiedName(), new Integer(graph.classIds.size()));
+            }
+        }
+        
+        int[] symbolToClass = new int[symbolTable.size()];
+        Arrays.fill(symbolToClass, -1);
+        for (int i = 0; i < classes.size(); i++) {
+            if (symbolToClass[symbols[i]] < 0) {
+                symbolToClass[symbols[i]] = graph.classIds.get(classes.get(i).getQualifiedName()).intValue();
+            }
+        }
+        
+        List<int[]> adjacency = new ArrayList<int[]>();
+        for (int i = 0; i < graph.classIds.size(); i++) {
+            adjacency.add(null);
+        }
+        for (int i = 0; i < classes.size(); i++) {
+            int id = symbolToClass[symbols[i]];
+            if (adjacency.get(id) != null) {
+                continue;
+            }
+            
+            int[] names = classes.get(i).getAfferentClassIds();
+            int[] ids = new int[names.length];
+            int size = 0;
+            for (int name : names) {
+                if (name < symbolToClass.length && symbolToClass[name] >= 0) {
+                    ids[size] = symbolToClass[name];
+                    size++;
+                }
+            }
+            adjacency.set(id, Arrays.copyOf(ids, size));
+        }
+        
+        graph.initialize(adjacency, graph.classIds.size());
+        return graph;
+    }
+    
+    /**
+     * Builds the dependency graph and counts the coupled classes.
+     * @param classes the collection of the classes
+     */
+    private void create(Collection<JavaClass> classes) {
+        List<JavaClass> jclasses = new ArrayList<JavaClass>(classes);
+        for (JavaClass jc : jclasses) {
+            getId(jc, jclasses);
+        }
+        
+        List<int[]> adjacency = new ArrayList<int[]>();
+        for (int i = 0; i < jclasses.size(); i++) {
+            JavaClass jc = jclasses.get(i);
+            List<JavaClass> afferents = new ArrayList<JavaClass>(jc.getAfferentJavaClassesInProject());
+            int[] ids = new int[afferents.size()];
+            for (int j = 0; j < afferents.size(); j++) {
+                ids[j] = getId(afferents.get(j), jclasses);
+            }
+            adjacency.add(ids);
+        }
+        
+        initialize(adjacency, jclasses.size());
+    }
+    
+    /**
+     * Builds the adjacency arrays, condenses the graph, and counts the coupled classes.
+     * @param adjacency the identification numbers of classes that respective classes depend on
+     * @param size the number of classes
+     */
+    private void initialize(List<int[]> adjacency, int size) {
+        build(adjacency, size);
+        condense();
+        countCoupledClasses();
+    }
+    
+    /**
+     * Returns the identification number of a class, assigning a new number if the class is not registered yet.
+     * @param jc the class
+     * @param jclasses the collection of registered classes, to which the new class is appended
+     * @return the identification number
+     */
+    private int getId(JavaClass jc, List<JavaClass> jclasses) {
+        Integer id = classIds.get(jc.getQualifiedName());
+        if (id == null) {
+            id = new Integer(classIds.size());
+            classIds.put(jc.getQualifiedName(), id);
+            if (id.intValue() >= jclasses.size()) {
+                jclasses.add(jc);
+            }
+        }
+        return id.intValue();
+    }
+    
+    /**
+     * Builds the adjacency arrays, removing duplicated dependencies.
+     * @param adjacency the identification numbers of classes that respective classes depend on
+     * @param size the number of classes
+     */
+    private void build(List<int[]> adjacency, int size) {
+        offsets = new int[size + 1];
+        int[] marks = new int[size];
+        Arrays.fill(marks, -1);
+        
+        int edges = 0;
+        for (int[] ids : adjacency) {
+            edges = edges + ids.length;
+        }
+        targets = new int[edges];
+        
+        int pos = 0;
+        for (int v = 0; v < size; v++) {
+            offsets[v] = pos;
+            if (v < adjacency.size()) {
+                for (int w : adjacency.get(v)) {
+                    if (marks[w] != v) {
+                        marks[w] = v;
+                        targets[pos] = w;
+                        pos++;
+                    }
+                }
+            }
+        }
+        offsets[size] = pos;
+        targets = Arrays.copyOf(targets, pos);
+    }
+    
+    /**
+     * Finds the strongly connected components with an iterative version of Tarjan's algorithm.
+     * The components are numbered in reverse topological order, that is, every component depends only on ones with smaller numbers.
+     */
+    private void condense() {
+        int size = offsets.length - 1;
+        components = new int[size];
+        int[] indexes = new int[size];
+        int[] lowlinks = new int[size];
+        boolean[] onStack = new boolean[size];
+        int[] stack = new int[size];
+        int[] callStack = new int[size];
+        int[] edgeCursors = new int[size];
+        Arrays.fill(indexes, -1);
+        
+        int index = 0;
+        int top = 0;
+        int componentNumber = 0;
+        for (int root = 0; root < size; root++) {
+            if (indexes[root] >= 0) {
+                continue;
+            }
+            
+            int depth = 0;
+            callStack[depth] = root;
+            edgeCursors[root] = offsets[root];
+            indexes[root] = lowlinks[root] = index++;
+            stack[top++] = root;
+            onStack[root] = true;
+            
+            while (depth >= 0) {
+                int v = callStack[depth];
+                if (edgeCursors[v] < offsets[v + 1]) {
+                    int w = targets[edgeCursors[v]];
+                    edgeCursors[v]++;
+                    
+                    if (indexes[w] < 0) {
+                        indexes[w] = lowlinks[w] = index++;
+                        stack[top++] = w;
+                        onStack[w] = true;
+                        edgeCursors[w] = offsets[w];
+                        callStack[++depth] = w;
+                    } else if (onStack[w]) {
+                        lowlinks[v] = Math.min(lowlinks[v], indexes[w]);
+                    }
+                    
+                } else {
+                    if (lowlinks[v] == indexes[v]) {
+                        int w;
+                        do {
+                            w = stack[--top];
+                            onStack[w] = false;
+                            components[w] = componentNumber;
+                        } while (w != v);
+                        componentNumber++;
+                    }
+                    
+                    depth--;
+                    if (depth >= 0) {
+                        int u = callStack[depth];
+                        lowlinks[u] = Math.min(lowlinks[u], lowlinks[v]);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Counts the classes transitively coupled to every class.
+     * A class is coupled to all the classes in the components reachable from its component,
+     * and also to the classes in its own component if the component contains a cycle.
+     */
+    private void countCoupledClasses() {
+        int size = offsets.length - 1;
+        int componentNumber = 0;
+        for (int v = 0; v < size; v++) {
+            componentNumber = Math.max(componentNumber, components[v] + 1);
+        }
+        
+        int[] componentSizes = new int[componentNumber];
+        boolean[] cyclic = new boolean[componentNumber];
+        int[][] successors = new int[componentNumber][];
+        collectComponentDependencies(componentSizes, cyclic, successors);
+        
+        int[] counts;
+        if (componentNumber <= MAX_MEMOIZED_COMPONENTS) {
+            counts = countWithMemoizedReachability(componentSizes, successors);
+        } else {
+            counts = countWithTraversal(componentSizes, successors);
+        }
+        
+        couplingCounts = new int[size];
+        for (int v = 0; v < size; v++) {
+            int c = components[v];
+            couplingCounts[v] = counts[c];
+            if (cyclic[c]) {
+                couplingCounts[v] = couplingCounts[v] + componentSizes[c];
+            }
+        }
+    }
+    
+    /**
+     * Collects the sizes of the components and the dependencies between them.
+     * @param componentSizes the numbers of classes in respective components
+     * @param cyclic the flags indicating whether respective components contain a cycle
+     * @param successors the components that respective components depend on
+     */
+    private void collectComponentDependencies(int[] componentSizes, boolean[] cyclic, int[][] successors) {
+        int size = offsets.length - 1;
+        int componentNumber = componentSizes.length;
+        int[] degrees = new int[componentNumber];
+        for (int v = 0; v < size; v++) {
+            int c = components[v];
+            componentSizes[c]++;
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                if (components[targets[e]] == c) {
+                    cyclic[c] = true;
+                } else {
+                    degrees[c]++;
+                }
+            }
+        }
+        for (int c = 0; c < componentNumber; c++) {
+            if (componentSizes[c] > 1) {
+                cyclic[c] = true;
+            }
+            successors[c] = new int[degrees[c]];
+            degrees[c] = 0;
+        }
+        
+        for (int v = 0; v < size; v++) {
+            int c = components[v];
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int d = components[targets[e]];
+                if (d != c) {
+                    successors[c][degrees[c]] = d;
+                    degrees[c]++;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Counts the classes in the components reachable from every component, memoizing the reachable components as bit sets.
+     * @param componentSizes the numbers of classes in respective components
+     * @param successors the components that respective components depend on
+     * @return the numbers of classes in the reachable components
+     */
+    private int[] countWithMemoizedReachability(int[] componentSizes, int[][] successors) {
+        int componentNumber = componentSizes.length;
+        int words = (componentNumber + 63) >>> 6;
+        long[][] reachable = new long[componentNumber][];
+        int[] counts = new int[componentNumber];
+        
+        for (int c = 0; c < componentNumber; c++) {
+            long[] bits = new long[words];
+            for (int d : successors[c]) {
+                bits[d >>> 6] |= 1L << (d & 63);
+                long[] dbits = reachable[d];
+                for (int i = 0; i < words; i++) {
+                    bits[i] |= dbits[i];
+                }
+            }
+            reachable[c] = bits;
+            
+            for (int i = 0; i < words; i++) {
+                long word = bits[i];
+                while (word != 0) {
+                    int d = (i << 6) + Long.numberOfTrailingZeros(word);
+                    word = word & (word - 1);
+                    counts[c] = counts[c] + componentSizes[d];
+                }
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * Counts the classes in the components reachable from every component by traversing the components without memoization.
+     * @param componentSizes the numbers of classes in respective components
+     * @param successors the components that respective components depend on
+     * @return the numbers of classes in the reachable components
+     */
+    private int[] countWithTraversal(int[] componentSizes, int[][] successors) {
+        int componentNumber = componentSizes.length;
+        int[] counts = new int[componentNumber];
+        int[] marks = new int[componentNumber];
+        int[] worklist = new int[componentNumber];
+        Arrays.fill(marks, -1);
+        
+        for (int c = 0; c < componentNumber; c++) {
+            int top = 0;
+            for (int d : successors[c]) {
+                if (marks[d] != c) {
+                    marks[d] = c;
+                    worklist[top++] = d;
+                }
+            }
+            while (top > 0) {
+                int d = worklist[--top];
+                counts[c] = counts[c] + componentSizes[d];
+                for (int e : successors[d]) {
+                    if (marks[e] != c) {
+                        marks[e] = c;
+                        worklist[top++] = e;
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * Returns the identification number of a class.
+     * @param jc the class
+     * @return the identification number, or <code>-1</code> if the class is not contained in this graph
+     */
+    private int getId(JavaClass jc) {
+        Integer id = classIds.get(jc.getQualifiedName());
+        if (id != null) {
+            return id.intValue();
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the number of classes that a given class is transitively coupled to.
+     * @param jc the class
+     * @return the number of the coupled classes
+     */
+    public int getCouplingCount(JavaClass jc) {
+        int id = getId(jc);
+        if (id >= 0) {
+            return couplingCounts[id];
+        }
+        return 0;
+    }
+    
+    /**
+     * Returns the number of classes that a given class is directly coupled to.
+     * @param jc the class
+     * @return the number of the coupled classes
+     */
+    public int getDirectCouplingCount(JavaClass jc) {
+        int id = getId(jc);
+        if (id >= 0) {
+            return offsets[id + 1] - offsets[id];
+        }
+        return 0;
+    }
+}
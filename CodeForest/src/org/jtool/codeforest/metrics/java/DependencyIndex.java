@@ -0,0 +1,472 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.eclipse.model.java.JavaClass;
+import org.jtool.eclipse.model.java.JavaField;
+import org.jtool.eclipse.model.java.JavaMethod;
+import org.jtool.eclipse.model.java.JavaProject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A project-wide index of dependencies between classes, methods, and fields.
+ * Classes, methods, and fields are identified by integer numbers, and type-use, inheritance, call, and access relations
+ * are stored in compressed sparse-row arrays in both forward and reverse directions.
+ * The index is built once from the model of a project, and is read without touching the model afterward.
+ * @author Katsuhisa Maruyama
+ */
+public class DependencyIndex {
+    
+    /**
+     * The map between the fully-qualified name of a class and its identification number.
+     */
+    private Map<String, Integer> classIds = new HashMap<String, Integer>();
+    
+    /**
+     * The map between a method and its identification number.
+     */
+    private Map<JavaMethod, Integer> methodIds = new HashMap<JavaMethod, Integer>();
+    
+    /**
+     * The map between a field and its identification number.
+     */
+    private Map<JavaField, Integer> fieldIds = new HashMap<JavaField, Integer>();
+    
+    /**
+     * The inheritance hierarchy of classes.
+     */
+    private InheritanceHierarchy hierarchy;
+    
+    /**
+     * The methods declared in respective classes.
+     */
+    private Adjacency declaredMethods;
+    
+    /**
+     * The afferent classes of respective classes, that is, the classes that use them.
+     */
+    private Adjacency afferentClasses;
+    
+    /**
+     * The efferent classes of respective classes, that is, the classes that they use.
+     */
+    private Adjacency efferentClasses;
+    
+    /**
+     * The methods that respective methods call.
+     */
+    private Adjacency calledMethods;
+    
+    /**
+     * The methods that call respective methods.
+     */
+    private Adjacency callingMethods;
+    
+    /**
+     * The fields that respective methods access.
+     */
+    private Adjacency accessedFields;
+    
+    /**
+     * The methods that access respective fields.
+     */
+    private Adjacency accessingMethods;
+    
+    /**
+     * Creates an index of dependencies within a project.
+     * @param jproject the project
+     */
+    public DependencyIndex(JavaProject jproject) {
+        create(jproject.getJavaClasses());
+    }
+    
+    /**
+     * Builds the index.
+     * @param classes the collection of classes in the project
+     */
+    private void create(Collection<JavaClass> classes) {
+        List<JavaClass> jclasses = new ArrayList<JavaClass>();
+        for (JavaClass jc : classes) {
+            if (!classIds.containsKey(jc.getQualifiedName())) {
+                classIds.put(jc.getQualifiedName(), new Integer(jclasses.size()));
+                jclasses.add(jc);
+            }
+        }
+        
+        List<JavaMethod> jmethods = new ArrayList<JavaMethod>();
+        List<JavaField> jfields = new ArrayList<JavaField>();
+        List<int[]> methodLists = new ArrayList<int[]>(jclasses.size());
+        for (JavaClass jc : jclasses) {
+            int[] ids = new int[jc.getJavaMethods().size()];
+            int size = 0;
+            for (JavaMethod jm : jc.getJavaMethods()) {
+                if (!methodIds.containsKey(jm)) {
+                    methodIds.put(jm, new Integer(jmethods.size()));
+                    jmethods.add(jm);
+                }
+                ids[size] = methodIds.get(jm).intValue();
+                size++;
+            }
+            methodLists.add(ids);
+            
+            for (JavaField jf : jc.getJavaFields()) {
+                if (!fieldIds.containsKey(jf)) {
+                    fieldIds.put(jf, new Integer(jfields.size()));
+                    jfields.add(jf);
+                }
+            }
+        }
+        declaredMethods = new Adjacency(methodLists, jclasses.size());
+        
+        int numberOfClasses = jclasses.size();
+        List<int[]> afferents = new ArrayList<int[]>(numberOfClasses);
+        int[] superClasses = new int[numberOfClasses];
+        int[] baseDepths = new int[numberOfClasses];
+        for (int i = 0; i < numberOfClasses; i++) {
+            JavaClass jc = jclasses.get(i);
+            afferents.add(getClassIds(jc.getAfferentJavaClassesInProject()));
+            
+            superClasses[i] = getClassId(jc.getSuperClassName());
+            if (superClasses[i] < 0) {
+                baseDepths[i] = jc.getAllSuperClasses().size();
+            }
+        }
+        afferentClasses = new Adjacency(afferents, numberOfClasses);
+        efferentClasses = afferentClasses.reverse(numberOfClasses);
+        hierarchy = new InheritanceHierarchy(classIds, superClasses, baseDepths);
+        
+        List<int[]> calls = new ArrayList<int[]>(jmethods.size());
+        List<int[]> accesses = new ArrayList<int[]>(jmethods.size());
+        for (JavaMethod jm : jmethods) {
+            calls.add(getMethodIds(jm.getCalledJavaMethodsInProject()));
+            accesses.add(getFieldIds(jm.getAccessedJavaFields()));
+        }
+        calledMethods = new Adjacency(calls, jmethods.size());
+        callingMethods = calledMethods.reverse(jmethods.size());
+        accessedFields = new Adjacency(accesses, jmethods.size());
+        accessingMethods = accessedFields.reverse(jfields.size());
+    }
+    
+    /**
+     * Returns the identification number of a class with a given name.
+     * @param fqn the fully-qualified name of the class
+     * @return the identification number, or <code>-1</code> if the class is not in the project
+     */
+    public int getClassId(String fqn) {
+        if (fqn == null) {
+            return -1;
+        }
+        Integer id = classIds.get(fqn);
+        if (id != null) {
+            return id.intValue();
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the identification number of a class.
+     * @param jc the class
+     * @return the identification number, or <code>-1</code> if the class is not in the project
+     */
+    public int getClassId(JavaClass jc) {
+        return getClassId(jc.getQualifiedName());
+    }
+    
+    /**
+     * Returns the number of classes in the project.
+     * @return the number of the classes
+     */
+    public int getNumberOfClasses() {
+        return classIds.size();
+    }
+    
+    /**
+     * Returns the inheritance hierarchy of classes in the project.
+     * @return the inheritance hierarchy
+     */
+    public InheritanceHierarchy getInheritanceHierarchy() {
+        return hierarchy;
+    }
+    
+    /**
+     * Returns the map between the fully-qualified names of classes and their identification numbers.
+     * @return the map of the identification numbers
+     */
+    Map<String, Integer> getClassIds() {
+        return classIds;
+    }
+    
+    /**
+     * Returns the afferent classes of respective classes.
+     * @return the adjacency arrays of the afferent classes
+     */
+    Adjacency getAfferentClasses() {
+        return afferentClasses;
+    }
+    
+    /**
+     * Returns the number of afferent classes in the project for a class.
+     * @param id the identification number of the class
+     * @return the number of the afferent classes
+     */
+    public int getNumberOfAfferentClasses(int id) {
+        return afferentClasses.degree(id);
+    }
+    
+    /**
+     * Returns the number of efferent classes in the project for a class.
+     * @param id the identification number of the class
+     * @return the number of the efferent classes
+     */
+    public int getNumberOfEfferentClasses(int id) {
+        return efferentClasses.degree(id);
+    }
+    
+    /**
+     * Returns the number of methods declared in a class.
+     * @param id the identification number of the class
+     * @return the number of the methods
+     */
+    public int getNumberOfMethods(int id) {
+        return declaredMethods.degree(id);
+    }
+    
+    /**
+     * Returns the total number of methods in the project called from the respective methods of a class.
+     * @param id the identification number of the class
+     * @return the number of the called methods, which are counted for each calling method
+     */
+    public int getNumberOfCalledMethods(int id) {
+        int count = 0;
+        for (int i = declaredMethods.offsets[id]; i < declaredMethods.offsets[id + 1]; i++) {
+            count = count + calledMethods.degree(declaredMethods.targets[i]);
+        }
+        return count;
+    }
+    
+    /**
+     * Returns the number of methods in the project that call a method.
+     * @param jm the method
+     * @return the number of the calling methods, or <code>-1</code> if the method is not in the project
+     */
+    public int getNumberOfCallingMethods(JavaMethod jm) {
+        Integer id = methodIds.get(jm);
+        if (id != null) {
+            return callingMethods.degree(id.intValue());
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the number of fields in the project that a method accesses.
+     * @param jm the method
+     * @return the number of the accessed fields, or <code>-1</code> if the method is not in the project
+     */
+    public int getNumberOfAccessedFields(JavaMethod jm) {
+        Integer id = methodIds.get(jm);
+        if (id != null) {
+            return accessedFields.degree(id.intValue());
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the number of methods in the project that access a field.
+     * @param jf the field
+     * @return the number of the accessing methods, or <code>-1</code> if the field is not in the project
+     */
+    public int getNumberOfAccessingMethods(JavaField jf) {
+        Integer id = fieldIds.get(jf);
+        if (id != null) {
+            return accessingMethods.degree(id.intValue());
+        }
+        return -1;
+    }
+    
+    /**
+     * Obtains the identification numbers of classes in the project.
+     * @param jclasses the collection of the classes
+     * @return the identification numbers, excluding classes not in the project
+     */
+    private int[] getClassIds(Collection<JavaClass> jclasses) {
+        int[] ids = new int[jclasses.size()];
+        int size = 0;
+        for (JavaClass jc : jclasses) {
+            int id = getClassId(jc);
+            if (id >= 0) {
+                ids[size] = id;
+                size++;
+            }
+        }
+        return Arrays.copyOf(ids, size);
+    }
+    
+    /**
+     * Obtains the identification numbers of methods in the project.
+     * @param jmethods the collection of the methods
+     * @return the identification numbers, excluding methods not in the project
+     */
+    private int[] getMethodIds(Collection<JavaMethod> jmethods) {
+        int[] ids = new int[jmethods.size()];
+        int size = 0;
+        for (JavaMethod jm : jmethods) {
+            Integer id = methodIds.get(jm);
+            if (id != null) {
+                ids[size] = id.intValue();
+                size++;
+            }
+        }
+        return Arrays.copyOf(ids, size);
+    }
+    
+    /**
+     * Obtains the identification numbers of fields in the project.
+     * @param jfields the collection of the fields
+     * @return the identification numbers, excluding fields not in the project
+     */
+    private int[] getFieldIds(Collection<JavaField> jfields) {
+        int[] ids = new int[jfields.size()];
+        int size = 0;
+        for (JavaField jf : jfields) {
+            Integer id = fieldIds.get(jf);
+            if (id != null) {
+                ids[size] = id.intValue();
+                size++;
+            }
+        }
+        return Arrays.copyOf(ids, size);
+    }
+    
+    /**
+     * Adjacency arrays in the compressed sparse-row format, where the targets of a source <code>v</code>
+     * are stored in <code>targets[offsets[v]]</code> to <code>targets[offsets[v + 1] - 1]</code>.
+     */
+    static class Adjacency {
+        
+        /**
+         * The offsets into the array of targets for respective sources.
+         */
+        int[] offsets;
+        
+        /**
+         * The targets of all the sources.
+         */
+        int[] targets;
+        
+        /**
+         * Creates adjacency arrays from the lists of targets, removing duplicated targets.
+         * @param lists the targets of respective sources
+         * @param size the number of sources
+         */
+        Adjacency(List<int[]> lists, int size) {
+            int edges = 0;
+            int range = 0;
+            for (int[] ids : lists) {
+                edges = edges + ids.length;
+                for (int w : ids) {
+                    range = Math.max(range, w + 1);
+                }
+            }
+            
+            offsets = new int[size + 1];
+            targets = new int[edges];
+            int[] marks = new int[range];
+            Arrays.fill(marks, -1);
+            
+            int pos = 0;
+            for (int v = 0; v < size; v++) {
+                offsets[v] = pos;
+                if (v < lists.size()) {
+                    for (int w : lists.get(v)) {
+                        if (marks[w] != v) {
+                            marks[w] = v;
+                            targets[pos] = w;
+                            pos++;
+                        }
+                    }
+                }
+            }
+            offsets[size] = pos;
+            targets = Arrays.copyOf(targets, pos);
+        }
+        
+        /**
+         * Creates adjacency arrays that invert a mapping from sources to single parents.
+         * @param parents the parents of respective sources, or <code>-1</code> for sources without a parent
+         * @param size the number of parents
+         */
+        Adjacency(int[] parents, int size) {
+            offsets = new int[size + 1];
+            for (int p : parents) {
+                if (p >= 0) {
+                    offsets[p + 1]++;
+                }
+            }
+            for (int v = 0; v < size; v++) {
+                offsets[v + 1] = offsets[v + 1] + offsets[v];
+            }
+            
+            targets = new int[offsets[size]];
+            int[] cursors = Arrays.copyOf(offsets, size);
+            for (int v = 0; v < parents.length; v++) {
+                int p = parents[v];
+                if (p >= 0) {
+                    targets[cursors[p]] = v;
+                    cursors[p]++;
+                }
+            }
+        }
+        
+        /**
+         * Creates adjacency arrays directly.
+         * @param offsets the offsets into the array of targets
+         * @param targets the targets
+         */
+        private Adjacency(int[] offsets, int[] targets) {
+            this.offsets = offsets;
+            this.targets = targets;
+        }
+        
+        /**
+         * Returns the number of targets of a source.
+         * @param v the source
+         * @return the number of the targets
+         */
+        int degree(int v) {
+            return offsets[v + 1] - offsets[v];
+        }
+        
+        /**
+         * Creates adjacency arrays of the reverse relation.
+         * @param size the number of targets, which are the sources of the reverse relation
+         * @return the reverse adjacency arrays
+         */
+        Adjacency reverse(int size) {
+            int[] roffsets = new int[size + 1];
+            for (int w : targets) {
+                roffsets[w + 1]++;
+            }
+            for (int w = 0; w < size; w++) {
+                roffsets[w + 1] = roffsets[w + 1] + roffsets[w];
+            }
+            
+            int[] rtargets = new int[targets.length];
+            int[] cursors = Arrays.copyOf(roffsets, size);
+            for (int v = 0; v < offsets.length - 1; v++) {
+                for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                    int w = targets[i];
+                    rtargets[cursors[w]] = v;
+                    cursors[w]++;
+                }
+            }
+            return new Adjacency(roffsets, rtargets);
+        }
+    }
+}
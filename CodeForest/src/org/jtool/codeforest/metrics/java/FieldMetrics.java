@@ -59,6 +59,19 @@ public class FieldMetrics extends CommonMetrics {
         collectMetricInfo();
     }
     
+    /**
+     * Creates a new object storing the same metric values as given field metrics, which shares the object representing the field.
+     * @param fm the field metrics to be copied
+     * @param cm a metrics object for a class containing this field
+     */
+    protected FieldMetrics(FieldMetrics fm, ClassMetrics cm) {
+        super();
+        
+        jfield = fm.jfield;
+        classMetrics = cm;
+        copyMetricValues(fm);
+    }
+    
     /**
      * Sets the code properties with respect to positions and line numbers of this field.
      * @param start the character index indicating where the code fragment for this field begins
@@ -146,11 +159,13 @@ public class FieldMetrics extends CommonMetrics {
      * Collects metric information on this field.
      */
     private void collectMetricInfo() {
-        metrics.put(MetricSort.LINES_OF_CODE, new Double(jfield.getLoc()));
-        metrics.put(MetricSort.NUMBER_OF_STATEMENTS, new Double(1));
-        metrics.put(MetricSort.NUMBER_OF_AFFERENT_METHODS, new Double(jfield.getAccessingJavaMethods().size()));
-        metrics.put(MetricSort.NUMBER_OF_EFFERENT_METHODS, new Double(jfield.getCalledJavaMethods().size()));
-        metrics.put(MetricSort.NUMBER_OF_AFFERENT_FIELDS, new Double(jfield.getAccessingJavaFields().size()));
-        metrics.put(MetricSort.NUMBER_OF_EFFERENT_FIELDS, new Double(jfield.getAccessedJavaFields().size()));
+        putMetricValue(MetricSort.LINES_OF_CODE, jfield.getLoc());
+        putMetricValue(MetricSort.NUMBER_OF_STATEMENTS, 1);
+        if (!classMetrics.getPackageMetrics().getProjectMetrics().isSyntactic()) {
+            putMetricValue(MetricSort.NUMBER_OF_AFFERENT_METHODS, jfield.getAccessingJavaMethods().size());
+            putMetricValue(MetricSort.NUMBER_OF_EFFERENT_METHODS, jfield.getCalledJavaMethods().size());
+            putMetricValue(MetricSort.NUMBER_OF_AFFERENT_FIELDS, jfield.getAccessingJavaFields().size());
+            putMetricValue(MetricSort.NUMBER_OF_EFFERENT_FIELDS, jfield.getAccessedJavaFields().size());
+        }
     }
 }
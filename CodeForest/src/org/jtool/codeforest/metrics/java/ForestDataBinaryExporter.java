@@ -0,0 +1,290 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.eclipse.model.java.JavaElement;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class exporting metric values within a project into a binary file.
+ * Every name is stored once in a string table, and metric values of each sort are stored in a column of doubles.
+ * @author Katsuhisa Maruyama
+ */
+public class ForestDataBinaryExporter {
+    
+    /**
+     * The size of the buffer for writing a file.
+     */
+    static final int BUFFER_SIZE = 1 << 16;
+    
+    /**
+     * The strings stored in the string table.
+     */
+    private List<String> strings = new ArrayList<String>();
+    
+    /**
+     * The indexes of the strings in the string table.
+     */
+    private Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+    
+    /**
+     * The table of the project.
+     */
+    private SnapshotTable projectTable = new SnapshotTable(BinarySnapshotFormat.PROJECT_COLUMNS, BinarySnapshotFormat.PROJECT_LISTS);
+    
+    /**
+     * The table of the packages.
+     */
+    private SnapshotTable packageTable = new SnapshotTable(BinarySnapshotFormat.PACKAGE_COLUMNS, BinarySnapshotFormat.PACKAGE_LISTS);
+    
+    /**
+     * The table of the classes.
+     */
+    private SnapshotTable classTable = new SnapshotTable(BinarySnapshotFormat.CLASS_COLUMNS, BinarySnapshotFormat.CLASS_LISTS);
+    
+    /**
+     * The table of the methods.
+     */
+    private SnapshotTable methodTable = new SnapshotTable(BinarySnapshotFormat.METHOD_COLUMNS, BinarySnapshotFormat.METHOD_LISTS);
+    
+    /**
+     * The table of the fields.
+     */
+    private SnapshotTable fieldTable = new SnapshotTable(BinarySnapshotFormat.FIELD_COLUMNS, BinarySnapshotFormat.FIELD_LISTS);
+    
+    /**
+     * Creates a new, empty object.
+     */
+    private ForestDataBinaryExporter() {
+    }
+    
+    /**
+     * Writes information about a project into a binary file.
+     * @param file the binary file
+     * @param mproject the project whose information will be exported
+     */
+    public static void write(File file, ProjectMetrics mproject) {
+        write(file, mproject.getCompleteSnapshot());
+    }
+    
+    /**
+     * Writes information about a project from its snapshot into a binary file.
+     * The file is compressed in the gzip format if its name ends with <code>".gz"</code>.
+     * @param file the binary file
+     * @param snapshot the snapshot of the project whose information will be exported
+     */
+    public static void write(File file, MetricsSnapshot snapshot) {
+        OutputStream out = null;
+        try {
+            out = SnapshotCompression.openOutputStream(file);
+            write(out, snapshot);
+            
+        } catch (IOException e) {
+            System.err.println("Binary: Export error occurred: " + e.getMessage() + ".");
+        } finally {
+            BinarySnapshotFormat.close(out);
+        }
+    }
+    
+    /**
+     * Writes information about a project from its snapshot into an output stream.
+     * @param out the output stream, which is not closed
+     * @param snapshot the snapshot of the project whose information will be exported
+     * @throws IOException if an I/O error occurs
+     */
+    static void write(OutputStream out, MetricsSnapshot snapshot) throws IOException {
+        ForestDataBinaryExporter exporter = new ForestDataBinaryExporter();
+        exporter.export(snapshot);
+        
+        DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        BinarySnapshotFormat.writeHeader(dout, snapshot.getTime());
+        BinarySnapshotFormat.writeStrings(dout, exporter.strings);
+        exporter.projectTable.write(dout);
+        exporter.packageTable.write(dout);
+        exporter.classTable.write(dout);
+        exporter.methodTable.write(dout);
+        exporter.fieldTable.write(dout);
+        dout.flush();
+    }
+    
+    /**
+     * Stores information about a project into the tables.
+     * @param snapshot the snapshot of the project
+     */
+    private void export(MetricsSnapshot snapshot) {
+        int row = projectTable.addRow();
+        projectTable.set(row, BinarySnapshotFormat.PROJECT_NAME, getIndex(snapshot.getName()));
+        exportMetrics(projectTable, row, snapshot.getMetricValues());
+        
+        for (PackageSnapshot ps : snapshot.getPackageSnapshots()) {
+            export(ps);
+        }
+    }
+    
+    /**
+     * Stores information about a package into the tables.
+     * @param snapshot the snapshot of the package
+     */
+    private void export(PackageSnapshot snapshot) {
+        int row = packageTable.addRow();
+        packageTable.set(row, BinarySnapshotFormat.PACKAGE_NAME, getIndex(snapshot.getName()));
+        packageTable.set(row, BinarySnapshotFormat.PACKAGE_FIRST_CLASS, classTable.getRows());
+        packageTable.set(row, BinarySnapshotFormat.PACKAGE_CLASS_COUNT, snapshot.getClassSnapshots().size());
+        exportNames(packageTable, BinarySnapshotFormat.PACKAGE_AFFERENTS, snapshot.getAfferentPackageNames());
+        exportNames(packageTable, BinarySnapshotFormat.PACKAGE_EFFERENTS, snapshot.getEfferentPackageNames());
+        exportMetrics(packageTable, row, snapshot.getMetricValues());
+        
+        for (ClassSnapshot cs : snapshot.getClassSnapshots()) {
+            export(cs);
+        }
+    }
+    
+    /**
+     * Stores information about a class into the tables.
+     * @param snapshot the snapshot of the class
+     */
+    private void export(ClassSnapshot snapshot) {
+        ClassMetrics mclass = snapshot.getClassMetrics();
+        int flags = 0;
+        if (mclass.isInterface()) {
+            flags = flags | BinarySnapshotFormat.FLAG_FIRST;
+        }
+        if (mclass.isEnum()) {
+            flags = flags | BinarySnapshotFormat.FLAG_SECOND;
+        }
+        
+        int row = classTable.addRow();
+        classTable.set(row, BinarySnapshotFormat.CLASS_NAME, getIndex(mclass.getName()));
+        classTable.set(row, BinarySnapshotFormat.CLASS_FQN, getIndex(mclass.getQualifiedName()));
+        classTable.set(row, BinarySnapshotFormat.CLASS_MODIFIERS, mclass.getModifiers());
+        classTable.set(row, BinarySnapshotFormat.CLASS_FLAGS, flags);
+        classTable.set(row, BinarySnapshotFormat.CLASS_PATH, getIndex(mclass.getPath()));
+        classTable.set(row, BinarySnapshotFormat.CLASS_SUPERCLASS, getIndex(snapshot.getSuperClassName()));
+        exportCode(classTable, row, BinarySnapshotFormat.CLASS_CODE, mclass.getJavaClass());
+        classTable.set(row, BinarySnapshotFormat.CLASS_FIRST_METHOD, methodTable.getRows());
+        classTable.set(row, BinarySnapshotFormat.CLASS_METHOD_COUNT, snapshot.getMethodMetrics().size());
+        classTable.set(row, BinarySnapshotFormat.CLASS_FIRST_FIELD, fieldTable.getRows());
+        classTable.set(row, BinarySnapshotFormat.CLASS_FIELD_COUNT, snapshot.getFieldMetrics().size());
+        exportNames(classTable, BinarySnapshotFormat.CLASS_SUPERINTERFACES, snapshot.getSuperInterfaceNames());
+        exportNames(classTable, BinarySnapshotFormat.CLASS_AFFERENTS, snapshot.getAfferentClassNames());
+        exportNames(classTable, BinarySnapshotFormat.CLASS_EFFERENTS, snapshot.getEfferentClassNames());
+        exportMetrics(classTable, row, snapshot.getMetricValues());
+        
+        for (MethodMetrics mm : snapshot.getMethodMetrics()) {
+            export(mm);
+        }
+        for (FieldMetrics fm : snapshot.getFieldMetrics()) {
+            export(fm);
+        }
+    }
+    
+    /**
+     * Stores information about a method into the tables.
+     * @param mmethod the method metrics
+     */
+    private void export(MethodMetrics mmethod) {
+        int flags = 0;
+        if (mmethod.isConstructor()) {
+            flags = flags | BinarySnapshotFormat.FLAG_FIRST;
+        }
+        if (mmethod.isInitializer()) {
+            flags = flags | BinarySnapshotFormat.FLAG_SECOND;
+        }
+        
+        int row = methodTable.addRow();
+        methodTable.set(row, BinarySnapshotFormat.METHOD_NAME, getIndex(mmethod.getName()));
+        methodTable.set(row, BinarySnapshotFormat.METHOD_SIGNATURE, getIndex(mmethod.getSignature()));
+        methodTable.set(row, BinarySnapshotFormat.METHOD_TYPE, getIndex(mmethod.getReturnType()));
+        methodTable.set(row, BinarySnapshotFormat.METHOD_MODIFIERS, mmethod.getModifiers());
+        methodTable.set(row, BinarySnapshotFormat.METHOD_FLAGS, flags);
+        exportCode(methodTable, row, BinarySnapshotFormat.METHOD_CODE, mmethod.getJavaMethod());
+        exportMetrics(methodTable, row, mmethod.getMetricValues());
+    }
+    
+    /**
+     * Stores information about a field into the tables.
+     * @param mfield the field metrics
+     */
+    private void export(FieldMetrics mfield) {
+        int flags = 0;
+        if (mfield.isEnumConstant()) {
+            flags = flags | BinarySnapshotFormat.FLAG_FIRST;
+        }
+        
+        int row = fieldTable.addRow();
+        fieldTable.set(row, BinarySnapshotFormat.FIELD_NAME, getIndex(mfield.getName()));
+        fieldTable.set(row, BinarySnapshotFormat.FIELD_TYPE, getIndex(mfield.getType()));
+        fieldTable.set(row, BinarySnapshotFormat.FIELD_MODIFIERS, mfield.getModifiers());
+        fieldTable.set(row, BinarySnapshotFormat.FIELD_FLAGS, flags);
+        exportCode(fieldTable, row, BinarySnapshotFormat.FIELD_CODE, mfield.getJavaField());
+        exportMetrics(fieldTable, row, mfield.getMetricValues());
+    }
+    
+    /**
+     * Stores code information of an element into a table.
+     * @param table the table
+     * @param row the index of the row of the element
+     * @param column the first of the four columns of the code properties
+     * @param jelem the code element
+     */
+    private void exportCode(SnapshotTable table, int row, int column, JavaElement jelem) {
+        table.set(row, column, jelem.getStartPosition());
+        table.set(row, column + 1, jelem.getCodeLength());
+        table.set(row, column + 2, jelem.getUpperLineNumber());
+        table.set(row, column + 3, jelem.getBottomLineNumber());
+    }
+    
+    /**
+     * Stores names into a list of the last row of a table.
+     * @param table the table
+     * @param list the index of the list
+     * @param names the collection of the names
+     */
+    private void exportNames(SnapshotTable table, int list, Collection<String> names) {
+        for (String name : names) {
+            table.add(list, getIndex(name));
+        }
+    }
+    
+    /**
+     * Stores metric values of an element into a table.
+     * @param table the table
+     * @param row the index of the row of the element
+     * @param metrics the metric values to be exported
+     */
+    private void exportMetrics(SnapshotTable table, int row, Map<String, Double> metrics) {
+        for (String sort : metrics.keySet()) {
+            table.put(row, getIndex(sort), metrics.get(sort).doubleValue());
+        }
+    }
+    
+    /**
+     * Obtains the index of a string in the string table, registering the string if it is not registered.
+     * @param str the string
+     * @return the index of the string, or <code>BinarySnapshotFormat.NONE</code> if the string is <code>null</code>
+     */
+    private int getIndex(String str) {
+        if (str == null) {
+            return BinarySnapshotFormat.NONE;
+        }
+        
+        Integer index = stringIndexes.get(str);
+        if (index == null) {
+            index = new Integer(strings.size());
+            strings.add(str);
+            stringIndexes.put(str, index);
+        }
+        return index.intValue();
+    }
+}
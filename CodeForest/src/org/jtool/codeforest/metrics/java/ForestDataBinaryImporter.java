@@ -0,0 +1,336 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A class importing metric values within a project from a binary file.
+ * Metric values are read column by column into primitive arrays, so that no text is parsed.
+ * @author Katsuhisa Maruyama
+ */
+public class ForestDataBinaryImporter {
+    
+    /**
+     * The size of the buffer for reading a file.
+     */
+    static final int BUFFER_SIZE = 1 << 16;
+    
+    /**
+     * The strings in the string table.
+     */
+    private String[] strings;
+    
+    /**
+     * The project metrics created during this import.
+     */
+    protected ProjectMetrics projectMetrics;
+    
+    /**
+     * The table of the classes.
+     */
+    protected SnapshotTable classTable;
+    
+    /**
+     * The class metrics indexed by the rows of the class table.
+     */
+    protected ClassMetrics[] classes;
+    
+    /**
+     * Creates a new, empty object.
+     */
+    ForestDataBinaryImporter() {
+    }
+    
+    /**
+     * Reads metric values within a project from a binary file, which is decompressed if it is compressed in the gzip format.
+     * @param path the path of the binary file
+     * @return the project metrics, or <code>null</code> if the import fails
+     */
+    public static ProjectMetrics read(String path) {
+        InputStream in = null;
+        try {
+            in = SnapshotCompression.openInputStream(new File(path));
+            return read(in, path);
+            
+        } catch (IOException e) {
+            System.err.println("Binary: Import error occurred: " + e.getMessage() + ".");
+        } finally {
+            BinarySnapshotFormat.close(in);
+        }
+        return null;
+    }
+    
+    /**
+     * Reads metric values within a project from an input stream.
+     * @param in the input stream, which is not closed
+     * @param path the path of the file from which the input stream reads
+     * @return the project metrics, or <code>null</code> if the file does not contain a project
+     * @throws IOException if an I/O error occurs or the file is broken
+     */
+    static ProjectMetrics read(InputStream in, String path) throws IOException {
+        DataInputStream din = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+        long time = BinarySnapshotFormat.readHeader(din);
+        
+        ForestDataBinaryImporter importer = new ForestDataBinaryImporter();
+        importer.strings = BinarySnapshotFormat.readStrings(din);
+        if (!importer.importProject(din, time, path)) {
+            return null;
+        }
+        
+        SnapshotTable methodTable = SnapshotTable.read(din, BinarySnapshotFormat.METHOD_COLUMNS, BinarySnapshotFormat.METHOD_LISTS);
+        importer.importMethods(methodTable);
+        SnapshotTable fieldTable = SnapshotTable.read(din, BinarySnapshotFormat.FIELD_COLUMNS, BinarySnapshotFormat.FIELD_LISTS);
+        importer.importFields(fieldTable);
+        
+        importer.projectMetrics.collectMetricsInfoAfterXMLImport();
+        return importer.projectMetrics;
+    }
+    
+    /**
+     * Reads the tables of the project, the packages, and the classes, and creates their metrics.
+     * @param in the input stream positioned at the table of the project
+     * @param time the time when the metric values were collected
+     * @param path the path of the file from which the input stream reads
+     * @return <code>true</code> if the project was created, otherwise <code>false</code>
+     * @throws IOException if an I/O error occurs or the file is broken
+     */
+    boolean importProject(DataInputStream in, long time, String path) throws IOException {
+        SnapshotTable projectTable = SnapshotTable.read(in, BinarySnapshotFormat.PROJECT_COLUMNS, BinarySnapshotFormat.PROJECT_LISTS);
+        SnapshotTable packageTable = SnapshotTable.read(in, BinarySnapshotFormat.PACKAGE_COLUMNS, BinarySnapshotFormat.PACKAGE_LISTS);
+        classTable = SnapshotTable.read(in, BinarySnapshotFormat.CLASS_COLUMNS, BinarySnapshotFormat.CLASS_LISTS);
+        
+        if (projectTable.getRows() != 1) {
+            return false;
+        }
+        String name = getString(projectTable.get(0, BinarySnapshotFormat.PROJECT_NAME));
+        if (name == null || time <= 0) {
+            return false;
+        }
+        
+        int lindex = path.lastIndexOf(File.separatorChar);
+        String projectPath = path.substring(0, lindex);
+        projectMetrics = new ProjectMetrics(name, projectPath, time);
+        importMetrics(projectTable, new CommonMetrics[] { projectMetrics });
+        importPackages(packageTable);
+        return true;
+    }
+    
+    /**
+     * Creates the metrics of packages and their classes.
+     * @param packageTable the table of the packages
+     * @throws IOException if the file is broken
+     */
+    private void importPackages(SnapshotTable packageTable) throws IOException {
+        PackageMetrics[] packages = new PackageMetrics[packageTable.getRows()];
+        classes = new ClassMetrics[classTable.getRows()];
+        
+        for (int p = 0; p < packages.length; p++) {
+            PackageMetrics pm = new PackageMetrics(getString(packageTable.get(p, BinarySnapshotFormat.PACKAGE_NAME)), projectMetrics);
+            projectMetrics.add(pm);
+            packages[p] = pm;
+            
+            for (int index : packageTable.getList(p, BinarySnapshotFormat.PACKAGE_AFFERENTS)) {
+                pm.addAfferentPackageName(getString(index));
+            }
+            for (int index : packageTable.getList(p, BinarySnapshotFormat.PACKAGE_EFFERENTS)) {
+                pm.addEfferentPackageName(getString(index));
+            }
+            
+            int first = packageTable.get(p, BinarySnapshotFormat.PACKAGE_FIRST_CLASS);
+            int count = packageTable.get(p, BinarySnapshotFormat.PACKAGE_CLASS_COUNT);
+            checkRange(first, count, classes.length);
+            for (int c = first; c < first + count; c++) {
+                classes[c] = createClassMetrics(classTable, c, pm);
+                pm.add(classes[c]);
+            }
+        }
+        
+        importMetrics(packageTable, packages);
+        importMetrics(classTable, classes);
+    }
+    
+    /**
+     * Creates the metrics of a class.
+     * @param table the table of the classes
+     * @param row the index of the row of the class
+     * @param pm the metrics of the package containing the class
+     * @return the class metrics
+     */
+    private ClassMetrics createClassMetrics(SnapshotTable table, int row, PackageMetrics pm) {
+        int flags = table.get(row, BinarySnapshotFormat.CLASS_FLAGS);
+        ClassMetrics cm = new ClassMetrics(getString(table.get(row, BinarySnapshotFormat.CLASS_NAME)),
+          intern(table.get(row, BinarySnapshotFormat.CLASS_FQN)),
+          table.get(row, BinarySnapshotFormat.CLASS_MODIFIERS),
+          (flags & BinarySnapshotFormat.FLAG_FIRST) != 0,
+          (flags & BinarySnapshotFormat.FLAG_SECOND) != 0,
+          getString(table.get(row, BinarySnapshotFormat.CLASS_PATH)), pm);
+        
+        int superclass = table.get(row, BinarySnapshotFormat.CLASS_SUPERCLASS);
+        if (superclass != BinarySnapshotFormat.NONE) {
+            cm.setSuperClassName(intern(superclass));
+        }
+        for (int index : table.getList(row, BinarySnapshotFormat.CLASS_SUPERINTERFACES)) {
+            cm.addSuperInterfaceName(intern(index));
+        }
+        for (int index : table.getList(row, BinarySnapshotFormat.CLASS_AFFERENTS)) {
+            cm.addAfferentClassName(getString(index));
+        }
+        for (int index : table.getList(row, BinarySnapshotFormat.CLASS_EFFERENTS)) {
+            cm.addEfferentClassName(getString(index));
+        }
+        
+        setCodeProperties(cm, table, row, BinarySnapshotFormat.CLASS_CODE);
+        return cm;
+    }
+    
+    /**
+     * Creates the metrics of methods.
+     * @param methodTable the table of the methods
+     * @throws IOException if the file is broken
+     */
+    private void importMethods(SnapshotTable methodTable) throws IOException {
+        MethodMetrics[] methods = new MethodMetrics[methodTable.getRows()];
+        for (int c = 0; c < classes.length; c++) {
+            int first = classTable.get(c, BinarySnapshotFormat.CLASS_FIRST_METHOD);
+            int count = classTable.get(c, BinarySnapshotFormat.CLASS_METHOD_COUNT);
+            checkRange(first, count, methods.length);
+            for (int m = first; m < first + count; m++) {
+                methods[m] = createMethodMetrics(methodTable, m, classes[c]);
+                classes[c].add(methods[m]);
+            }
+        }
+        importMetrics(methodTable, methods);
+    }
+    
+    /**
+     * Creates the metrics of a method.
+     * @param table the table of the methods
+     * @param row the index of the row of the method
+     * @param cm the metrics of the class declaring the method
+     * @return the method metrics
+     */
+    private MethodMetrics createMethodMetrics(SnapshotTable table, int row, ClassMetrics cm) {
+        int flags = table.get(row, BinarySnapshotFormat.METHOD_FLAGS);
+        MethodMetrics mm = new MethodMetrics(getString(table.get(row, BinarySnapshotFormat.METHOD_NAME)),
+          intern(table.get(row, BinarySnapshotFormat.METHOD_SIGNATURE)),
+          intern(table.get(row, BinarySnapshotFormat.METHOD_TYPE)),
+          table.get(row, BinarySnapshotFormat.METHOD_MODIFIERS),
+          (flags & BinarySnapshotFormat.FLAG_FIRST) != 0,
+          (flags & BinarySnapshotFormat.FLAG_SECOND) != 0, cm);
+        
+        setCodeProperties(mm, table, row, BinarySnapshotFormat.METHOD_CODE);
+        return mm;
+    }
+    
+    /**
+     * Creates the metrics of fields.
+     * @param fieldTable the table of the fields
+     * @throws IOException if the file is broken
+     */
+    private void importFields(SnapshotTable fieldTable) throws IOException {
+        FieldMetrics[] fields = new FieldMetrics[fieldTable.getRows()];
+        for (int c = 0; c < classes.length; c++) {
+            int first = classTable.get(c, BinarySnapshotFormat.CLASS_FIRST_FIELD);
+            int count = classTable.get(c, BinarySnapshotFormat.CLASS_FIELD_COUNT);
+            checkRange(first, count, fields.length);
+            for (int f = first; f < first + count; f++) {
+                fields[f] = createFieldMetrics(fieldTable, f, classes[c]);
+                classes[c].add(fields[f]);
+            }
+        }
+        importMetrics(fieldTable, fields);
+    }
+    
+    /**
+     * Creates the metrics of a field.
+     * @param table the table of the fields
+     * @param row the index of the row of the field
+     * @param cm the metrics of the class declaring the field
+     * @return the field metrics
+     */
+    private FieldMetrics createFieldMetrics(SnapshotTable table, int row, ClassMetrics cm) {
+        int flags = table.get(row, BinarySnapshotFormat.FIELD_FLAGS);
+        FieldMetrics fm = new FieldMetrics(getString(table.get(row, BinarySnapshotFormat.FIELD_NAME)),
+          intern(table.get(row, BinarySnapshotFormat.FIELD_TYPE)),
+          table.get(row, BinarySnapshotFormat.FIELD_MODIFIERS),
+          (flags & BinarySnapshotFormat.FLAG_FIRST) != 0, cm);
+        
+        setCodeProperties(fm, table, row, BinarySnapshotFormat.FIELD_CODE);
+        return fm;
+    }
+    
+    /**
+     * Sets the code properties of an element.
+     * @param metrics the metrics of the element
+     * @param table the table containing the element
+     * @param row the index of the row of the element
+     * @param column the first of the four columns of the code properties
+     */
+    void setCodeProperties(CommonMetrics metrics, SnapshotTable table, int row, int column) {
+        metrics.setCodeProperties(table.get(row, column), table.get(row, column + 1),
+          table.get(row, column + 2), table.get(row, column + 3));
+    }
+    
+    /**
+     * Stores metric values of elements, which are read column by column.
+     * @param table the table of the elements
+     * @param elements the metrics of the elements indexed by the rows of the table
+     */
+    private void importMetrics(SnapshotTable table, CommonMetrics[] elements) {
+        for (Integer sort : table.getMetricSorts()) {
+            String name = getString(sort.intValue());
+            long[] present = table.getPresence(sort.intValue());
+            double[] values = table.getValues(sort.intValue());
+            for (int row = 0; row < elements.length; row++) {
+                if (elements[row] != null && BinarySnapshotFormat.isSet(present, row)) {
+                    elements[row].putMetricValue(name, values[row]);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Checks if a range of rows is within a table.
+     * @param first the index of the first row of the range
+     * @param count the number of the rows of the range
+     * @param rows the number of the rows of the table
+     * @throws IOException if the range is out of the table
+     */
+    void checkRange(int first, int count, int rows) throws IOException {
+        if (first < 0 || count < 0 || first + count > rows) {
+            throw new IOException("broken binary snapshot");
+        }
+    }
+    
+    /**
+     * Returns a string in the string table.
+     * @param index the index of the string
+     * @return the string, or <code>null</code> if the index represents a <code>null</code> string
+     */
+    String getString(int index) {
+        if (index == BinarySnapshotFormat.NONE) {
+            return null;
+        }
+        return strings[index];
+    }
+    
+    /**
+     * Returns the canonical instance of a string registered in the symbol table of the project.
+     * @param index the index of the string
+     * @return the canonical instance of the string, or <code>null</code> if the index represents a <code>null</code> string
+     */
+    String intern(int index) {
+        String str = getString(index);
+        if (str == null) {
+            return null;
+        }
+        return projectMetrics.getSymbolTable().intern(str);
+    }
+}
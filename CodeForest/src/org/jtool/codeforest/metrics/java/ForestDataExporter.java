@@ -4,13 +4,19 @@
 
 package org.jtool.codeforest.metrics.java;
 
+import org.jtool.codeforest.util.StreamingXMLWriter;
 import org.jtool.codeforest.util.Time;
 import org.jtool.eclipse.model.java.JavaElement;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -31,11 +37,60 @@ public class ForestDataExporter {
      * @return the DOM instance
      */
     public static Document getDocument(ProjectMetrics mproject) {
+        return getDocument(mproject.getCompleteSnapshot());
+    }
+    
+    /**
+     * Creates a DOM instance that stores information about a project from its snapshot.
+     * The snapshot is never changed, so that the export can run in parallel with updates of the project metrics.
+     * @param snapshot the snapshot of the project whose information will be exported
+     * @return the DOM instance
+     */
+    public static Document getDocument(MetricsSnapshot snapshot) {
+        try {
+            DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+            Document doc = builder.newDocument();
+            
+            export(doc, snapshot);
+            return doc;
+            
+        } catch (ParserConfigurationException e) {
+            System.err.println("DOM: Export error occurred: " + e.getMessage() + ".");
+        }
+        return null;
+    }
+    
+    /**
+     * Creates a DOM instance that stores information about classes declared in a single file.
+     * The project and package elements contain only their names. The package element is omitted if the file declares no class.
+     * @param mproject the project containing the classes
+     * @param mpackage the package containing the classes, or <code>null</code> if there is no class
+     * @param classes the collection of the classes whose information will be exported
+     * @return the DOM instance
+     */
+    public static Document getDocument(ProjectMetrics mproject, PackageMetrics mpackage, List<ClassMetrics> classes) {
         try {
             DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
             Document doc = builder.newDocument();
             
-            export(doc, mproject);
+            Element rootElem = doc.createElement(MetricsManager.TopElem);
+            rootElem.setAttribute(MetricsManager.DateAttr, Time.toString(mproject.getTime()));
+            doc.appendChild(rootElem);
+            
+            Element projectElem = doc.createElement(MetricsManager.ProjectElem);
+            projectElem.setAttribute(MetricsManager.NameAttr, mproject.getName());
+            projectElem.setAttribute(MetricsManager.TimeAttr, String.valueOf(mproject.getTime()));
+            rootElem.appendChild(projectElem);
+            
+            if (mpackage != null) {
+                Element packageElem = doc.createElement(MetricsManager.PackageElem);
+                packageElem.setAttribute(MetricsManager.NameAttr, mpackage.getName());
+                projectElem.appendChild(packageElem);
+                
+                for (ClassMetrics cm : classes) {
+                    export(doc, packageElem, new ClassSnapshot(cm), cm.getMetricValues());
+                }
+            }
             return doc;
             
         } catch (ParserConfigurationException e) {
@@ -44,26 +99,244 @@ public class ForestDataExporter {
         return null;
     }
     
+    /**
+     * Writes information about a project into an XML file without creating a DOM instance.
+     * The file has the same content as the one written from the DOM instance that <code>getDocument()</code> creates.
+     * @param file the XML file
+     * @param mproject the project whose information will be exported
+     */
+    public static void write(File file, ProjectMetrics mproject) {
+        write(file, mproject.getCompleteSnapshot());
+    }
+    
+    /**
+     * Writes information about a project from its snapshot into an XML file without creating a DOM instance.
+     * Each element is written as soon as it is visited, so that the memory used for the export does not depend on the size of the project.
+     * The file is compressed in the gzip format if its name ends with <code>".gz"</code>.
+     * @param file the XML file
+     * @param snapshot the snapshot of the project whose information will be exported
+     */
+    public static void write(File file, MetricsSnapshot snapshot) {
+        OutputStream out = null;
+        StreamingXMLWriter writer = null;
+        try {
+            out = SnapshotCompression.openOutputStream(file);
+            writer = new StreamingXMLWriter(out);
+            writer.startDocument();
+            write(writer, snapshot);
+            writer.endDocument();
+            
+        } catch (IOException e) {
+            System.err.println("StAX: Export error occurred: " + e.getMessage() + ".");
+            
+        } catch (XMLStreamException e) {
+            System.err.println("StAX: Export error occurred: " + e.getMessage() + ".");
+            
+        } finally {
+            if (writer != null) {
+                writer.close();
+            } else {
+                BinarySnapshotFormat.close(out);
+            }
+        }
+    }
+    
+    /**
+     * Writes metric values with respect to a project.
+     * @param writer the writer of the XML file
+     * @param snapshot the snapshot of project metrics
+     * @throws XMLStreamException if an error occurs in writing the XML events
+     */
+    private static void write(StreamingXMLWriter writer, MetricsSnapshot snapshot) throws XMLStreamException {
+        writer.startElement(MetricsManager.TopElem);
+        writer.addAttribute(MetricsManager.DateAttr, Time.toString(snapshot.getTime()));
+        
+        writer.startElement(MetricsManager.ProjectElem);
+        writer.addAttribute(MetricsManager.NameAttr, snapshot.getName());
+        writer.addAttribute(MetricsManager.TimeAttr, String.valueOf(snapshot.getTime()));
+        
+        writeMetricAttributes(writer, snapshot.getMetricValues());
+        
+        for (PackageSnapshot ps : snapshot.getPackageSnapshots()) {
+            write(writer, ps);
+        }
+        
+        writer.endElement();
+        writer.endElement();
+    }
+    
+    /**
+     * Writes metric values with respect to a package.
+     * @param writer the writer of the XML file
+     * @param snapshot the snapshot of package metrics
+     * @throws XMLStreamException if an error occurs in writing the XML events
+     */
+    private static void write(StreamingXMLWriter writer, PackageSnapshot snapshot) throws XMLStreamException {
+        writer.startElement(MetricsManager.PackageElem);
+        writer.addAttribute(MetricsManager.NameAttr, snapshot.getName());
+        
+        for (String name : snapshot.getAfferentPackageNames()) {
+            writer.startElement(MetricsManager.AfferentElem);
+            writer.addAttribute(MetricsManager.FqnAttr, name);
+            writer.endElement();
+        }
+        for (String name : snapshot.getEfferentPackageNames()) {
+            writer.startElement(MetricsManager.EfferentElem);
+            writer.addAttribute(MetricsManager.FqnAttr, name);
+            writer.endElement();
+        }
+        
+        writeMetricAttributes(writer, snapshot.getMetricValues());
+        
+        for (ClassSnapshot cs : snapshot.getClassSnapshots()) {
+            write(writer, cs);
+        }
+        
+        writer.endElement();
+    }
+    
+    /**
+     * Writes metric values with respect to a class.
+     * @param writer the writer of the XML file
+     * @param snapshot the snapshot of class metrics
+     * @throws XMLStreamException if an error occurs in writing the XML events
+     */
+    private static void write(StreamingXMLWriter writer, ClassSnapshot snapshot) throws XMLStreamException {
+        ClassMetrics mclass = snapshot.getClassMetrics();
+        writer.startElement(MetricsManager.ClassElem);
+        writer.addAttribute(MetricsManager.NameAttr, mclass.getName());
+        writer.addAttribute(MetricsManager.FqnAttr, mclass.getQualifiedName());
+        writer.addAttribute(MetricsManager.ModifiersAttr, String.valueOf(mclass.getModifiers()));
+        writer.addAttribute(MetricsManager.isInterfaceAttr, getBoolean(mclass.isInterface()));
+        writer.addAttribute(MetricsManager.isEnumAttr, getBoolean(mclass.isEnum()));
+        writer.addAttribute(MetricsManager.PathAttr, mclass.getPath());
+        
+        writeCodeAttributes(writer, mclass.getJavaClass());
+        
+        writer.startElement(MetricsManager.SuperClassElem);
+        writer.addAttribute(MetricsManager.FqnAttr, snapshot.getSuperClassName());
+        writer.endElement();
+        
+        for (String name : snapshot.getSuperInterfaceNames()) {
+            writer.startElement(MetricsManager.SuperInterfaceElem);
+            writer.addAttribute(MetricsManager.FqnAttr, name);
+            writer.endElement();
+        }
+        
+        for (String name : snapshot.getAfferentClassNames()) {
+            writer.startElement(MetricsManager.AfferentElem);
+            writer.addAttribute(MetricsManager.FqnAttr, name);
+            writer.endElement();
+        }
+        for (String name : snapshot.getEfferentClassNames()) {
+            writer.startElement(MetricsManager.EfferentElem);
+            writer.addAttribute(MetricsManager.FqnAttr, name);
+            writer.endElement();
+        }
+        
+        writeMetricAttributes(writer, snapshot.getMetricValues());
+        
+        for (MethodMetrics mm : snapshot.getMethodMetrics()) {
+            write(writer, mm);
+        }
+        for (FieldMetrics fm : snapshot.getFieldMetrics()) {
+            write(writer, fm);
+        }
+        
+        writer.endElement();
+    }
+    
+    /**
+     * Writes metric values with respect to a method.
+     * @param writer the writer of the XML file
+     * @param mmethod method metrics
+     * @throws XMLStreamException if an error occurs in writing the XML events
+     */
+    private static void write(StreamingXMLWriter writer, MethodMetrics mmethod) throws XMLStreamException {
+        writer.startElement(MetricsManager.MethodElem);
+        writer.addAttribute(MetricsManager.NameAttr, mmethod.getName());
+        writer.addAttribute(MetricsManager.SignatureAttr, mmethod.getSignature());
+        writer.addAttribute(MetricsManager.TypeAttr, mmethod.getReturnType());
+        writer.addAttribute(MetricsManager.ModifiersAttr, String.valueOf(mmethod.getModifiers()));
+        writer.addAttribute(MetricsManager.isConstructorAttr, getBoolean(mmethod.isConstructor()));
+        writer.addAttribute(MetricsManager.isInitializerAttr, getBoolean(mmethod.isInitializer()));
+        
+        writeCodeAttributes(writer, mmethod.getJavaMethod());
+        
+        writeMetricAttributes(writer, mmethod.getMetricValues());
+        
+        writer.endElement();
+    }
+    
+    /**
+     * Writes metric values with respect to a field.
+     * @param writer the writer of the XML file
+     * @param mfield field metrics
+     * @throws XMLStreamException if an error occurs in writing the XML events
+     */
+    private static void write(StreamingXMLWriter writer, FieldMetrics mfield) throws XMLStreamException {
+        writer.startElement(MetricsManager.FieldElem);
+        writer.addAttribute(MetricsManager.NameAttr, mfield.getName());
+        writer.addAttribute(MetricsManager.TypeAttr, mfield.getType());
+        writer.addAttribute(MetricsManager.ModifiersAttr, String.valueOf(mfield.getModifiers()));
+        writer.addAttribute(MetricsManager.isEnumConstantAttr, getBoolean(mfield.isEnumConstant()));
+        
+        writeCodeAttributes(writer, mfield.getJavaField());
+        
+        writeMetricAttributes(writer, mfield.getMetricValues());
+        
+        writer.endElement();
+    }
+    
+    /**
+     * Writes code information.
+     * @param writer the writer of the XML file
+     * @param jelem the code element
+     * @throws XMLStreamException if an error occurs in writing the XML events
+     */
+    private static void writeCodeAttributes(StreamingXMLWriter writer, JavaElement jelem) throws XMLStreamException {
+        writer.startElement(MetricsManager.CodeElem);
+        writer.addAttribute(MetricsManager.StartPositionAttr, String.valueOf(jelem.getStartPosition()));
+        writer.addAttribute(MetricsManager.CodeLengthAttr, String.valueOf(jelem.getCodeLength()));
+        writer.addAttribute(MetricsManager.UpperLineNumberAttr, String.valueOf(jelem.getUpperLineNumber()));
+        writer.addAttribute(MetricsManager.BottomLineNumberAttr, String.valueOf(jelem.getBottomLineNumber()));
+        writer.endElement();
+    }
+    
+    /**
+     * Writes metric values.
+     * @param writer the writer of the XML file
+     * @param metrics the metric values to be exported
+     * @throws XMLStreamException if an error occurs in writing the XML events
+     */
+    private static void writeMetricAttributes(StreamingXMLWriter writer, Map<String, Double> metrics) throws XMLStreamException {
+        writer.startElement(MetricsManager.MetricsElem);
+        for (String sort : metrics.keySet()) {
+            double value = metrics.get(sort).doubleValue();
+            writer.addAttribute(sort, String.valueOf(value));
+        }
+        writer.endElement();
+    }
+    
     /**
      * Exports metric values with respect to a project.
      * @param doc the content of the DOM instance
-     * @param mproject project metrics
+     * @param snapshot the snapshot of project metrics
      */
-    private static void export(Document doc, ProjectMetrics mproject) {
+    private static void export(Document doc, MetricsSnapshot snapshot) {
         Element rootElem = doc.createElement(MetricsManager.TopElem);
-        rootElem.setAttribute(MetricsManager.DateAttr, Time.toString(mproject.getTime()));
+        rootElem.setAttribute(MetricsManager.DateAttr, Time.toString(snapshot.getTime()));
         doc.appendChild(rootElem);
         
         Element projectElem = doc.createElement(MetricsManager.ProjectElem);
-        projectElem.setAttribute(MetricsManager.NameAttr, mproject.getName());
-        projectElem.setAttribute(MetricsManager.TimeAttr, String.valueOf(mproject.getTime()));
+        projectElem.setAttribute(MetricsManager.NameAttr, snapshot.getName());
+        projectElem.setAttribute(MetricsManager.TimeAttr, String.valueOf(snapshot.getTime()));
         rootElem.appendChild(projectElem);
         
-        exportMetricAttributes(doc, projectElem, mproject.getMetricValues());
+        exportMetricAttributes(doc, projectElem, snapshot.getMetricValues());
         
-        mproject.sortPackages();
-        for (PackageMetrics pm : mproject.getPackageMetrics()) {
-            export(doc, projectElem, pm);
+        for (PackageSnapshot ps : snapshot.getPackageSnapshots()) {
+            export(doc, projectElem, ps);
         }
     }
     
@@ -71,31 +344,28 @@ public class ForestDataExporter {
      * Exports metric values with respect to a package.
      * @param doc the content of the DOM instance
      * @param parent the parent DOM element
-     * @param mpackage package metrics
+     * @param snapshot the snapshot of package metrics
      */
-    private static void export(Document doc, Element parent, PackageMetrics mpackage) {
+    private static void export(Document doc, Element parent, PackageSnapshot snapshot) {
         Element packageElem = doc.createElement(MetricsManager.PackageElem);
-        packageElem.setAttribute(MetricsManager.NameAttr, mpackage.getName());
+        packageElem.setAttribute(MetricsManager.NameAttr, snapshot.getName());
         parent.appendChild(packageElem);
         
-        mpackage.sort(mpackage.getAfferentPackageNames());
-        for (String name : mpackage.getAfferentPackageNames()) {
+        for (String name : snapshot.getAfferentPackageNames()) {
             Element afferentElem = doc.createElement(MetricsManager.AfferentElem);
             afferentElem.setAttribute(MetricsManager.FqnAttr, name);
             packageElem.appendChild(afferentElem);
         }
-        mpackage.sort(mpackage.getEfferentPackageNames());
-        for (String name : mpackage.getEfferentPackageNames()) {
+        for (String name : snapshot.getEfferentPackageNames()) {
             Element efferentElem = doc.createElement(MetricsManager.EfferentElem);
             efferentElem.setAttribute(MetricsManager.FqnAttr, name);
             packageElem.appendChild(efferentElem);
         }
         
-        exportMetricAttributes(doc, packageElem, mpackage.getMetricValues());
+        exportMetricAttributes(doc, packageElem, snapshot.getMetricValues());
         
-        mpackage.sortClasses();
-        for (ClassMetrics cm : mpackage.getClassMetrics()) {
-            export(doc, packageElem, cm);
+        for (ClassSnapshot cs : snapshot.getClassSnapshots()) {
+            export(doc, packageElem, cs, cs.getMetricValues());
         }
     }
     
@@ -103,9 +373,11 @@ public class ForestDataExporter {
      * Exports metric values with respect to a class.
      * @param doc the content of the DOM instance
      * @param parent the parent DOM element
-     * @param mclass class metrics
+     * @param snapshot the snapshot of class metrics
+     * @param values the metric values of the class
      */
-    private static void export(Document doc, Element parent, ClassMetrics mclass) {
+    private static void export(Document doc, Element parent, ClassSnapshot snapshot, Map<String, Double> values) {
+        ClassMetrics mclass = snapshot.getClassMetrics();
         Element classElem = doc.createElement(MetricsManager.ClassElem);
         classElem.setAttribute(MetricsManager.NameAttr, mclass.getName());
         classElem.setAttribute(MetricsManager.FqnAttr, mclass.getQualifiedName());
@@ -118,36 +390,32 @@ public class ForestDataExporter {
         exportCodeAttributes(doc, classElem, mclass.getJavaClass());
         
         Element superclassElem = doc.createElement(MetricsManager.SuperClassElem);
-        superclassElem.setAttribute(MetricsManager.FqnAttr, mclass.getSuperClassName());
+        superclassElem.setAttribute(MetricsManager.FqnAttr, snapshot.getSuperClassName());
         classElem.appendChild(superclassElem);
         
-        for (String name : mclass.getSuperInterfaceNames()) {
+        for (String name : snapshot.getSuperInterfaceNames()) {
             Element superinterfaceElem = doc.createElement(MetricsManager.SuperInterfaceElem);
             superinterfaceElem.setAttribute(MetricsManager.FqnAttr, name);
             classElem.appendChild(superinterfaceElem);
         }
         
-        mclass.sort(mclass.getAfferentClassNames());
-        for (String name : mclass.getAfferentClassNames()) {
+        for (String name : snapshot.getAfferentClassNames()) {
             Element afferentElem = doc.createElement(MetricsManager.AfferentElem);
             afferentElem.setAttribute(MetricsManager.FqnAttr, name);
             classElem.appendChild(afferentElem);
         }
-        mclass.sort(mclass.getEfferentClassNames());
-        for (String name : mclass.getEfferentClassNames()) {
+        for (String name : snapshot.getEfferentClassNames()) {
             Element efferentElem = doc.createElement(MetricsManager.EfferentElem);
             efferentElem.setAttribute(MetricsManager.FqnAttr, name);
             classElem.appendChild(efferentElem);
         }
         
-        exportMetricAttributes(doc, classElem, mclass.getMetricValues());
+        exportMetricAttributes(doc, classElem, values);
         
-        mclass.sortMethods();
-        for (MethodMetrics mm : mclass.getMethodMetrics()) {
+        for (MethodMetrics mm : snapshot.getMethodMetrics()) {
             export(doc, classElem, mm);
         }
-        mclass.sortFields();
-        for (FieldMetrics fm : mclass.getFieldMetrics()) {
+        for (FieldMetrics fm : snapshot.getFieldMetrics()) {
             export(doc, classElem, fm);
         }
     }
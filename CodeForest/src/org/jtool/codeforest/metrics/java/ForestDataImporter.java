@@ -9,6 +9,8 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
 import java.io.File;
+import java.util.List;
+import java.util.ArrayList;
 
 /**
  * A class importing metric values within a project from an XML file.
@@ -51,6 +53,27 @@ public class ForestDataImporter extends DefaultHandler {
      */
     private CommonMetrics parent;
     
+    /**
+     * A flag indicating whether metric values are merged into existing project metrics.
+     */
+    private boolean merging = false;
+    
+    /**
+     * A flag indicating whether information on the project is collected at the end of the document.
+     */
+    private boolean collecting = true;
+    
+    /**
+     * The collection of package metrics created during this parsing, which are not added to the project,
+     * or <code>null</code> if created package metrics are added to the project.
+     */
+    private List<PackageMetrics> slicedPackages = null;
+    
+    /**
+     * The collection of class metrics imported during this parsing.
+     */
+    private List<ClassMetrics> importedClasses = new ArrayList<ClassMetrics>();
+    
     /**
      * Creates a new, empty object.
      * @path the path of the project to be imported
@@ -59,6 +82,38 @@ public class ForestDataImporter extends DefaultHandler {
         this.path = path;
     }
     
+    /**
+     * Creates a new, empty object.
+     * @param path the path of the project to be imported
+     * @param collecting <code>true</code> if information on the project is collected at the end of the document, otherwise <code>false</code>
+     */
+    ForestDataImporter(String path, boolean collecting) {
+        this.path = path;
+        this.collecting = collecting;
+    }
+    
+    /**
+     * Creates a new object that merges metric values into existing project metrics.
+     * @param mproject the project metrics into which the metric values are merged
+     */
+    public ForestDataImporter(ProjectMetrics mproject) {
+        this.projectMetrics = mproject;
+        this.merging = true;
+    }
+    
+    /**
+     * Creates a new object that imports packages from a slice of an XML file.
+     * The package metrics are stored into a given collection instead of being added to the project,
+     * so that slices of the same file can be imported in parallel.
+     * @param mproject the project metrics containing the packages
+     * @param packages the collection that stores the imported package metrics
+     */
+    ForestDataImporter(ProjectMetrics mproject, List<PackageMetrics> packages) {
+        this.projectMetrics = mproject;
+        this.merging = true;
+        this.slicedPackages = packages;
+    }
+    
     /**
      * Receive notification of the beginning of the document.
      */
@@ -69,7 +124,9 @@ public class ForestDataImporter extends DefaultHandler {
      * Receive notification of the end of the document.
      */
     public void endDocument() throws SAXException {
-        projectMetrics.collectMetricsInfoAfterXMLImport();
+        if (!merging && collecting && projectMetrics != null) {
+            projectMetrics.collectMetricsInfoAfterXMLImport();
+        }
     }
     
     /**
@@ -81,7 +138,9 @@ public class ForestDataImporter extends DefaultHandler {
      */
     public void startElement(String uri, String name, String qname, Attributes attrs) {
         if (qname.equals(MetricsManager.ProjectElem)) {
-            setProjectAttributes(attrs);
+            if (!merging) {
+                setProjectAttributes(attrs);
+            }
             parent = projectMetrics;
             return;
         }
@@ -113,7 +172,7 @@ public class ForestDataImporter extends DefaultHandler {
         if (qname.equals(MetricsManager.SuperClassElem)) {
             if (parent == classMetrics) {
                 if (attrs.getQName(0).equals(MetricsManager.FqnAttr)) {
-                    classMetrics.setSuperClassName(attrs.getValue(0));
+                    classMetrics.setSuperClassName(intern(attrs.getValue(0)));
                 }
             }
             return;
@@ -122,7 +181,7 @@ public class ForestDataImporter extends DefaultHandler {
         if (qname.equals(MetricsManager.SuperInterfaceElem)) {
             if (parent == classMetrics) {
                 if (attrs.getQName(0).equals(MetricsManager.FqnAttr)) {
-                    classMetrics.addSuperInterfaceName(attrs.getValue(0));
+                    classMetrics.addSuperInterfaceName(intern(attrs.getValue(0)));
                 }
             }
             return;
@@ -236,6 +295,23 @@ public class ForestDataImporter extends DefaultHandler {
         }
         
         if (name != null) {
+            if (slicedPackages != null) {
+                synchronized (projectMetrics) {
+                    packageMetrics = new PackageMetrics(name, projectMetrics);
+                }
+                slicedPackages.add(packageMetrics);
+                return;
+            }
+            
+            if (merging) {
+                for (PackageMetrics pm : projectMetrics.getPackageMetrics()) {
+                    if (pm.getName().equals(name)) {
+                        packageMetrics = pm;
+                        return;
+                    }
+                }
+            }
+            
             packageMetrics = new PackageMetrics(name, projectMetrics);
             projectMetrics.add(packageMetrics);
         }
@@ -243,6 +319,7 @@ public class ForestDataImporter extends DefaultHandler {
     
     /**
      * Sets attributes for a class.
+     * The class is registered under the lock of the project since its model may be shared with handlers importing other slices.
      * @param attrs the collection of attributes
      */
     private void setClassAttributes(Attributes attrs) {
@@ -257,7 +334,7 @@ public class ForestDataImporter extends DefaultHandler {
             if (attrs.getQName(i).equals(MetricsManager.NameAttr)) {
                 name = attrs.getValue(i);
             } else if (attrs.getQName(i).equals(MetricsManager.FqnAttr)) {
-                fqn = attrs.getValue(i);
+                fqn = intern(attrs.getValue(i));
             } else if (attrs.getQName(i).equals(MetricsManager.ModifiersAttr)) {
                 modifiers = getInteger(attrs.getValue(i));
             } else if (attrs.getQName(i).equals(MetricsManager.isInterfaceAttr)) {
@@ -270,8 +347,11 @@ public class ForestDataImporter extends DefaultHandler {
         }
         
         if (name != null && fqn != null) {
-            classMetrics = new ClassMetrics(name, fqn, modifiers, isInterface, isEnum, path, packageMetrics);
+            synchronized (projectMetrics) {
+                classMetrics = new ClassMetrics(name, fqn, modifiers, isInterface, isEnum, path, packageMetrics);
+            }
             packageMetrics.add(classMetrics);
+            importedClasses.add(classMetrics);
         }
     }
     
@@ -291,9 +371,9 @@ public class ForestDataImporter extends DefaultHandler {
             if (attrs.getQName(i).equals(MetricsManager.NameAttr)) {
                  name = attrs.getValue(i);
             } else if (attrs.getQName(i).equals(MetricsManager.SignatureAttr)) {
-                sig = attrs.getValue(i);
+                sig = intern(attrs.getValue(i));
             } else if (attrs.getQName(i).equals(MetricsManager.TypeAttr)) {
-                type = attrs.getValue(i);
+                type = intern(attrs.getValue(i));
             } else if (attrs.getQName(i).equals(MetricsManager.ModifiersAttr)) {
                 modifiers = getInteger(attrs.getValue(i));
             } else if (attrs.getQName(i).equals(MetricsManager.isConstructorAttr)) {
@@ -323,7 +403,7 @@ public class ForestDataImporter extends DefaultHandler {
             if (attrs.getQName(i).equals(MetricsManager.NameAttr)) {
                 name = attrs.getValue(i);
             } else if (attrs.getQName(i).equals(MetricsManager.TypeAttr)) {
-                type = attrs.getValue(i);
+                type = intern(attrs.getValue(i));
             } else if (attrs.getQName(i).equals(MetricsManager.ModifiersAttr)) {
                 modifiers = getInteger(attrs.getValue(i));
             } else if (attrs.getQName(i).equals(MetricsManager.isEnumConstantAttr)) {
@@ -380,6 +460,15 @@ public class ForestDataImporter extends DefaultHandler {
         parent.setCodeProperties(start, len, upper, bottom);
     }
     
+    /**
+     * Returns the canonical instance of a name registered in the symbol table of the project.
+     * @param name the name
+     * @return the canonical instance of the name
+     */
+    private String intern(String name) {
+        return projectMetrics.getSymbolTable().intern(name);
+    }
+    
     /**
      * Returns the project metrics created during this parsing.
      * @return the project metrics
@@ -388,6 +477,14 @@ public class ForestDataImporter extends DefaultHandler {
         return projectMetrics;
     }
     
+    /**
+     * Returns the class metrics imported during this parsing.
+     * @return the collection of the class metrics
+     */
+    public List<ClassMetrics> getImportedClasses() {
+        return importedClasses;
+    }
+    
     /**
      * Converts a boolean string into a boolean value.
      * @param value the boolean string
@@ -0,0 +1,180 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A list that keeps the insertion order of its elements and tests membership with a hash table.
+ * The metrics model tests whether an element was already added before adding it, which takes constant time with this list.
+ * @author Katsuhisa Maruyama
+ */
+class HashedList<E> extends AbstractList<E> implements RandomAccess {
+    
+    /**
+     * The elements in insertion order.
+     */
+    private List<E> elements = new ArrayList<E>();
+    
+    /**
+     * The map between an element and the number of its occurrences in this list.
+     */
+    private Map<Object, Integer> counts = new HashMap<Object, Integer>();
+    
+    /**
+     * Creates a new, empty list.
+     */
+    HashedList() {
+        super();
+    }
+    
+    /**
+     * Returns the element at a given position.
+     * @param index the position of the element
+     * @return the element
+     */
+    @Override
+    public E get(int index) {
+        return elements.get(index);
+    }
+    
+    /**
+     * Returns the number of elements in this list.
+     * @return the number of the elements
+     */
+    @Override
+    public int size() {
+        return elements.size();
+    }
+    
+    /**
+     * Tests if this list contains a given element.
+     * @param o the element
+     * @return <code>true</code> if the element is contained, otherwise <code>false</code>
+     */
+    @Override
+    public boolean contains(Object o) {
+        return counts.containsKey(o);
+    }
+    
+    /**
+     * Replaces the element at a given position.
+     * @param index the position of the element
+     * @param element the new element
+     * @return the replaced element
+     */
+    @Override
+    public E set(int index, E element) {
+        E old = elements.set(index, element);
+        decrement(old);
+        increment(element);
+        return old;
+    }
+    
+    /**
+     * Inserts an element at a given position.
+     * @param index the position of the element
+     * @param element the element to be inserted
+     */
+    @Override
+    public void add(int index, E element) {
+        elements.add(index, element);
+        increment(element);
+        modCount++;
+    }
+    
+    /**
+     * Removes the element at a given position.
+     * @param index the position of the element
+     * @return the removed element
+     */
+    @Override
+    public E remove(int index) {
+        E old = elements.remove(index);
+        decrement(old);
+        modCount++;
+        return old;
+    }
+    
+    /**
+     * Removes the first occurrence of a given element.
+     * @param o the element to be removed
+     * @return <code>true</code> if the element was removed, otherwise <code>false</code>
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (!contains(o)) {
+            return false;
+        }
+        return super.remove(o);
+    }
+    
+    /**
+     * Removes all the elements contained in a given collection.
+     * @param c the collection of the elements to be removed
+     * @return <code>true</code> if this list was changed, otherwise <code>false</code>
+     */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        List<E> retained = new ArrayList<E>(elements.size());
+        for (E element : elements) {
+            if (!c.contains(element)) {
+                retained.add(element);
+            }
+        }
+        if (retained.size() == elements.size()) {
+            return false;
+        }
+        
+        clear();
+        addAll(retained);
+        return true;
+    }
+    
+    /**
+     * Removes all the elements.
+     */
+    @Override
+    public void clear() {
+        elements.clear();
+        counts.clear();
+        modCount++;
+    }
+    
+    /**
+     * Records an occurrence of an element.
+     * @param element the element
+     */
+    private void increment(E element) {
+        Integer count = counts.get(element);
+        if (count == null) {
+            counts.put(element, new Integer(1));
+        } else {
+            counts.put(element, new Integer(count.intValue() + 1));
+        }
+    }
+    
+    /**
+     * Removes an occurrence of an element.
+     * @param element the element
+     */
+    private void decrement(E element) {
+        Integer count = counts.get(element);
+        if (count == null) {
+            return;
+        }
+        if (count.intValue() <= 1) {
+            counts.remove(element);
+        } else {
+            counts.put(element, new Integer(count.intValue() - 1));
+        }
+    }
+}
@@ -0,0 +1,18 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+/**
+ * An interface for objects creating the method and field metrics of a class on first access.
+ * @author Katsuhisa Maruyama
+ */
+interface IMemberLoader {
+    
+    /**
+     * Creates the method and field metrics of a class and adds them to the class.
+     * @param cm the class metrics
+     */
+    public void load(ClassMetrics cm);
+}
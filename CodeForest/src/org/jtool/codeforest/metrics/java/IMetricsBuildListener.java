@@ -0,0 +1,27 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+/**
+ * An interface for receiving the progress of building the metrics of a project in the background.
+ * Both methods are called in the user-interface thread.
+ * @author Katsuhisa Maruyama
+ */
+public interface IMetricsBuildListener {
+    
+    /**
+     * Receives a package whose metrics were measured and added to the preview of the project metrics.
+     * The total and maximum values stored in the preview cover the packages added so far.
+     * @param pm the metrics of the package
+     */
+    public void packageAdded(PackageMetrics pm);
+    
+    /**
+     * Receives the completion of the build.
+     * @param mproject the completed project metrics if the build succeeded, otherwise the preview of the project metrics
+     * @param succeeded <code>true</code> if the build succeeded, otherwise <code>false</code>
+     */
+    public void buildCompleted(ProjectMetrics mproject, boolean succeeded);
+}
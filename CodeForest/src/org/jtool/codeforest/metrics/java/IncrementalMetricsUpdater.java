@@ -0,0 +1,528 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.swt.widgets.Display;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+/**
+ * Updates project metrics incrementally when Java files in the project are changed.
+ * Only the changed compilation units are parsed again in batches, and only the classes declared in them are measured again.
+ * Then, the relations between classes are patched and the metric values of the touched packages and the project are collected again.
+ * The update builds a new version of the project metrics in a background job, and the views are refreshed with the new version.
+ * @author Katsuhisa Maruyama
+ */
+public class IncrementalMetricsUpdater implements IResourceChangeListener {
+    
+    /**
+     * The delay in milliseconds before changed files are parsed, which gathers successive changes into one update.
+     */
+    private static final long UPDATE_DELAY = 200;
+    
+    /**
+     * The project to be watched.
+     */
+    private IJavaProject project;
+    
+    /**
+     * The number of threads that parse the changed files in parallel.
+     */
+    private int threads = 1;
+    
+    /**
+     * The latest version of the metrics of the project, which is replaced with the next version whenever the metrics are updated.
+     */
+    private volatile ProjectMetrics projectMetrics;
+    
+    /**
+     * The display on which the views are refreshed.
+     */
+    private Display display;
+    
+    /**
+     * The action that is performed on the display after the metrics are updated.
+     */
+    private Runnable refreshAction = null;
+    
+    /**
+     * The action that is performed in the background job after the bindings of the whole project were resolved.
+     */
+    private Runnable resolvedAction = null;
+    
+    /**
+     * The collection of files that were changed but have not been parsed yet.
+     */
+    private Set<IFile> changedFiles = new LinkedHashSet<IFile>();
+    
+    /**
+     * The collection of files that were added to the project but have not been parsed yet.
+     */
+    private Set<IFile> addedFiles = new HashSet<IFile>();
+    
+    /**
+     * The collection of files that were removed from the project but have not been reflected in the metrics yet.
+     */
+    private Set<IFile> removedFiles = new HashSet<IFile>();
+    
+    /**
+     * A flag indicating whether the files being parsed complete the metrics measured without resolving bindings.
+     */
+    private boolean resolving = false;
+    
+    /**
+     * The job that parses the changed files.
+     */
+    private Job updateJob;
+    
+    /**
+     * Creates an object that updates the metrics of a project.
+     * @param project the project to be watched
+     * @param mproject the metrics of the project
+     * @param display the display on which the views are refreshed
+     */
+    public IncrementalMetricsUpdater(IJavaProject project, ProjectMetrics mproject, Display display) {
+        this.project = project;
+        this.projectMetrics = mproject;
+        this.display = display;
+        
+        updateJob = new Job("Code Forest: updating metrics") {
+            
+            /**
+             * Parses the changed files and updates the metrics.
+             * @param monitor the progress monitor to use to display progress and receive requests for cancellation
+             * @return the result of the execution
+             */
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                update(monitor);
+                return Status.OK_STATUS;
+            }
+        };
+        updateJob.setSystem(true);
+    }
+    
+    /**
+     * Sets the number of threads that parse the changed files in parallel.
+     * @param threads the number of threads, or <code>1</code> for a single parser thread
+     */
+    public void setNumberOfThreads(int threads) {
+        if (threads > 0) {
+            this.threads = threads;
+        }
+    }
+    
+    /**
+     * Returns the latest version of the metrics of the project.
+     * @return the project metrics
+     */
+    public ProjectMetrics getProjectMetrics() {
+        return projectMetrics;
+    }
+    
+    /**
+     * Replaces the metrics of the project, which are built again by another object.
+     * This method must be called before the updater starts or the bindings are resolved.
+     * @param mproject the metrics of the project
+     */
+    public void setProjectMetrics(ProjectMetrics mproject) {
+        projectMetrics = mproject;
+    }
+    
+    /**
+     * Sets the action that is performed on the display after the metrics are updated.
+     * @param action the action
+     */
+    public void setRefreshAction(Runnable action) {
+        refreshAction = action;
+    }
+    
+    /**
+     * Sets the action that is performed in the background job after the bindings of the whole project were resolved.
+     * The action can obtain the completed metrics with {@link #getProjectMetrics()}.
+     * @param action the action
+     */
+    public void setResolvedAction(Runnable action) {
+        resolvedAction = action;
+    }
+    
+    /**
+     * Starts watching changes of the project.
+     */
+    public void start() {
+        ResourcesPlugin.getWorkspace().addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+    }
+    
+    /**
+     * Stops watching changes of the project.
+     */
+    public void stop() {
+        ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
+        updateJob.cancel();
+        synchronized (changedFiles) {
+            changedFiles.clear();
+            addedFiles.clear();
+            removedFiles.clear();
+        }
+    }
+    
+    /**
+     * Parses all the Java files in the project again with resolving bindings.
+     * This is the second phase of the syntactic mode, which completes the metrics depending on relations between classes.
+     * The files are parsed in batches that share the environment of resolved bindings, in the same way as the first phase.
+     */
+    public void resolveBindings() {
+        List<IFile> files = new ArrayList<IFile>();
+        try {
+            for (IPackageFragment fragment : project.getPackageFragments()) {
+                if (fragment.getKind() == IPackageFragmentRoot.K_SOURCE) {
+                    for (ICompilationUnit icu : fragment.getCompilationUnits()) {
+                        if (icu.getResource() instanceof IFile) {
+                            files.add((IFile)icu.getResource());
+                        }
+                    }
+                }
+            }
+        } catch (JavaModelException e) {
+            System.err.println("Incremental update error occurred: " + e.getMessage());
+            return;
+        }
+        
+        synchronized (changedFiles) {
+            changedFiles.addAll(files);
+            resolving = true;
+        }
+        updateJob.schedule();
+    }
+    
+    /**
+     * Receives a notification of resource changes and records the changed Java files in the project.
+     * @param event the resource change event
+     */
+    public void resourceChanged(IResourceChangeEvent event) {
+        IResourceDelta delta = event.getDelta();
+        if (delta == null) {
+            return;
+        }
+        
+        final List<IFile> files = new ArrayList<IFile>();
+        final List<IFile> added = new ArrayList<IFile>();
+        final List<IFile> removed = new ArrayList<IFile>();
+        try {
+            delta.accept(new IResourceDeltaVisitor() {
+                
+                /**
+                 * Visits a resource delta and collects a changed Java file.
+                 * @param d the resource delta
+                 * @return <code>true</code> if the children of the resource are visited, otherwise <code>false</code>
+                 */
+                public boolean visit(IResourceDelta d) {
+                    IResource resource = d.getResource();
+                    if (resource.getType() == IResource.PROJECT) {
+                        return resource.equals(project.getProject());
+                    }
+                    
+                    if (resource.getType() == IResource.FILE && "java".equals(resource.getFileExtension())) {
+                        if (d.getKind() != IResourceDelta.CHANGED || (d.getFlags() & IResourceDelta.CONTENT) != 0) {
+                            files.add((IFile)resource);
+                        }
+                        if (d.getKind() == IResourceDelta.ADDED) {
+                            added.add((IFile)resource);
+                        } else if (d.getKind() == IResourceDelta.REMOVED) {
+                            removed.add((IFile)resource);
+                        }
+                    }
+                    return true;
+                }
+            });
+        } catch (CoreException e) {
+            System.err.println("Incremental update error occurred: " + e.getMessage());
+            return;
+        }
+        
+        if (files.size() > 0) {
+            synchronized (changedFiles) {
+                changedFiles.addAll(files);
+                for (IFile file : added) {
+                    if (!removedFiles.remove(file)) {
+                        addedFiles.add(file);
+                    }
+                }
+                for (IFile file : removed) {
+                    if (!addedFiles.remove(file)) {
+                        removedFiles.add(file);
+                    }
+                }
+            }
+            updateJob.schedule(UPDATE_DELAY);
+        }
+    }
+    
+    /**
+     * Parses the changed files and builds the next version of the metrics, which replaces the current one on the display.
+     * The current version of the metrics is never modified, so that the views can read it while the next version is built.
+     * @param monitor the progress monitor
+     */
+    private void update(IProgressMonitor monitor) {
+        List<IFile> files;
+        boolean resolved;
+        int fileDifference;
+        synchronized (changedFiles) {
+            files = new ArrayList<IFile>(changedFiles);
+            changedFiles.clear();
+            resolved = resolving;
+            resolving = false;
+            fileDifference = addedFiles.size() - removedFiles.size();
+            addedFiles.clear();
+            removedFiles.clear();
+        }
+        
+        List<ICompilationUnit> icus = new ArrayList<ICompilationUnit>();
+        for (IFile file : files) {
+            if (file.exists()) {
+                ICompilationUnit icu = JavaCore.createCompilationUnitFrom(file);
+                if (icu != null) {
+                    icus.add(icu);
+                }
+            }
+        }
+        
+        ProjectMetrics current = projectMetrics;
+        ProjectMetrics next = new ProjectMetrics(current);
+        if (resolved) {
+            next.setSyntactic(false);
+            next.setNumberOfFiles(icus.size());
+        } else {
+            next.setNumberOfFiles(current.getNumberOfFiles() + fileDifference);
+        }
+        try {
+            apply(current, next, files, icus, monitor, resolved);
+        } catch (InvocationTargetException e) {
+            System.err.println("Incremental update error occurred: " + e.getCause().getMessage());
+            return;
+        } catch (InterruptedException e) {
+            return;
+        }
+        projectMetrics = next;
+        if (resolved && resolvedAction != null) {
+            resolvedAction.run();
+        }
+        
+        if (!display.isDisposed()) {
+            display.asyncExec(new Runnable() {
+                
+                /**
+                 * Refreshes the views with the updated metrics.
+                 */
+                public void run() {
+                    if (refreshAction != null) {
+                        refreshAction.run();
+                    }
+                }
+            });
+        }
+    }
+    
+    /**
+     * Builds the next version of the metrics, in which the metrics of classes declared in the changed files
+     * are replaced with the metrics of the parsed classes. The metrics of the other classes are copied from the current version.
+     * The existing files are parsed in batches by the same pipeline as the one that builds the whole project metrics.
+     * @param current the current version of the metrics
+     * @param next the next version of the metrics, which contains no package metrics yet
+     * @param files the changed files
+     * @param icus the compilation units of the changed files that still exist
+     * @param monitor the progress monitor
+     * @param resolved <code>true</code> if the bindings of the whole project were resolved, otherwise <code>false</code>
+     * @throws InvocationTargetException if the parsing fails
+     * @throws InterruptedException if the parsing is canceled
+     */
+    private void apply(ProjectMetrics current, ProjectMetrics next, List<IFile> files, List<ICompilationUnit> icus, IProgressMonitor monitor, boolean resolved)
+            throws InvocationTargetException, InterruptedException {
+        Set<String> touchedNames = new HashSet<String>();
+        Set<String> removedNames = new HashSet<String>();
+        Set<ClassMetrics> removedClasses = new HashSet<ClassMetrics>();
+        
+        Map<String, List<ClassMetrics>> declaredClasses = new HashMap<String, List<ClassMetrics>>();
+        for (ClassMetrics cm : current.getClassMetrics()) {
+            List<ClassMetrics> classes = declaredClasses.get(cm.getPath());
+            if (classes == null) {
+                classes = new ArrayList<ClassMetrics>();
+                declaredClasses.put(cm.getPath(), classes);
+            }
+            classes.add(cm);
+        }
+        
+        for (IFile file : files) {
+            for (ClassMetrics cm : getDeclaredClasses(declaredClasses, file)) {
+                removedClasses.add(cm);
+                removedNames.add(cm.getQualifiedName());
+                touchedNames.add(cm.getPackageMetrics().getName());
+            }
+        }
+        
+        for (PackageMetrics pm : current.getPackageMetrics()) {
+            PackageMetrics copy = new PackageMetrics(pm, next);
+            for (ClassMetrics cm : pm.getClassMetrics()) {
+                if (!removedClasses.contains(cm)) {
+                    copy.add(new ClassMetrics(cm, copy));
+                }
+            }
+            next.add(copy);
+        }
+        
+        MetricsPipeline pipeline = new MetricsPipeline(project, false);
+        pipeline.setNumberOfThreads(threads);
+        Set<ClassMetrics> addedClasses = new HashSet<ClassMetrics>();
+        for (List<ClassMetrics> classes : pipeline.run(icus, next, monitor).values()) {
+            for (ClassMetrics cm : classes) {
+                addedClasses.add(cm);
+                touchedNames.add(cm.getPackageMetrics().getName());
+            }
+        }
+        
+        Set<PackageMetrics> patchedPackages = patchClassRelations(next, removedNames, addedClasses);
+        
+        Set<PackageMetrics> touchedPackages = new HashSet<PackageMetrics>();
+        for (PackageMetrics pm : new ArrayList<PackageMetrics>(next.getPackageMetrics())) {
+            if (touchedNames.contains(pm.getName())) {
+                if (pm.getClassMetrics().size() == 0) {
+                    next.remove(pm);
+                } else {
+                    pm.collectMetricInfo();
+                    touchedPackages.add(pm);
+                }
+            }
+        }
+        
+        next.collectCouplingInfo();
+        next.collectMetricInfo();
+        next.collectProvidedMetricInfo();
+        next.collectAggregatedMetricInfo();
+        next.sortPackages();
+        
+        if (resolved) {
+            next.publishSnapshot();
+        } else {
+            patchedPackages.addAll(touchedPackages);
+            next.publishSnapshot(patchedPackages);
+        }
+    }
+    
+    /**
+     * Obtains the metrics of classes declared in a given file.
+     * The path of a class is either the full path of the file in the workspace or its location in the file system.
+     * @param declaredClasses the map between the paths of files and the metrics of classes declared in them
+     * @param file the file
+     * @return the collection of the class metrics
+     */
+    private List<ClassMetrics> getDeclaredClasses(Map<String, List<ClassMetrics>> declaredClasses, IFile file) {
+        List<ClassMetrics> classes = new ArrayList<ClassMetrics>();
+        List<ClassMetrics> found = declaredClasses.get(file.getFullPath().toString());
+        if (found != null) {
+            classes.addAll(found);
+        }
+        if (file.getLocation() != null) {
+            found = declaredClasses.get(file.getLocation().toOSString());
+            if (found != null) {
+                classes.addAll(found);
+            }
+        }
+        return classes;
+    }
+    
+    /**
+     * Patches the names of afferent and efferent classes of unchanged classes and classes that were measured again.
+     * The names of classes that disappeared are removed from the unchanged classes. An unchanged class keeps the names of
+     * its efferent classes since its own code is unchanged, while the names of its afferent classes that were measured again
+     * are derived from the efferent classes of the re-measured classes. Conversely, the afferent classes of a re-measured class
+     * are completed with the unchanged classes that use it.
+     * @param mproject the metrics of the project containing the classes
+     * @param removedNames the names of classes whose metrics were removed
+     * @param addedClasses the metrics of classes that were measured again
+     * @return the collection of packages containing unchanged classes whose names of related classes were patched
+     */
+    private Set<PackageMetrics> patchClassRelations(ProjectMetrics mproject, Set<String> removedNames, Set<ClassMetrics> addedClasses) {
+        Set<PackageMetrics> patchedPackages = new HashSet<PackageMetrics>();
+        Map<String, ClassMetrics> classes = new HashMap<String, ClassMetrics>();
+        for (ClassMetrics cm : mproject.getClassMetrics()) {
+            classes.put(cm.getQualifiedName(), cm);
+        }
+        
+        Set<String> addedNames = new HashSet<String>();
+        for (ClassMetrics cm : addedClasses) {
+            addedNames.add(cm.getQualifiedName());
+        }
+        Set<String> disappearedNames = new HashSet<String>(removedNames);
+        disappearedNames.removeAll(addedNames);
+        Set<String> changedNames = new HashSet<String>(removedNames);
+        changedNames.addAll(addedNames);
+        
+        for (ClassMetrics cm : classes.values()) {
+            if (!addedClasses.contains(cm)) {
+                int size = cm.getAfferentClassNames().size() + cm.getEfferentClassNames().size();
+                cm.removeAfferentClassNames(changedNames);
+                cm.removeEfferentClassNames(disappearedNames);
+                if (size != cm.getAfferentClassNames().size() + cm.getEfferentClassNames().size()) {
+                    patchedPackages.add(cm.getPackageMetrics());
+                }
+            }
+        }
+        
+        for (ClassMetrics cm : addedClasses) {
+            for (String name : cm.getEfferentClassNames()) {
+                ClassMetrics target = classes.get(name);
+                if (target != null && target != cm) {
+                    target.addAfferentClassName(cm.getQualifiedName());
+                    patchedPackages.add(target.getPackageMetrics());
+                }
+            }
+        }
+        
+        for (ClassMetrics cm : classes.values()) {
+            if (!addedClasses.contains(cm)) {
+                for (String name : cm.getEfferentClassNames()) {
+                    ClassMetrics target = classes.get(name);
+                    if (target != null && addedClasses.contains(target)) {
+                        target.addAfferentClassName(cm.getQualifiedName());
+                    }
+                }
+            }
+        }
+        
+        for (ClassMetrics cm : addedClasses) {
+            for (String name : cm.getAfferentClassNames()) {
+                ClassMetrics target = classes.get(name);
+                if (target != null && target != cm && addedClasses.contains(target)) {
+                    target.addEfferentClassName(cm.getQualifiedName());
+                }
+            }
+        }
+        return patchedPackages;
+    }
+}
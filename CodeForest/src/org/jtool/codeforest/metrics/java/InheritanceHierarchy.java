@@ -0,0 +1,272 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.metrics.MetricSort;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the inheritance hierarchy of classes within a project.
+ * The depths of classes are calculated by dynamic programming in a single pass, and the direct subclasses
+ * of respective classes are stored as an inverted index, which also gives the numbers of descendants.
+ * @author Katsuhisa Maruyama
+ */
+public class InheritanceHierarchy {
+    
+    /**
+     * The map between the fully-qualified name of a class and its identification number.
+     */
+    private Map<String, Integer> classIds;
+    
+    /**
+     * The fully-qualified names of respective classes.
+     */
+    private String[] names;
+    
+    /**
+     * The identification numbers of the super classes of respective classes, or <code>-1</code> for classes whose super class is not in the project.
+     */
+    private int[] superClasses;
+    
+    /**
+     * The depths of respective classes in the inheritance tree.
+     */
+    private int[] depths;
+    
+    /**
+     * The numbers of descendants of respective classes within the project.
+     */
+    private int[] descendantCounts;
+    
+    /**
+     * The direct subclasses of respective classes.
+     */
+    private DependencyIndex.Adjacency subClasses;
+    
+    /**
+     * Creates an index of the inheritance hierarchy.
+     * @param classIds the map between the fully-qualified names of classes and their identification numbers
+     * @param superClasses the identification numbers of the super classes of respective classes, or <code>-1</code> for classes whose super class is not in the project
+     * @param baseDepths the depths of classes whose super class is not in the project, which count super classes outside the project
+     */
+    InheritanceHierarchy(Map<String, Integer> classIds, int[] superClasses, int[] baseDepths) {
+        this.classIds = classIds;
+        this.superClasses = superClasses;
+        
+        names = new String[superClasses.length];
+        for (String name : classIds.keySet()) {
+            names[classIds.get(name).intValue()] = name;
+        }
+        
+        subClasses = new DependencyIndex.Adjacency(superClasses, superClasses.length);
+        calculateDepths(baseDepths);
+        countDescendants();
+    }
+    
+    /**
+     * Creates an index of the inheritance hierarchy from the names of super classes.
+     * The depth of a class whose super class is not in the project is obtained from its metric value if it exists.
+     * @param classes the collection of the class metrics
+     * @return the index of the inheritance hierarchy
+     */
+    public static InheritanceHierarchy createFromNames(List<ClassMetrics> classes) {
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        List<ClassMetrics> registered = new ArrayList<ClassMetrics>();
+        for (ClassMetrics cm : classes) {
+            if (!ids.containsKey(cm.getQualifiedName())) {
+                ids.put(cm.getQualifiedName(), new Integer(registered.size()));
+                registered.add(cm);
+            }
+        }
+        
+        int[] superClasses = new int[registered.size()];
+        int[] baseDepths = new int[registered.size()];
+        for (int i = 0; i < registered.size(); i++) {
+            ClassMetrics cm = registered.get(i);
+            Integer id = null;
+            if (cm.getSuperClassName() != null) {
+                id = ids.get(cm.getSuperClassName());
+            }
+            
+            if (id != null && id.intValue() != i) {
+                superClasses[i] = id.intValue();
+            } else {
+                superClasses[i] = -1;
+                baseDepths[i] = Math.max(0, (int)cm.getMetricValue(MetricSort.DEPTH_OF_INHERITANCE_TREE));
+            }
+        }
+        return new InheritanceHierarchy(ids, superClasses, baseDepths);
+    }
+    
+    /**
+     * Calculates the depths of all the classes, each of which is obtained from the depth of its super class.
+     * @param baseDepths the depths of classes whose super class is not in the project
+     */
+    private void calculateDepths(int[] baseDepths) {
+        int size = superClasses.length;
+        depths = new int[size];
+        Arrays.fill(depths, -1);
+        int[] chain = new int[size];
+        
+        for (int v = 0; v < size; v++) {
+            int length = 0;
+            int w = v;
+            while (w >= 0 && depths[w] < 0) {
+                depths[w] = -2;
+                chain[length] = w;
+                length++;
+                w = superClasses[w];
+            }
+            
+            int depth;
+            if (w < 0) {
+                int root = chain[length - 1];
+                depth = baseDepths[root];
+                depths[root] = depth;
+                length--;
+            } else if (depths[w] == -2) {
+                int k = length - 1;
+                while (chain[k] != w) {
+                    k--;
+                }
+                for (int i = k; i < length; i++) {
+                    depths[chain[i]] = 0;
+                }
+                depth = 0;
+                length = k;
+            } else {
+                depth = depths[w];
+            }
+            
+            for (int i = length - 1; i >= 0; i--) {
+                depth++;
+                depths[chain[i]] = depth;
+            }
+        }
+    }
+    
+    /**
+     * Counts the descendants of all the classes in a single pass from the leaves to the roots.
+     */
+    private void countDescendants() {
+        int size = superClasses.length;
+        descendantCounts = new int[size];
+        
+        int[] order = new int[size];
+        int length = 0;
+        for (int v = 0; v < size; v++) {
+            if (superClasses[v] < 0) {
+                order[length] = v;
+                length++;
+            }
+        }
+        for (int head = 0; head < length; head++) {
+            int v = order[head];
+            for (int i = subClasses.offsets[v]; i < subClasses.offsets[v + 1]; i++) {
+                order[length] = subClasses.targets[i];
+                length++;
+            }
+        }
+        
+        for (int i = length - 1; i >= 0; i--) {
+            int v = order[i];
+            int p = superClasses[v];
+            if (p >= 0) {
+                descendantCounts[p] = descendantCounts[p] + descendantCounts[v] + 1;
+            }
+        }
+    }
+    
+    /**
+     * Returns the identification number of a class with a given name.
+     * @param fqn the fully-qualified name of the class
+     * @return the identification number, or <code>-1</code> if the class is not in the project
+     */
+    public int getClassId(String fqn) {
+        Integer id = classIds.get(fqn);
+        if (id != null) {
+            return id.intValue();
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the depth of a class in the inheritance tree.
+     * @param id the identification number of the class
+     * @return the number of the super classes
+     */
+    public int getDepth(int id) {
+        return depths[id];
+    }
+    
+    /**
+     * Returns the number of direct subclasses of a class within the project.
+     * @param id the identification number of the class
+     * @return the number of the subclasses
+     */
+    public int getNumberOfChildren(int id) {
+        return subClasses.degree(id);
+    }
+    
+    /**
+     * Returns the number of direct and indirect subclasses of a class within the project.
+     * @param id the identification number of the class
+     * @return the number of the descendants
+     */
+    public int getNumberOfDescendants(int id) {
+        return descendantCounts[id];
+    }
+    
+    /**
+     * Obtains the names of direct subclasses of a class.
+     * @param fqn the fully-qualified name of the class
+     * @return the collection of the names of the subclasses
+     */
+    public List<String> getSubClassNames(String fqn) {
+        List<String> result = new ArrayList<String>();
+        int id = getClassId(fqn);
+        if (id >= 0) {
+            for (int i = subClasses.offsets[id]; i < subClasses.offsets[id + 1]; i++) {
+                result.add(names[subClasses.targets[i]]);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Obtains the names of all the classes that inherit from a class.
+     * @param fqn the fully-qualified name of the class
+     * @return the collection of the names of the descendants in breadth-first order
+     */
+    public List<String> getDescendantNames(String fqn) {
+        List<String> result = new ArrayList<String>();
+        int id = getClassId(fqn);
+        if (id < 0) {
+            return result;
+        }
+        
+        int[] queue = new int[descendantCounts[id]];
+        int length = 0;
+        int v = id;
+        int head = 0;
+        while (true) {
+            for (int i = subClasses.offsets[v]; i < subClasses.offsets[v + 1] && length < queue.length; i++) {
+                queue[length] = subClasses.targets[i];
+                result.add(names[queue[length]]);
+                length++;
+            }
+            if (head >= length) {
+                break;
+            }
+            v = queue[head];
+            head++;
+        }
+        return result;
+    }
+}
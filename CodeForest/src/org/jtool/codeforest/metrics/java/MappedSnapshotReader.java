@@ -0,0 +1,406 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A class reading metric values within a project from a memory-mapped binary file.
+ * The metrics of the project, its packages, and its classes are created when the file is read.
+ * The metrics of methods and fields of a class are created from the mapped file on first access to them,
+ * and strings are decoded from the mapped file when they are used.
+ * @author Katsuhisa Maruyama
+ */
+public class MappedSnapshotReader extends ForestDataBinaryImporter {
+    
+    /**
+     * The mapped file.
+     */
+    private MappedByteBuffer buffer;
+    
+    /**
+     * The offsets of the strings in the string table.
+     */
+    private int[] stringOffsets;
+    
+    /**
+     * The strings that have been decoded, which are indexed by the indexes in the string table.
+     */
+    private String[] decodedStrings;
+    
+    /**
+     * The table of the methods.
+     */
+    private MappedTable methodTable;
+    
+    /**
+     * The table of the fields.
+     */
+    private MappedTable fieldTable;
+    
+    /**
+     * Creates a new, empty object.
+     */
+    private MappedSnapshotReader() {
+    }
+    
+    /**
+     * Reads metric values within a project from a binary file by mapping it into memory.
+     * @param path the path of the binary file
+     * @return the project metrics, or <code>null</code> if the import fails
+     */
+    public static ProjectMetrics read(String path) {
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(path, "r");
+            FileChannel channel = file.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("too large binary snapshot");
+            }
+            
+            MappedSnapshotReader reader = new MappedSnapshotReader();
+            reader.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return reader.readMappedFile(path);
+            
+        } catch (IOException e) {
+            System.err.println("Binary: Import error occurred: " + e.getMessage() + ".");
+        } catch (RuntimeException e) {
+            System.err.println("Binary: Import error occurred: " + e.getMessage() + ".");
+        } finally {
+            BinarySnapshotFormat.close(file);
+        }
+        return null;
+    }
+    
+    /**
+     * Reads the mapped file and creates the metrics of the project, its packages, and its classes.
+     * The mapping remains valid after the file is closed.
+     * @param path the path of the binary file
+     * @return the project metrics, or <code>null</code> if the file does not contain a project
+     * @throws IOException if the file is broken
+     */
+    private ProjectMetrics readMappedFile(String path) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer));
+        long time = BinarySnapshotFormat.readHeader(in);
+        
+        indexStrings();
+        if (!importProject(in, time, path)) {
+            return null;
+        }
+        
+        methodTable = new MappedTable(buffer, BinarySnapshotFormat.METHOD_COLUMNS, BinarySnapshotFormat.METHOD_LISTS);
+        fieldTable = new MappedTable(buffer, BinarySnapshotFormat.FIELD_COLUMNS, BinarySnapshotFormat.FIELD_LISTS);
+        
+        for (int c = 0; c < classes.length; c++) {
+            checkRange(classTable.get(c, BinarySnapshotFormat.CLASS_FIRST_METHOD),
+              classTable.get(c, BinarySnapshotFormat.CLASS_METHOD_COUNT), methodTable.getRows());
+            checkRange(classTable.get(c, BinarySnapshotFormat.CLASS_FIRST_FIELD),
+              classTable.get(c, BinarySnapshotFormat.CLASS_FIELD_COUNT), fieldTable.getRows());
+            classes[c].setMemberLoader(new ClassMembers(c));
+        }
+        
+        projectMetrics.collectMetricsInfoAfterXMLImport();
+        return projectMetrics;
+    }
+    
+    /**
+     * Records the offsets of the strings in the string table without decoding them.
+     * @throws IOException if the file is broken
+     */
+    private void indexStrings() throws IOException {
+        int count = buffer.getInt();
+        if (count < 0) {
+            throw new IOException("broken binary snapshot");
+        }
+        
+        stringOffsets = new int[count];
+        decodedStrings = new String[count];
+        for (int i = 0; i < count; i++) {
+            stringOffsets[i] = buffer.position();
+            int length = buffer.getInt();
+            buffer.position(buffer.position() + length);
+        }
+    }
+    
+    /**
+     * Returns a string in the string table, which is decoded from the mapped file on first access.
+     * @param index the index of the string
+     * @return the string, or <code>null</code> if the index represents a <code>null</code> string
+     */
+    @Override
+    synchronized String getString(int index) {
+        if (index == BinarySnapshotFormat.NONE) {
+            return null;
+        }
+        
+        String str = decodedStrings[index];
+        if (str == null) {
+            int offset = stringOffsets[index];
+            byte[] bytes = new byte[buffer.getInt(offset)];
+            ByteBuffer buf = buffer.duplicate();
+            buf.position(offset + 4);
+            buf.get(bytes);
+            try {
+                str = new String(bytes, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e.getMessage());
+            }
+            decodedStrings[index] = str;
+        }
+        return str;
+    }
+    
+    /**
+     * Creates the metrics of a method from the mapped file.
+     * @param row the index of the row of the method
+     * @param cm the metrics of the class declaring the method
+     * @return the method metrics
+     */
+    private MethodMetrics createMethodMetrics(int row, ClassMetrics cm) {
+        int flags = methodTable.get(row, BinarySnapshotFormat.METHOD_FLAGS);
+        MethodMetrics mm = new MethodMetrics(getString(methodTable.get(row, BinarySnapshotFormat.METHOD_NAME)),
+          intern(methodTable.get(row, BinarySnapshotFormat.METHOD_SIGNATURE)),
+          intern(methodTable.get(row, BinarySnapshotFormat.METHOD_TYPE)),
+          methodTable.get(row, BinarySnapshotFormat.METHOD_MODIFIERS),
+          (flags & BinarySnapshotFormat.FLAG_FIRST) != 0,
+          (flags & BinarySnapshotFormat.FLAG_SECOND) != 0, cm);
+        
+        setCodeProperties(mm, methodTable, row, BinarySnapshotFormat.METHOD_CODE);
+        importMetrics(mm, methodTable, row);
+        return mm;
+    }
+    
+    /**
+     * Creates the metrics of a field from the mapped file.
+     * @param row the index of the row of the field
+     * @param cm the metrics of the class declaring the field
+     * @return the field metrics
+     */
+    private FieldMetrics createFieldMetrics(int row, ClassMetrics cm) {
+        int flags = fieldTable.get(row, BinarySnapshotFormat.FIELD_FLAGS);
+        FieldMetrics fm = new FieldMetrics(getString(fieldTable.get(row, BinarySnapshotFormat.FIELD_NAME)),
+          intern(fieldTable.get(row, BinarySnapshotFormat.FIELD_TYPE)),
+          fieldTable.get(row, BinarySnapshotFormat.FIELD_MODIFIERS),
+          (flags & BinarySnapshotFormat.FLAG_FIRST) != 0, cm);
+        
+        setCodeProperties(fm, fieldTable, row, BinarySnapshotFormat.FIELD_CODE);
+        importMetrics(fm, fieldTable, row);
+        return fm;
+    }
+    
+    /**
+     * Sets the code properties of an element.
+     * @param metrics the metrics of the element
+     * @param table the table containing the element
+     * @param row the index of the row of the element
+     * @param column the first of the four columns of the code properties
+     */
+    private void setCodeProperties(CommonMetrics metrics, MappedTable table, int row, int column) {
+        metrics.setCodeProperties(table.get(row, column), table.get(row, column + 1),
+          table.get(row, column + 2), table.get(row, column + 3));
+    }
+    
+    /**
+     * Stores metric values of an element, which are read from the mapped file.
+     * @param metrics the metrics of the element
+     * @param table the table containing the element
+     * @param row the index of the row of the element
+     */
+    private void importMetrics(CommonMetrics metrics, MappedTable table, int row) {
+        for (int m = 0; m < table.getNumberOfMetrics(); m++) {
+            if (table.hasValue(m, row)) {
+                metrics.putMetricValue(getString(table.getSort(m)), table.getValue(m, row));
+            }
+        }
+    }
+    
+    /**
+     * Creates the method and field metrics of a class on first access to them.
+     * @author Katsuhisa Maruyama
+     */
+    private class ClassMembers implements IMemberLoader {
+        
+        /**
+         * The index of the row of the class in the class table.
+         */
+        private int row;
+        
+        /**
+         * Creates a loader for a class.
+         * @param row the index of the row of the class
+         */
+        ClassMembers(int row) {
+            this.row = row;
+        }
+        
+        /**
+         * Creates the method and field metrics of a class and adds them to the class.
+         * @param cm the class metrics
+         */
+        public void load(ClassMetrics cm) {
+            int first = classTable.get(row, BinarySnapshotFormat.CLASS_FIRST_METHOD);
+            int count = classTable.get(row, BinarySnapshotFormat.CLASS_METHOD_COUNT);
+            for (int m = first; m < first + count; m++) {
+                cm.add(createMethodMetrics(m, cm));
+            }
+            
+            first = classTable.get(row, BinarySnapshotFormat.CLASS_FIRST_FIELD);
+            count = classTable.get(row, BinarySnapshotFormat.CLASS_FIELD_COUNT);
+            for (int f = first; f < first + count; f++) {
+                cm.add(createFieldMetrics(f, cm));
+            }
+        }
+    }
+    
+    /**
+     * Locates the columns of a table in the mapped file, whose values are read on demand.
+     * @author Katsuhisa Maruyama
+     */
+    private static class MappedTable {
+        
+        /**
+         * The mapped file.
+         */
+        private ByteBuffer buffer;
+        
+        /**
+         * The number of rows.
+         */
+        private int rows;
+        
+        /**
+         * The offsets of the integer columns.
+         */
+        private int[] columnOffsets;
+        
+        /**
+         * The string indexes of the sorts of the metrics.
+         */
+        private int[] sorts;
+        
+        /**
+         * The offsets of the bit sets indicating the rows having metric values.
+         */
+        private int[] presenceOffsets;
+        
+        /**
+         * The offsets of the columns of metric values.
+         */
+        private int[] valueOffsets;
+        
+        /**
+         * Locates a table that starts at the current position of the mapped file, and moves the position to the end of the table.
+         * @param buffer the mapped file
+         * @param numberOfColumns the number of integer columns
+         * @param numberOfLists the number of lists
+         * @throws IOException if the file is broken
+         */
+        MappedTable(ByteBuffer buffer, int numberOfColumns, int numberOfLists) throws IOException {
+            this.buffer = buffer;
+            rows = buffer.getInt();
+            if (rows < 0) {
+                throw new IOException("broken binary snapshot");
+            }
+            
+            columnOffsets = new int[numberOfColumns];
+            for (int c = 0; c < numberOfColumns; c++) {
+                columnOffsets[c] = buffer.position();
+                skip(rows * 4);
+            }
+            
+            for (int l = 0; l < numberOfLists; l++) {
+                int size = buffer.getInt();
+                skip((rows + 1) * 4);
+                skip(size * 4);
+            }
+            
+            int count = buffer.getInt();
+            sorts = new int[count];
+            presenceOffsets = new int[count];
+            valueOffsets = new int[count];
+            for (int m = 0; m < count; m++) {
+                sorts[m] = buffer.getInt();
+                presenceOffsets[m] = buffer.position();
+                skip(BinarySnapshotFormat.getBitSetLength(rows) * 8);
+                valueOffsets[m] = buffer.position();
+                skip(rows * 8);
+            }
+        }
+        
+        /**
+         * Moves the position of the mapped file forward.
+         * @param length the number of bytes to be skipped
+         * @throws IOException if the position exceeds the end of the file
+         */
+        private void skip(int length) throws IOException {
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IOException("broken binary snapshot");
+            }
+            buffer.position(buffer.position() + length);
+        }
+        
+        /**
+         * Returns the number of rows of this table.
+         * @return the number of the rows
+         */
+        int getRows() {
+            return rows;
+        }
+        
+        /**
+         * Returns an integer property of a row.
+         * @param row the index of the row
+         * @param column the index of the column
+         * @return the value of the property
+         */
+        int get(int row, int column) {
+            return buffer.getInt(columnOffsets[column] + row * 4);
+        }
+        
+        /**
+         * Returns the number of the sorts of the metrics stored in this table.
+         * @return the number of the sorts
+         */
+        int getNumberOfMetrics() {
+            return sorts.length;
+        }
+        
+        /**
+         * Returns the string index of the sort of a metric.
+         * @param m the index of the metric column
+         * @return the string index of the sort
+         */
+        int getSort(int m) {
+            return sorts[m];
+        }
+        
+        /**
+         * Tests if a row has a metric value.
+         * @param m the index of the metric column
+         * @param row the index of the row
+         * @return <code>true</code> if the row has the metric value, otherwise <code>false</code>
+         */
+        boolean hasValue(int m, int row) {
+            long bits = buffer.getLong(presenceOffsets[m] + (row >>> 6) * 8);
+            return (bits & (1L << (row & 63))) != 0;
+        }
+        
+        /**
+         * Returns a metric value of a row.
+         * @param m the index of the metric column
+         * @param row the index of the row
+         * @return the metric value
+         */
+        double getValue(int m, int row) {
+            return buffer.getDouble(valueOffsets[m] + row * 8);
+        }
+    }
+}
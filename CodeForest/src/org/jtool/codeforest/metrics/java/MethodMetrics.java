@@ -7,6 +7,7 @@ package org.jtool.codeforest.metrics.java;
 import org.jtool.codeforest.metrics.MetricSort;
 import org.jtool.eclipse.model.java.JavaClass;
 import org.jtool.eclipse.model.java.JavaMethod;
+import java.util.Map;
 
 /**
  * An object storing metric information on a method, a constructor, or an initializer.
@@ -60,6 +61,19 @@ public class MethodMetrics extends CommonMetrics {
         collectMetricInfo();
     }
     
+    /**
+     * Creates a new object storing the same metric values as given method metrics, which shares the object representing the method.
+     * @param mm the method metrics to be copied
+     * @param cm a metrics object for a class containing this method
+     */
+    protected MethodMetrics(MethodMetrics mm, ClassMetrics cm) {
+        super();
+        
+        jmethod = mm.jmethod;
+        classMetrics = cm;
+        copyMetricValues(mm);
+    }
+    
     /**
      * Sets the code properties with respect to positions and line numbers of this method.
      * @param start the character index indicating where the code fragment for this method begins
@@ -163,15 +177,21 @@ public class MethodMetrics extends CommonMetrics {
      * Collects information on this method.
      */
     private void collectMetricInfo() {
-        metrics.put(MetricSort.LINES_OF_CODE, new Double(jmethod.getLoc()));
-        metrics.put(MetricSort.NUMBER_OF_AFFERENT_METHODS, new Double(jmethod.getCallingJavaMethods().size()));
-        metrics.put(MetricSort.NUMBER_OF_EFFERENT_METHODS, new Double(jmethod.getCalledJavaMethods().size()));
-        metrics.put(MetricSort.NUMBER_OF_AFFERENT_FIELDS, new Double(jmethod.getAccessingJavaFields().size()));
-        metrics.put(MetricSort.NUMBER_OF_EFFERENT_FIELDS, new Double(jmethod.getAccessedJavaFields().size()));
+        putMetricValue(MetricSort.LINES_OF_CODE, jmethod.getLoc());
+        if (!classMetrics.getPackageMetrics().getProjectMetrics().isSyntactic()) {
+            putMetricValue(MetricSort.NUMBER_OF_AFFERENT_METHODS, jmethod.getCallingJavaMethods().size());
+            putMetricValue(MetricSort.NUMBER_OF_EFFERENT_METHODS, jmethod.getCalledJavaMethods().size());
+            putMetricValue(MetricSort.NUMBER_OF_AFFERENT_FIELDS, jmethod.getAccessingJavaFields().size());
+            putMetricValue(MetricSort.NUMBER_OF_EFFERENT_FIELDS, jmethod.getAccessedJavaFields().size());
+        }
+        
+        putMetricValue(MetricSort.NUMBER_OF_PARAMETERS, jmethod.getNumberOfParameters());
+        putMetricValue(MetricSort.NUMBER_OF_STATEMENTS, jmethod.getNumberOfStatements());
+        putMetricValue(MetricSort.CYCLOMATIC_COMPLEXITY, jmethod.getCyclomaticNumber());
+        putMetricValue(MetricSort.MAX_NUMBER_OF_NESTING, jmethod.getMaximumNuberOfNesting());
         
-        metrics.put(MetricSort.NUMBER_OF_PARAMETERS, new Double(jmethod.getNumberOfParameters()));
-        metrics.put(MetricSort.NUMBER_OF_STATEMENTS, new Double(jmethod.getNumberOfStatements()));
-        metrics.put(MetricSort.CYCLOMATIC_COMPLEXITY, new Double(jmethod.getCyclomaticNumber()));
-        metrics.put(MetricSort.MAX_NUMBER_OF_NESTING, new Double(jmethod.getMaximumNuberOfNesting()));
+        for (Map.Entry<String, Double> entry : jmethod.getProvidedValues().entrySet()) {
+            putMetricValue(entry.getKey(), entry.getValue().doubleValue());
+        }
     }
 }
@@ -0,0 +1,207 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.metrics.MetricSort;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+
+/**
+ * An object aggregating metric values of elements into accumulators while the elements are traversed once.
+ * The metrics to be aggregated are registered for each kind of elements, together with the sorts of their total and maximum values.
+ * @author Katsuhisa Maruyama
+ */
+public class MetricAggregator {
+    
+    /**
+     * The registered metrics for respective kinds of elements.
+     * Each entry consists of the sort of a metric and the sorts of its total and maximum values.
+     */
+    private static Map<String, List<String[]>> registry = new HashMap<String, List<String[]>>();
+    
+    static {
+        register(ClassMetrics.Id, MetricSort.LINES_OF_CODE, MetricSort.TOTAL_LINE_OF_CODE, MetricSort.MAX_LINE_OF_CODE);
+        register(ClassMetrics.Id, MetricSort.NUMBER_OF_STATEMENTS, MetricSort.TOTAL_NUMBER_OF_STATEMENTS, MetricSort.MAX_NUMBER_OF_STATEMENTS);
+        register(ClassMetrics.Id, MetricSort.NUMBER_OF_METHODS, MetricSort.TOTAL_NUMBER_OF_METHODS, MetricSort.MAX_NUMBER_OF_METHODS);
+        register(ClassMetrics.Id, MetricSort.NUMBER_OF_FIELDS, MetricSort.TOTAL_NUMBER_OF_FIELDS, MetricSort.MAX_NUMBER_OF_FIELDS);
+        register(ClassMetrics.Id, MetricSort.NUMBER_OF_METHODS_AND_FIELDS, MetricSort.TOTAL_NUMBER_OF_METHODS_AND_FIELDS, MetricSort.MAX_NUMBER_OF_METHODS_AND_FIELDS);
+        register(ClassMetrics.Id, MetricSort.NUMBER_OF_PUBLIC_METHODS, MetricSort.TOTAL_NUMBER_OF_PUBLIC_METHODS, MetricSort.MAX_NUMBER_OF_PUBLIC_METHODS);
+        register(ClassMetrics.Id, MetricSort.NUMBER_OF_AFFERENT_CLASSES, MetricSort.TOTAL_NUMBER_OF_AFFERENT_CLASSES, MetricSort.MAX_NUMBER_OF_AFFERENT_CLASSES);
+        register(ClassMetrics.Id, MetricSort.NUMBER_OF_EFFERENT_CLASSES, MetricSort.TOTAL_NUMBER_OF_EFFERENT_CLASSES, MetricSort.MAX_NUMBER_OF_EFFERENT_CLASSES);
+        register(ClassMetrics.Id, MetricSort.NUMBER_OF_CHILDREN, MetricSort.TOTAL_NUMBER_OF_CHILDREN, MetricSort.MAX_NUMBER_OF_CHILDREN);
+        register(ClassMetrics.Id, MetricSort.NUMBER_OF_DESCENDANTS, MetricSort.TOTAL_NUMBER_OF_DESCENDANTS, MetricSort.MAX_NUMBER_OF_DESCENDANTS);
+        register(ClassMetrics.Id, MetricSort.DEPTH_OF_INHERITANCE_TREE, MetricSort.TOTAL_DEPTH_OF_INHERITANCE_TREE, MetricSort.MAX_DEPTH_OF_INHERITANCE_TREE);
+        register(ClassMetrics.Id, MetricSort.RESPONSE_FOR_CLASS, MetricSort.TOTAL_RESPONSE_FOR_CLASS, MetricSort.MAX_RESPONSE_FOR_CLASS);
+        register(ClassMetrics.Id, MetricSort.COUPLING_BETWEEN_OBJECTS, MetricSort.TOTAL_COUPLING_BETWEEN_OBJECTS, MetricSort.MAX_COUPLING_BETWEEN_OBJECTS);
+        register(ClassMetrics.Id, MetricSort.DIRECT_COUPLING_BETWEEN_OBJECTS, MetricSort.TOTAL_DIRECT_COUPLING_BETWEEN_OBJECTS, MetricSort.MAX_DIRECT_COUPLING_BETWEEN_OBJECTS);
+        register(ClassMetrics.Id, MetricSort.LACK_OF_COHESION_OF_METHODS, MetricSort.TOTAL_LACK_OF_COHESION_OF_METHODS, MetricSort.MAX_LACK_OF_COHESION_OF_METHODS);
+        register(ClassMetrics.Id, MetricSort.LACK_OF_COHESION_OF_METHODS_4, MetricSort.TOTAL_LACK_OF_COHESION_OF_METHODS_4, MetricSort.MAX_LACK_OF_COHESION_OF_METHODS_4);
+        register(ClassMetrics.Id, MetricSort.WEIGHTED_METHODS_PER_CLASS, MetricSort.TOTAL_WEIGHTED_METHODS_PER_CLASS, MetricSort.MAX_WEIGHTED_METHODS_PER_CLASS);
+        
+        register(MethodMetrics.Id, MetricSort.LINES_OF_CODE, MetricSort.TOTAL_LINE_OF_CODE, MetricSort.MAX_LINE_OF_CODE);
+        register(MethodMetrics.Id, MetricSort.NUMBER_OF_STATEMENTS, MetricSort.TOTAL_NUMBER_OF_STATEMENTS, MetricSort.MAX_NUMBER_OF_STATEMENTS);
+        register(MethodMetrics.Id, MetricSort.NUMBER_OF_PARAMETERS, MetricSort.TOTAL_NUMBER_OF_PARAMETERS, MetricSort.MAX_NUMBER_OF_PARAMETERS);
+        register(MethodMetrics.Id, MetricSort.CYCLOMATIC_COMPLEXITY, MetricSort.TOTAL_CYCLOMATIC_COMPLEXITY, MetricSort.MAX_CYCLOMATIC_COMPLEXITY);
+        register(MethodMetrics.Id, MetricSort.MAX_NUMBER_OF_NESTING, MetricSort.TOTAL_MAX_NUMBER_OF_NESTING, MetricSort.MAX_MAX_NUMBER_OF_NESTING);
+        register(MethodMetrics.Id, MetricSort.NUMBER_OF_AFFERENT_METHODS, MetricSort.TOTAL_NUMBER_OF_AFFERENT_METHODS, MetricSort.MAX_NUMBER_OF_AFFERENT_METHODS);
+        register(MethodMetrics.Id, MetricSort.NUMBER_OF_EFFERENT_METHODS, MetricSort.TOTAL_NUMBER_OF_EFFERENT_METHODS, MetricSort.MAX_NUMBER_OF_EFFERENT_METHODS);
+    }
+    
+    /**
+     * Registers a metric to be aggregated over elements of a given kind.
+     * @param id the identifier of the kind of the elements (e.g., <code>ClassMetrics.Id</code>)
+     * @param sort the sort of the metric
+     * @param totalSort the sort of the total value to be stored, or <code>null</code> if the total value is not stored
+     * @param maxSort the sort of the maximum value to be stored, or <code>null</code> if the maximum value is not stored
+     */
+    public static synchronized void register(String id, String sort, String totalSort, String maxSort) {
+        List<String[]> entries = registry.get(id);
+        if (entries == null) {
+            entries = new ArrayList<String[]>();
+            registry.put(id, entries);
+        }
+        entries.add(new String[] { sort, totalSort, maxSort });
+    }
+    
+    /**
+     * Returns the sort of a metric whose total or maximum value is stored with a given sort.
+     * @param id the identifier of the kind of the elements (e.g., <code>ClassMetrics.Id</code>)
+     * @param aggregateSort the sort of the total or maximum value
+     * @return the sort of the aggregated metric, or <code>null</code> if no registered metric is aggregated into the sort
+     */
+    public static synchronized String getAggregatedSort(String id, String aggregateSort) {
+        List<String[]> entries = registry.get(id);
+        if (entries != null) {
+            for (String[] entry : entries) {
+                if (aggregateSort.equals(entry[1]) || aggregateSort.equals(entry[2])) {
+                    return entry[0];
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * The sorts of the aggregated metrics.
+     */
+    private String[] sorts;
+    
+    /**
+     * The ordinal numbers of the aggregated metrics, or <code>-1</code> for metrics not registered in <code>MetricIndex</code>.
+     */
+    private int[] ordinals;
+    
+    /**
+     * The sorts of the total values to be stored.
+     */
+    private String[] totalSorts;
+    
+    /**
+     * The sorts of the maximum values to be stored.
+     */
+    private String[] maxSorts;
+    
+    /**
+     * The accumulators for respective metrics.
+     */
+    private Accumulator[] accumulators;
+    
+    /**
+     * Creates an aggregator for the metrics registered for elements of a given kind.
+     * @param id the identifier of the kind of the elements
+     */
+    public MetricAggregator(String id) {
+        List<String[]> entries;
+        synchronized (MetricAggregator.class) {
+            entries = registry.get(id);
+            if (entries != null) {
+                entries = new ArrayList<String[]>(entries);
+            } else {
+                entries = new ArrayList<String[]>();
+            }
+        }
+        
+        int size = entries.size();
+        sorts = new String[size];
+        ordinals = new int[size];
+        totalSorts = new String[size];
+        maxSorts = new String[size];
+        accumulators = new Accumulator[size];
+        for (int i = 0; i < size; i++) {
+            String[] entry = entries.get(i);
+            sorts[i] = entry[0];
+            ordinals[i] = MetricIndex.getOrdinal(entry[0]);
+            totalSorts[i] = entry[1];
+            maxSorts[i] = entry[2];
+            accumulators[i] = new Accumulator();
+        }
+    }
+    
+    /**
+     * Accumulates the metric values of an element.
+     * A metric whose value is not supported in the element is skipped.
+     * @param element the metrics object of the element
+     */
+    public void add(CommonMetrics element) {
+        for (int i = 0; i < sorts.length; i++) {
+            double value;
+            if (ordinals[i] >= 0) {
+                value = element.metrics.getValueAt(ordinals[i]);
+            } else {
+                value = element.metrics.getValue(sorts[i]);
+            }
+            
+            if (!Double.isNaN(value)) {
+                accumulators[i].add(value);
+            }
+        }
+    }
+    
+    /**
+     * Stores the total and maximum values of the aggregated metrics into a metrics object.
+     * Both values are <code>0</code> if no value of a metric was accumulated.
+     * @param target the metrics object that stores the values
+     */
+    public void store(CommonMetrics target) {
+        for (int i = 0; i < sorts.length; i++) {
+            Accumulator acc = accumulators[i];
+            if (totalSorts[i] != null) {
+                target.putMetricValue(totalSorts[i], acc.getSum());
+            }
+            if (maxSorts[i] != null) {
+                if (acc.getCount() > 0) {
+                    target.putMetricValue(maxSorts[i], acc.getMax());
+                } else {
+                    target.putMetricValue(maxSorts[i], 0);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Discards all the accumulated values.
+     */
+    public void clear() {
+        for (Accumulator acc : accumulators) {
+            acc.clear();
+        }
+    }
+    
+    /**
+     * Returns the accumulator for a metric with a given sort.
+     * @param sort the sort of the metric
+     * @return the accumulator, or <code>null</code> if the metric is not aggregated
+     */
+    public Accumulator getAccumulator(String sort) {
+        for (int i = 0; i < sorts.length; i++) {
+            if (sorts[i].equals(sort)) {
+                return accumulators[i];
+            }
+        }
+        return null;
+    }
+}
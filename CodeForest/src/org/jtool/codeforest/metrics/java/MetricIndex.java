@@ -0,0 +1,106 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.metrics.MetricSort;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A registry that assigns an ordinal number to every metric sort defined in <code>MetricSort</code>.
+ * Plain metrics are numbered first, and then total and maximum ones, so that metrics for methods and fields
+ * fit into short arrays.
+ * @author Katsuhisa Maruyama
+ */
+public class MetricIndex {
+    
+    /**
+     * The prefix of the sort of total metrics.
+     */
+    private static final String TOTAL_PREFIX = "TOTAL_";
+    
+    /**
+     * The prefix of the sort of maximum metrics.
+     */
+    private static final String MAX_PREFIX = "MAX_";
+    
+    /**
+     * The map between the sort of a metric and its ordinal number.
+     */
+    private static final Map<String, Integer> ordinals = new HashMap<String, Integer>();
+    
+    /**
+     * The sorts of metrics in order of their ordinal numbers.
+     */
+    private static final String[] sorts;
+    
+    static {
+        List<String> plain = new ArrayList<String>();
+        List<String> totals = new ArrayList<String>();
+        List<String> maxes = new ArrayList<String>();
+        
+        for (Field field : MetricSort.class.getFields()) {
+            if (field.getType() == String.class && Modifier.isStatic(field.getModifiers())) {
+                try {
+                    String sort = (String)field.get(null);
+                    if (sort.startsWith(TOTAL_PREFIX)) {
+                        totals.add(sort);
+                    } else if (sort.startsWith(MAX_PREFIX)) {
+                        maxes.add(sort);
+                    } else {
+                        plain.add(sort);
+                    }
+                } catch (IllegalAccessException e) { /* empty */ }
+            }
+        }
+        
+        List<String> all = new ArrayList<String>();
+        all.addAll(plain);
+        all.addAll(totals);
+        all.addAll(maxes);
+        
+        sorts = new String[all.size()];
+        for (String sort : all) {
+            if (!ordinals.containsKey(sort)) {
+                sorts[ordinals.size()] = sort;
+                ordinals.put(sort, new Integer(ordinals.size()));
+            }
+        }
+    }
+    
+    /**
+     * Returns the ordinal number of a metric with a given sort.
+     * @param sort the sort of the metric
+     * @return the ordinal number, or <code>-1</code> if the sort is not defined in <code>MetricSort</code>
+     */
+    public static int getOrdinal(String sort) {
+        Integer ordinal = ordinals.get(sort);
+        if (ordinal != null) {
+            return ordinal.intValue();
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the sort of a metric with a given ordinal number.
+     * @param ordinal the ordinal number of the metric
+     * @return the sort of the metric
+     */
+    public static String getSort(int ordinal) {
+        return sorts[ordinal];
+    }
+    
+    /**
+     * Returns the number of the registered metric sorts.
+     * @return the number of the metric sorts
+     */
+    public static int size() {
+        return ordinals.size();
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.metrics.IMetric;
+import org.jtool.codeforest.metrics.MetricSort;
+import org.jtool.codeforest.metrics.UnsupportedMetricsException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Normalizes values of class metrics with respect to their distribution over all the classes within a project.
+ * The average, the maximum, and a quantile sketch of each metric are calculated once per project,
+ * and each value is then normalized by a lookup into them.
+ * @author Katsuhisa Maruyama
+ */
+public class MetricNormalizer {
+    
+    /**
+     * The mode that scales a value by the average or the maximum of all the values.
+     */
+    public static final int MAX_SCALING = 0;
+    
+    /**
+     * The mode that scales a value by its percentile rank among all the values.
+     */
+    public static final int PERCENTILE_SCALING = 1;
+    
+    /**
+     * The mode that scales a value by its robust z-score, using the median and the interquartile range of all the values.
+     */
+    public static final int ROBUST_Z_SCALING = 2;
+    
+    /**
+     * The ratio of the interquartile range to the standard deviation of a normal distribution.
+     */
+    private static final double IQR_PER_DEVIATION = 1.349;
+    
+    /**
+     * The ratio of the range between the 1st and 99th percentiles to the standard deviation of a normal distribution.
+     */
+    private static final double PERCENTILE_RANGE_PER_DEVIATION = 4.653;
+    
+    /**
+     * The score at which a robust z-score is truncated.
+     */
+    private static final double MAX_SCORE = 3;
+    
+    /**
+     * The score that corresponds to the highest percentile rank.
+     */
+    private static final double MAX_RANK_SCORE = 2;
+    
+    /**
+     * The project whose class metrics are normalized.
+     */
+    private final ProjectMetrics projectMetrics;
+    
+    /**
+     * The distributions of the metrics, keyed by their names.
+     */
+    private Map<String, Distribution> distributions = new HashMap<String, Distribution>();
+    
+    /**
+     * Creates a normalizer of class metrics.
+     * @param mproject the project whose class metrics are normalized
+     */
+    public MetricNormalizer(ProjectMetrics mproject) {
+        projectMetrics = mproject;
+    }
+    
+    /**
+     * Returns the value of a metric of a class relative to the center of all the values.
+     * The value is <code>1</code> for a class at the center, and grows geometrically with the distance from it.
+     * @param metric the metric
+     * @param mclass the class
+     * @param mode the scaling mode
+     * @return the relative value, or <code>-1</code> if the value is invalid
+     * @throws UnsupportedMetricsException if the metric is not supported
+     */
+    public synchronized double getRatePerAverage(IMetric metric, ClassMetrics mclass, int mode) throws UnsupportedMetricsException {
+        double value = metric.getValue(mclass);
+        if (value < 0) {
+            return -1;
+        }
+        
+        Distribution distribution = getDistribution(metric);
+        if (mode == PERCENTILE_SCALING) {
+            double rank = distribution.getRank(metric, value);
+            return Math.pow(2, (2 * rank - 1) * MAX_RANK_SCORE);
+        }
+        if (mode == ROBUST_Z_SCALING) {
+            return Math.pow(2, distribution.getScore(metric, value));
+        }
+        
+        double average = distribution.getAverage(metric, mclass);
+        if (average != 0) {
+            return value / average;
+        }
+        return 0;
+    }
+    
+    /**
+     * Returns the value of a metric of a class scaled into the range between <code>0</code> and <code>1</code>.
+     * @param metric the metric
+     * @param mclass the class
+     * @param mode the scaling mode
+     * @return the scaled value, or <code>-1</code> if the value is invalid
+     * @throws UnsupportedMetricsException if the metric is not supported
+     */
+    public synchronized double getRatePerMax(IMetric metric, ClassMetrics mclass, int mode) throws UnsupportedMetricsException {
+        double value = metric.getValue(mclass);
+        if (value < 0) {
+            return -1;
+        }
+        
+        Distribution distribution = getDistribution(metric);
+        if (mode == PERCENTILE_SCALING) {
+            return distribution.getRank(metric, value);
+        }
+        if (mode == ROBUST_Z_SCALING) {
+            return (distribution.getScore(metric, value) + MAX_SCORE) / (2 * MAX_SCORE);
+        }
+        
+        double max = distribution.getMaximum(metric, mclass);
+        if (max != 0) {
+            return value / max;
+        }
+        return 0;
+    }
+    
+    /**
+     * Obtains the distribution of a given metric.
+     * @param metric the metric
+     * @return the distribution
+     */
+    private Distribution getDistribution(IMetric metric) {
+        Distribution distribution = distributions.get(metric.getName());
+        if (distribution == null) {
+            distribution = new Distribution();
+            distributions.put(metric.getName(), distribution);
+        }
+        return distribution;
+    }
+    
+    /**
+     * Holds the values that summarize the distribution of a metric. Each value is calculated when it is first requested.
+     * @author Katsuhisa Maruyama
+     */
+    private class Distribution {
+        
+        /**
+         * The average of the values, or <code>Double.NaN</code> if it has not been calculated.
+         */
+        private double average = Double.NaN;
+        
+        /**
+         * The maximum of the values, or <code>Double.NaN</code> if it has not been calculated.
+         */
+        private double max = Double.NaN;
+        
+        /**
+         * The sketch of the values, or <code>null</code> if it has not been built.
+         */
+        private QuantileSketch sketch = null;
+        
+        /**
+         * The median of the values.
+         */
+        private double median;
+        
+        /**
+         * The robust estimate of the standard deviation of the values.
+         */
+        private double deviation;
+        
+        /**
+         * Returns the average of the values.
+         * @param metric the metric
+         * @param mclass a class within the project
+         * @return the average
+         * @throws UnsupportedMetricsException if the total of the values is not supported
+         */
+        double getAverage(IMetric metric, ClassMetrics mclass) throws UnsupportedMetricsException {
+            if (Double.isNaN(average)) {
+                double cnum = projectMetrics.getMetricValue(MetricSort.NUMBER_OF_CLASSES);
+                average = metric.getTotalValue(mclass) / cnum;
+            }
+            return average;
+        }
+        
+        /**
+         * Returns the maximum of the values.
+         * @param metric the metric
+         * @param mclass a class within the project
+         * @return the maximum
+         * @throws UnsupportedMetricsException if the maximum of the values is not supported
+         */
+        double getMaximum(IMetric metric, ClassMetrics mclass) throws UnsupportedMetricsException {
+            if (Double.isNaN(max)) {
+                max = metric.getMaximumValue(mclass);
+            }
+            return max;
+        }
+        
+        /**
+         * Returns the percentile rank of a value.
+         * @param metric the metric
+         * @param value the value
+         * @return the rank between <code>0</code> and <code>1</code>
+         */
+        double getRank(IMetric metric, double value) {
+            buildSketch(metric);
+            if (sketch.getCount() == 0) {
+                return 0;
+            }
+            return sketch.getRank(value);
+        }
+        
+        /**
+         * Returns the robust z-score of a value, which is truncated into the range of the maximum score.
+         * @param metric the metric
+         * @param value the value
+         * @return the score
+         */
+        double getScore(IMetric metric, double value) {
+            buildSketch(metric);
+            if (deviation == 0) {
+                return 0;
+            }
+            
+            double score = (value - median) / deviation;
+            return Math.max(-MAX_SCORE, Math.min(MAX_SCORE, score));
+        }
+        
+        /**
+         * Builds the sketch of the values of all the classes within the project.
+         * @param metric the metric
+         */
+        private void buildSketch(IMetric metric) {
+            if (sketch != null) {
+                return;
+            }
+            
+            sketch = new QuantileSketch();
+            for (ClassMetrics cm : projectMetrics.getClassMetrics()) {
+                try {
+                    double value = metric.getValue(cm);
+                    if (value >= 0) {
+                        sketch.add(value);
+                    }
+                } catch (UnsupportedMetricsException e) {
+                    // Classes without the metric are not included in the distribution.
+                }
+            }
+            
+            median = 0;
+            deviation = 0;
+            if (sketch.getCount() > 0) {
+                median = sketch.getQuantile(0.5);
+                deviation = (sketch.getQuantile(0.75) - sketch.getQuantile(0.25)) / IQR_PER_DEVIATION;
+                if (deviation == 0) {
+                    deviation = (sketch.getQuantile(0.99) - sketch.getQuantile(0.01)) / PERCENTILE_RANGE_PER_DEVIATION;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.metrics.IMetricProvider;
+import org.jtool.codeforest.metrics.MetricProviderRegistry;
+import org.jtool.codeforest.metrics.UnsupportedMetricsException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Calculates the metrics of providers in an order that respects the metrics read by respective providers.
+ * The providers are divided into stages. Providers in the same stage do not depend on each other,
+ * and are applied together while the project is traversed once, processing packages in parallel.
+ * The metrics read by a provider must be either core metrics, which are collected before all the providers,
+ * or metrics of other providers. The total and maximum values are aggregated after all the providers, so they cannot be read.
+ * Lazily calculated class metrics read by a class-level provider are calculated before the provider is applied to each class.
+ * @author Katsuhisa Maruyama
+ */
+public class MetricScheduler {
+    
+    /**
+     * The stages of providers in order of calculation.
+     */
+    private List<List<IMetricProvider>> stages = new ArrayList<List<IMetricProvider>>();
+    
+    /**
+     * The map between class-level providers and the sorts of lazily calculated class metrics that they read.
+     */
+    private Map<IMetricProvider, List<String>> lazyInputs = new HashMap<IMetricProvider, List<String>>();
+    
+    /**
+     * Creates a scheduler for given providers.
+     * A provider that reads an unknown metric or a total or maximum value, or depends on itself through the metrics of other providers,
+     * is excluded together with the providers that depend on it.
+     * @param providers the collection of the providers
+     */
+    public MetricScheduler(List<IMetricProvider> providers) {
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        for (int i = 0; i < providers.size(); i++) {
+            ids.put(providers.get(i).getSort(), new Integer(i));
+        }
+        
+        int size = providers.size();
+        int[] degrees = new int[size];
+        boolean[] excluded = new boolean[size];
+        List<List<Integer>> successors = new ArrayList<List<Integer>>();
+        for (int i = 0; i < size; i++) {
+            successors.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < size; i++) {
+            IMetricProvider provider = providers.get(i);
+            String[] inputs = provider.getInputs();
+            if (inputs == null) {
+                continue;
+            }
+            
+            for (String input : inputs) {
+                Integer id = ids.get(input);
+                if (id != null) {
+                    successors.get(id.intValue()).add(new Integer(i));
+                    degrees[i]++;
+                    
+                } else if (!isCoreInput(input)) {
+                    System.err.println("Metric provider " + provider.getSort() + " reads an unavailable metric " + input + " and is excluded");
+                    excluded[i] = true;
+                    
+                } else if (provider.getLevel() == IMetricProvider.CLASS_LEVEL && ClassMetrics.isLazySort(input)) {
+                    List<String> sorts = lazyInputs.get(provider);
+                    if (sorts == null) {
+                        sorts = new ArrayList<String>();
+                        lazyInputs.put(provider, sorts);
+                    }
+                    sorts.add(input);
+                }
+            }
+        }
+        
+        List<Integer> ready = new ArrayList<Integer>();
+        for (int i = 0; i < size; i++) {
+            if (degrees[i] == 0 && !excluded[i]) {
+                ready.add(new Integer(i));
+            }
+        }
+        
+        int scheduled = 0;
+        while (ready.size() > 0) {
+            List<IMetricProvider> stage = new ArrayList<IMetricProvider>();
+            List<Integer> next = new ArrayList<Integer>();
+            for (Integer id : ready) {
+                stage.add(providers.get(id.intValue()));
+                for (Integer succ : successors.get(id.intValue())) {
+                    degrees[succ.intValue()]--;
+                    if (degrees[succ.intValue()] == 0) {
+                        next.add(succ);
+                    }
+                }
+            }
+            
+            Collections.sort(stage, new Comparator<IMetricProvider>() {
+                
+                public int compare(IMetricProvider p1, IMetricProvider p2) {
+                    return p2.getCost() - p1.getCost();
+                }
+            });
+            stages.add(stage);
+            scheduled = scheduled + stage.size();
+            ready = next;
+        }
+        
+        if (scheduled < size) {
+            for (int i = 0; i < size; i++) {
+                if (degrees[i] > 0 && !excluded[i]) {
+                    System.err.println("Metric provider " + providers.get(i).getSort() + " has cyclic or unavailable inputs and is excluded");
+                }
+            }
+        }
+    }
+    
+    /**
+     * Tests if a metric that is not calculated by any provider can be read by providers.
+     * @param sort the sort of the metric
+     * @return <code>true</code> if the metric is a core metric collected before the providers, otherwise <code>false</code>
+     */
+    private static boolean isCoreInput(String sort) {
+        if (MetricIndex.getOrdinal(sort) < 0) {
+            return false;
+        }
+        return !sort.startsWith(MetricProviderRegistry.TOTAL_PREFIX) && !sort.startsWith(MetricProviderRegistry.MAX_PREFIX);
+    }
+    
+    /**
+     * Returns the stages of providers in order of calculation.
+     * @return the collection of the stages
+     */
+    public List<List<IMetricProvider>> getStages() {
+        return stages;
+    }
+    
+    /**
+     * Calculates the metrics of the providers for all the elements in a project.
+     * Method and class metrics that are already stored are not calculated again, while package metrics are always calculated.
+     * Method metrics of classes whose members have not been loaded are not calculated, since they are loaded with their values.
+     * @param mproject the project metrics
+     */
+    public void run(ProjectMetrics mproject) {
+        for (List<IMetricProvider> stage : stages) {
+            List<IMetricProvider> methodProviders = new ArrayList<IMetricProvider>();
+            List<IMetricProvider> classProviders = new ArrayList<IMetricProvider>();
+            List<IMetricProvider> packageProviders = new ArrayList<IMetricProvider>();
+            for (IMetricProvider provider : stage) {
+                if (provider.requiresBindings() && mproject.isSyntactic()) {
+                    continue;
+                }
+                
+                if (provider.getLevel() == IMetricProvider.METHOD_LEVEL) {
+                    methodProviders.add(provider);
+                } else if (provider.getLevel() == IMetricProvider.CLASS_LEVEL) {
+                    classProviders.add(provider);
+                } else if (provider.getLevel() == IMetricProvider.PACKAGE_LEVEL) {
+                    packageProviders.add(provider);
+                }
+            }
+            
+            if (methodProviders.size() > 0 || classProviders.size() > 0 || packageProviders.size() > 0) {
+                runStage(mproject, methodProviders, classProviders, packageProviders);
+            }
+        }
+    }
+    
+    /**
+     * Calculates the metrics of providers in a stage, traversing each package in a separate task.
+     * @param mproject the project metrics
+     * @param methodProviders the providers of method metrics
+     * @param classProviders the providers of class metrics
+     * @param packageProviders the providers of package metrics
+     */
+    private void runStage(ProjectMetrics mproject, final List<IMetricProvider> methodProviders,
+            final List<IMetricProvider> classProviders, final List<IMetricProvider> packageProviders) {
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        for (final PackageMetrics pm : mproject.getPackageMetrics()) {
+            tasks.add(new Callable<Integer>() {
+                
+                /**
+                 * Calculates the metrics of a package and its classes and methods.
+                 * @return the number of the classes
+                 */
+                public Integer call() {
+                    for (ClassMetrics cm : pm.getClassMetrics()) {
+                        if (methodProviders.size() > 0 && cm.isMemberLoaded()) {
+                            for (MethodMetrics mm : cm.getMethodMetrics()) {
+                                apply(methodProviders, mm, false);
+                            }
+                        }
+                        for (IMetricProvider provider : classProviders) {
+                            List<String> sorts = lazyInputs.get(provider);
+                            if (sorts != null) {
+                                for (String sort : sorts) {
+                                    cm.evaluate(sort);
+                                }
+                            }
+                        }
+                        apply(classProviders, cm, false);
+                    }
+                    apply(packageProviders, pm, true);
+                    return new Integer(pm.getClassMetrics().size());
+                }
+            });
+        }
+        if (tasks.size() == 0) {
+            return;
+        }
+        
+        int threads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Integer> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+            
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            System.out.println("# ExecutionException because " + cause);
+            for (StackTraceElement elem : cause.getStackTrace()) {
+                System.err.println(elem.toString());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Calculates the metrics of providers for an element and stores them into the element.
+     * @param providers the providers
+     * @param element the metrics object of the element
+     * @param overwrite <code>true</code> if metric values already stored are calculated again, otherwise <code>false</code>
+     */
+    private void apply(List<IMetricProvider> providers, CommonMetrics element, boolean overwrite) {
+        for (IMetricProvider provider : providers) {
+            if (!overwrite && !Double.isNaN(element.metrics.getValue(provider.getSort()))) {
+                continue;
+            }
+            
+            try {
+                element.putMetricValue(provider.getSort(), provider.calculate(element));
+            } catch (UnsupportedMetricsException e) {
+                continue;
+            } catch (RuntimeException e) {
+                System.err.println("Metric provider " + provider.getSort() + " failed: " + e);
+            }
+        }
+    }
+}
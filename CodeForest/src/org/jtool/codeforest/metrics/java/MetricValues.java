@@ -0,0 +1,325 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A compact collection of metric values, which stores primitive values in an array indexed by <code>MetricIndex</code>.
+ * The value <code>NaN</code> in a slot indicates that the metric is not supported.
+ * Metrics whose sorts are not registered in <code>MetricIndex</code> are kept in a separate map.
+ * This object also serves as a map view of the metric names and their values.
+ * @author Katsuhisa Maruyama
+ */
+public class MetricValues extends AbstractMap<String, Double> {
+    
+    /**
+     * An empty array of metric values.
+     */
+    private static final double[] EMPTY = new double[0];
+    
+    /**
+     * The metric values indexed by the ordinal numbers of their sorts.
+     */
+    private double[] values = EMPTY;
+    
+    /**
+     * The number of the metric values stored in the array.
+     */
+    private int count = 0;
+    
+    /**
+     * The collection of metric values whose sorts are not registered, or <code>null</code> if none.
+     */
+    private Map<String, Double> others = null;
+    
+    /**
+     * Creates a new, empty collection of metric values.
+     */
+    public MetricValues() {
+        super();
+    }
+    
+    /**
+     * Returns the value of a metric with a given sort.
+     * @param sort the sort of the metric
+     * @return the metric value, or <code>NaN</code> if the value is not stored
+     */
+    public double getValue(String sort) {
+        int ordinal = MetricIndex.getOrdinal(sort);
+        if (ordinal >= 0) {
+            return getValueAt(ordinal);
+        }
+        
+        if (others != null) {
+            Double value = others.get(sort);
+            if (value != null) {
+                return value.doubleValue();
+            }
+        }
+        return Double.NaN;
+    }
+    
+    /**
+     * Stores the value of a metric with a given sort.
+     * @param sort the sort of the metric
+     * @param value the metric value
+     * @return the previous value, or <code>NaN</code> if the value was not stored
+     */
+    public double putValue(String sort, double value) {
+        int ordinal = MetricIndex.getOrdinal(sort);
+        if (ordinal >= 0) {
+            return putValueAt(ordinal, value);
+        }
+        
+        if (others == null) {
+            others = new HashMap<String, Double>();
+        }
+        Double old = others.put(sort, new Double(value));
+        if (old != null) {
+            return old.doubleValue();
+        }
+        return Double.NaN;
+    }
+    
+    /**
+     * Returns the value of a metric with a given ordinal number.
+     * @param ordinal the ordinal number of the metric sort registered in <code>MetricIndex</code>
+     * @return the metric value, or <code>NaN</code> if the value is not stored
+     */
+    public double getValueAt(int ordinal) {
+        if (ordinal < values.length) {
+            return values[ordinal];
+        }
+        return Double.NaN;
+    }
+    
+    /**
+     * Stores the value of a metric with a given ordinal number.
+     * @param ordinal the ordinal number of the metric sort registered in <code>MetricIndex</code>
+     * @param value the metric value
+     * @return the previous value, or <code>NaN</code> if the value was not stored
+     */
+    public double putValueAt(int ordinal, double value) {
+        if (ordinal >= values.length) {
+            int length = values.length;
+            values = Arrays.copyOf(values, ordinal + 1);
+            Arrays.fill(values, length, values.length, Double.NaN);
+        }
+        
+        double old = values[ordinal];
+        values[ordinal] = value;
+        if (Double.isNaN(old) && !Double.isNaN(value)) {
+            count++;
+        } else if (!Double.isNaN(old) && Double.isNaN(value)) {
+            count--;
+        }
+        return old;
+    }
+    
+    /**
+     * Returns the value of a metric with a given sort.
+     * @param key the sort of the metric
+     * @return the metric value, or <code>null</code> if the value is not stored
+     */
+    @Override
+    public Double get(Object key) {
+        if (key instanceof String) {
+            double value = getValue((String)key);
+            if (!Double.isNaN(value)) {
+                return new Double(value);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Tests if the value of a metric with a given sort is stored.
+     * @param key the sort of the metric
+     * @return <code>true</code> if the value is stored, otherwise <code>false</code>
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        if (key instanceof String) {
+            return !Double.isNaN(getValue((String)key));
+        }
+        return false;
+    }
+    
+    /**
+     * Stores the value of a metric with a given sort.
+     * @param key the sort of the metric
+     * @param value the metric value
+     * @return the previous value, or <code>null</code> if the value was not stored
+     */
+    @Override
+    public Double put(String key, Double value) {
+        double old = putValue(key, value.doubleValue());
+        if (!Double.isNaN(old)) {
+            return new Double(old);
+        }
+        return null;
+    }
+    
+    /**
+     * Removes the value of a metric with a given sort.
+     * @param key the sort of the metric
+     * @return the removed value, or <code>null</code> if the value was not stored
+     */
+    @Override
+    public Double remove(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        
+        String sort = (String)key;
+        if (MetricIndex.getOrdinal(sort) >= 0) {
+            double old = putValue(sort, Double.NaN);
+            if (!Double.isNaN(old)) {
+                return new Double(old);
+            }
+            return null;
+        }
+        
+        if (others != null) {
+            return others.remove(sort);
+        }
+        return null;
+    }
+    
+    /**
+     * Removes all the metric values.
+     */
+    @Override
+    public void clear() {
+        values = EMPTY;
+        count = 0;
+        others = null;
+    }
+    
+    /**
+     * Returns the number of the stored metric values.
+     * @return the number of the metric values
+     */
+    @Override
+    public int size() {
+        if (others != null) {
+            return count + others.size();
+        }
+        return count;
+    }
+    
+    /**
+     * Returns a set view of the stored metric values.
+     * @return the set of the pairs of metric names and their values
+     */
+    @Override
+    public Set<Map.Entry<String, Double>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Double>>() {
+            
+            public Iterator<Map.Entry<String, Double>> iterator() {
+                return new EntryIterator();
+            }
+            
+            public int size() {
+                return MetricValues.this.size();
+            }
+        };
+    }
+    
+    /**
+     * An iterator that visits the stored metric values in the array and then ones in the map.
+     */
+    private class EntryIterator implements Iterator<Map.Entry<String, Double>> {
+        
+        /**
+         * The ordinal number of the next metric value in the array.
+         */
+        private int next = 0;
+        
+        /**
+         * The ordinal number of the metric value returned last, or <code>-1</code> if none.
+         */
+        private int last = -1;
+        
+        /**
+         * The iterator for metric values whose sorts are not registered.
+         */
+        private Iterator<Map.Entry<String, Double>> rest = null;
+        
+        /**
+         * Creates an iterator.
+         */
+        EntryIterator() {
+            advance();
+        }
+        
+        /**
+         * Moves the cursor to the next stored value in the array.
+         */
+        private void advance() {
+            while (next < values.length && Double.isNaN(values[next])) {
+                next++;
+            }
+        }
+        
+        /**
+         * Tests if there is a next metric value.
+         * @return <code>true</code> if there is a next value, otherwise <code>false</code>
+         */
+        public boolean hasNext() {
+            if (next < values.length) {
+                return true;
+            }
+            if (rest == null && others != null) {
+                rest = others.entrySet().iterator();
+            }
+            return rest != null && rest.hasNext();
+        }
+        
+        /**
+         * Returns the next metric value.
+         * @return the pair of the metric name and its value
+         */
+        public Map.Entry<String, Double> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            
+            if (next < values.length) {
+                last = next;
+                Map.Entry<String, Double> entry =
+                    new AbstractMap.SimpleEntry<String, Double>(MetricIndex.getSort(next), new Double(values[next]));
+                next++;
+                advance();
+                return entry;
+            }
+            last = -1;
+            return rest.next();
+        }
+        
+        /**
+         * Removes the metric value returned last.
+         */
+        public void remove() {
+            if (last >= 0) {
+                values[last] = Double.NaN;
+                count--;
+                last = -1;
+            } else if (rest != null) {
+                rest.remove();
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+    }
+}
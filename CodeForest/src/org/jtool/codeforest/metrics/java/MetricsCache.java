@@ -0,0 +1,431 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.Activator;
+import org.jtool.codeforest.util.XMLWriter;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import org.w3c.dom.Document;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Properties;
+
+/**
+ * A persistent cache of metric values for respective Java files, which is stored in the metadata area of a project.
+ * Each entry stores the metrics of classes declared in a file, and is keyed by a hash of the file content and the classpath of the project.
+ * The entries are written in the same XML format as the exported metric values.
+ * @author Katsuhisa Maruyama
+ */
+public class MetricsCache {
+    
+    /**
+     * The name of the directory storing the cache entries.
+     */
+    private static final String CACHE_DIRNAME = "cache";
+    
+    /**
+     * The name of the file storing the keys for respective files.
+     */
+    private static final String INDEX_FILENAME = "index.properties";
+    
+    /**
+     * The extension of the name of a file storing a cache entry.
+     */
+    private static final String ENTRY_FILENAME_EXT = ".xml";
+    
+    /**
+     * The directory storing the cache entries.
+     */
+    private File dir;
+    
+    /**
+     * The fingerprint of the classpath, the compiler options, and the analysis mode of the project.
+     */
+    private String fingerprint;
+    
+    /**
+     * The keys for respective files, which were recorded in the previous build.
+     */
+    private Properties previousIndex = new Properties();
+    
+    /**
+     * The keys for respective files, which are recorded in the current build.
+     */
+    private Properties currentIndex = new Properties();
+    
+    /**
+     * Creates a cache for a project.
+     * @param project the project
+     */
+    public MetricsCache(IJavaProject project) {
+        this(project, false);
+    }
+    
+    /**
+     * Creates a cache for a project.
+     * Entries created without resolving bindings are distinguished from those created with resolved bindings.
+     * @param project the project
+     * @param syntactic <code>true</code> if the entries are created without resolving bindings, otherwise <code>false</code>
+     */
+    public MetricsCache(IJavaProject project, boolean syntactic) {
+        IPath location = project.getProject().getWorkingLocation(Activator.PLUGIN_ID);
+        dir = location.append(CACHE_DIRNAME).toFile();
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        
+        fingerprint = createFingerprint(project, syntactic);
+        readIndex();
+    }
+    
+    /**
+     * Creates the fingerprint of the classpath, the compiler options, and the analysis mode of a project.
+     * @param project the project
+     * @param syntactic <code>true</code> if bindings are not resolved, otherwise <code>false</code>
+     * @return the fingerprint
+     */
+    private String createFingerprint(IJavaProject project, boolean syntactic) {
+        StringBuffer buf = new StringBuffer();
+        buf.append(syntactic ? "syntactic" : "resolved");
+        buf.append(project.getOption(JavaCore.COMPILER_COMPLIANCE, true));
+        buf.append(project.getOption(JavaCore.COMPILER_SOURCE, true));
+        try {
+            for (IClasspathEntry entry : project.getRawClasspath()) {
+                buf.append("\n");
+                buf.append(entry.toString());
+            }
+        } catch (JavaModelException e) {
+            System.err.println("Cache: classpath error occurred: " + e.getMessage() + ".");
+        }
+        return digest(buf.toString());
+    }
+    
+    /**
+     * Returns the key for a compilation unit.
+     * @param icu the compilation unit
+     * @return the key
+     * @throws JavaModelException if the content of the compilation unit cannot be obtained
+     */
+    public String getKey(ICompilationUnit icu) throws JavaModelException {
+        return digest(fingerprint + "\n" + icu.getSource());
+    }
+    
+    /**
+     * Returns the key for a file, which was recorded in the previous build.
+     * @param path the path of the file
+     * @return the key, or <code>null</code> if no key was recorded
+     */
+    public String getPreviousKey(String path) {
+        return previousIndex.getProperty(path);
+    }
+    
+    /**
+     * Returns the paths of files recorded in the previous build.
+     * @return the collection of the paths
+     */
+    public Set<String> getPreviousPaths() {
+        return previousIndex.stringPropertyNames();
+    }
+    
+    /**
+     * Tests if this cache contains an entry with a given key.
+     * @param key the key of the entry
+     * @return <code>true</code> if the entry exists, otherwise <code>false</code>
+     */
+    public boolean contains(String key) {
+        return key != null && getEntryFile(key).canRead();
+    }
+    
+    /**
+     * Records the key for a file in the current build.
+     * @param path the path of the file
+     * @param key the key
+     */
+    public void record(String path, String key) {
+        currentIndex.setProperty(path, key);
+    }
+    
+    /**
+     * Stores the metrics of classes declared in a file.
+     * An entry is stored even if the file declares no class, so that the file is not parsed again while it is unchanged.
+     * @param key the key of the entry
+     * @param mproject the project metrics
+     * @param classes the collection of the class metrics, which is empty if the file declares no class
+     * @return <code>true</code> if the entry was stored, otherwise <code>false</code>
+     */
+    public boolean store(String key, ProjectMetrics mproject, List<ClassMetrics> classes) {
+        PackageMetrics mpackage = null;
+        if (classes.size() > 0) {
+            mpackage = classes.get(0).getPackageMetrics();
+        }
+        
+        Document doc = ForestDataExporter.getDocument(mproject, mpackage, classes);
+        if (doc == null) {
+            return false;
+        }
+        XMLWriter.write(getEntryFile(key), doc);
+        return true;
+    }
+    
+    /**
+     * Loads the metrics of classes stored in an entry into project metrics.
+     * @param key the key of the entry
+     * @param mproject the project metrics into which the metrics are loaded
+     * @return the collection of the loaded class metrics
+     */
+    public List<ClassMetrics> load(String key, ProjectMetrics mproject) {
+        ForestDataImporter handler = new ForestDataImporter(mproject);
+        if (parse(key, handler)) {
+            return handler.getImportedClasses();
+        }
+        return new ArrayList<ClassMetrics>();
+    }
+    
+    /**
+     * Reads the names of classes declared in and related to an entry without loading its metrics.
+     * @param key the key of the entry
+     * @return the summary of the entry
+     */
+    public Summary readSummary(String key) {
+        SummaryHandler handler = new SummaryHandler();
+        parse(key, handler);
+        return handler.summary;
+    }
+    
+    /**
+     * Parses an entry.
+     * @param key the key of the entry
+     * @param handler the handler receiving the contents of the entry
+     * @return <code>true</code> if the parsing succeeded, otherwise <code>false</code>
+     */
+    private boolean parse(String key, DefaultHandler handler) {
+        File file = getEntryFile(key);
+        if (!file.canRead()) {
+            return false;
+        }
+        
+        try {
+            SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+            parser.parse(file, handler);
+            return true;
+            
+        } catch (ParserConfigurationException e) {
+            System.err.println("Cache: read error occurred: " + e.getMessage() + ".");
+        } catch (SAXException e) {
+            System.err.println("Cache: read error occurred: " + e.getMessage() + ".");
+        } catch (IOException e) {
+            System.err.println("Cache: read error occurred: " + e.getMessage() + ".");
+        }
+        return false;
+    }
+    
+    /**
+     * Saves the keys recorded in the current build and deletes the entries that are no longer recorded.
+     */
+    public void save() {
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(new File(dir, INDEX_FILENAME));
+            currentIndex.store(out, "CodeForest metrics cache");
+        } catch (IOException e) {
+            System.err.println("Cache: write error occurred: " + e.getMessage() + ".");
+        } finally {
+            close(out);
+        }
+        
+        Set<String> keys = new HashSet<String>();
+        for (String path : currentIndex.stringPropertyNames()) {
+            keys.add(currentIndex.getProperty(path) + ENTRY_FILENAME_EXT);
+        }
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(ENTRY_FILENAME_EXT) && !keys.contains(file.getName())) {
+                    file.delete();
+                }
+            }
+        }
+        
+        previousIndex = currentIndex;
+        currentIndex = new Properties();
+    }
+    
+    /**
+     * Reads the keys recorded in the previous build.
+     */
+    private void readIndex() {
+        File file = new File(dir, INDEX_FILENAME);
+        if (!file.canRead()) {
+            return;
+        }
+        
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            previousIndex.load(in);
+        } catch (IOException e) {
+            System.err.println("Cache: read error occurred: " + e.getMessage() + ".");
+            previousIndex.clear();
+        } finally {
+            close(in);
+        }
+    }
+    
+    /**
+     * Returns the file storing an entry.
+     * @param key the key of the entry
+     * @return the file
+     */
+    private File getEntryFile(String key) {
+        return new File(dir, key + ENTRY_FILENAME_EXT);
+    }
+    
+    /**
+     * Closes a stream quietly.
+     * @param stream the stream to be closed
+     */
+    private static void close(java.io.Closeable stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) { /* empty */ }
+        }
+    }
+    
+    /**
+     * Calculates the SHA-1 hash of a string.
+     * @param str the string
+     * @return the hexadecimal representation of the hash
+     */
+    private static String digest(String str) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] hash = md.digest(str.getBytes("UTF-8"));
+            
+            StringBuffer buf = new StringBuffer();
+            for (byte b : hash) {
+                buf.append(Character.forDigit((b >> 4) & 0xf, 16));
+                buf.append(Character.forDigit(b & 0xf, 16));
+            }
+            return buf.toString();
+            
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * The names of classes declared in and related to a cache entry.
+     */
+    public static class Summary {
+        
+        /**
+         * The fully-qualified names of classes declared in the file.
+         */
+        public Set<String> declaredNames = new HashSet<String>();
+        
+        /**
+         * The fully-qualified names of afferent and efferent classes of the declared classes.
+         */
+        public Set<String> relatedNames = new HashSet<String>();
+        
+        /**
+         * The map between the declared classes and their super classes.
+         */
+        public Map<String, String> superClassNames = new HashMap<String, String>();
+    }
+    
+    /**
+     * A handler that reads the summary of a cache entry.
+     */
+    private static class SummaryHandler extends DefaultHandler {
+        
+        /**
+         * The summary being read.
+         */
+        private Summary summary = new Summary();
+        
+        /**
+         * The fully-qualified name of the current class, or <code>null</code> outside classes.
+         */
+        private String className = null;
+        
+        /**
+         * The depth of nesting of method and field elements.
+         */
+        private int memberDepth = 0;
+        
+        /**
+         * Receive notification of the start of an element.
+         * @param uri the namespace's URI
+         * @param name the local name without prefix
+         * @param qname the qualified name with prefix
+         * @param attrs the attributes attached to the element
+         */
+        public void startElement(String uri, String name, String qname, Attributes attrs) {
+            if (qname.equals(MetricsManager.ClassElem)) {
+                className = attrs.getValue(MetricsManager.FqnAttr);
+                if (className != null) {
+                    summary.declaredNames.add(className);
+                }
+                
+            } else if (qname.equals(MetricsManager.MethodElem) || qname.equals(MetricsManager.FieldElem)) {
+                memberDepth++;
+                
+            } else if (className != null && memberDepth == 0) {
+                String fqn = attrs.getValue(MetricsManager.FqnAttr);
+                if (fqn == null) {
+                    return;
+                }
+                
+                if (qname.equals(MetricsManager.SuperClassElem)) {
+                    summary.superClassNames.put(className, fqn);
+                } else if (qname.equals(MetricsManager.AfferentElem) || qname.equals(MetricsManager.EfferentElem)) {
+                    summary.relatedNames.add(fqn);
+                }
+            }
+        }
+        
+        /**
+         * Receive notification of the end of an element.
+         * @param uri the namespace's URI
+         * @param name the local name without prefix
+         * @param qname the qualified name with prefix
+         */
+        public void endElement(String uri, String name, String qname) {
+            if (qname.equals(MetricsManager.ClassElem)) {
+                className = null;
+            } else if (qname.equals(MetricsManager.MethodElem) || qname.equals(MetricsManager.FieldElem)) {
+                memberDepth--;
+            }
+        }
+    }
+}
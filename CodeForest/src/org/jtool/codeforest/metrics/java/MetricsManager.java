@@ -4,15 +4,21 @@
 
 package org.jtool.codeforest.metrics.java;
 
-import org.jtool.codeforest.util.XMLWriter;
 import org.jtool.eclipse.model.java.JavaProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.swt.widgets.Display;
 import org.xml.sax.SAXException;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
-import org.w3c.dom.Document;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * An object that manages metric values within a project.
@@ -22,6 +28,7 @@ public class MetricsManager {
     
     private static final String XML_FILENAME = "codeforest";
     private static final String XML_FILENAME_EXT = ".xml";
+    private static final String BINARY_FILENAME_EXT = ".cfb";
     
     public static final String TopElem = "codeForest";
     
@@ -67,12 +74,180 @@ public class MetricsManager {
     public static final String BottomLineNumberAttr = "bottom";
     public static final String ExtendedBottomLineNumberAttr = "exbottom";
     
+    /**
+     * The number of threads that calculate metric values in parallel.
+     */
+    private int threads = 1;
+    
+    /**
+     * A flag indicating whether metric values are updated incrementally when the project is changed.
+     */
+    private boolean incremental = false;
+    
+    /**
+     * A flag indicating whether metric values of unchanged files are reused from a cache.
+     */
+    private boolean cacheEnabled = false;
+    
+    /**
+     * A flag indicating whether Java files are parsed without resolving bindings.
+     */
+    private boolean syntactic = false;
+    
+    /**
+     * A flag indicating whether Java files are parsed and measured one by one without building the whole model of the project.
+     */
+    private boolean pipeline = false;
+    
+    /**
+     * A flag indicating whether packages are handed over to a forest as soon as their metric values are collected.
+     */
+    private boolean progressive = false;
+    
+    /**
+     * A flag indicating whether files storing metric values are written compressed in the gzip format.
+     */
+    private boolean compressed = false;
+    
     /**
      * Creates a new, empty object.
      */
     public MetricsManager() {
     }
     
+    /**
+     * Sets the number of threads that calculate metric values in parallel.
+     * @param threads the number of threads, or <code>1</code> for the sequential calculation
+     */
+    public void setNumberOfThreads(int threads) {
+        if (threads > 0) {
+            this.threads = threads;
+        }
+    }
+    
+    /**
+     * Returns the number of threads that calculate metric values in parallel.
+     * @return the number of threads
+     */
+    public int getNumberOfThreads() {
+        return threads;
+    }
+    
+    /**
+     * Sets whether metric values are updated incrementally when the project is changed.
+     * @param incremental <code>true</code> if the metric values are updated incrementally, otherwise <code>false</code>
+     */
+    public void setIncrementalMode(boolean incremental) {
+        this.incremental = incremental;
+    }
+    
+    /**
+     * Tests if metric values are updated incrementally when the project is changed.
+     * @return <code>true</code> if the metric values are updated incrementally, otherwise <code>false</code>
+     */
+    public boolean isIncrementalMode() {
+        return incremental;
+    }
+    
+    /**
+     * Sets whether metric values of unchanged files are reused from a cache stored in the metadata area of the project.
+     * @param enabled <code>true</code> if the cache is used, otherwise <code>false</code>
+     */
+    public void setCacheEnabled(boolean enabled) {
+        this.cacheEnabled = enabled;
+    }
+    
+    /**
+     * Tests if metric values of unchanged files are reused from a cache.
+     * @return <code>true</code> if the cache is used, otherwise <code>false</code>
+     */
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+    
+    /**
+     * Sets whether Java files are parsed without resolving bindings.
+     * The syntactic mode is much faster, but metrics depending on relations between classes, methods, and fields are not supported.
+     * @param syntactic <code>true</code> if the bindings are not resolved, otherwise <code>false</code>
+     */
+    public void setSyntacticMode(boolean syntactic) {
+        this.syntactic = syntactic;
+    }
+    
+    /**
+     * Tests if Java files are parsed without resolving bindings.
+     * @return <code>true</code> if the bindings are not resolved, otherwise <code>false</code>
+     */
+    public boolean isSyntacticMode() {
+        return syntactic;
+    }
+    
+    /**
+     * Sets whether Java files are parsed and measured one by one without building the whole model of the project.
+     * In the pipeline mode, the ASTs of files are released as soon as their metric values are collected.
+     * @param pipeline <code>true</code> if the files are measured one by one, otherwise <code>false</code>
+     */
+    public void setPipelineMode(boolean pipeline) {
+        this.pipeline = pipeline;
+    }
+    
+    /**
+     * Tests if Java files are parsed and measured one by one without building the whole model of the project.
+     * @return <code>true</code> if the files are measured one by one, otherwise <code>false</code>
+     */
+    public boolean isPipelineMode() {
+        return pipeline;
+    }
+    
+    /**
+     * Sets whether packages are handed over to a forest as soon as their metric values are collected in the background.
+     * @param progressive <code>true</code> if the packages are handed over one by one, otherwise <code>false</code>
+     */
+    public void setProgressiveMode(boolean progressive) {
+        this.progressive = progressive;
+    }
+    
+    /**
+     * Tests if packages are handed over to a forest as soon as their metric values are collected in the background.
+     * @return <code>true</code> if the packages are handed over one by one, otherwise <code>false</code>
+     */
+    public boolean isProgressiveMode() {
+        return progressive;
+    }
+    
+    /**
+     * Sets whether files storing metric values are written compressed in the gzip format.
+     * Compressed files are always read regardless of this setting.
+     * @param compressed <code>true</code> if the files are compressed, otherwise <code>false</code>
+     */
+    public void setCompressionEnabled(boolean compressed) {
+        this.compressed = compressed;
+    }
+    
+    /**
+     * Tests if files storing metric values are written compressed in the gzip format.
+     * @return <code>true</code> if the files are compressed, otherwise <code>false</code>
+     */
+    public boolean isCompressionEnabled() {
+        return compressed;
+    }
+    
+    /**
+     * Creates an object that updates metric values when a project is changed.
+     * @param project the project to be watched
+     * @param mproject the metrics of the project
+     * @param display the display on which the metric values are updated
+     * @return the updater, or <code>null</code> if the incremental mode is off
+     */
+    public IncrementalMetricsUpdater createUpdater(IJavaProject project, ProjectMetrics mproject, Display display) {
+        if (incremental && project != null && mproject != null) {
+            IncrementalMetricsUpdater updater = new IncrementalMetricsUpdater(project, mproject, display);
+            updater.setNumberOfThreads(threads);
+            return updater;
+        }
+        return null;
+    }
+    
     /**
      * Collects metric values within a project and returns an object storing these values.
      * @param jproject the project whose metric values are collected
@@ -80,7 +255,38 @@ public class MetricsManager {
      */
     public ProjectMetrics create(JavaProject jproject) {
         if (jproject != null) {
-            return new ProjectMetrics(jproject);
+            return new ProjectMetrics(jproject, threads, syntactic);
+        }
+        return null;
+    }
+    
+    /**
+     * Collects metric values within a project by parsing its Java files one by one.
+     * The cached metric values of unchanged files are reused if the cache is enabled.
+     * The files are parsed by as many threads as the number of threads set to this manager.
+     * @param project the project whose metric values are collected
+     * @return the project metric, or <code>null</code> if the creation fails
+     */
+    public ProjectMetrics create(IJavaProject project) {
+        if (project != null) {
+            CachedMetricsBuilder builder = new CachedMetricsBuilder(project, syntactic, cacheEnabled);
+            builder.setNumberOfThreads(threads);
+            return builder.build();
+        }
+        return null;
+    }
+    
+    /**
+     * Creates an object that collects metric values within a project in the background and hands over each package as soon as its files are measured.
+     * @param project the project whose metric values are collected
+     * @param display the display on which the metric values are collected
+     * @return the builder, or <code>null</code> if the project is not given
+     */
+    public ProgressiveMetricsBuilder createProgressive(IJavaProject project, Display display) {
+        if (project != null) {
+            ProgressiveMetricsBuilder builder = new ProgressiveMetricsBuilder(project, syntactic, cacheEnabled, display);
+            builder.setNumberOfThreads(threads);
+            return builder;
         }
         return null;
     }
@@ -96,6 +302,7 @@ public class MetricsManager {
     
     /**
      * Imports metric values within a project and returns an object storing these values.
+     * The file is decompressed if it is compressed in the gzip format.
      * @param path the path of the file storing metric values
      * @return the project metric, or <code>null</code> if the creation fails
      */
@@ -103,10 +310,12 @@ public class MetricsManager {
         File file = new File(path);
         if (file.canRead()) {
             SAXParserFactory factory = SAXParserFactory.newInstance();
+            InputStream in = null;
             try {
                 SAXParser parser = factory.newSAXParser();
                 ForestDataImporter handler = new ForestDataImporter(path);
-                parser.parse(file, handler);
+                in = new BufferedInputStream(SnapshotCompression.openInputStream(file), SnapshotCompression.BUFFER_SIZE);
+                parser.parse(in, handler);
                 return handler.getProjectMetrics();
                 
             } catch (ParserConfigurationException e) {
@@ -115,13 +324,94 @@ public class MetricsManager {
                 e.printStackTrace();
             } catch (IOException e) {
                 e.printStackTrace();
+            } finally {
+                BinarySnapshotFormat.close(in);
             }
         }
         return null;
     }
     
     /**
-     * Exports metric values within a project.
+     * Imports metric values within a project from either an XML file or a binary file, which may be compressed in the gzip format.
+     * The binary file written alongside an XML file is imported instead of the XML file if it is not older than the XML file.
+     * @param path the path of the file storing metric values
+     * @return the project metric, or <code>null</code> if the creation fails
+     */
+    public ProjectMetrics read(String path) {
+        File file = new File(path);
+        if (BinarySnapshotFormat.isBinary(file)) {
+            return readBinary(path);
+        }
+        
+        File binaryFile = getBinaryFile(file);
+        if (binaryFile != null && binaryFile.lastModified() >= file.lastModified() && BinarySnapshotFormat.isBinary(binaryFile)) {
+            ProjectMetrics mproject = readBinary(binaryFile.getPath());
+            if (mproject != null) {
+                return mproject;
+            }
+        }
+        return readXMLInParallel(path);
+    }
+    
+    /**
+     * Returns the binary file written alongside an XML file.
+     * @param file the XML file
+     * @return the binary file, or <code>null</code> if the XML file does not have the extension of XML files
+     */
+    private File getBinaryFile(File file) {
+        String name = file.getName();
+        String ext = XML_FILENAME_EXT;
+        if (name.endsWith(XML_FILENAME_EXT + SnapshotCompression.GZIP_FILENAME_EXT)) {
+            ext = XML_FILENAME_EXT + SnapshotCompression.GZIP_FILENAME_EXT;
+        } else if (!name.endsWith(XML_FILENAME_EXT)) {
+            return null;
+        }
+        
+        String base = name.substring(0, name.length() - ext.length());
+        File binaryFile = new File(file.getParentFile(), base + ext.replace(XML_FILENAME_EXT, BINARY_FILENAME_EXT));
+        if (binaryFile.isFile()) {
+            return binaryFile;
+        }
+        return null;
+    }
+    
+    /**
+     * Imports metric values within a project from an XML file, parsing its package elements in parallel.
+     * A compressed file is parsed sequentially since the offsets of its package elements are unknown.
+     * @param path the path of the XML file storing metric values
+     * @return the project metric, or <code>null</code> if the creation fails
+     */
+    public ProjectMetrics readXMLInParallel(String path) {
+        File file = new File(path);
+        if (SnapshotCompression.isCompressed(file)) {
+            return readXML(path);
+        }
+        if (file.canRead()) {
+            return ParallelForestDataImporter.read(path);
+        }
+        return null;
+    }
+    
+    /**
+     * Imports metric values within a project from a binary file.
+     * The file is mapped into memory, and the metrics of methods and fields are created on first access to them.
+     * A compressed file is decompressed and read at once since it cannot be mapped.
+     * @param path the path of the binary file storing metric values
+     * @return the project metric, or <code>null</code> if the creation fails
+     */
+    public ProjectMetrics readBinary(String path) {
+        File file = new File(path);
+        if (SnapshotCompression.isCompressed(file)) {
+            return ForestDataBinaryImporter.read(path);
+        }
+        if (file.canRead()) {
+            return MappedSnapshotReader.read(path);
+        }
+        return null;
+    }
+    
+    /**
+     * Exports metric values within a project into an XML file and a binary file alongside it.
      * @param mproject the project metrics
      */
     public void writeXML(ProjectMetrics mproject) {
@@ -129,20 +419,132 @@ public class MetricsManager {
     }
     
     /**
-     * Exports metric values within a project.
+     * Exports metric values within a project in a background job, so that the user-interface thread is not blocked.
+     * @param mproject the project metrics, which must not be modified after this method is called
+     */
+    public void writeXMLInBackground(final ProjectMetrics mproject) {
+        Job job = new Job("Code Forest: exporting metrics") {
+            
+            /**
+             * Exports the metric values.
+             * @param monitor the progress monitor to use to display progress and receive requests for cancellation
+             * @return the result of the execution
+             */
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                writeXML(mproject);
+                return Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        job.schedule();
+    }
+    
+    /**
+     * Exports metric values within a project into an XML file and a binary file alongside it.
+     * Both files are written from the same snapshot, and the binary file is imported instead of the XML file when it is opened.
      * @param topdir the path of the top directory for the project
      * @param mproject the project metrics
      */
     public void writeXML(String topdir, ProjectMetrics mproject) {
-        String filename = XML_FILENAME + String.valueOf(mproject.getTime()) + XML_FILENAME_EXT;
+        MetricsSnapshot snapshot = mproject.getCompleteSnapshot();
+        writeXML(topdir, snapshot);
+        writeBinary(topdir, snapshot);
+    }
+    
+    /**
+     * Exports metric values within a project from its snapshot into an XML file.
+     * @param topdir the path of the top directory for the project
+     * @param snapshot the snapshot of the project metrics
+     */
+    private void writeXML(String topdir, MetricsSnapshot snapshot) {
+        String filename = XML_FILENAME + String.valueOf(snapshot.getTime()) + XML_FILENAME_EXT + getCompressionExtension();
         File file = new File(topdir + File.separator + filename);
         
         if (file.exists()) {
             file.delete();
         }
         
-        Document doc = ForestDataExporter.getDocument(mproject);
-        XMLWriter.write(file, doc);
+        ForestDataExporter.write(file, snapshot);
         System.out.println("- Export metric values to xml file: " + file.getAbsolutePath());
     }
+    
+    /**
+     * Exports metric values within a project into a binary file.
+     * @param mproject the project metrics
+     */
+    public void writeBinary(ProjectMetrics mproject) {
+        writeBinary(mproject.getJavaProject().getTopDir(), mproject);
+    }
+    
+    /**
+     * Exports metric values within a project into a binary file.
+     * @param topdir the path of the top directory for the project
+     * @param mproject the project metrics
+     */
+    public void writeBinary(String topdir, ProjectMetrics mproject) {
+        writeBinary(topdir, mproject.getCompleteSnapshot());
+    }
+    
+    /**
+     * Exports metric values within a project from its snapshot into a binary file.
+     * @param topdir the path of the top directory for the project
+     * @param snapshot the snapshot of the project metrics
+     */
+    private void writeBinary(String topdir, MetricsSnapshot snapshot) {
+        String filename = XML_FILENAME + String.valueOf(snapshot.getTime()) + BINARY_FILENAME_EXT + getCompressionExtension();
+        File file = new File(topdir + File.separator + filename);
+        
+        if (file.exists()) {
+            file.delete();
+        }
+        
+        ForestDataBinaryExporter.write(file, snapshot);
+        System.out.println("- Export metric values to binary file: " + file.getAbsolutePath());
+    }
+    
+    /**
+     * Returns the extension appended to the names of files storing metric values.
+     * @return the extension of gzip files if the files are compressed, otherwise an empty string
+     */
+    private String getCompressionExtension() {
+        if (compressed) {
+            return SnapshotCompression.GZIP_FILENAME_EXT;
+        }
+        return "";
+    }
+    
+    /**
+     * Converts an XML file storing metric values into a binary file.
+     * The binary file is compressed if its path ends with <code>".gz"</code>.
+     * @param xmlPath the path of the XML file
+     * @param binaryPath the path of the binary file
+     * @return <code>true</code> if the conversion succeeded, otherwise <code>false</code>
+     */
+    public boolean convertXMLToBinary(String xmlPath, String binaryPath) {
+        ProjectMetrics mproject = readXML(xmlPath);
+        if (mproject == null) {
+            return false;
+        }
+        
+        ForestDataBinaryExporter.write(new File(binaryPath), mproject);
+        return true;
+    }
+    
+    /**
+     * Converts a binary file storing metric values into an XML file.
+     * The XML file is compressed if its path ends with <code>".gz"</code>.
+     * @param binaryPath the path of the binary file
+     * @param xmlPath the path of the XML file
+     * @return <code>true</code> if the conversion succeeded, otherwise <code>false</code>
+     */
+    public boolean convertBinaryToXML(String binaryPath, String xmlPath) {
+        ProjectMetrics mproject = readBinary(binaryPath);
+        if (mproject == null) {
+            return false;
+        }
+        
+        ForestDataExporter.write(new File(xmlPath), mproject);
+        return true;
+    }
 }
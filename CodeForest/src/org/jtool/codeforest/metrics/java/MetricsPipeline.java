@@ -0,0 +1,372 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.eclipse.model.java.JavaClass;
+import org.jtool.eclipse.model.java.JavaFile;
+import org.jtool.eclipse.model.java.JavaPackage;
+import org.jtool.eclipse.model.java.JavaProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTRequestor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Parses Java files and collects the metrics of classes declared in them with bounded memory.
+ * Parser threads parse the files in batches and pass their ASTs to the collecting thread through bounded queues.
+ * Each parser thread takes every n-th batch, and the collecting thread takes the batches in the order of the files,
+ * so that the files are collected in the same order regardless of the number of the parser threads.
+ * The collecting thread stores the metrics of each file into the project metrics and releases its AST immediately,
+ * so that the number of ASTs alive at the same time does not depend on the size of the project.
+ * @author Katsuhisa Maruyama
+ */
+public class MetricsPipeline {
+    
+    /**
+     * The number of files parsed with a single parser, which share the environment of resolved bindings.
+     */
+    private static final int BATCH_SIZE = 100;
+    
+    /**
+     * The maximum number of ASTs waiting to be collected, which is shared among the parser threads.
+     */
+    private static final int QUEUE_CAPACITY = 16;
+    
+    /**
+     * The interval in milliseconds for checking cancellation while waiting for the queue.
+     */
+    private static final long POLLING_INTERVAL = 100;
+    
+    /**
+     * The item indicating that all the files in a batch were parsed.
+     */
+    private static final ParsedUnit END = new ParsedUnit(null, null);
+    
+    /**
+     * The project containing the files.
+     */
+    private IJavaProject project;
+    
+    /**
+     * A flag indicating whether Java files are parsed without resolving bindings.
+     */
+    private boolean syntactic;
+    
+    /**
+     * The number of threads that parse the files in parallel.
+     */
+    private int threads = 1;
+    
+    /**
+     * The queues of ASTs passed from the respective parser threads to the collecting thread.
+     */
+    private List<BlockingQueue<ParsedUnit>> queues = new ArrayList<BlockingQueue<ParsedUnit>>();
+    
+    /**
+     * A flag indicating whether the parser threads must stop.
+     */
+    private volatile boolean stopped = false;
+    
+    /**
+     * The exception thrown in any of the parser threads.
+     */
+    private volatile RuntimeException failure = null;
+    
+    /**
+     * The handler that receives packages whose files were all measured, or <code>null</code> if packages are not handed over.
+     */
+    private PackageHandler packageHandler = null;
+    
+    /**
+     * The map between the names of packages and their metrics created during the current run.
+     */
+    private Map<String, PackageMetrics> packages = new HashMap<String, PackageMetrics>();
+    
+    /**
+     * The metrics of the package containing the most recently collected file.
+     */
+    private PackageMetrics collectedPackage = null;
+    
+    /**
+     * Creates a pipeline for a project.
+     * @param project the project containing the files
+     * @param syntactic <code>true</code> if Java files are parsed without resolving bindings, otherwise <code>false</code>
+     */
+    public MetricsPipeline(IJavaProject project, boolean syntactic) {
+        this.project = project;
+        this.syntactic = syntactic;
+    }
+    
+    /**
+     * Sets the number of threads that parse the files in parallel.
+     * @param threads the number of threads, or <code>1</code> for a single parser thread
+     */
+    public void setNumberOfThreads(int threads) {
+        if (threads > 0) {
+            this.threads = threads;
+        }
+    }
+    
+    /**
+     * Sets the handler that receives packages whose files were all measured.
+     * If the handler is set, packages are not added to the project metrics by this pipeline but handed over to the handler,
+     * which is notified when a file in another package is collected. The files must therefore be sorted by their packages.
+     * @param handler the handler, or <code>null</code> if packages are added to the project metrics directly
+     */
+    public void setPackageHandler(PackageHandler handler) {
+        this.packageHandler = handler;
+    }
+    
+    /**
+     * Parses Java files and stores the metrics of classes declared in them into project metrics.
+     * @param icus the compilation units of the files
+     * @param mproject the project metrics into which the metrics are stored
+     * @param monitor the progress monitor
+     * @return the map between the paths of the parsed files and the metrics of the classes declared in them
+     * @throws InvocationTargetException if the parsing fails
+     * @throws InterruptedException if the parsing is canceled
+     */
+    public Map<String, List<ClassMetrics>> run(final List<ICompilationUnit> icus, ProjectMetrics mproject, IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
+        Map<String, List<ClassMetrics>> results = new LinkedHashMap<String, List<ClassMetrics>>();
+        if (icus.size() == 0) {
+            return results;
+        }
+        
+        int batches = (icus.size() + BATCH_SIZE - 1) / BATCH_SIZE;
+        final int parsers = Math.min(threads, batches);
+        queues.clear();
+        for (int i = 0; i < parsers; i++) {
+            queues.add(new ArrayBlockingQueue<ParsedUnit>(Math.max(QUEUE_CAPACITY / parsers, 2)));
+        }
+        stopped = false;
+        failure = null;
+        packages.clear();
+        collectedPackage = null;
+        PackageMetrics currentPackage = null;
+        
+        for (int i = 0; i < parsers; i++) {
+            final int first = i;
+            Thread parserThread = new Thread(new Runnable() {
+                
+                /**
+                 * Parses every n-th batch of the files.
+                 */
+                public void run() {
+                    try {
+                        parse(icus, first, parsers);
+                    } catch (RuntimeException e) {
+                        failure = e;
+                    }
+                }
+            }, "Code Forest parser " + (i + 1));
+            parserThread.setDaemon(true);
+            parserThread.start();
+        }
+        
+        try {
+            int batch = 0;
+            while (batch < batches && failure == null) {
+                if (monitor.isCanceled()) {
+                    monitor.done();
+                    throw new InterruptedException();
+                }
+                
+                ParsedUnit unit = queues.get(batch % parsers).poll(POLLING_INTERVAL, TimeUnit.MILLISECONDS);
+                if (unit == END) {
+                    batch++;
+                    
+                } else if (unit != null) {
+                    monitor.subTask("Collecting " + unit.path);
+                    results.put(unit.path, collect(unit, mproject));
+                    monitor.worked(2);
+                    
+                    if (packageHandler != null && currentPackage != null && currentPackage != collectedPackage) {
+                        packageHandler.packageMeasured(currentPackage);
+                    }
+                    currentPackage = collectedPackage;
+                }
+            }
+            
+        } finally {
+            stopped = true;
+            for (BlockingQueue<ParsedUnit> queue : queues) {
+                queue.clear();
+            }
+        }
+        
+        if (failure != null) {
+            throw new InvocationTargetException(failure);
+        }
+        if (packageHandler != null && currentPackage != null) {
+            packageHandler.packageMeasured(currentPackage);
+        }
+        return results;
+    }
+    
+    /**
+     * Parses every n-th batch of the files and puts their ASTs into the queue of the parser thread.
+     * @param icus the compilation units of the files
+     * @param first the index of the first batch to be parsed, which is also the index of the parser thread
+     * @param step the number of the parser threads
+     */
+    private void parse(List<ICompilationUnit> icus, int first, int step) {
+        final BlockingQueue<ParsedUnit> queue = queues.get(first);
+        for (int start = first * BATCH_SIZE; start < icus.size() && !stopped; start = start + step * BATCH_SIZE) {
+            int end = Math.min(start + BATCH_SIZE, icus.size());
+            ICompilationUnit[] batch = icus.subList(start, end).toArray(new ICompilationUnit[end - start]);
+            
+            ASTParser parser = ASTParser.newParser(AST.JLS4);
+            parser.setKind(ASTParser.K_COMPILATION_UNIT);
+            parser.setProject(project);
+            parser.setResolveBindings(!syntactic);
+            parser.createASTs(batch, new String[0], new ASTRequestor() {
+                
+                /**
+                 * Passes a parsed file to the collecting thread.
+                 * @param icu the compilation unit of the file
+                 * @param cu the AST of the file
+                 */
+                public void acceptAST(ICompilationUnit icu, CompilationUnit cu) {
+                    put(queue, new ParsedUnit(icu.getPath().toString(), cu));
+                }
+            }, null);
+            put(queue, END);
+        }
+    }
+    
+    /**
+     * Puts a parsed file into a queue, waiting while the queue is full.
+     * @param queue the queue
+     * @param unit the parsed file
+     */
+    private void put(BlockingQueue<ParsedUnit> queue, ParsedUnit unit) {
+        try {
+            while (!stopped) {
+                if (queue.offer(unit, POLLING_INTERVAL, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            stopped = true;
+        }
+    }
+    
+    /**
+     * Collects the metrics of classes declared in a parsed file.
+     * The model of the project is modified while the write lock of the model is held, since it might be shared with earlier versions of the project metrics.
+     * @param unit the parsed file
+     * @param mproject the project metrics into which the metrics are stored
+     * @return the collection of the class metrics
+     */
+    private List<ClassMetrics> collect(ParsedUnit unit, ProjectMetrics mproject) {
+        JavaProject jproject = mproject.getJavaProject();
+        Lock lock = mproject.getModelLock().writeLock();
+        lock.lock();
+        try {
+            JavaPackage jpackage = JavaPackage.create(unit.cu.getPackage(), jproject);
+            JavaFile jfile = new JavaFile(unit.path, jproject);
+            jproject.addJavaFile(jfile);
+            
+            CFFileInfoCollector visitor = new CFFileInfoCollector();
+            visitor.setJavaFile(jfile);
+            unit.cu.accept(visitor);
+            
+            PackageMetrics pm = getPackageMetrics(mproject, jpackage.getName());
+            collectedPackage = pm;
+            List<ClassMetrics> classes = new ArrayList<ClassMetrics>();
+            for (JavaClass jc : visitor.getVisitedClasses()) {
+                ClassMetrics cm = new ClassMetrics(jc, pm);
+                pm.add(cm);
+                classes.add(cm);
+            }
+            visitor.close();
+            return classes;
+            
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Obtains the metrics of a package, creating it if the package is not measured yet.
+     * @param mproject the project metrics
+     * @param name the name of the package
+     * @return the package metrics
+     */
+    private PackageMetrics getPackageMetrics(ProjectMetrics mproject, String name) {
+        PackageMetrics pm = packages.get(name);
+        if (pm != null) {
+            return pm;
+        }
+        
+        if (packageHandler == null) {
+            for (PackageMetrics p : mproject.getPackageMetrics()) {
+                if (p.getName().equals(name)) {
+                    packages.put(name, p);
+                    return p;
+                }
+            }
+        }
+        
+        pm = new PackageMetrics(name, mproject);
+        packages.put(name, pm);
+        if (packageHandler == null) {
+            mproject.add(pm);
+        }
+        return pm;
+    }
+    
+    /**
+     * An interface for receiving packages whose files were all measured.
+     */
+    public interface PackageHandler {
+        
+        /**
+         * Receives a package whose files were all measured. This method is called in the thread running the pipeline.
+         * @param pm the metrics of the package, which has not been added to the project metrics yet
+         * @throws InterruptedException if the pipeline must be canceled
+         */
+        public void packageMeasured(PackageMetrics pm) throws InterruptedException;
+    }
+    
+    /**
+     * A parsed file passed through the queue.
+     */
+    private static class ParsedUnit {
+        
+        /**
+         * The path of the file.
+         */
+        private String path;
+        
+        /**
+         * The AST of the file.
+         */
+        private CompilationUnit cu;
+        
+        /**
+         * Creates a parsed file.
+         * @param path the path of the file
+         * @param cu the AST of the file
+         */
+        private ParsedUnit(String path, CompilationUnit cu) {
+            this.path = path;
+            this.cu = cu;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, versioned view of the metrics of a project.
+ * Snapshots are published by the thread that updates the project metrics and can be read from any thread without locking.
+ * A new version shares the snapshots of packages and classes that were not changed since the previous version.
+ * @author Katsuhisa Maruyama
+ */
+public final class MetricsSnapshot {
+    
+    /**
+     * The version number of this snapshot, which increases every time a snapshot is published.
+     */
+    private final long version;
+    
+    /**
+     * The name of the project.
+     */
+    private final String name;
+    
+    /**
+     * The top directory of the project.
+     */
+    private final String path;
+    
+    /**
+     * The time when the project information was generated.
+     */
+    private final long time;
+    
+    /**
+     * A flag indicating whether the project was parsed without resolving bindings.
+     */
+    private final boolean syntactic;
+    
+    /**
+     * The metric values of the project.
+     */
+    private final Map<String, Double> metricValues;
+    
+    /**
+     * The snapshots of the packages sorted by their names.
+     */
+    private final List<PackageSnapshot> packageSnapshots;
+    
+    /**
+     * Takes a snapshot of project metrics.
+     * @param mproject the project metrics
+     * @param previous the previous version, or <code>null</code> if this is the first version
+     * @param changed the collection of packages changed since the previous version, or <code>null</code> if all the packages might be changed
+     */
+    MetricsSnapshot(ProjectMetrics mproject, MetricsSnapshot previous, Collection<PackageMetrics> changed) {
+        if (previous != null) {
+            version = previous.version + 1;
+        } else {
+            version = 1;
+        }
+        name = mproject.getName();
+        path = mproject.getPath();
+        time = mproject.getTime();
+        syntactic = mproject.isSyntactic();
+        metricValues = Collections.unmodifiableMap(new LinkedHashMap<String, Double>(mproject.getEvaluatedMetricValues()));
+        
+        Map<String, PackageSnapshot> shared = new HashMap<String, PackageSnapshot>();
+        Set<PackageMetrics> changedPackages = new HashSet<PackageMetrics>();
+        if (previous != null && changed != null) {
+            changedPackages.addAll(changed);
+            for (PackageSnapshot ps : previous.packageSnapshots) {
+                shared.put(ps.getName(), ps);
+            }
+        }
+        
+        List<PackageSnapshot> packages = new ArrayList<PackageSnapshot>(mproject.getPackageMetrics().size());
+        for (PackageMetrics pm : mproject.getPackageMetrics()) {
+            PackageSnapshot ps = shared.get(pm.getName());
+            if (ps != null && changedPackages.contains(pm)) {
+                ps = new PackageSnapshot(pm, null);
+            } else if (ps == null || !ps.isUpToDate(pm)) {
+                ps = new PackageSnapshot(pm, ps);
+            }
+            packages.add(ps);
+        }
+        Collections.sort(packages, new Comparator<PackageSnapshot>() {
+            
+            public int compare(PackageSnapshot s1, PackageSnapshot s2) {
+                return s1.getName().compareTo(s2.getName());
+            }
+        });
+        packageSnapshots = Collections.unmodifiableList(packages);
+    }
+    
+    /**
+     * Returns the value of a metric with a given sort from metric values.
+     * @param values the metric values
+     * @param sort the sort of the metric
+     * @return the metric value, or <code>-1</code> if the value is not contained or not supported
+     */
+    static double getValue(Map<String, Double> values, String sort) {
+        Double value = values.get(sort);
+        if (value != null && !Double.isNaN(value.doubleValue())) {
+            return value.doubleValue();
+        }
+        return -1.0;
+    }
+    
+    /**
+     * Returns the version number of this snapshot.
+     * @return the version number, which starts from <code>1</code>
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * Returns the name of the project.
+     * @return the project name
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Returns the top directory of the project.
+     * @return the path of the top directory
+     */
+    public String getPath() {
+        return path;
+    }
+    
+    /**
+     * Returns the time when the project information was generated.
+     * @return the time
+     */
+    public long getTime() {
+        return time;
+    }
+    
+    /**
+     * Tests if the project was parsed without resolving bindings.
+     * @return <code>true</code> if the bindings were not resolved, otherwise <code>false</code>
+     */
+    public boolean isSyntactic() {
+        return syntactic;
+    }
+    
+    /**
+     * Tests if all the lazily calculated metrics had been calculated when this snapshot was taken.
+     * @return <code>true</code> if all the metric values are contained, otherwise <code>false</code>
+     */
+    public boolean isComplete() {
+        for (PackageSnapshot ps : packageSnapshots) {
+            if (!ps.isComplete()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the snapshots of the packages sorted by their names.
+     * @return the unmodifiable collection of the package snapshots
+     */
+    public List<PackageSnapshot> getPackageSnapshots() {
+        return packageSnapshots;
+    }
+    
+    /**
+     * Returns the snapshots of all the classes in the project.
+     * @return the collection of the class snapshots
+     */
+    public List<ClassSnapshot> getClassSnapshots() {
+        List<ClassSnapshot> classes = new ArrayList<ClassSnapshot>();
+        for (PackageSnapshot ps : packageSnapshots) {
+            classes.addAll(ps.getClassSnapshots());
+        }
+        return classes;
+    }
+    
+    /**
+     * Returns the metric values of the project.
+     * @return the unmodifiable map of the metric values
+     */
+    public Map<String, Double> getMetricValues() {
+        return metricValues;
+    }
+    
+    /**
+     * Returns the value of a metric with a given sort.
+     * @param sort the sort of the metric
+     * @return the metric value, or <code>-1</code> if the value is not contained
+     */
+    public double getMetricValue(String sort) {
+        return getValue(metricValues, sort);
+    }
+}
@@ -0,0 +1,485 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.metrics.MetricSort;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dependency graph of packages within a project, which calculates Martin's package metrics and finds package cycles.
+ * Packages and classes are identified by integer numbers, and the dependencies are stored in adjacency arrays.
+ * Every value is calculated in time linear in the numbers of classes, packages, and dependencies.
+ * The efferent classes of a class are the classes it uses, so they give the outgoing dependencies of its package.
+ * @author Katsuhisa Maruyama
+ */
+public class PackageGraph {
+    
+    /**
+     * The names of packages in order of their identification numbers.
+     */
+    private String[] packageNames;
+    
+    /**
+     * The map between the name of a package and its identification number.
+     */
+    private Map<String, Integer> packageIds = new HashMap<String, Integer>();
+    
+    /**
+     * The offsets into the array of targets for respective packages.
+     */
+    private int[] offsets;
+    
+    /**
+     * The identification numbers of packages that respective packages depend on.
+     */
+    private int[] targets;
+    
+    /**
+     * The numbers of classes outside respective packages that depend on classes inside them.
+     */
+    private int[] afferentCouplings;
+    
+    /**
+     * The numbers of classes inside respective packages that depend on classes outside them.
+     */
+    private int[] efferentCouplings;
+    
+    /**
+     * The numbers of classes in respective packages.
+     */
+    private int[] classCounts;
+    
+    /**
+     * The numbers of abstract classes and interfaces in respective packages.
+     */
+    private int[] abstractCounts;
+    
+    /**
+     * The identification numbers of the strongly connected components containing respective packages.
+     */
+    private int[] components;
+    
+    /**
+     * The numbers of packages in respective components.
+     */
+    private int[] componentSizes;
+    
+    /**
+     * Creates an empty dependency graph.
+     */
+    private PackageGraph() {
+    }
+    
+    /**
+     * Creates a dependency graph of packages within a project from the names of classes that their classes use.
+     * @param mproject the project metrics
+     * @return the dependency graph
+     */
+    public static PackageGraph create(ProjectMetrics mproject) {
+        PackageGraph graph = new PackageGraph();
+        List<PackageMetrics> packages = mproject.getPackageMetrics();
+        int size = packages.size();
+        graph.packageNames = new String[size];
+        graph.classCounts = new int[size];
+        graph.abstractCounts = new int[size];
+        graph.afferentCouplings = new int[size];
+        graph.efferentCouplings = new int[size];
+        
+        SymbolTable symbolTable = mproject.getSymbolTable();
+        List<ClassMetrics> classes = new ArrayList<ClassMetrics>();
+        List<Integer> owners = new ArrayList<Integer>();
+        for (int p = 0; p < size; p++) {
+            PackageMetrics pm = packages.get(p);
+            graph.packageNames[p] = pm.getName();
+            graph.packageIds.put(pm.getName(), new Integer(p));
+            
+            for (ClassMetrics cm : pm.getClassMetrics()) {
+                classes.add(cm);
+                owners.add(new Integer(p));
+                graph.classCounts[p]++;
+                if (cm.isInterface() || (cm.getJavaClass() != null && cm.getJavaClass().isAbstract())) {
+                    graph.abstractCounts[p]++;
+                }
+            }
+        }
+        
+        int[] symbolToPackage = new int[symbolTable.size()];
+        Arrays.fill(symbolToPackage, -1);
+        for (int i = 0; i < classes.size(); i++) {
+            int symbol = symbolTable.getId(classes.get(i).getQualifiedName());
+            if (symbol >= symbolToPackage.length) {
+                int length = symbolToPackage.length;
+                symbolToPackage = Arrays.copyOf(symbolToPackage, symbolTable.size());
+                Arrays.fill(symbolToPackage, length, symbolToPackage.length, -1);
+            }
+            symbolToPackage[symbol] = owners.get(i).intValue();
+        }
+        
+        int[] sources = new int[16];
+        int[] destinations = new int[16];
+        int edges = 0;
+        int[] packageMarks = new int[size];
+        Arrays.fill(packageMarks, -1);
+        for (int i = 0; i < classes.size(); i++) {
+            int p = owners.get(i).intValue();
+            boolean dependent = false;
+            for (int symbol : classes.get(i).getEfferentClassIds()) {
+                if (symbol < symbolToPackage.length) {
+                    int q = symbolToPackage[symbol];
+                    if (q >= 0 && q != p && packageMarks[q] != i) {
+                        packageMarks[q] = i;
+                        graph.afferentCouplings[q]++;
+                        dependent = true;
+                        
+                        if (edges == sources.length) {
+                            sources = Arrays.copyOf(sources, edges * 2);
+                            destinations = Arrays.copyOf(destinations, edges * 2);
+                        }
+                        sources[edges] = p;
+                        destinations[edges] = q;
+                        edges++;
+                    }
+                }
+            }
+            if (dependent) {
+                graph.efferentCouplings[p]++;
+            }
+        }
+        
+        graph.build(sources, destinations, edges, size);
+        graph.condense();
+        return graph;
+    }
+    
+    /**
+     * Builds the adjacency arrays from the list of dependencies, removing duplicated ones.
+     * @param sources the identification numbers of the depending packages
+     * @param destinations the identification numbers of the packages depended on
+     * @param edges the number of the dependencies
+     * @param size the number of packages
+     */
+    private void build(int[] sources, int[] destinations, int edges, int size) {
+        int[] counts = new int[size + 1];
+        for (int e = 0; e < edges; e++) {
+            counts[sources[e] + 1]++;
+        }
+        for (int v = 0; v < size; v++) {
+            counts[v + 1] = counts[v + 1] + counts[v];
+        }
+        
+        int[] sorted = new int[edges];
+        int[] cursors = Arrays.copyOf(counts, size);
+        for (int e = 0; e < edges; e++) {
+            sorted[cursors[sources[e]]++] = destinations[e];
+        }
+        
+        offsets = new int[size + 1];
+        targets = new int[edges];
+        int[] marks = new int[size];
+        Arrays.fill(marks, -1);
+        int pos = 0;
+        for (int v = 0; v < size; v++) {
+            offsets[v] = pos;
+            for (int k = counts[v]; k < counts[v + 1]; k++) {
+                int w = sorted[k];
+                if (marks[w] != v) {
+                    marks[w] = v;
+                    targets[pos] = w;
+                    pos++;
+                }
+            }
+        }
+        offsets[size] = pos;
+        targets = Arrays.copyOf(targets, pos);
+    }
+    
+    /**
+     * Finds the strongly connected components with an iterative version of Tarjan's algorithm.
+     * The components are numbered in reverse topological order, that is, every component depends only on ones with smaller numbers.
+     */
+    private void condense() {
+        int size = offsets.length - 1;
+        components = new int[size];
+        int[] indexes = new int[size];
+        int[] lowlinks = new int[size];
+        boolean[] onStack = new boolean[size];
+        int[] stack = new int[size];
+        int[] callStack = new int[size];
+        int[] edgeCursors = new int[size];
+        Arrays.fill(indexes, -1);
+        
+        int index = 0;
+        int top = 0;
+        int componentNumber = 0;
+        for (int root = 0; root < size; root++) {
+            if (indexes[root] >= 0) {
+                continue;
+            }
+            
+            int depth = 0;
+            callStack[depth] = root;
+            edgeCursors[root] = offsets[root];
+            indexes[root] = lowlinks[root] = index++;
+            stack[top++] = root;
+            onStack[root] = true;
+            
+            while (depth >= 0) {
+                int v = callStack[depth];
+                if (edgeCursors[v] < offsets[v + 1]) {
+                    int w = targets[edgeCursors[v]];
+                    edgeCursors[v]++;
+                    
+                    if (indexes[w] < 0) {
+                        indexes[w] = lowlinks[w] = index++;
+                        stack[top++] = w;
+                        onStack[w] = true;
+                        edgeCursors[w] = offsets[w];
+                        callStack[++depth] = w;
+                    } else if (onStack[w]) {
+                        lowlinks[v] = Math.min(lowlinks[v], indexes[w]);
+                    }
+                    
+                } else {
+                    if (lowlinks[v] == indexes[v]) {
+                        int w;
+                        do {
+                            w = stack[--top];
+                            onStack[w] = false;
+                            components[w] = componentNumber;
+                        } while (w != v);
+                        componentNumber++;
+                    }
+                    
+                    depth--;
+                    if (depth >= 0) {
+                        int u = callStack[depth];
+                        lowlinks[u] = Math.min(lowlinks[u], lowlinks[v]);
+                    }
+                }
+            }
+        }
+        
+        componentSizes = new int[componentNumber];
+        for (int v = 0; v < size; v++) {
+            componentSizes[components[v]]++;
+        }
+    }
+    
+    /**
+     * Returns the identification number of a package.
+     * @param name the name of the package
+     * @return the identification number, or <code>-1</code> if the package is not contained in this graph
+     */
+    private int getId(String name) {
+        Integer id = packageIds.get(name);
+        if (id != null) {
+            return id.intValue();
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the instability of a package, that is, Ce / (Ca + Ce).
+     * @param id the identification number of the package
+     * @return the instability, which is <code>0</code> for a package without coupling
+     */
+    private double instability(int id) {
+        int total = afferentCouplings[id] + efferentCouplings[id];
+        if (total == 0) {
+            return 0;
+        }
+        return (double)efferentCouplings[id] / total;
+    }
+    
+    /**
+     * Returns the abstractness of a package, that is, the ratio of abstract classes and interfaces to all the classes.
+     * @param id the identification number of the package
+     * @return the abstractness, which is <code>0</code> for a package without classes
+     */
+    private double abstractness(int id) {
+        if (classCounts[id] == 0) {
+            return 0;
+        }
+        return (double)abstractCounts[id] / classCounts[id];
+    }
+    
+    /**
+     * Returns the number of packages in the cycle containing a package.
+     * @param id the identification number of the package
+     * @return the number of the packages, or <code>0</code> if the package is not contained in any cycle
+     */
+    private int cycleSize(int id) {
+        int size = componentSizes[components[id]];
+        if (size > 1) {
+            return size;
+        }
+        return 0;
+    }
+    
+    /**
+     * Returns the instability of a package.
+     * @param name the name of the package
+     * @return the instability, or <code>-1</code> if the package is not contained in this graph
+     */
+    public double getInstability(String name) {
+        int id = getId(name);
+        if (id < 0) {
+            return -1;
+        }
+        return instability(id);
+    }
+    
+    /**
+     * Returns the abstractness of a package.
+     * @param name the name of the package
+     * @return the abstractness, or <code>-1</code> if the package is not contained in this graph
+     */
+    public double getAbstractness(String name) {
+        int id = getId(name);
+        if (id < 0) {
+            return -1;
+        }
+        return abstractness(id);
+    }
+    
+    /**
+     * Returns the distance of a package from the main sequence, that is, |A + I - 1|.
+     * @param name the name of the package
+     * @return the distance, or <code>-1</code> if the package is not contained in this graph
+     */
+    public double getDistance(String name) {
+        int id = getId(name);
+        if (id < 0) {
+            return -1;
+        }
+        return Math.abs(abstractness(id) + instability(id) - 1);
+    }
+    
+    /**
+     * Returns the number of packages in the cycle containing a package.
+     * @param name the name of the package
+     * @return the number of the packages, <code>0</code> if the package is not contained in any cycle, or <code>-1</code> if it is not contained in this graph
+     */
+    public int getCycleSize(String name) {
+        int id = getId(name);
+        if (id < 0) {
+            return -1;
+        }
+        return cycleSize(id);
+    }
+    
+    /**
+     * Returns the package cycles, that is, the strongly connected components containing two or more packages.
+     * @return the collection of the cycles, each of which contains the sorted names of its packages
+     */
+    public List<List<String>> getCycles() {
+        List<List<String>> cycles = new ArrayList<List<String>>();
+        int[] cycleIndexes = new int[componentSizes.length];
+        Arrays.fill(cycleIndexes, -1);
+        for (int v = 0; v < components.length; v++) {
+            int c = components[v];
+            if (componentSizes[c] > 1) {
+                if (cycleIndexes[c] < 0) {
+                    cycleIndexes[c] = cycles.size();
+                    cycles.add(new ArrayList<String>(componentSizes[c]));
+                }
+                cycles.get(cycleIndexes[c]).add(packageNames[v]);
+            }
+        }
+        for (List<String> cycle : cycles) {
+            Collections.sort(cycle);
+        }
+        return cycles;
+    }
+    
+    /**
+     * Returns the names of packages in the cycle containing a given package.
+     * @param name the name of the package
+     * @return the sorted names of the packages, which is empty if the package is not contained in any cycle
+     */
+    public List<String> getCycle(String name) {
+        List<String> cycle = new ArrayList<String>();
+        int id = getId(name);
+        if (id < 0 || componentSizes[components[id]] < 2) {
+            return cycle;
+        }
+        
+        for (int v = 0; v < components.length; v++) {
+            if (components[v] == components[id]) {
+                cycle.add(packageNames[v]);
+            }
+        }
+        Collections.sort(cycle);
+        return cycle;
+    }
+    
+    /**
+     * Stores the package metrics calculated from this graph into the metrics of a project and its packages.
+     * The total values are weighted by the numbers of classes, so that they can normalize the values shown on trees.
+     * Only the abstractness is stored if the project was parsed without resolving bindings.
+     * @param mproject the project metrics
+     */
+    public void store(ProjectMetrics mproject) {
+        boolean syntactic = mproject.isSyntactic();
+        double totalInstability = 0;
+        double totalAbstractness = 0;
+        double totalDistance = 0;
+        double totalCycleSize = 0;
+        double maxInstability = 0;
+        double maxAbstractness = 0;
+        double maxDistance = 0;
+        double maxCycleSize = 0;
+        int cycles = 0;
+        for (int c = 0; c < componentSizes.length; c++) {
+            if (componentSizes[c] > 1) {
+                cycles++;
+            }
+        }
+        
+        for (PackageMetrics pm : mproject.getPackageMetrics()) {
+            int id = getId(pm.getName());
+            if (id < 0) {
+                continue;
+            }
+            
+            double a = abstractness(id);
+            pm.putMetricValue(MetricSort.ABSTRACTNESS, a);
+            totalAbstractness = totalAbstractness + a * classCounts[id];
+            maxAbstractness = Math.max(maxAbstractness, a);
+            
+            if (!syntactic) {
+                double i = instability(id);
+                double d = Math.abs(a + i - 1);
+                int cycleSize = cycleSize(id);
+                pm.putMetricValue(MetricSort.INSTABILITY, i);
+                pm.putMetricValue(MetricSort.DISTANCE_FROM_MAIN_SEQUENCE, d);
+                pm.putMetricValue(MetricSort.SIZE_OF_PACKAGE_CYCLE, cycleSize);
+                totalInstability = totalInstability + i * classCounts[id];
+                totalDistance = totalDistance + d * classCounts[id];
+                totalCycleSize = totalCycleSize + cycleSize * classCounts[id];
+                maxInstability = Math.max(maxInstability, i);
+                maxDistance = Math.max(maxDistance, d);
+                maxCycleSize = Math.max(maxCycleSize, cycleSize);
+            }
+        }
+        
+        mproject.putMetricValue(MetricSort.TOTAL_ABSTRACTNESS, totalAbstractness);
+        mproject.putMetricValue(MetricSort.MAX_ABSTRACTNESS, maxAbstractness);
+        if (!syntactic) {
+            mproject.putMetricValue(MetricSort.NUMBER_OF_PACKAGE_CYCLES, cycles);
+            mproject.putMetricValue(MetricSort.TOTAL_INSTABILITY, totalInstability);
+            mproject.putMetricValue(MetricSort.TOTAL_DISTANCE_FROM_MAIN_SEQUENCE, totalDistance);
+            mproject.putMetricValue(MetricSort.TOTAL_SIZE_OF_PACKAGE_CYCLE, totalCycleSize);
+            mproject.putMetricValue(MetricSort.MAX_INSTABILITY, maxInstability);
+            mproject.putMetricValue(MetricSort.MAX_DISTANCE_FROM_MAIN_SEQUENCE, maxDistance);
+            mproject.putMetricValue(MetricSort.MAX_SIZE_OF_PACKAGE_CYCLE, maxCycleSize);
+        }
+    }
+}
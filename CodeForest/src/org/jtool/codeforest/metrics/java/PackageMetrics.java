@@ -9,7 +9,7 @@ import org.jtool.codeforest.metrics.UnsupportedMetricsException;
 import org.jtool.eclipse.model.java.JavaClass;
 import org.jtool.eclipse.model.java.JavaPackage;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.Map;
 import java.util.Collections;
 import java.util.Comparator;
 
@@ -37,17 +37,17 @@ public class PackageMetrics extends CommonMetrics {
     /**
      * The collection of all class metrics for this package.
      */
-    protected List<ClassMetrics> classMetrics = new ArrayList<ClassMetrics>();
+    protected List<ClassMetrics> classMetrics = new HashedList<ClassMetrics>();
     
     /**
      * The collection of names of afferent packages for this package.
      */
-    protected List<String> afferentPackageNames = new ArrayList<String>();
+    protected SymbolList afferentPackageNames;
     
     /**
      * The collection of names of afferent packages for this package.
      */
-    protected List<String> efferentPackageNames = new ArrayList<String>();
+    protected SymbolList efferentPackageNames;
     
     /**
      * Creates a new object representing a package.
@@ -59,6 +59,8 @@ public class PackageMetrics extends CommonMetrics {
         
         jpackage = JavaPackage.create(name, pm.getJavaProject());
         this.projectMetrics = pm;
+        afferentPackageNames = new SymbolList(pm.getSymbolTable());
+        efferentPackageNames = new SymbolList(pm.getSymbolTable());
     }
     
     /**
@@ -71,6 +73,8 @@ public class PackageMetrics extends CommonMetrics {
         
         this.jpackage = jpackage;
         this.projectMetrics = pm;
+        afferentPackageNames = new SymbolList(pm.getSymbolTable());
+        efferentPackageNames = new SymbolList(pm.getSymbolTable());
         
         for (JavaClass jc : jpackage.getJavaClasses()) {
             ClassMetrics cm = new ClassMetrics(jc, this);
@@ -87,6 +91,28 @@ public class PackageMetrics extends CommonMetrics {
         collectMetricInfo();
     }
     
+    /**
+     * Creates a new object storing the same metric values as given package metrics, which shares the object representing the package and contains no class metrics.
+     * @param pm the package metrics to be copied
+     * @param mproject a metrics object for a project containing this package
+     */
+    protected PackageMetrics(PackageMetrics pm, ProjectMetrics mproject) {
+        super();
+        
+        jpackage = pm.jpackage;
+        projectMetrics = mproject;
+        afferentPackageNames = new SymbolList(mproject.getSymbolTable());
+        efferentPackageNames = new SymbolList(mproject.getSymbolTable());
+        
+        copyMetricValues(pm);
+        for (String name : pm.getAfferentPackageNames()) {
+            afferentPackageNames.add(name);
+        }
+        for (String name : pm.getEfferentPackageNames()) {
+            efferentPackageNames.add(name);
+        }
+    }
+    
     /**
      * Returns the metrics object for a project containing this package.
      * @return the project metrics
@@ -105,7 +131,7 @@ public class PackageMetrics extends CommonMetrics {
     
     /**
      * Stores a class metrics object.
-     * @param pm the class metrics
+     * @param cm the class metrics
      */
     public void add(ClassMetrics cm) {
         if (!classMetrics.contains(cm)) {
@@ -113,6 +139,14 @@ public class PackageMetrics extends CommonMetrics {
         }
     }
     
+    /**
+     * Removes a class metrics object.
+     * @param cm the class metrics
+     */
+    public void remove(ClassMetrics cm) {
+        classMetrics.remove(cm);
+    }
+    
     /**
      * Returns the object representing this package.
      * @return the package object
@@ -176,17 +210,59 @@ public class PackageMetrics extends CommonMetrics {
     /**
      * Collects information on this package.
      */
-    private void collectMetricInfo() {
+    protected void collectMetricInfo() {
         try {
-            metrics.put(MetricSort.NUMBER_OF_CLASSES, new Double(jpackage.getJavaClasses().size()));
-            metrics.put(MetricSort.NUMBER_OF_AFFERENT_PACKAGES, new Double(jpackage.getAfferentJavaPackages().size()));
-            metrics.put(MetricSort.NUMBER_OF_EFFERENT_PACKAGES, new Double(jpackage.getEfferentJavaPackages().size()));
+            putMetricValue(MetricSort.NUMBER_OF_CLASSES, jpackage.getJavaClasses().size());
+            if (!projectMetrics.isSyntactic()) {
+                putMetricValue(MetricSort.NUMBER_OF_AFFERENT_PACKAGES, jpackage.getAfferentJavaPackages().size());
+                putMetricValue(MetricSort.NUMBER_OF_EFFERENT_PACKAGES, jpackage.getEfferentJavaPackages().size());
+            }
+            
+            putMetricValue(MetricSort.NUMBER_OF_METHODS, sum(MetricSort.NUMBER_OF_METHODS));
+            putMetricValue(MetricSort.NUMBER_OF_FIELDS, sum(MetricSort.NUMBER_OF_FIELDS));
+            putMetricValue(MetricSort.NUMBER_OF_METHODS_AND_FIELDS, sum(MetricSort.NUMBER_OF_METHODS_AND_FIELDS));
+            putMetricValue(MetricSort.LINES_OF_CODE, sum(MetricSort.LINES_OF_CODE));
+            putMetricValue(MetricSort.NUMBER_OF_STATEMENTS, sum(MetricSort.NUMBER_OF_STATEMENTS));
+        } catch (UnsupportedMetricsException e) {
+            System.out.println(e.getMessage() + " in the package: " + getName());
+        }
+    }
+    
+    /**
+     * Collects information on this package from the names of classes related to its classes.
+     * This is used for package metrics whose classes are not backed by parsed classes, e.g., metrics loaded from a cache.
+     * @param packageNames the map between the fully-qualified names of classes and the names of their packages
+     */
+    protected void collectMetricInfo(Map<String, String> packageNames) {
+        afferentPackageNames.clear();
+        efferentPackageNames.clear();
+        for (ClassMetrics cm : classMetrics) {
+            for (String name : cm.getAfferentClassNames()) {
+                String pname = packageNames.get(name);
+                if (pname != null && !pname.equals(getName())) {
+                    addAfferentPackageName(pname);
+                }
+            }
+            for (String name : cm.getEfferentClassNames()) {
+                String pname = packageNames.get(name);
+                if (pname != null && !pname.equals(getName())) {
+                    addEfferentPackageName(pname);
+                }
+            }
+        }
+        
+        try {
+            putMetricValue(MetricSort.NUMBER_OF_CLASSES, classMetrics.size());
+            if (!projectMetrics.isSyntactic()) {
+                putMetricValue(MetricSort.NUMBER_OF_AFFERENT_PACKAGES, afferentPackageNames.size());
+                putMetricValue(MetricSort.NUMBER_OF_EFFERENT_PACKAGES, efferentPackageNames.size());
+            }
             
-            metrics.put(MetricSort.NUMBER_OF_METHODS, sum(MetricSort.NUMBER_OF_METHODS));
-            metrics.put(MetricSort.NUMBER_OF_FIELDS, sum(MetricSort.NUMBER_OF_FIELDS));
-            metrics.put(MetricSort.NUMBER_OF_METHODS_AND_FIELDS, sum(MetricSort.NUMBER_OF_METHODS_AND_FIELDS));
-            metrics.put(MetricSort.LINES_OF_CODE, sum(MetricSort.LINES_OF_CODE));
-            metrics.put(MetricSort.NUMBER_OF_STATEMENTS, sum(MetricSort.NUMBER_OF_STATEMENTS));
+            putMetricValue(MetricSort.NUMBER_OF_METHODS, sum(MetricSort.NUMBER_OF_METHODS));
+            putMetricValue(MetricSort.NUMBER_OF_FIELDS, sum(MetricSort.NUMBER_OF_FIELDS));
+            putMetricValue(MetricSort.NUMBER_OF_METHODS_AND_FIELDS, sum(MetricSort.NUMBER_OF_METHODS_AND_FIELDS));
+            putMetricValue(MetricSort.LINES_OF_CODE, sum(MetricSort.LINES_OF_CODE));
+            putMetricValue(MetricSort.NUMBER_OF_STATEMENTS, sum(MetricSort.NUMBER_OF_STATEMENTS));
         } catch (UnsupportedMetricsException e) {
             System.out.println(e.getMessage() + " in the package: " + getName());
         }
@@ -198,12 +274,12 @@ public class PackageMetrics extends CommonMetrics {
      * @return the sum of the values
      * @throws UnsupportedMetricsException if the metric value is not obtained
      */
-    private Double sum(String sort) throws UnsupportedMetricsException {
+    private double sum(String sort) throws UnsupportedMetricsException {
         double value = 0;
         for (ClassMetrics cm : classMetrics) {
             value = value + cm.getMetricValueWithException(sort);
         }
-        return new Double(value);
+        return value;
     }
     
     /**
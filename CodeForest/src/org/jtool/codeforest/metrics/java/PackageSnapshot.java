@@ -0,0 +1,170 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable view of the metrics of a package at the time when a snapshot of its project was published.
+ * @author Katsuhisa Maruyama
+ */
+public final class PackageSnapshot {
+    
+    /**
+     * The name of the package.
+     */
+    private final String name;
+    
+    /**
+     * The metric values of the package.
+     */
+    private final Map<String, Double> metricValues;
+    
+    /**
+     * The sorted names of afferent packages.
+     */
+    private final List<String> afferentPackageNames;
+    
+    /**
+     * The sorted names of efferent packages.
+     */
+    private final List<String> efferentPackageNames;
+    
+    /**
+     * The snapshots of the classes sorted by their names.
+     */
+    private final List<ClassSnapshot> classSnapshots;
+    
+    /**
+     * Takes a snapshot of the metrics of a package, sharing the snapshots of classes that were not changed.
+     * @param pm the package metrics
+     * @param previous the snapshot of the package in the previous version, or <code>null</code> if nothing is shared
+     */
+    PackageSnapshot(PackageMetrics pm, PackageSnapshot previous) {
+        name = pm.getName();
+        metricValues = Collections.unmodifiableMap(new LinkedHashMap<String, Double>(pm.getMetricValues()));
+        afferentPackageNames = ClassSnapshot.sortedCopy(pm.getAfferentPackageNames());
+        efferentPackageNames = ClassSnapshot.sortedCopy(pm.getEfferentPackageNames());
+        
+        Map<String, ClassSnapshot> shared = new HashMap<String, ClassSnapshot>();
+        if (previous != null) {
+            for (ClassSnapshot cs : previous.classSnapshots) {
+                shared.put(cs.getQualifiedName(), cs);
+            }
+        }
+        
+        List<ClassSnapshot> classes = new ArrayList<ClassSnapshot>(pm.getClassMetrics().size());
+        for (ClassMetrics cm : pm.getClassMetrics()) {
+            ClassSnapshot cs = shared.get(cm.getQualifiedName());
+            if (cs == null || !cs.isUpToDate(cm)) {
+                cs = new ClassSnapshot(cm);
+            }
+            classes.add(cs);
+        }
+        Collections.sort(classes, new Comparator<ClassSnapshot>() {
+            
+            public int compare(ClassSnapshot s1, ClassSnapshot s2) {
+                return s1.getName().compareTo(s2.getName());
+            }
+        });
+        classSnapshots = Collections.unmodifiableList(classes);
+    }
+    
+    /**
+     * Tests if this snapshot still reflects the current state of given package metrics.
+     * The classes of a package that was not changed might have been calculated lazily, and the package values might have been collected again.
+     * The package metrics might have been copied into a later version of the project metrics, so its classes are matched by their names.
+     * @param pm the package metrics
+     * @return <code>true</code> if this snapshot can be shared with the next version, otherwise <code>false</code>
+     */
+    boolean isUpToDate(PackageMetrics pm) {
+        List<ClassMetrics> classes = pm.getClassMetrics();
+        if (classes.size() != classSnapshots.size() || !metricValues.equals(pm.getMetricValues())) {
+            return false;
+        }
+        
+        Map<String, ClassSnapshot> snapshots = new HashMap<String, ClassSnapshot>();
+        for (ClassSnapshot cs : classSnapshots) {
+            snapshots.put(cs.getQualifiedName(), cs);
+        }
+        for (ClassMetrics cm : classes) {
+            ClassSnapshot cs = snapshots.get(cm.getQualifiedName());
+            if (cs == null || !cs.isUpToDate(cm)) {
+                return false;
+            }
+        }
+        return new HashSet<String>(afferentPackageNames).equals(new HashSet<String>(pm.getAfferentPackageNames())) &&
+               new HashSet<String>(efferentPackageNames).equals(new HashSet<String>(pm.getEfferentPackageNames()));
+    }
+    
+    /**
+     * Tests if all the lazily calculated metrics of the classes had been calculated when this snapshot was taken.
+     * @return <code>true</code> if all the metric values are contained, otherwise <code>false</code>
+     */
+    public boolean isComplete() {
+        for (ClassSnapshot cs : classSnapshots) {
+            if (!cs.isComplete()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the name of the package.
+     * @return the package name
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Returns the sorted names of afferent packages.
+     * @return the unmodifiable collection of the afferent package names
+     */
+    public List<String> getAfferentPackageNames() {
+        return afferentPackageNames;
+    }
+    
+    /**
+     * Returns the sorted names of efferent packages.
+     * @return the unmodifiable collection of the efferent package names
+     */
+    public List<String> getEfferentPackageNames() {
+        return efferentPackageNames;
+    }
+    
+    /**
+     * Returns the snapshots of the classes sorted by their names.
+     * @return the unmodifiable collection of the class snapshots
+     */
+    public List<ClassSnapshot> getClassSnapshots() {
+        return classSnapshots;
+    }
+    
+    /**
+     * Returns the metric values of the package.
+     * @return the unmodifiable map of the metric values
+     */
+    public Map<String, Double> getMetricValues() {
+        return metricValues;
+    }
+    
+    /**
+     * Returns the value of a metric with a given sort.
+     * @param sort the sort of the metric
+     * @return the metric value, or <code>-1</code> if the value is not contained
+     */
+    public double getMetricValue(String sort) {
+        return MetricsSnapshot.getValue(metricValues, sort);
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.xml.sax.SAXException;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A class importing metric values within a project from an XML file in parallel.
+ * The file is scanned for the byte offsets of package elements, and each of the package elements is parsed
+ * by its own handler in a worker thread. The rest of the file, which contains the project element, is parsed first.
+ * The imported packages are added to the project in the order of the file.
+ * @author Katsuhisa Maruyama
+ */
+public class ParallelForestDataImporter {
+    
+    /**
+     * The number of tasks per thread, which balances the load of the threads.
+     */
+    private static final int TASKS_PER_THREAD = 4;
+    
+    /**
+     * The path of the XML file.
+     */
+    private String path;
+    
+    /**
+     * The mapped XML file.
+     */
+    private ByteBuffer buffer;
+    
+    /**
+     * The end offset of the XML declaration, or <code>0</code> if the file has no XML declaration.
+     */
+    private int prologEnd = 0;
+    
+    /**
+     * The start and end offsets of the package elements in the file.
+     */
+    private List<int[]> slices = new ArrayList<int[]>();
+    
+    /**
+     * Creates a new object.
+     * @param path the path of the XML file
+     * @param buffer the mapped XML file
+     */
+    private ParallelForestDataImporter(String path, ByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+    }
+    
+    /**
+     * Imports metric values within a project from an XML file using all the available processors.
+     * @param path the path of the XML file
+     * @return the project metrics, or <code>null</code> if the import fails
+     */
+    public static ProjectMetrics read(String path) {
+        return read(path, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Imports metric values within a project from an XML file.
+     * The file is parsed sequentially if its package elements cannot be located.
+     * @param path the path of the XML file
+     * @param threads the number of threads that parse package elements in parallel
+     * @return the project metrics, or <code>null</code> if the import fails
+     */
+    public static ProjectMetrics read(String path, int threads) {
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(path, "r");
+            FileChannel channel = file.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("too large XML file");
+            }
+            
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ParallelForestDataImporter importer = new ParallelForestDataImporter(path, buffer);
+            if (threads < 2 || !importer.scan()) {
+                return importer.readSequentially();
+            }
+            return importer.readInParallel(threads);
+            
+        } catch (ParserConfigurationException e) {
+            e.printStackTrace();
+        } catch (SAXException e) {
+            e.printStackTrace();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            BinarySnapshotFormat.close(file);
+        }
+        return null;
+    }
+    
+    /**
+     * Parses the whole file with a single handler.
+     * @return the project metrics, or <code>null</code> if the file does not contain a project
+     * @throws ParserConfigurationException if a parser cannot be created
+     * @throws SAXException if the file is broken
+     * @throws IOException if an I/O error occurs
+     */
+    private ProjectMetrics readSequentially() throws ParserConfigurationException, SAXException, IOException {
+        SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+        ForestDataImporter handler = new ForestDataImporter(path);
+        parser.parse(getRegion(0, buffer.limit()), handler);
+        return handler.getProjectMetrics();
+    }
+    
+    /**
+     * Parses the project element first, and then parses the package elements in parallel.
+     * @param threads the number of threads
+     * @return the project metrics, or <code>null</code> if the file does not contain a project
+     * @throws ParserConfigurationException if a parser cannot be created
+     * @throws SAXException if the file is broken
+     * @throws IOException if an I/O error occurs
+     * @throws ExecutionException if an error occurs in parsing a package element
+     * @throws InterruptedException if the current thread is interrupted while waiting for the workers
+     */
+    private ProjectMetrics readInParallel(int threads) throws ParserConfigurationException, SAXException, IOException, ExecutionException, InterruptedException {
+        SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+        ForestDataImporter handler = new ForestDataImporter(path, false);
+        parser.parse(getSkeleton(), handler);
+        final ProjectMetrics mproject = handler.getProjectMetrics();
+        if (mproject == null) {
+            return null;
+        }
+        
+        final List<List<PackageMetrics>> results = new ArrayList<List<PackageMetrics>>();
+        for (int i = 0; i < slices.size(); i++) {
+            results.add(new ArrayList<PackageMetrics>());
+        }
+        
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        for (final int[] range : partition(threads * TASKS_PER_THREAD)) {
+            tasks.add(new Callable<Integer>() {
+                
+                /**
+                 * Parses a contiguous range of package elements.
+                 * @return the number of the parsed package elements
+                 * @throws Exception if a package element cannot be parsed
+                 */
+                public Integer call() throws Exception {
+                    SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+                    for (int i = range[0]; i < range[1]; i++) {
+                        int[] slice = slices.get(i);
+                        ForestDataImporter handler = new ForestDataImporter(mproject, results.get(i));
+                        parser.parse(new SequenceInputStream(getRegion(0, prologEnd), getRegion(slice[0], slice[1])), handler);
+                        parser.reset();
+                    }
+                    return new Integer(range[1] - range[0]);
+                }
+            });
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+        try {
+            for (Future<Integer> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        for (List<PackageMetrics> packages : results) {
+            for (PackageMetrics pm : packages) {
+                mproject.add(pm);
+            }
+        }
+        mproject.collectMetricsInfoAfterXMLImport();
+        return mproject;
+    }
+    
+    /**
+     * Scans the file for the package elements.
+     * @return <code>true</code> if the package elements are located, otherwise <code>false</code>
+     */
+    private boolean scan() {
+        int limit = buffer.limit();
+        if (limit >= 2) {
+            int first = buffer.get(0) & 0xff;
+            int second = buffer.get(1) & 0xff;
+            if ((first == 0xfe && second == 0xff) || (first == 0xff && second == 0xfe)) {
+                return false;
+            }
+        }
+        
+        byte[] declaration = getBytes("<?xml");
+        if (indexOf(declaration, 0) == 0) {
+            int end = indexOf(getBytes("?>"), declaration.length);
+            if (end < 0) {
+                return false;
+            }
+            prologEnd = end + 2;
+        }
+        
+        byte[] startTag = getBytes("<" + MetricsManager.PackageElem);
+        byte[] endTag = getBytes("</" + MetricsManager.PackageElem + ">");
+        int pos = indexOf(startTag, prologEnd);
+        while (pos >= 0) {
+            int next = pos + startTag.length;
+            if (next >= limit) {
+                return false;
+            }
+            
+            byte ch = buffer.get(next);
+            if (ch == '>' || ch == '/' || isWhitespace(ch)) {
+                int tagEnd = findTagEnd(next);
+                if (tagEnd < 0) {
+                    return false;
+                }
+                
+                int end;
+                if (buffer.get(tagEnd - 1) == '/') {
+                    end = tagEnd + 1;
+                } else {
+                    int close = indexOf(endTag, tagEnd);
+                    if (close < 0) {
+                        return false;
+                    }
+                    end = close + endTag.length;
+                }
+                slices.add(new int[] { pos, end });
+                next = end;
+            }
+            pos = indexOf(startTag, next);
+        }
+        return slices.size() > 0;
+    }
+    
+    /**
+     * Divides the package elements into contiguous ranges of nearly the same size in bytes.
+     * @param count the maximum number of the ranges
+     * @return the collection of the start and end indexes of the ranges
+     */
+    private List<int[]> partition(int count) {
+        long total = 0;
+        for (int[] slice : slices) {
+            total = total + slice[1] - slice[0];
+        }
+        long target = total / Math.max(count, 1) + 1;
+        
+        List<int[]> ranges = new ArrayList<int[]>();
+        int start = 0;
+        long size = 0;
+        for (int i = 0; i < slices.size(); i++) {
+            size = size + slices.get(i)[1] - slices.get(i)[0];
+            if (size >= target) {
+                ranges.add(new int[] { start, i + 1 });
+                start = i + 1;
+                size = 0;
+            }
+        }
+        if (start < slices.size()) {
+            ranges.add(new int[] { start, slices.size() });
+        }
+        return ranges;
+    }
+    
+    /**
+     * Returns the input stream reading the file without the package elements.
+     * @return the input stream
+     */
+    private InputStream getSkeleton() {
+        List<InputStream> regions = new ArrayList<InputStream>();
+        int pos = 0;
+        for (int[] slice : slices) {
+            regions.add(getRegion(pos, slice[0]));
+            pos = slice[1];
+        }
+        regions.add(getRegion(pos, buffer.limit()));
+        return new SequenceInputStream(Collections.enumeration(regions));
+    }
+    
+    /**
+     * Returns the input stream reading a region of the file.
+     * @param start the start offset of the region
+     * @param end the end offset of the region
+     * @return the input stream
+     */
+    private InputStream getRegion(int start, int end) {
+        ByteBuffer region = buffer.duplicate();
+        region.limit(end);
+        region.position(start);
+        return new ByteBufferInputStream(region);
+    }
+    
+    /**
+     * Finds the end of a tag, skipping quoted attribute values.
+     * @param pos the offset within the tag
+     * @return the offset of the closing bracket of the tag, or <code>-1</code> if the tag is not closed
+     */
+    private int findTagEnd(int pos) {
+        byte quote = 0;
+        for (int i = pos; i < buffer.limit(); i++) {
+            byte ch = buffer.get(i);
+            if (quote != 0) {
+                if (ch == quote) {
+                    quote = 0;
+                }
+            } else if (ch == '"' || ch == '\'') {
+                quote = ch;
+            } else if (ch == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Finds a sequence of bytes in the file.
+     * @param bytes the sequence of bytes
+     * @param from the offset from which the sequence is searched for
+     * @return the offset of the sequence, or <code>-1</code> if the sequence is not found
+     */
+    private int indexOf(byte[] bytes, int from) {
+        int last = buffer.limit() - bytes.length;
+        for (int i = from; i <= last; i++) {
+            if (buffer.get(i) == bytes[0]) {
+                int j = 1;
+                while (j < bytes.length && buffer.get(i + j) == bytes[j]) {
+                    j++;
+                }
+                if (j == bytes.length) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Tests if a byte is a white space in XML.
+     * @param ch the byte
+     * @return <code>true</code> if the byte is a white space, otherwise <code>false</code>
+     */
+    private boolean isWhitespace(byte ch) {
+        return ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n';
+    }
+    
+    /**
+     * Returns the bytes of an ASCII string.
+     * @param str the string
+     * @return the bytes
+     */
+    private static byte[] getBytes(String str) {
+        byte[] bytes = new byte[str.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte)str.charAt(i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.util.Time;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.swt.widgets.Display;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.LinkedHashMap;
+
+/**
+ * Builds the metrics of a project in the background and hands over each package as soon as its files are measured.
+ * The metrics are built in a project metrics object that only the background job touches, and a copy of each measured package
+ * is added to the preview metrics in the user-interface thread, so that a forest can be drawn from them while they are built.
+ * The total and maximum values of the preview are accumulated as packages are added. The metric values of the whole project
+ * are collected in the background job, and the completed metrics replace the preview when the build is completed.
+ * If the cache is used, the metric values of unchanged files are reused from the cache in the same way as {@link CachedMetricsBuilder},
+ * and the packages are handed over after the changed files were parsed and the other files were loaded.
+ * @author Katsuhisa Maruyama
+ */
+public class ProgressiveMetricsBuilder {
+    
+    /**
+     * The project whose metrics are built.
+     */
+    private IJavaProject project;
+    
+    /**
+     * The metrics of the project shown on the display, which are the preview until the build is completed.
+     */
+    private volatile ProjectMetrics projectMetrics;
+    
+    /**
+     * The metrics of the project being built, which are touched only by the background job until the build is completed.
+     */
+    private ProjectMetrics builtMetrics;
+    
+    /**
+     * The display whose user-interface thread modifies the project metrics.
+     */
+    private Display display;
+    
+    /**
+     * The number of threads that parse Java files in parallel.
+     */
+    private int threads = 1;
+    
+    /**
+     * The builder that reuses the cached metric values, or <code>null</code> if the cache is not used.
+     */
+    private CachedMetricsBuilder cacheBuilder = null;
+    
+    /**
+     * The compilation units of the files to be measured, which are sorted by their packages.
+     */
+    private List<ICompilationUnit> units = new ArrayList<ICompilationUnit>();
+    
+    /**
+     * The listeners that receive the progress of the build.
+     */
+    private List<IMetricsBuildListener> listeners = new ArrayList<IMetricsBuildListener>();
+    
+    /**
+     * The aggregator that accumulates metric values of the classes added so far.
+     */
+    private MetricAggregator classAggregator = new MetricAggregator(ClassMetrics.Id);
+    
+    /**
+     * The aggregator that accumulates metric values of methods within a class.
+     */
+    private MetricAggregator methodAggregator = new MetricAggregator(MethodMetrics.Id);
+    
+    /**
+     * The job that builds the metrics.
+     */
+    private Job buildJob;
+    
+    /**
+     * A flag indicating whether the build was completed.
+     */
+    private volatile boolean completed = false;
+    
+    /**
+     * Creates a builder for a project.
+     * @param project the project whose metrics are built
+     * @param syntactic <code>true</code> if Java files are parsed without resolving bindings, otherwise <code>false</code>
+     * @param display the display whose user-interface thread modifies the project metrics
+     */
+    public ProgressiveMetricsBuilder(IJavaProject project, boolean syntactic, Display display) {
+        this(project, syntactic, false, display);
+    }
+    
+    /**
+     * Creates a builder for a project.
+     * @param project the project whose metrics are built
+     * @param syntactic <code>true</code> if Java files are parsed without resolving bindings, otherwise <code>false</code>
+     * @param cacheEnabled <code>true</code> if the metric values of unchanged files are reused from the cache,
+     * or <code>false</code> if all the files are parsed
+     * @param display the display whose user-interface thread modifies the project metrics
+     */
+    public ProgressiveMetricsBuilder(IJavaProject project, boolean syntactic, boolean cacheEnabled, Display display) {
+        this.project = project;
+        this.display = display;
+        
+        String path = project.getProject().getLocation().toOSString();
+        projectMetrics = new ProjectMetrics(project.getElementName(), path, Time.getCurrentTime());
+        projectMetrics.setSyntactic(syntactic);
+        builtMetrics = new ProjectMetrics(projectMetrics);
+        if (cacheEnabled) {
+            cacheBuilder = new CachedMetricsBuilder(project, syntactic, true);
+        }
+        
+        buildJob = new Job("Code Forest: calculating metrics") {
+            
+            /**
+             * Parses the Java files and builds the metrics.
+             * @param monitor the progress monitor to use to display progress and receive requests for cancellation
+             * @return the result of the execution
+             */
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                return build(monitor);
+            }
+        };
+    }
+    
+    /**
+     * Returns the project metrics shown on the display.
+     * These are the preview metrics while the metrics are built, and the completed metrics after the build succeeded.
+     * @return the project metrics
+     */
+    public ProjectMetrics getProjectMetrics() {
+        return projectMetrics;
+    }
+    
+    /**
+     * Sets the number of threads that parse Java files in parallel.
+     * @param threads the number of threads, or <code>1</code> for a single parser thread
+     */
+    public void setNumberOfThreads(int threads) {
+        if (threads > 0) {
+            this.threads = threads;
+            if (cacheBuilder != null) {
+                cacheBuilder.setNumberOfThreads(threads);
+            }
+        }
+    }
+    
+    /**
+     * Adds a listener that receives the progress of the build.
+     * @param listener the listener
+     */
+    public void addListener(IMetricsBuildListener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+    
+    /**
+     * Starts the build in the background. The files to be measured are collected before this method returns.
+     */
+    public void start() {
+        try {
+            units = new ArrayList<ICompilationUnit>(CachedMetricsBuilder.collectCompilationUnits(project).values());
+            Collections.sort(units, new Comparator<ICompilationUnit>() {
+                
+                public int compare(ICompilationUnit u1, ICompilationUnit u2) {
+                    return u1.getParent().getElementName().compareTo(u2.getParent().getElementName());
+                }
+            });
+        } catch (JavaModelException e) {
+            System.err.println("Metrics build error occurred: " + e.getMessage());
+        }
+        buildJob.schedule();
+    }
+    
+    /**
+     * Returns the number of the files to be measured, which is known after the build was started.
+     * @return the number of the files
+     */
+    public int getNumberOfFiles() {
+        return units.size();
+    }
+    
+    /**
+     * Cancels the build.
+     */
+    public void cancel() {
+        buildJob.cancel();
+    }
+    
+    /**
+     * Tests if the build was completed.
+     * @return <code>true</code> if the build was completed, otherwise <code>false</code>
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+    
+    /**
+     * Builds the metrics by parsing the Java files sorted by their packages.
+     * @param monitor the progress monitor
+     * @return the result of the execution
+     */
+    private IStatus build(IProgressMonitor monitor) {
+        boolean succeeded = false;
+        try {
+            final List<ICompilationUnit> icus = units;
+            monitor.beginTask("Calculating metrics ... ", icus.size() * 2);
+            
+            if (cacheBuilder != null) {
+                Map<String, ICompilationUnit> unitMap = new LinkedHashMap<String, ICompilationUnit>();
+                for (ICompilationUnit icu : icus) {
+                    unitMap.put(icu.getPath().toString(), icu);
+                }
+                cacheBuilder.collect(unitMap, builtMetrics, monitor);
+                for (PackageMetrics pm : builtMetrics.getPackageMetrics()) {
+                    handOver(pm);
+                }
+                
+            } else {
+                MetricsPipeline pipeline = new MetricsPipeline(project, builtMetrics.isSyntactic());
+                pipeline.setNumberOfThreads(threads);
+                pipeline.setPackageHandler(new MetricsPipeline.PackageHandler() {
+                    
+                    /**
+                     * Adds a measured package to the metrics being built, and hands it over.
+                     * @param pm the metrics of the package
+                     * @throws InterruptedException if the display was disposed
+                     */
+                    public void packageMeasured(PackageMetrics pm) throws InterruptedException {
+                        builtMetrics.add(pm);
+                        handOver(pm);
+                    }
+                });
+                pipeline.run(icus, builtMetrics, monitor);
+            }
+            
+            CachedMetricsBuilder.collectEfferentClassNames(builtMetrics);
+            builtMetrics.collectMetricsInfoAfterMerge(icus.size());
+            builtMetrics.sortPackages();
+            succeeded = true;
+            
+        } catch (JavaModelException e) {
+            System.err.println("Metrics build error occurred: " + e.getMessage());
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            System.out.println("# InvocationTargetException because " + cause);
+            for (StackTraceElement elem : cause.getStackTrace()) {
+                System.err.println(elem.toString());
+            }
+        } catch (InterruptedException e) {
+            succeeded = false;
+        } finally {
+            monitor.done();
+        }
+        
+        completed = true;
+        final boolean result = succeeded;
+        try {
+            runInDisplay(new Runnable() {
+                
+                /**
+                 * Replaces the preview with the completed metrics and notifies the listeners of the completion.
+                 */
+                public void run() {
+                    if (result) {
+                        projectMetrics = builtMetrics;
+                    }
+                    for (IMetricsBuildListener listener : new ArrayList<IMetricsBuildListener>(listeners)) {
+                        listener.buildCompleted(projectMetrics, result);
+                    }
+                }
+            });
+        } catch (InterruptedException e) {
+            return Status.CANCEL_STATUS;
+        }
+        
+        if (succeeded) {
+            return Status.OK_STATUS;
+        }
+        return Status.CANCEL_STATUS;
+    }
+    
+    /**
+     * Hands over a measured package, whose copy is added to the preview metrics in the user-interface thread.
+     * @param pm the metrics of the package
+     * @throws InterruptedException if the display was disposed
+     */
+    private void handOver(final PackageMetrics pm) throws InterruptedException {
+        runInDisplay(new Runnable() {
+            
+            /**
+             * Adds the copy of the package and notifies the listeners.
+             */
+            public void run() {
+                add(pm);
+            }
+        });
+    }
+    
+    /**
+     * Adds the copy of a measured package to the preview metrics and accumulates the metric values of its classes.
+     * This method is called in the user-interface thread, while the background job does not modify the measured package.
+     * @param measured the metrics of the package, which belong to the metrics being built
+     */
+    private void add(PackageMetrics measured) {
+        PackageMetrics pm = new PackageMetrics(measured, projectMetrics);
+        for (ClassMetrics cm : measured.getClassMetrics()) {
+            pm.add(new ClassMetrics(cm, pm));
+        }
+        projectMetrics.add(pm);
+        for (ClassMetrics cm : pm.getClassMetrics()) {
+            classAggregator.add(cm);
+            
+            methodAggregator.clear();
+            cm.collectAggregatedMetricInfo(methodAggregator);
+        }
+        classAggregator.store(projectMetrics);
+        projectMetrics.resetNormalizer();
+        
+        for (IMetricsBuildListener listener : new ArrayList<IMetricsBuildListener>(listeners)) {
+            listener.packageAdded(pm);
+        }
+    }
+    
+    /**
+     * Runs an action in the user-interface thread and waits for its completion.
+     * @param action the action
+     * @throws InterruptedException if the display was disposed
+     */
+    private void runInDisplay(Runnable action) throws InterruptedException {
+        if (display == null || display.isDisposed()) {
+            throw new InterruptedException();
+        }
+        display.syncExec(action);
+    }
+}
@@ -5,9 +5,14 @@
 package org.jtool.codeforest.metrics.java;
 
 import org.jtool.codeforest.Activator;
+import org.jtool.codeforest.metrics.IMetricProvider;
+import org.jtool.codeforest.metrics.MetricProviderRegistry;
 import org.jtool.codeforest.metrics.MetricSort;
 import org.jtool.codeforest.metrics.UnsupportedMetricsException;
 import org.jtool.codeforest.util.Time;
+import org.jtool.eclipse.model.java.JavaClass;
+import org.jtool.eclipse.model.java.JavaField;
+import org.jtool.eclipse.model.java.JavaMethod;
 import org.jtool.eclipse.model.java.JavaPackage;
 import org.jtool.eclipse.model.java.JavaProject;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -17,8 +22,27 @@ import org.eclipse.ui.IWorkbenchWindow;
 import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * An object storing information on a project.
@@ -39,13 +63,83 @@ public class ProjectMetrics extends CommonMetrics {
     /**
      * The collection of all package metrics for this project.
      */
-    protected List<PackageMetrics> packageMetrics = new ArrayList<PackageMetrics>();
+    protected List<PackageMetrics> packageMetrics = new HashedList<PackageMetrics>();
+    
+    /**
+     * The table that interns the names of packages, classes, methods, and fields within this project.
+     */
+    private SymbolTable symbolTable = new SymbolTable();
     
     /**
      * The time when this project information was generated.
      */
     private long time;
     
+    /**
+     * A flag indicating whether this project was measured without resolving bindings.
+     */
+    private boolean syntactic = false;
+    
+    /**
+     * The number of Java files in this project, or <code>-1</code> if the files in the model of the project are counted.
+     */
+    private int numberOfFiles = -1;
+    
+    /**
+     * The index of dependencies between classes, methods, and fields within this project.
+     */
+    private DependencyIndex dependencyIndex;
+    
+    /**
+     * The inheritance hierarchy of classes within this project.
+     */
+    private InheritanceHierarchy inheritanceHierarchy;
+    
+    /**
+     * The dependency graph of classes within this project.
+     */
+    private CouplingGraph couplingGraph;
+    
+    /**
+     * The aggregator that holds accumulated metric values of all the classes in this project.
+     */
+    private volatile MetricAggregator classAggregator;
+    
+    /**
+     * The sorts of lazily calculated class metrics whose values and aggregated values are up to date.
+     */
+    private Set<String> evaluatedSorts = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    
+    /**
+     * The lock that serializes the bulk calculation of lazily calculated class metrics.
+     */
+    private final Object evaluationLock = new Object();
+    
+    /**
+     * The dependency graph of packages within this project.
+     */
+    private PackageGraph packageGraph;
+    
+    /**
+     * The latest published snapshot of this project, or <code>null</code> if no snapshot was published.
+     */
+    private final AtomicReference<MetricsSnapshot> snapshot = new AtomicReference<MetricsSnapshot>();
+    
+    /**
+     * The normalizer of class metrics within this project, or <code>null</code> if it has not been created.
+     */
+    private volatile MetricNormalizer normalizer;
+    
+    /**
+     * The lock that guards the model of the project, which is shared with the later versions of this project metrics.
+     */
+    private ReadWriteLock modelLock = new ReentrantReadWriteLock();
+    
+    /**
+     * The interval in milliseconds for checking cancellation while waiting for parallel calculation.
+     */
+    private static final long POLLING_INTERVAL = 100;
+    
     /**
      * Creates a new object storing project metrics.
      * @param name the name of the project
@@ -64,17 +158,64 @@ public class ProjectMetrics extends CommonMetrics {
      * @param node an AST node for this project
      */
     public ProjectMetrics(JavaProject jproject) {
+        this(jproject, 1);
+    }
+    
+    /**
+     * Creates a new object storing project metrics.
+     * @param node an AST node for this project
+     * @param threads the number of threads that calculate package metrics in parallel
+     */
+    public ProjectMetrics(JavaProject jproject, int threads) {
+        this(jproject, threads, false);
+    }
+    
+    /**
+     * Creates a new object storing project metrics.
+     * @param node an AST node for this project
+     * @param threads the number of threads that calculate package metrics in parallel
+     * @param syntactic <code>true</code> if the project was parsed without resolving bindings, otherwise <code>false</code>
+     */
+    public ProjectMetrics(JavaProject jproject, int threads, boolean syntactic) {
         super();
         
         this.jproject = jproject;
+        this.syntactic = syntactic;
+        if (!syntactic) {
+            dependencyIndex = new DependencyIndex(jproject);
+            inheritanceHierarchy = dependencyIndex.getInheritanceHierarchy();
+        }
         
-        calculatePackageMetrics(this);
+        if (threads > 1) {
+            calculatePackageMetricsInParallel(this, threads);
+        } else {
+            calculatePackageMetrics(this);
+        }
         
         collectMetricInfo();
-        collectMetricInfoForTotal();
-        collectMetricInfoForMax();
+        collectProvidedMetricInfo();
+        collectAggregatedMetricInfo();
         
         time = Time.getCurrentTime();
+        publishSnapshot();
+    }
+    
+    /**
+     * Creates a new object storing project metrics, which is the next version of given project metrics.
+     * The new version shares the model of the project and its dependency index with the previous version, and contains no package metrics.
+     * It is built without modifying the previous version, which might be read from other threads while the new version is built.
+     * @param mproject the previous version of the project metrics
+     */
+    ProjectMetrics(ProjectMetrics mproject) {
+        super();
+        
+        jproject = mproject.jproject;
+        time = mproject.time;
+        syntactic = mproject.syntactic;
+        numberOfFiles = mproject.getNumberOfFiles();
+        dependencyIndex = mproject.dependencyIndex;
+        modelLock = mproject.modelLock;
+        snapshot.set(mproject.getSnapshot());
     }
     
     /**
@@ -134,6 +275,138 @@ public class ProjectMetrics extends CommonMetrics {
         }
     }
     
+    /**
+     * Calculates package metrics and class metrics by using a pool of threads.
+     * The package metrics are stored in the same order as the sequential calculation.
+     * The model of the project fills some of its collections on first access, which is not thread-safe.
+     * Therefore, all the collections that the metrics read are filled in the thread that submits the calculation,
+     * and the threads in the pool only read the filled collections, which are visible to them since they were submitted afterward.
+     * @param projectMetrics the project metrics that stores the calculated metrics
+     * @param threads the number of threads in the pool
+     */
+    private void calculatePackageMetricsInParallel(final ProjectMetrics projectMetrics, final int threads) {
+        try {
+            IWorkbenchWindow workbenchWindow = Activator.getWorkbenchWindow();
+            workbenchWindow.run(true, true, new IRunnableWithProgress() {
+                
+                /**
+                 * Creates a model by parsing Java files.
+                 * @param monitor the progress monitor to use to display progress and receive requests for cancellation
+                 * @exception InvocationTargetException if the run method must propagate a checked exception
+                 * @exception InterruptedException if the operation detects a request to cancel
+                 */
+                @Override
+                public void run(IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
+                    List<JavaPackage> jpackages = new ArrayList<JavaPackage>(jproject.getJavaPackages());
+                    monitor.beginTask("Calculating metrics ... ", jpackages.size() * 2);
+                    
+                    for (JavaPackage jp : jpackages) {
+                        if (monitor.isCanceled()) {
+                            monitor.done();
+                            throw new InterruptedException();
+                        }
+                        
+                        monitor.subTask("Loading " + jp.getName());
+                        loadModel(jp);
+                        monitor.worked(1);
+                    }
+                    
+                    ExecutorService executor = Executors.newFixedThreadPool(threads);
+                    CompletionService<Integer> service = new ExecutorCompletionService<Integer>(executor);
+                    final PackageMetrics[] results = new PackageMetrics[jpackages.size()];
+                    
+                    try {
+                        for (int i = 0; i < jpackages.size(); i++) {
+                            final int index = i;
+                            final JavaPackage jp = jpackages.get(i);
+                            service.submit(new Callable<Integer>() {
+                                
+                                /**
+                                 * Calculates the metrics of a package.
+                                 * @return the index of the calculated package
+                                 */
+                                public Integer call() {
+                                    results[index] = new PackageMetrics(jp, projectMetrics);
+                                    return new Integer(index);
+                                }
+                            });
+                        }
+                        
+                        int count = 0;
+                        while (count < jpackages.size()) {
+                            if (monitor.isCanceled()) {
+                                monitor.done();
+                                throw new InterruptedException();
+                            }
+                            
+                            Future<Integer> future = service.poll(POLLING_INTERVAL, TimeUnit.MILLISECONDS);
+                            if (future != null) {
+                                int index = future.get().intValue();
+                                count++;
+                                
+                                monitor.subTask(count + "/" + jpackages.size() + " - " + jpackages.get(index).getName());
+                                monitor.worked(1);
+                            }
+                        }
+                        
+                    } catch (ExecutionException e) {
+                        throw new InvocationTargetException(e.getCause());
+                    } finally {
+                        executor.shutdownNow();
+                    }
+                    
+                    for (PackageMetrics pm : results) {
+                        packageMetrics.add(pm);
+                    }
+                    monitor.done();
+                }
+                
+            });
+            
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            System.out.println("# InvocationTargetException because " + cause);
+            for (StackTraceElement elem : e.getStackTrace()) {
+                System.err.println(elem.toString());
+            }
+        } catch (InterruptedException e) {
+            return;
+        }
+    }
+    
+    /**
+     * Fills the collections of the model of a package, its classes, and their members that are read while their metrics are calculated.
+     * @param jp the package
+     */
+    private static void loadModel(JavaPackage jp) {
+        jp.getAfferentJavaPackages();
+        jp.getEfferentJavaPackages();
+        for (JavaClass jc : jp.getJavaClasses()) {
+            jc.getAfferentJavaClasses();
+            jc.getEfferentJavaClasses();
+            jc.getAfferentJavaClassesInProject();
+            jc.getEfferentJavaClassesInProject();
+            jc.getAllSuperClasses();
+            jc.getChildren();
+            jc.getSuperInterfaceNames();
+            
+            for (JavaMethod jm : jc.getJavaMethods()) {
+                jm.getCallingJavaMethods();
+                jm.getCalledJavaMethods();
+                jm.getCalledJavaMethodsInProject();
+                jm.getAccessingJavaFields();
+                jm.getAccessedJavaFields();
+                jm.getAccessedJavaFieldsInProject();
+            }
+            for (JavaField jf : jc.getJavaFields()) {
+                jf.getAccessingJavaMethods();
+                jf.getCalledJavaMethods();
+                jf.getAccessingJavaFields();
+                jf.getAccessedJavaFields();
+            }
+        }
+    }
+    
     /**
      * Returns the object representing this project.
      * @return the project object
@@ -142,6 +415,134 @@ public class ProjectMetrics extends CommonMetrics {
         return jproject;
     }
     
+    /**
+     * Tests if this project was measured without resolving bindings.
+     * In this case, metrics that depend on relations between classes, methods, and fields are not supported.
+     * @return <code>true</code> if the bindings were not resolved, otherwise <code>false</code>
+     */
+    public boolean isSyntactic() {
+        return syntactic;
+    }
+    
+    /**
+     * Sets whether this project was measured without resolving bindings.
+     * @param syntactic <code>true</code> if the bindings were not resolved, otherwise <code>false</code>
+     */
+    protected void setSyntactic(boolean syntactic) {
+        this.syntactic = syntactic;
+    }
+    
+    /**
+     * Returns the table that interns the names of packages, classes, methods, and fields within this project.
+     * @return the symbol table
+     */
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+    
+    /**
+     * Returns the lock that guards the model of the project.
+     * The read lock must be held while the model is read from threads other than the one that updates it,
+     * and the write lock must be held while the model is modified.
+     * @return the lock
+     */
+    ReadWriteLock getModelLock() {
+        return modelLock;
+    }
+    
+    /**
+     * Returns the index of dependencies between classes, methods, and fields within this project.
+     * @return the dependency index, or <code>null</code> if this project information was not built from the whole model of the project
+     */
+    public DependencyIndex getDependencyIndex() {
+        return dependencyIndex;
+    }
+    
+    /**
+     * Returns the inheritance hierarchy of classes within this project, which answers which classes inherit from a class.
+     * @return the inheritance hierarchy, or <code>null</code> if this project information was imported or measured without resolving bindings
+     */
+    public InheritanceHierarchy getInheritanceHierarchy() {
+        return inheritanceHierarchy;
+    }
+    
+    /**
+     * Returns the dependency graph of classes within this project.
+     * The graph is built from the dependency index when it is requested for the first time.
+     * @return the dependency graph, or <code>null</code> if this project information was imported or measured without resolving bindings
+     */
+    public synchronized CouplingGraph getCouplingGraph() {
+        if (couplingGraph == null && dependencyIndex != null) {
+            couplingGraph = CouplingGraph.createFromIndex(dependencyIndex);
+        }
+        return couplingGraph;
+    }
+    
+    /**
+     * Rebuilds the dependency graph and the inheritance hierarchy of classes from the names of related classes,
+     * and updates coupling, inheritance, and the numbers of afferent and efferent classes on all the classes.
+     * The names are used since the classes whose metrics were loaded from a cache have no relations to the other classes.
+     */
+    protected void collectCouplingInfo() {
+        if (syntactic) {
+            setCouplingGraph(null);
+            inheritanceHierarchy = null;
+            return;
+        }
+        
+        List<ClassMetrics> classes = getClassMetrics();
+        CouplingGraph coupling = CouplingGraph.createFromNames(classes);
+        setCouplingGraph(coupling);
+        inheritanceHierarchy = InheritanceHierarchy.createFromNames(classes);
+        for (ClassMetrics cm : classes) {
+            cm.collectCouplingInfo(coupling);
+            cm.collectInheritanceInfo(inheritanceHierarchy);
+        }
+        collectRelationCountInfo(classes);
+    }
+    
+    /**
+     * Collects the numbers of afferent and efferent classes of classes from the completed names of related classes.
+     * The numbers collected while the classes are measured one by one miss the classes that have not been measured yet,
+     * so they are collected again after all the classes were measured and their names of related classes were completed.
+     * @param classes the collection of all the class metrics for this project
+     */
+    private void collectRelationCountInfo(List<ClassMetrics> classes) {
+        Set<String> classNames = new HashSet<String>();
+        for (ClassMetrics cm : classes) {
+            classNames.add(cm.getQualifiedName());
+        }
+        for (ClassMetrics cm : classes) {
+            cm.collectRelationCountInfo(classNames);
+        }
+    }
+    
+    /**
+     * Builds the dependency graph of packages, and stores the instability, abstractness, distance from the main sequence,
+     * and package cycles into the package metrics.
+     */
+    protected void collectPackageGraphInfo() {
+        packageGraph = PackageGraph.create(this);
+        packageGraph.store(this);
+        resetNormalizer();
+    }
+    
+    /**
+     * Returns the dependency graph of packages within this project.
+     * @return the dependency graph, or <code>null</code> if it has not been built
+     */
+    public PackageGraph getPackageGraph() {
+        return packageGraph;
+    }
+    
+    /**
+     * Replaces the dependency graph of classes within this project.
+     * @param coupling the dependency graph
+     */
+    private synchronized void setCouplingGraph(CouplingGraph coupling) {
+        couplingGraph = coupling;
+    }
+    
     /**
      * Obtains the collection of all package metrics for this project.
      * @return the collection of the package metrics
@@ -160,6 +561,14 @@ public class ProjectMetrics extends CommonMetrics {
         }
     }
     
+    /**
+     * Removes a package metrics object.
+     * @param pm the package metrics
+     */
+    public void remove(PackageMetrics pm) {
+        packageMetrics.remove(pm);
+    }
+    
     /**
      * Obtains the collection of all class metrics for this project.
      * @return the collection of the class metrics
@@ -198,22 +607,45 @@ public class ProjectMetrics extends CommonMetrics {
     
     /**
      * Collects information on this project.
+     * The numbers of packages and classes are counted from the stored metrics, since the model of the project
+     * keeps classes that were replaced by incremental updates. The number of files is tracked by the incremental updates.
      */
-    private void collectMetricInfo() {
+    protected void collectMetricInfo() {
         try {
-            metrics.put(MetricSort.NUMBER_OF_FILES, new Double(jproject.getJavaFiles().size()));
-            metrics.put(MetricSort.NUMBER_OF_PACKAGES, new Double(jproject.getJavaPackages().size()));
-            metrics.put(MetricSort.NUMBER_OF_CLASSES, new Double(jproject.getJavaClasses().size()));
+            putMetricValue(MetricSort.NUMBER_OF_FILES, getNumberOfFiles());
+            putMetricValue(MetricSort.NUMBER_OF_PACKAGES, packageMetrics.size());
+            putMetricValue(MetricSort.NUMBER_OF_CLASSES, getClassMetrics().size());
             
-            metrics.put(MetricSort.LINES_OF_CODE, sum(MetricSort.LINES_OF_CODE));
-            metrics.put(MetricSort.NUMBER_OF_METHODS, sum(MetricSort.NUMBER_OF_METHODS));
-            metrics.put(MetricSort.NUMBER_OF_FIELDS, sum(MetricSort.NUMBER_OF_FIELDS));
-            metrics.put(MetricSort.NUMBER_OF_METHODS_AND_FIELDS, sum(MetricSort.NUMBER_OF_METHODS_AND_FIELDS));
-            metrics.put(MetricSort.NUMBER_OF_STATEMENTS, sum(MetricSort.NUMBER_OF_STATEMENTS));
+            putMetricValue(MetricSort.LINES_OF_CODE, sum(MetricSort.LINES_OF_CODE));
+            putMetricValue(MetricSort.NUMBER_OF_METHODS, sum(MetricSort.NUMBER_OF_METHODS));
+            putMetricValue(MetricSort.NUMBER_OF_FIELDS, sum(MetricSort.NUMBER_OF_FIELDS));
+            putMetricValue(MetricSort.NUMBER_OF_METHODS_AND_FIELDS, sum(MetricSort.NUMBER_OF_METHODS_AND_FIELDS));
+            putMetricValue(MetricSort.NUMBER_OF_STATEMENTS, sum(MetricSort.NUMBER_OF_STATEMENTS));
             
         } catch (UnsupportedMetricsException e) {
             System.out.println(e.getMessage() + " in the project: " + getName());
         }
+        
+        collectPackageGraphInfo();
+    }
+    
+    /**
+     * Returns the number of Java files in this project.
+     * @return the number of the files, which are counted in the model of the project unless they were set
+     */
+    int getNumberOfFiles() {
+        if (numberOfFiles >= 0) {
+            return numberOfFiles;
+        }
+        return jproject.getJavaFiles().size();
+    }
+    
+    /**
+     * Sets the number of Java files in this project, which is tracked by incremental updates.
+     * @param numberOfFiles the number of the files
+     */
+    void setNumberOfFiles(int numberOfFiles) {
+        this.numberOfFiles = numberOfFiles;
     }
     
     /**
@@ -222,154 +654,365 @@ public class ProjectMetrics extends CommonMetrics {
      * @return the sum of the values
      * @throws UnsupportedMetricsException if the metric value is not obtained
      */
-    private Double sum(String sort) throws UnsupportedMetricsException {
+    private double sum(String sort) throws UnsupportedMetricsException {
         double value = 0;
         for (PackageMetrics pm : packageMetrics) {
             value = value + pm.getMetricValueWithException(sort);
         }
-        return new Double(value);
+        return value;
     }
     
     /**
-     * Collects information on this project, which is related to total metric values.
+     * Collects the metrics calculated by the registered metric providers.
+     * This method must be called after all the core metrics of the project, its packages, and its classes were collected,
+     * so that the providers can read them, and before the metric values are aggregated, so that the provided metrics are aggregated.
      */
-    protected void collectMetricInfoForTotal() {
-        double totalLOC = 0;
-        double totalNOST = 0;
-        double totalNOMD = 0;
-        double totalNOFD = 0;
-        double totalNOMF = 0;
-        
-        double totalNOPM = 0;
-        double totalNOACL = 0;
-        double totalNOECL = 0;
-        
-        double totalNOC = 0;
-        double totalDIT = 0;
-        double totalRFC = 0;
-        double totalCBO = 0;
-        double totalLCOM = 0;
-        double totalWMC = 0;
-        
-        List<ClassMetrics> classes = getClassMetrics();
-        for (ClassMetrics cm : classes) {
-            try {
-                totalLOC = totalLOC + cm.getMetricValueWithException(MetricSort.LINES_OF_CODE);
-                totalNOST = totalNOST + cm.getMetricValueWithException(MetricSort.NUMBER_OF_STATEMENTS);
-                totalNOMD = totalNOMD + cm.getMetricValueWithException(MetricSort.NUMBER_OF_METHODS);
-                totalNOFD = totalNOFD + cm.getMetricValueWithException(MetricSort.NUMBER_OF_FIELDS);
-                totalNOMF = totalNOMF + cm.getMetricValueWithException(MetricSort.NUMBER_OF_METHODS_AND_FIELDS);
-                
-                totalNOPM = totalNOPM + cm.getMetricValueWithException(MetricSort.NUMBER_OF_PUBLIC_METHODS);
-                totalNOACL = totalNOACL + cm.getMetricValueWithException(MetricSort.NUMBER_OF_AFFERENT_CLASSES);
-                totalNOECL = totalNOECL + cm.getMetricValueWithException(MetricSort.NUMBER_OF_EFFERENT_CLASSES);
+    protected void collectProvidedMetricInfo() {
+        List<IMetricProvider> providers = MetricProviderRegistry.getProviders();
+        if (providers.size() > 0) {
+            MetricScheduler scheduler = new MetricScheduler(providers);
+            scheduler.run(this);
+        }
+    }
+    
+    /**
+     * Collects information on this project and its classes, which is related to total and maximum metric values.
+     * Lazily calculated class metrics are calculated here, so that this method must be called in the step that builds this project metrics.
+     * Metric values of all the classes and methods are aggregated while the project is traversed once.
+     */
+    protected void collectAggregatedMetricInfo() {
+        synchronized (evaluationLock) {
+            evaluatedSorts.clear();
+            List<String> targets = Arrays.asList(ClassMetrics.LAZY_SORTS);
+            boolean evaluated = calculate(targets);
+            aggregate();
+            if (evaluated) {
+                evaluatedSorts.addAll(targets);
+            }
+        }
+    }
+    
+    /**
+     * Aggregates the metric values of all the classes and methods, and stores the total and maximum values.
+     */
+    private void aggregate() {
+        MetricAggregator classAggregator = new MetricAggregator(ClassMetrics.Id);
+        MetricAggregator methodAggregator = new MetricAggregator(MethodMetrics.Id);
+        for (PackageMetrics pm : packageMetrics) {
+            for (ClassMetrics cm : pm.getClassMetrics()) {
+                classAggregator.add(cm);
                 
-                totalNOC = totalNOC + cm.getMetricValueWithException(MetricSort.NUMBER_OF_CHILDREN);
-                totalDIT = totalDIT + cm.getMetricValueWithException(MetricSort.DEPTH_OF_INHERITANCE_TREE);
-                totalRFC = totalRFC + cm.getMetricValueWithException(MetricSort.RESPONSE_FOR_CLASS);
-                totalCBO = totalCBO + cm.getMetricValueWithException(MetricSort.COUPLING_BETWEEN_OBJECTS);
-                totalLCOM = totalLCOM + cm.getMetricValueWithException(MetricSort.LACK_OF_COHESION_OF_METHODS);
-                totalWMC = totalWMC + cm.getMetricValueWithException(MetricSort.WEIGHTED_METHODS_PER_CLASS);
-            } catch (UnsupportedMetricsException e) {
-                System.out.println(e.getMessage() + " in the project: " + getName());
+                methodAggregator.clear();
+                cm.collectAggregatedMetricInfo(methodAggregator);
             }
         }
-        
-        putMetricValue(MetricSort.TOTAL_LINE_OF_CODE, totalLOC);
-        putMetricValue(MetricSort.TOTAL_NUMBER_OF_STATEMENTS, totalNOST);
-        putMetricValue(MetricSort.TOTAL_NUMBER_OF_METHODS, totalNOMD);
-        putMetricValue(MetricSort.TOTAL_NUMBER_OF_FIELDS, totalNOFD);
-        putMetricValue(MetricSort.TOTAL_NUMBER_OF_METHODS_AND_FIELDS, totalNOMF);
-        
-        putMetricValue(MetricSort.TOTAL_NUMBER_OF_PUBLIC_METHODS, totalNOPM);
-        putMetricValue(MetricSort.TOTAL_NUMBER_OF_AFFERENT_CLASSES, totalNOACL);
-        putMetricValue(MetricSort.TOTAL_NUMBER_OF_EFFERENT_CLASSES, totalNOECL);
-        
-        putMetricValue(MetricSort.TOTAL_NUMBER_OF_CHILDREN, totalNOC);
-        putMetricValue(MetricSort.TOTAL_DEPTH_OF_INHERITANCE_TREE, totalDIT);
-        putMetricValue(MetricSort.TOTAL_RESPONSE_FOR_CLASS, totalRFC);
-        putMetricValue(MetricSort.TOTAL_COUPLING_BETWEEN_OBJECTS, totalCBO);
-        putMetricValue(MetricSort.TOTAL_LACK_OF_COHESION_OF_METHODS, totalLCOM);
-        putMetricValue(MetricSort.TOTAL_WEIGHTED_METHODS_PER_CLASS, totalWMC);
-        
-        for (ClassMetrics cm : classes) {
-            cm.collectMetricInfoForTotal();
+        classAggregator.store(this);
+        this.classAggregator = classAggregator;
+        resetNormalizer();
+    }
+    
+    /**
+     * Returns the normalizer of class metrics within this project.
+     * The normalizer is created again after metric values of this project are aggregated.
+     * @return the normalizer
+     */
+    public MetricNormalizer getNormalizer() {
+        MetricNormalizer current = normalizer;
+        if (current == null) {
+            current = new MetricNormalizer(this);
+            normalizer = current;
         }
+        return current;
     }
     
     /**
-     * Collects information on this project, which is related to maximum metric values.
+     * Discards the normalizer of class metrics since metric values of this project have changed.
      */
-    protected void collectMetricInfoForMax() {
-        double maxLOC = 0;
-        double maxNOST = 0;
-        double maxNOMD = 0;
-        double maxNOFD = 0;
-        double maxNOMF = 0;
-        
-        double maxNOPM = 0;
-        double maxNOACL = 0;
-        double maxNOECL = 0;
-        
-        double maxNOC = 0;
-        double maxDIT = 0;
-        double maxRFC = 0;
-        double maxCBO = 0;
-        double maxLCOM = 0;
-        double maxWMC = 0;
+    void resetNormalizer() {
+        normalizer = null;
+    }
+    
+    /**
+     * Calculates the values of lazily calculated class metrics with given sorts for all the classes in this project,
+     * and then stores their total and maximum values. The classes are processed in parallel.
+     * Sorts of metrics that are not calculated lazily are ignored.
+     * @param sorts the collection of the sorts of the metrics
+     */
+    public void evaluateMetrics(Collection<String> sorts) {
+        synchronized (evaluationLock) {
+            List<String> targets = new ArrayList<String>();
+            for (String sort : sorts) {
+                if (ClassMetrics.isLazySort(sort) && !evaluatedSorts.contains(sort)) {
+                    targets.add(sort);
+                }
+            }
+            if (targets.size() == 0) {
+                return;
+            }
+            
+            if (calculate(targets)) {
+                aggregate();
+                evaluatedSorts.addAll(targets);
+            }
+        }
+    }
+    
+    /**
+     * Calculates the values of lazily calculated class metrics with given sorts for the classes in this project
+     * whose values have not been calculated yet. The classes in each package are processed in parallel.
+     * @param targets the collection of the sorts of the metrics
+     * @return <code>true</code> if the values were calculated, or <code>false</code> if the calculation failed or was interrupted
+     */
+    private boolean calculate(final List<String> targets) {
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        for (PackageMetrics pm : packageMetrics) {
+            final List<ClassMetrics> classes = new ArrayList<ClassMetrics>();
+            for (ClassMetrics cm : pm.getClassMetrics()) {
+                for (String sort : targets) {
+                    if (!cm.isEvaluated(sort)) {
+                        classes.add(cm);
+                        break;
+                    }
+                }
+            }
+            
+            if (classes.size() > 0) {
+                tasks.add(new Callable<Integer>() {
+                    
+                    /**
+                     * Calculates the metric values of classes in a package.
+                     * @return the number of the classes
+                     */
+                    public Integer call() {
+                        for (ClassMetrics cm : classes) {
+                            for (String sort : targets) {
+                                cm.evaluate(sort);
+                            }
+                        }
+                        return new Integer(classes.size());
+                    }
+                });
+            }
+        }
         
-        List<ClassMetrics> classes = getClassMetrics();
-        for (ClassMetrics cm : classes) {
+        if (tasks.size() > 0) {
+            int threads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
             try {
-                maxLOC = Math.max(maxLOC, cm.getMetricValueWithException(MetricSort.LINES_OF_CODE));
-                maxNOST = Math.max(maxNOST, cm.getMetricValueWithException(MetricSort.NUMBER_OF_STATEMENTS));
-                maxNOMD = Math.max(maxNOMD, cm.getMetricValueWithException(MetricSort.NUMBER_OF_METHODS));
-                maxNOFD = Math.max(maxNOFD, cm.getMetricValueWithException(MetricSort.NUMBER_OF_FIELDS));
-                maxNOMF = Math.max(maxNOMF, cm.getMetricValueWithException(MetricSort.NUMBER_OF_METHODS_AND_FIELDS));
-                
-                maxNOPM = Math.max(maxNOPM, cm.getMetricValueWithException(MetricSort.NUMBER_OF_PUBLIC_METHODS));
-                maxNOACL = Math.max(maxNOACL, cm.getMetricValueWithException(MetricSort.NUMBER_OF_AFFERENT_CLASSES));
-                maxNOECL = Math.max(maxNOECL, cm.getMetricValueWithException(MetricSort.NUMBER_OF_EFFERENT_CLASSES));
+                for (Future<Integer> future : executor.invokeAll(tasks)) {
+                    future.get();
+                }
                 
-                maxNOC = Math.max(maxNOC, cm.getMetricValueWithException(MetricSort.NUMBER_OF_CHILDREN));
-                maxDIT = Math.max(maxDIT, cm.getMetricValueWithException(MetricSort.DEPTH_OF_INHERITANCE_TREE));
-                maxRFC = Math.max(maxRFC, cm.getMetricValueWithException(MetricSort.RESPONSE_FOR_CLASS));
-                maxCBO = Math.max(maxCBO, cm.getMetricValueWithException(MetricSort.COUPLING_BETWEEN_OBJECTS));
-                maxLCOM = Math.max(maxLCOM, cm.getMetricValueWithException(MetricSort.LACK_OF_COHESION_OF_METHODS));
-                maxWMC = Math.max(maxWMC, cm.getMetricValueWithException(MetricSort.WEIGHTED_METHODS_PER_CLASS));
-            } catch (UnsupportedMetricsException e) {
-                System.out.println(e.getMessage() + " in the project: " + getName());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                System.out.println("# ExecutionException because " + cause);
+                for (StackTraceElement elem : e.getStackTrace()) {
+                    System.err.println(elem.toString());
+                }
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                executor.shutdownNow();
             }
         }
+        return true;
+    }
+    
+    /**
+     * Tests if the value of a metric with a given sort is available. The total and maximum values of a lazily calculated
+     * class metric are not available until the metric is calculated for all the classes, e.g., while a preview is built.
+     * @param sort the sort of the metric
+     * @return <code>true</code> if the value is available, otherwise <code>false</code>
+     */
+    private boolean isAvailable(String sort) {
+        String aggregatedSort = MetricAggregator.getAggregatedSort(ClassMetrics.Id, sort);
+        return aggregatedSort == null || !ClassMetrics.isLazySort(aggregatedSort) || evaluatedSorts.contains(aggregatedSort);
+    }
+    
+    /**
+     * Returns the value of a metric with a given sort. This method never calculates lazily calculated class metrics.
+     * @param sort the sort of the metric
+     * @return the metric value
+     * @throws UnsupportedMetricsException if the metric value is not obtained or not available yet
+     */
+    @Override
+    public double getMetricValueWithException(String sort) throws UnsupportedMetricsException {
+        if (!isAvailable(sort)) {
+            throw new UnsupportedMetricsException("Cannot obtain the metric value of " + sort);
+        }
+        return super.getMetricValueWithException(sort);
+    }
+    
+    /**
+     * Returns the value of a metric with a given sort. This method never calculates lazily calculated class metrics.
+     * @param sort the sort of the metric
+     * @return the metric value, or <code>-1</code> if the value is not obtained or not available yet
+     */
+    @Override
+    public double getMetricValue(String sort) {
+        if (!isAvailable(sort)) {
+            return -1.0;
+        }
+        return super.getMetricValue(sort);
+    }
+    
+    /**
+     * Obtains the map view of the stored metric values, which exclude the values that are not available yet.
+     * @return the metric values
+     */
+    @Override
+    public Map<String, Double> getMetricValues() {
+        Map<String, Double> values = super.getMetricValues();
+        if (evaluatedSorts.size() == ClassMetrics.LAZY_SORTS.length) {
+            return values;
+        }
         
-        putMetricValue(MetricSort.MAX_LINE_OF_CODE, maxLOC);
-        putMetricValue(MetricSort.MAX_NUMBER_OF_STATEMENTS, maxNOST);
-        putMetricValue(MetricSort.MAX_NUMBER_OF_METHODS, maxNOMD);
-        putMetricValue(MetricSort.MAX_NUMBER_OF_FIELDS, maxNOFD);
-        putMetricValue(MetricSort.MAX_NUMBER_OF_METHODS_AND_FIELDS, maxNOMF);
-        
-        putMetricValue(MetricSort.MAX_NUMBER_OF_PUBLIC_METHODS, maxNOPM);
-        putMetricValue(MetricSort.MAX_NUMBER_OF_AFFERENT_CLASSES, maxNOACL);
-        putMetricValue(MetricSort.MAX_NUMBER_OF_EFFERENT_CLASSES, maxNOECL);
+        Map<String, Double> availableValues = new LinkedHashMap<String, Double>();
+        for (Map.Entry<String, Double> entry : values.entrySet()) {
+            if (isAvailable(entry.getKey())) {
+                availableValues.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return availableValues;
+    }
+    
+    /**
+     * Obtains the map view of the stored metric values without calculating the lazily calculated class metrics.
+     * @return the metric values
+     */
+    Map<String, Double> getEvaluatedMetricValues() {
+        return metrics;
+    }
+    
+    /**
+     * Returns the latest published snapshot of this project. This method can be called from any thread without locking.
+     * @return the snapshot, or <code>null</code> if no snapshot was published
+     */
+    public MetricsSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+    
+    /**
+     * Publishes a new version of the snapshot of this project, assuming that all the packages might be changed.
+     * This method must be called from the thread that updates this project metrics.
+     * @return the published snapshot
+     */
+    public MetricsSnapshot publishSnapshot() {
+        return publishSnapshot(null);
+    }
+    
+    /**
+     * Publishes a new version of the snapshot of this project.
+     * The snapshots of packages that were not changed and whose values are unchanged are shared with the previous version.
+     * This method must be called from the thread that updates this project metrics.
+     * @param changed the collection of packages changed since the previous version, or <code>null</code> if all the packages might be changed
+     * @return the published snapshot
+     */
+    public MetricsSnapshot publishSnapshot(Collection<PackageMetrics> changed) {
+        while (true) {
+            MetricsSnapshot previous = snapshot.get();
+            MetricsSnapshot next = new MetricsSnapshot(this, previous, changed);
+            if (snapshot.compareAndSet(previous, next)) {
+                return next;
+            }
+        }
+    }
+    
+    /**
+     * Returns a snapshot of this project containing the values of all the lazily calculated class metrics.
+     * The metrics are calculated and a new version is published if the latest snapshot lacks any of their values.
+     * This method must be called from the thread that updates this project metrics.
+     * @return the snapshot
+     */
+    public MetricsSnapshot getCompleteSnapshot() {
+        evaluateMetrics(Arrays.asList(ClassMetrics.LAZY_SORTS));
+        MetricsSnapshot current = snapshot.get();
+        if (current == null) {
+            return publishSnapshot();
+        }
+        if (!current.isComplete()) {
+            return publishSnapshot(new ArrayList<PackageMetrics>());
+        }
+        return current;
+    }
+    
+    /**
+     * Returns the accumulated values of a class metric with a given sort over all the classes in this project.
+     * This method never calculates lazily calculated class metrics.
+     * @param sort the sort of the class metric
+     * @return the accumulator, or <code>null</code> if the metric is not aggregated or not calculated yet
+     */
+    public Accumulator getClassAccumulator(String sort) {
+        if (ClassMetrics.isLazySort(sort) && !evaluatedSorts.contains(sort)) {
+            return null;
+        }
         
-        putMetricValue(MetricSort.MAX_NUMBER_OF_CHILDREN, maxNOC);
-        putMetricValue(MetricSort.MAX_DEPTH_OF_INHERITANCE_TREE, maxDIT);
-        putMetricValue(MetricSort.MAX_RESPONSE_FOR_CLASS, maxRFC);
-        putMetricValue(MetricSort.MAX_COUPLING_BETWEEN_OBJECTS, maxCBO);
-        putMetricValue(MetricSort.MAX_LACK_OF_COHESION_OF_METHODS, maxLCOM);
-        putMetricValue(MetricSort.MAX_WEIGHTED_METHODS_PER_CLASS, maxWMC);
+        if (classAggregator == null) {
+            return null;
+        }
+        return classAggregator.getAccumulator(sort);
+    }
+    
+    /**
+     * Collects information on this project whose class metrics were partly loaded from a cache.
+     * Metrics depending on relations between classes are collected from the names of related classes.
+     * @param numberOfFiles the number of files in this project
+     */
+    public void collectMetricsInfoAfterMerge(int numberOfFiles) {
+        this.numberOfFiles = numberOfFiles;
+        List<ClassMetrics> classes = getClassMetrics();
+        CouplingGraph coupling = null;
+        if (!syntactic) {
+            coupling = CouplingGraph.createFromNames(classes);
+            inheritanceHierarchy = InheritanceHierarchy.createFromNames(classes);
+        }
+        setCouplingGraph(coupling);
+        if (coupling != null) {
+            collectRelationCountInfo(classes);
+        }
         
+        Map<String, String> packageNames = new HashMap<String, String>();
         for (ClassMetrics cm : classes) {
-            cm.collectMetricInfoForMax();
+            if (coupling != null) {
+                cm.collectCouplingInfo(coupling);
+                cm.collectInheritanceInfo(inheritanceHierarchy);
+            }
+            packageNames.put(cm.getQualifiedName(), cm.getPackageMetrics().getName());
         }
+        for (PackageMetrics pm : packageMetrics) {
+            pm.collectMetricInfo(packageNames);
+        }
+        
+        try {
+            putMetricValue(MetricSort.NUMBER_OF_FILES, numberOfFiles);
+            putMetricValue(MetricSort.NUMBER_OF_PACKAGES, packageMetrics.size());
+            putMetricValue(MetricSort.NUMBER_OF_CLASSES, classes.size());
+            
+            putMetricValue(MetricSort.LINES_OF_CODE, sum(MetricSort.LINES_OF_CODE));
+            putMetricValue(MetricSort.NUMBER_OF_METHODS, sum(MetricSort.NUMBER_OF_METHODS));
+            putMetricValue(MetricSort.NUMBER_OF_FIELDS, sum(MetricSort.NUMBER_OF_FIELDS));
+            putMetricValue(MetricSort.NUMBER_OF_METHODS_AND_FIELDS, sum(MetricSort.NUMBER_OF_METHODS_AND_FIELDS));
+            putMetricValue(MetricSort.NUMBER_OF_STATEMENTS, sum(MetricSort.NUMBER_OF_STATEMENTS));
+            
+        } catch (UnsupportedMetricsException e) {
+            System.out.println(e.getMessage() + " in the project: " + getName());
+        }
+        
+        collectPackageGraphInfo();
+        collectProvidedMetricInfo();
+        collectAggregatedMetricInfo();
+        publishSnapshot();
     }
     
     /**
      * Collects information on this project. This method must be called after importing XML data.
      */
     public void collectMetricsInfoAfterXMLImport() {
-        collectMetricInfoForTotal();
-        collectMetricInfoForMax();
+        collectPackageGraphInfo();
+        collectAggregatedMetricInfo();
+        publishSnapshot();
     }
     
     /**
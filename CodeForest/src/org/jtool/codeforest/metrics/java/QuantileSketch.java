@@ -0,0 +1,348 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.util.Arrays;
+
+/**
+ * Summarizes the distribution of values in bounded memory, based on the merging t-digest.
+ * Values are buffered and merged into a sorted list of weighted centroids, which are small near both tails
+ * and large around the median. The arcsine scale function bounds the number of the centroids to the compression. Quantiles and ranks are answered by a binary search over the centroids.
+ * This sketch is not thread-safe.
+ * @author Katsuhisa Maruyama
+ */
+public class QuantileSketch {
+    
+    /**
+     * The default compression, which bounds the number of centroids.
+     */
+    public static final double DEFAULT_COMPRESSION = 100;
+    
+    /**
+     * The compression of this sketch.
+     */
+    private final double compression;
+    
+    /**
+     * The means of the centroids in ascending order.
+     */
+    private double[] means;
+    
+    /**
+     * The weights of the centroids.
+     */
+    private double[] weights;
+    
+    /**
+     * The cumulative weights at the centers of the centroids.
+     */
+    private double[] centers;
+    
+    /**
+     * The number of the centroids.
+     */
+    private int size = 0;
+    
+    /**
+     * The values that have not been merged into the centroids yet.
+     */
+    private double[] buffer;
+    
+    /**
+     * The number of the buffered values.
+     */
+    private int bufferSize = 0;
+    
+    /**
+     * The total weight of all the values added to this sketch.
+     */
+    private double count = 0;
+    
+    /**
+     * The minimum of the added values.
+     */
+    private double min = Double.POSITIVE_INFINITY;
+    
+    /**
+     * The maximum of the added values.
+     */
+    private double max = Double.NEGATIVE_INFINITY;
+    
+    /**
+     * Creates a sketch with the default compression.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_COMPRESSION);
+    }
+    
+    /**
+     * Creates a sketch.
+     * @param compression the compression, which bounds the number of centroids
+     */
+    public QuantileSketch(double compression) {
+        this.compression = compression;
+        
+        int capacity = (int)Math.ceil(compression) + 10;
+        means = new double[capacity];
+        weights = new double[capacity];
+        centers = new double[capacity];
+        buffer = new double[capacity * 5];
+    }
+    
+    /**
+     * Adds a value to this sketch.
+     * @param value the value to be added
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        
+        if (bufferSize == buffer.length) {
+            compress();
+        }
+        buffer[bufferSize] = value;
+        bufferSize++;
+        
+        count++;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+    
+    /**
+     * Returns the number of values added to this sketch.
+     * @return the number of the values
+     */
+    public double getCount() {
+        return count;
+    }
+    
+    /**
+     * Returns the number of centroids currently held by this sketch.
+     * @return the number of the centroids
+     */
+    public int getCentroidCount() {
+        compress();
+        return size;
+    }
+    
+    /**
+     * Merges the buffered values into the centroids.
+     */
+    public void compress() {
+        if (bufferSize == 0) {
+            return;
+        }
+        
+        Arrays.sort(buffer, 0, bufferSize);
+        
+        int total = size + bufferSize;
+        double[] allMeans = new double[total];
+        double[] allWeights = new double[total];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < total; k++) {
+            if (j >= bufferSize || (i < size && means[i] <= buffer[j])) {
+                allMeans[k] = means[i];
+                allWeights[k] = weights[i];
+                i++;
+            } else {
+                allMeans[k] = buffer[j];
+                allWeights[k] = 1;
+                j++;
+            }
+        }
+        bufferSize = 0;
+        
+        size = 0;
+        double weightSoFar = 0;
+        double weightLimit = count * getQuantileLimit(0);
+        double mean = allMeans[0];
+        double weight = allWeights[0];
+        for (int k = 1; k < total; k++) {
+            double proposed = weight + allWeights[k];
+            if (weightSoFar + proposed <= weightLimit) {
+                mean = mean + (allMeans[k] - mean) * allWeights[k] / proposed;
+                weight = proposed;
+            } else {
+                append(mean, weight);
+                weightSoFar = weightSoFar + weight;
+                weightLimit = count * getQuantileLimit(weightSoFar / count);
+                mean = allMeans[k];
+                weight = allWeights[k];
+            }
+        }
+        append(mean, weight);
+        
+        double cumulative = 0;
+        for (int k = 0; k < size; k++) {
+            centers[k] = cumulative + weights[k] / 2;
+            cumulative = cumulative + weights[k];
+        }
+    }
+    
+    /**
+     * Returns the largest quantile that a centroid starting at a given quantile can cover.
+     * The scale function <code>k(q) = compression * asin(2q - 1) / (2 * PI)</code> grows by at most one in a centroid.
+     * @param q the quantile at which the centroid starts
+     * @return the limit of the quantile
+     */
+    private double getQuantileLimit(double q) {
+        double k = compression * Math.asin(2 * q - 1) / (2 * Math.PI) + 1;
+        if (k >= compression / 4) {
+            return 1;
+        }
+        return (Math.sin(2 * Math.PI * k / compression) + 1) / 2;
+    }
+    
+    /**
+     * Appends a centroid, growing the arrays if needed.
+     * @param mean the mean of the centroid
+     * @param weight the weight of the centroid
+     */
+    private void append(double mean, double weight) {
+        if (size == means.length) {
+            means = Arrays.copyOf(means, size * 2);
+            weights = Arrays.copyOf(weights, size * 2);
+            centers = Arrays.copyOf(centers, size * 2);
+        }
+        means[size] = mean;
+        weights[size] = weight;
+        size++;
+    }
+    
+    /**
+     * Estimates the value at a given quantile.
+     * @param q the quantile between 0 and 1
+     * @return the estimated value, or <code>Double.NaN</code> if no value was added
+     */
+    public double getQuantile(double q) {
+        compress();
+        if (size == 0) {
+            return Double.NaN;
+        }
+        if (q <= 0) {
+            return min;
+        }
+        if (q >= 1) {
+            return max;
+        }
+        if (size == 1) {
+            return means[0];
+        }
+        
+        double index = q * count;
+        if (index <= centers[0]) {
+            return interpolate(index, 0, centers[0], min, means[0]);
+        }
+        if (index >= centers[size - 1]) {
+            return interpolate(index, centers[size - 1], count, means[size - 1], max);
+        }
+        
+        int k = search(centers, index);
+        return interpolate(index, centers[k], centers[k + 1], means[k], means[k + 1]);
+    }
+    
+    /**
+     * Estimates the fraction of the added values that are less than a given value.
+     * Values equal to the given one are counted by half, so that ties share their middle rank.
+     * @param value the value
+     * @return the rank between 0 and 1, or <code>Double.NaN</code> if no value was added
+     */
+    public double getRank(double value) {
+        compress();
+        if (size == 0) {
+            return Double.NaN;
+        }
+        if (value < min) {
+            return 0;
+        }
+        if (value > max) {
+            return 1;
+        }
+        
+        int lower = searchFirst(value, false);
+        int upper = searchFirst(value, true);
+        if (lower < upper) {
+            double below = centers[lower] - weights[lower] / 2;
+            double equal = centers[upper - 1] + weights[upper - 1] / 2 - below;
+            return (below + equal / 2) / count;
+        }
+        if (size == 1) {
+            return 0.5;
+        }
+        
+        double weight;
+        if (value <= means[0]) {
+            weight = interpolate(value, min, means[0], 0, centers[0]);
+        } else if (value >= means[size - 1]) {
+            weight = interpolate(value, means[size - 1], max, centers[size - 1], count);
+        } else {
+            int k = search(means, value);
+            weight = interpolate(value, means[k], means[k + 1], centers[k], centers[k + 1]);
+        }
+        return weight / count;
+    }
+    
+    /**
+     * Finds the last position whose element is not greater than a given key.
+     * @param array the elements of the centroids in ascending order
+     * @param key the key
+     * @return the position between <code>0</code> and <code>size - 2</code>
+     */
+    private int search(double[] array, double key) {
+        int low = 0;
+        int high = size - 1;
+        while (low < high - 1) {
+            int mid = (low + high) >>> 1;
+            if (array[mid] <= key) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Finds the first centroid whose mean is greater than, or not less than, a given value.
+     * @param value the value
+     * @param greater <code>true</code> if the mean must be greater than the value, otherwise <code>false</code>
+     * @return the position of the centroid, or <code>size</code> if no such centroid exists
+     */
+    private int searchFirst(double value, boolean greater) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (means[mid] < value || (greater && means[mid] == value)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Interpolates linearly between two points.
+     * @param x the position to be interpolated
+     * @param x0 the position of the first point
+     * @param x1 the position of the second point
+     * @param y0 the value at the first point
+     * @param y1 the value at the second point
+     * @return the interpolated value
+     */
+    private static double interpolate(double x, double x0, double x1, double y0, double y1) {
+        if (x1 <= x0) {
+            return (y0 + y1) / 2;
+        }
+        return y0 + (y1 - y0) * (x - x0) / (x1 - x0);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes files storing metric values, which are compressed in the gzip format if needed.
+ * A file is written compressed if its name ends with the extension of gzip files,
+ * and a file is read decompressed if it starts with the magic number of gzip files regardless of its name.
+ * @author Katsuhisa Maruyama
+ */
+final class SnapshotCompression {
+    
+    /**
+     * The extension of the names of compressed files.
+     */
+    static final String GZIP_FILENAME_EXT = ".gz";
+    
+    /**
+     * The size of the buffers of the deflater and the inflater.
+     */
+    static final int BUFFER_SIZE = 1 << 16;
+    
+    /**
+     * The first byte of the magic number of gzip files.
+     */
+    private static final int GZIP_MAGIC_FIRST = 0x1f;
+    
+    /**
+     * The second byte of the magic number of gzip files.
+     */
+    private static final int GZIP_MAGIC_SECOND = 0x8b;
+    
+    /**
+     * Prohibits the instantiation.
+     */
+    private SnapshotCompression() {
+    }
+    
+    /**
+     * Tests if a file is compressed in the gzip format.
+     * @param file the file
+     * @return <code>true</code> if the file is compressed, otherwise <code>false</code>
+     */
+    static boolean isCompressed(File file) {
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            return in.read() == GZIP_MAGIC_FIRST && in.read() == GZIP_MAGIC_SECOND;
+            
+        } catch (IOException e) {
+            return false;
+        } finally {
+            BinarySnapshotFormat.close(in);
+        }
+    }
+    
+    /**
+     * Tests if a file will be written compressed.
+     * @param file the file
+     * @return <code>true</code> if the name of the file ends with the extension of gzip files, otherwise <code>false</code>
+     */
+    static boolean isCompressedName(File file) {
+        return file.getName().endsWith(GZIP_FILENAME_EXT);
+    }
+    
+    /**
+     * Opens a file for reading, decompressing its content if it is compressed.
+     * @param file the file
+     * @return the input stream reading the decompressed content
+     * @throws IOException if the file cannot be opened
+     */
+    static InputStream openInputStream(File file) throws IOException {
+        boolean compressed = isCompressed(file);
+        InputStream in = new FileInputStream(file);
+        if (compressed) {
+            try {
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            } catch (IOException e) {
+                BinarySnapshotFormat.close(in);
+                throw e;
+            }
+        }
+        return in;
+    }
+    
+    /**
+     * Opens a file for writing, compressing its content if the name of the file ends with the extension of gzip files.
+     * @param file the file
+     * @return the output stream writing the content
+     * @throws IOException if the file cannot be opened
+     */
+    static OutputStream openOutputStream(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        if (isCompressedName(file)) {
+            try {
+                return new GZIPOutputStream(out, BUFFER_SIZE);
+            } catch (IOException e) {
+                BinarySnapshotFormat.close(out);
+                throw e;
+            }
+        }
+        return out;
+    }
+}
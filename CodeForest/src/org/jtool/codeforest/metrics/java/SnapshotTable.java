@@ -0,0 +1,317 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores elements of the same level within a binary snapshot in columns.
+ * Each row is an element, which has integer properties, lists of string indexes, and metric values.
+ * The metric values of each sort are stored in one column of doubles with a bit set indicating the rows having the values.
+ * @author Katsuhisa Maruyama
+ */
+final class SnapshotTable {
+    
+    /**
+     * The initial capacity of the rows.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    
+    /**
+     * The number of rows.
+     */
+    private int rows = 0;
+    
+    /**
+     * The capacity of the rows.
+     */
+    private int capacity;
+    
+    /**
+     * The integer columns, which are indexed by columns and rows.
+     */
+    private int[][] columns;
+    
+    /**
+     * The offsets of the lists, which are indexed by lists and rows. The last offset of each list is its size.
+     */
+    private int[][] listOffsets;
+    
+    /**
+     * The string indexes of the lists.
+     */
+    private int[][] listValues;
+    
+    /**
+     * The columns of metric values, which are keyed by the string indexes of the sorts of the metrics.
+     */
+    private Map<Integer, MetricColumn> metricColumns = new LinkedHashMap<Integer, MetricColumn>();
+    
+    /**
+     * Creates an empty table.
+     * @param numberOfColumns the number of integer columns
+     * @param numberOfLists the number of lists
+     */
+    SnapshotTable(int numberOfColumns, int numberOfLists) {
+        this(numberOfColumns, numberOfLists, INITIAL_CAPACITY);
+    }
+    
+    /**
+     * Creates an empty table with a given capacity.
+     * @param numberOfColumns the number of integer columns
+     * @param numberOfLists the number of lists
+     * @param capacity the capacity of the rows
+     */
+    private SnapshotTable(int numberOfColumns, int numberOfLists, int capacity) {
+        this.capacity = Math.max(capacity, 1);
+        columns = new int[numberOfColumns][this.capacity];
+        listOffsets = new int[numberOfLists][this.capacity + 1];
+        listValues = new int[numberOfLists][INITIAL_CAPACITY];
+    }
+    
+    /**
+     * Returns the number of rows of this table.
+     * @return the number of the rows
+     */
+    int getRows() {
+        return rows;
+    }
+    
+    /**
+     * Appends a row to this table.
+     * @return the index of the appended row
+     */
+    int addRow() {
+        if (rows == capacity) {
+            capacity = capacity * 2;
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = Arrays.copyOf(columns[c], capacity);
+            }
+            for (int l = 0; l < listOffsets.length; l++) {
+                listOffsets[l] = Arrays.copyOf(listOffsets[l], capacity + 1);
+            }
+            for (MetricColumn column : metricColumns.values()) {
+                column.grow(capacity);
+            }
+        }
+        
+        for (int l = 0; l < listOffsets.length; l++) {
+            listOffsets[l][rows + 1] = listOffsets[l][rows];
+        }
+        rows++;
+        return rows - 1;
+    }
+    
+    /**
+     * Sets an integer property of a row.
+     * @param row the index of the row
+     * @param column the index of the column
+     * @param value the value of the property
+     */
+    void set(int row, int column, int value) {
+        columns[column][row] = value;
+    }
+    
+    /**
+     * Returns an integer property of a row.
+     * @param row the index of the row
+     * @param column the index of the column
+     * @return the value of the property
+     */
+    int get(int row, int column) {
+        return columns[column][row];
+    }
+    
+    /**
+     * Appends a string index to a list of the last row.
+     * @param list the index of the list
+     * @param value the string index
+     */
+    void add(int list, int value) {
+        int size = listOffsets[list][rows];
+        if (size == listValues[list].length) {
+            listValues[list] = Arrays.copyOf(listValues[list], size * 2);
+        }
+        listValues[list][size] = value;
+        listOffsets[list][rows] = size + 1;
+    }
+    
+    /**
+     * Returns the string indexes in a list of a row.
+     * @param row the index of the row
+     * @param list the index of the list
+     * @return the array of the string indexes
+     */
+    int[] getList(int row, int list) {
+        return Arrays.copyOfRange(listValues[list], listOffsets[list][row], listOffsets[list][row + 1]);
+    }
+    
+    /**
+     * Stores a metric value of a row.
+     * @param row the index of the row
+     * @param sort the string index of the sort of the metric
+     * @param value the metric value
+     */
+    void put(int row, int sort, double value) {
+        Integer key = new Integer(sort);
+        MetricColumn column = metricColumns.get(key);
+        if (column == null) {
+            column = new MetricColumn(capacity);
+            metricColumns.put(key, column);
+        }
+        column.put(row, value);
+    }
+    
+    /**
+     * Returns the string indexes of the sorts of the metrics stored in this table.
+     * @return the set of the string indexes
+     */
+    Set<Integer> getMetricSorts() {
+        return metricColumns.keySet();
+    }
+    
+    /**
+     * Returns the bit set indicating the rows having metric values of a given sort.
+     * @param sort the string index of the sort of the metric
+     * @return the bit set, or <code>null</code> if no row has the metric value
+     */
+    long[] getPresence(int sort) {
+        MetricColumn column = metricColumns.get(new Integer(sort));
+        if (column == null) {
+            return null;
+        }
+        return column.present;
+    }
+    
+    /**
+     * Returns metric values of a given sort.
+     * @param sort the string index of the sort of the metric
+     * @return the metric values indexed by rows, or <code>null</code> if no row has the metric value
+     */
+    double[] getValues(int sort) {
+        MetricColumn column = metricColumns.get(new Integer(sort));
+        if (column == null) {
+            return null;
+        }
+        return column.values;
+    }
+    
+    /**
+     * Writes this table.
+     * @param out the output stream
+     * @throws IOException if an I/O error occurs
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(rows);
+        for (int c = 0; c < columns.length; c++) {
+            BinarySnapshotFormat.writeInts(out, columns[c], rows);
+        }
+        
+        for (int l = 0; l < listOffsets.length; l++) {
+            int size = listOffsets[l][rows];
+            out.writeInt(size);
+            BinarySnapshotFormat.writeInts(out, listOffsets[l], rows + 1);
+            BinarySnapshotFormat.writeInts(out, listValues[l], size);
+        }
+        
+        out.writeInt(metricColumns.size());
+        for (Integer sort : metricColumns.keySet()) {
+            MetricColumn column = metricColumns.get(sort);
+            out.writeInt(sort.intValue());
+            BinarySnapshotFormat.writeLongs(out, column.present, BinarySnapshotFormat.getBitSetLength(rows));
+            BinarySnapshotFormat.writeDoubles(out, column.values, rows);
+        }
+    }
+    
+    /**
+     * Reads a table.
+     * @param in the input stream
+     * @param numberOfColumns the number of integer columns
+     * @param numberOfLists the number of lists
+     * @return the table
+     * @throws IOException if an I/O error occurs
+     */
+    static SnapshotTable read(DataInputStream in, int numberOfColumns, int numberOfLists) throws IOException {
+        int rows = in.readInt();
+        SnapshotTable table = new SnapshotTable(numberOfColumns, 0, rows);
+        table.rows = rows;
+        for (int c = 0; c < numberOfColumns; c++) {
+            table.columns[c] = new int[rows];
+            BinarySnapshotFormat.readInts(in, table.columns[c]);
+        }
+        
+        table.listOffsets = new int[numberOfLists][rows + 1];
+        table.listValues = new int[numberOfLists][];
+        for (int l = 0; l < numberOfLists; l++) {
+            int size = in.readInt();
+            BinarySnapshotFormat.readInts(in, table.listOffsets[l]);
+            table.listValues[l] = new int[size];
+            BinarySnapshotFormat.readInts(in, table.listValues[l]);
+        }
+        
+        int count = in.readInt();
+        for (int m = 0; m < count; m++) {
+            int sort = in.readInt();
+            MetricColumn column = new MetricColumn(0);
+            column.present = new long[BinarySnapshotFormat.getBitSetLength(rows)];
+            BinarySnapshotFormat.readLongs(in, column.present);
+            column.values = new double[rows];
+            BinarySnapshotFormat.readDoubles(in, column.values);
+            table.metricColumns.put(new Integer(sort), column);
+        }
+        return table;
+    }
+    
+    /**
+     * Stores metric values of the same sort.
+     * @author Katsuhisa Maruyama
+     */
+    private static class MetricColumn {
+        
+        /**
+         * The bit set indicating the rows having the metric values.
+         */
+        long[] present;
+        
+        /**
+         * The metric values, which are indexed by rows.
+         */
+        double[] values;
+        
+        /**
+         * Creates an empty column.
+         * @param capacity the capacity of the rows
+         */
+        MetricColumn(int capacity) {
+            present = new long[BinarySnapshotFormat.getBitSetLength(capacity)];
+            values = new double[capacity];
+        }
+        
+        /**
+         * Grows this column.
+         * @param capacity the new capacity of the rows
+         */
+        void grow(int capacity) {
+            present = Arrays.copyOf(present, BinarySnapshotFormat.getBitSetLength(capacity));
+            values = Arrays.copyOf(values, capacity);
+        }
+        
+        /**
+         * Stores a metric value of a row.
+         * @param row the index of the row
+         * @param value the metric value
+         */
+        void put(int row, double value) {
+            present[row >>> 6] |= 1L << (row & 63);
+            values[row] = value;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * A list of names that stores the identification numbers of the names in a symbol table instead of strings.
+ * The list keeps the insertion order of the names, and tests membership with a hash table of the numbers when it grows long.
+ * @author Katsuhisa Maruyama
+ */
+public class SymbolList extends AbstractList<String> implements RandomAccess {
+    
+    /**
+     * The number of names up to which membership is tested by scanning the list.
+     */
+    private static final int SCAN_THRESHOLD = 16;
+    
+    /**
+     * The symbol table that interns the names.
+     */
+    private SymbolTable symbolTable;
+    
+    /**
+     * The identification numbers of the names in insertion order.
+     */
+    private int[] ids = new int[4];
+    
+    /**
+     * The number of names in this list.
+     */
+    private int size = 0;
+    
+    /**
+     * The open-addressing hash table of the identification numbers, or <code>null</code> if it is not built.
+     * Empty slots are filled with <code>-1</code>.
+     */
+    private int[] slots = null;
+    
+    /**
+     * Creates a new, empty list.
+     * @param symbolTable the symbol table that interns the names
+     */
+    public SymbolList(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+    
+    /**
+     * Returns the name at a given position.
+     * @param index the position of the name
+     * @return the name
+     */
+    @Override
+    public String get(int index) {
+        return symbolTable.getSymbol(getId(index));
+    }
+    
+    /**
+     * Returns the identification number of the name at a given position.
+     * @param index the position of the name
+     * @return the identification number
+     */
+    public int getId(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return ids[index];
+    }
+    
+    /**
+     * Returns the identification numbers of all the names in this list.
+     * @return the array of the identification numbers
+     */
+    public int[] getIds() {
+        return Arrays.copyOf(ids, size);
+    }
+    
+    /**
+     * Returns the number of names in this list.
+     * @return the number of the names
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Tests if this list contains a given name.
+     * @param o the name
+     * @return <code>true</code> if the name is contained, otherwise <code>false</code>
+     */
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        int id = symbolTable.findId((String)o);
+        return id >= 0 && containsId(id);
+    }
+    
+    /**
+     * Tests if this list contains a name with a given identification number.
+     * @param id the identification number
+     * @return <code>true</code> if the name is contained, otherwise <code>false</code>
+     */
+    public boolean containsId(int id) {
+        if (size <= SCAN_THRESHOLD) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        if (slots == null) {
+            rehash();
+        }
+        int mask = slots.length - 1;
+        for (int i = hash(id) & mask; slots[i] >= 0; i = (i + 1) & mask) {
+            if (slots[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Replaces the name at a given position.
+     * @param index the position of the name
+     * @param name the new name
+     * @return the replaced name
+     */
+    @Override
+    public String set(int index, String name) {
+        String old = get(index);
+        ids[index] = symbolTable.getId(name);
+        slots = null;
+        return old;
+    }
+    
+    /**
+     * Inserts a name at a given position.
+     * @param index the position of the name
+     * @param name the name to be inserted
+     */
+    @Override
+    public void add(int index, String name) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        
+        int id = symbolTable.getId(name);
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        ids[index] = id;
+        size++;
+        modCount++;
+        
+        if (slots != null) {
+            if (size * 2 > slots.length) {
+                rehash();
+            } else {
+                insert(id);
+            }
+        }
+    }
+    
+    /**
+     * Removes the name at a given position.
+     * @param index the position of the name
+     * @return the removed name
+     */
+    @Override
+    public String remove(int index) {
+        String old = get(index);
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+        modCount++;
+        slots = null;
+        return old;
+    }
+    
+    /**
+     * Removes all the names contained in a given collection.
+     * @param c the collection of the names to be removed
+     * @return <code>true</code> if this list was changed, otherwise <code>false</code>
+     */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            if (!c.contains(symbolTable.getSymbol(ids[i]))) {
+                ids[length] = ids[i];
+                length++;
+            }
+        }
+        if (length == size) {
+            return false;
+        }
+        
+        size = length;
+        modCount++;
+        slots = null;
+        return true;
+    }
+    
+    /**
+     * Removes all the names.
+     */
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+        slots = null;
+    }
+    
+    /**
+     * Builds the hash table of the identification numbers.
+     */
+    private void rehash() {
+        int capacity = Integer.highestOneBit(Math.max(size, SCAN_THRESHOLD) * 4);
+        slots = new int[capacity];
+        Arrays.fill(slots, -1);
+        for (int i = 0; i < size; i++) {
+            insert(ids[i]);
+        }
+    }
+    
+    /**
+     * Inserts an identification number into the hash table.
+     * @param id the identification number
+     */
+    private void insert(int id) {
+        int mask = slots.length - 1;
+        int i = hash(id) & mask;
+        while (slots[i] >= 0) {
+            if (slots[i] == id) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        slots[i] = id;
+    }
+    
+    /**
+     * Calculates the hash value of an identification number.
+     * @param id the identification number
+     * @return the hash value
+     */
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
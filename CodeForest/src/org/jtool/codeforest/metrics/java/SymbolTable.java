@@ -0,0 +1,92 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A table that interns fully-qualified names and signatures appearing in the metrics of a project.
+ * Every distinct symbol is stored once and identified by an integer number, so that lists of names can be stored
+ * as arrays of the numbers and compared as integers.
+ * @author Katsuhisa Maruyama
+ */
+public class SymbolTable {
+    
+    /**
+     * The map between a symbol and its identification number.
+     */
+    private Map<String, Integer> ids = new HashMap<String, Integer>();
+    
+    /**
+     * The symbols in order of their identification numbers.
+     */
+    private List<String> symbols = new ArrayList<String>();
+    
+    /**
+     * Creates a new, empty table.
+     */
+    public SymbolTable() {
+    }
+    
+    /**
+     * Returns the identification number of a symbol, registering the symbol if it is not registered yet.
+     * @param symbol the symbol
+     * @return the identification number
+     */
+    public synchronized int getId(String symbol) {
+        Integer id = ids.get(symbol);
+        if (id == null) {
+            id = new Integer(symbols.size());
+            ids.put(symbol, id);
+            symbols.add(symbol);
+        }
+        return id.intValue();
+    }
+    
+    /**
+     * Returns the identification number of a symbol without registering it.
+     * @param symbol the symbol
+     * @return the identification number, or <code>-1</code> if the symbol is not registered
+     */
+    public synchronized int findId(String symbol) {
+        Integer id = ids.get(symbol);
+        if (id != null) {
+            return id.intValue();
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the symbol with a given identification number.
+     * @param id the identification number
+     * @return the symbol
+     */
+    public synchronized String getSymbol(int id) {
+        return symbols.get(id);
+    }
+    
+    /**
+     * Returns the canonical instance of a symbol, which is shared by all the occurrences of the symbol.
+     * @param symbol the symbol
+     * @return the canonical instance, or <code>null</code> if the symbol is <code>null</code>
+     */
+    public String intern(String symbol) {
+        if (symbol == null) {
+            return null;
+        }
+        return getSymbol(getId(symbol));
+    }
+    
+    /**
+     * Returns the number of registered symbols.
+     * @return the number of the symbols
+     */
+    public synchronized int size() {
+        return symbols.size();
+    }
+}
@@ -4,6 +4,10 @@
 
 package org.jtool.codeforest.ui;
 
+import org.jtool.codeforest.metrics.java.IMetricsBuildListener;
+import org.jtool.codeforest.metrics.java.IncrementalMetricsUpdater;
+import org.jtool.codeforest.metrics.java.PackageMetrics;
+import org.jtool.codeforest.metrics.java.ProgressiveMetricsBuilder;
 import org.jtool.codeforest.metrics.java.ProjectMetrics;
 import org.jtool.codeforest.ui.view.PropertyView;
 import org.jtool.codeforest.ui.view.SettingData;
@@ -68,19 +72,62 @@ public class CodeForestFrame {
      */
     private CodeForestRepository codeForestRepository;
     
+    /**
+     * The object that updates the project metrics when the project is changed.
+     */
+    private IncrementalMetricsUpdater updater;
+    
+    /**
+     * The object that builds the project metrics in the background, or <code>null</code> if the metrics were already built.
+     */
+    private ProgressiveMetricsBuilder progressiveBuilder;
+    
     /**
      * Creates a main frame.
      * @param parent the parent of the frame
      * @param mproject the metrics of a project represented by a forest
      */
     public CodeForestFrame(Shell parent, ProjectMetrics mproject) {
+        this(parent, mproject, null);
+    }
+    
+    /**
+     * Creates a main frame that is refreshed whenever the project metrics are updated.
+     * @param parent the parent of the frame
+     * @param mproject the metrics of a project represented by a forest
+     * @param updater the object that updates the project metrics, or <code>null</code> if the metrics are not updated
+     */
+    public CodeForestFrame(Shell parent, ProjectMetrics mproject, IncrementalMetricsUpdater updater) {
+        baseShell = new Shell(parent.getDisplay());
+        baseShell.setLayout(new FormLayout());
+        baseShell.setSize(1500, 1000);
+        
+        baseShell.setText(mproject.getName() + " - " + Time.toString(mproject.getTime()));
+        
+        projectMetrics = mproject;
+        this.updater = updater;
+        
+        createPane();
+    }
+    
+    /**
+     * Creates a main frame that opens before the project metrics are built and shows each package as soon as its metrics are built.
+     * The normalization of the forest is rescaled when the build is completed, and then the updater starts.
+     * @param parent the parent of the frame
+     * @param builder the object that builds the project metrics in the background
+     * @param updater the object that updates the project metrics, or <code>null</code> if the metrics are not updated
+     */
+    public CodeForestFrame(Shell parent, ProgressiveMetricsBuilder builder, IncrementalMetricsUpdater updater) {
         baseShell = new Shell(parent.getDisplay());
         baseShell.setLayout(new FormLayout());
         baseShell.setSize(1500, 1000);
         
+        ProjectMetrics mproject = builder.getProjectMetrics();
         baseShell.setText(mproject.getName() + " - " + Time.toString(mproject.getTime()));
         
         projectMetrics = mproject;
+        progressiveBuilder = builder;
+        this.updater = updater;
         
         createPane();
     }
@@ -205,6 +252,39 @@ public class CodeForestFrame {
      * Creates the pane of this frame.
      */
     private void createPane() {
+        if (progressiveBuilder != null) {
+            progressiveBuilder.addListener(new IMetricsBuildListener() {
+                
+                /**
+                 * Adds a package to the forest.
+                 * @param pm the metrics of the package
+                 */
+                public void packageAdded(PackageMetrics pm) {
+                    if (baseShell == null || baseShell.isDisposed()) {
+                        return;
+                    }
+                    forestView.addPackage(pm, settingView.getSettingData());
+                }
+                
+                /**
+                 * Rebuilds the forest with the completed metrics of the whole project, and starts the updater.
+                 * @param mproject the project metrics
+                 * @param succeeded <code>true</code> if the build succeeded, otherwise <code>false</code>
+                 */
+                public void buildCompleted(ProjectMetrics mproject, boolean succeeded) {
+                    if (baseShell == null || baseShell.isDisposed()) {
+                        return;
+                    }
+                    projectMetrics = mproject;
+                    refresh();
+                    if (succeeded) {
+                        startUpdater();
+                    }
+                }
+            });
+            progressiveBuilder.start();
+        }
+        
         createViews();
         
         codeForestRepository = new CodeForestRepository(this);
@@ -216,8 +296,19 @@ public class CodeForestFrame {
         
         baseShell.open();
         
+        if (progressiveBuilder == null) {
+            startUpdater();
+        }
+        
         waitUntilDispose();
         
+        if (progressiveBuilder != null) {
+            progressiveBuilder.cancel();
+        }
+        if (updater != null) {
+            updater.stop();
+        }
+        
         codeForestRepository.writeXML();
         
         forestView.dispose();
@@ -228,6 +319,25 @@ public class CodeForestFrame {
         bottomTabFrame.dispose();
     }
     
+    /**
+     * Starts the updater that refreshes this frame whenever the project metrics are updated.
+     */
+    private void startUpdater() {
+        if (updater != null) {
+            updater.setRefreshAction(new Runnable() {
+                
+                /**
+                 * Refreshes this frame with the latest version of the project metrics.
+                 */
+                public void run() {
+                    projectMetrics = updater.getProjectMetrics();
+                    refresh();
+                }
+            });
+            updater.start();
+        }
+    }
+    
     /**
      * Creates the views on this frame.
      */
@@ -285,6 +395,23 @@ public class CodeForestFrame {
         
         forestView = new ForestView(forestPanel, this);
         
+        if (progressiveBuilder != null && !progressiveBuilder.isCompleted()) {
+            forestView.beginProgressive(projectMetrics, settingView.getSettingData(), progressiveBuilder.getNumberOfFiles());
+        } else {
+            forestView.build(projectMetrics, settingView.getSettingData());
+        }
+        getTreeView().setSceneGraph(null);
+    }
+    
+    /**
+     * Rebuilds the forest after the project metrics were updated.
+     */
+    public void refresh() {
+        if (baseShell == null || baseShell.isDisposed()) {
+            return;
+        }
+        
+        baseShell.setText(projectMetrics.getName() + " - " + Time.toString(Time.getCurrentTime()));
         forestView.build(projectMetrics, settingView.getSettingData());
         getTreeView().setSceneGraph(null);
     }
@@ -0,0 +1,37 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.ui.preference;
+
+import org.jtool.codeforest.Activator;
+import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
+import org.eclipse.jface.preference.IPreferenceStore;
+
+/**
+ * Initializes the default values of the preferences on the modes of collecting metric values.
+ * @author Katsuhisa Maruyama
+ */
+public class CodeForestPreferenceInitializer extends AbstractPreferenceInitializer {
+    
+    /**
+     * Creates a new, empty object.
+     */
+    public CodeForestPreferenceInitializer() {
+    }
+    
+    /**
+     * Sets the default values, which turn off all the modes and use a single thread.
+     */
+    @Override
+    public void initializeDefaultPreferences() {
+        IPreferenceStore store = Activator.getDefault().getPreferenceStore();
+        store.setDefault(CodeForestPreferencePage.THREADS, 1);
+        store.setDefault(CodeForestPreferencePage.PIPELINE_MODE, false);
+        store.setDefault(CodeForestPreferencePage.CACHE_ENABLED, false);
+        store.setDefault(CodeForestPreferencePage.SYNTACTIC_MODE, false);
+        store.setDefault(CodeForestPreferencePage.PROGRESSIVE_MODE, false);
+        store.setDefault(CodeForestPreferencePage.INCREMENTAL_MODE, false);
+        store.setDefault(CodeForestPreferencePage.COMPRESSION_ENABLED, false);
+    }
+}
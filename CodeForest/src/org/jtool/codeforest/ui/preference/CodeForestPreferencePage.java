@@ -0,0 +1,93 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.ui.preference;
+
+import org.jtool.codeforest.Activator;
+import org.eclipse.jface.preference.BooleanFieldEditor;
+import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.IntegerFieldEditor;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchPreferencePage;
+
+/**
+ * A preference page that selects the modes of collecting metric values.
+ * All the modes are off by default, in which case the metric values are collected by the model factory of Java programs.
+ * @author Katsuhisa Maruyama
+ */
+public class CodeForestPreferencePage extends FieldEditorPreferencePage implements IWorkbenchPreferencePage {
+    
+    /**
+     * A preference name for the number of threads that collect metric values in parallel.
+     */
+    public static final String THREADS = "ThreadsPreference";
+    
+    /**
+     * A preference name for the mode that parses Java files through a pipeline with bounded memory.
+     */
+    public static final String PIPELINE_MODE = "PipelineModePreference";
+    
+    /**
+     * A preference name for the mode that reuses the cached metric values of unchanged files.
+     */
+    public static final String CACHE_ENABLED = "CacheEnabledPreference";
+    
+    /**
+     * A preference name for the mode that parses Java files without resolving bindings first.
+     */
+    public static final String SYNTACTIC_MODE = "SyntacticModePreference";
+    
+    /**
+     * A preference name for the mode that opens a forest before the metric values are collected.
+     */
+    public static final String PROGRESSIVE_MODE = "ProgressiveModePreference";
+    
+    /**
+     * A preference name for the mode that updates metric values when Java files are changed.
+     */
+    public static final String INCREMENTAL_MODE = "IncrementalModePreference";
+    
+    /**
+     * A preference name for the mode that compresses exported metric values.
+     */
+    public static final String COMPRESSION_ENABLED = "CompressionEnabledPreference";
+    
+    /**
+     * The maximum number of threads.
+     */
+    private static final int MAX_THREADS = 256;
+    
+    /**
+     * Creates a preference page.
+     */
+    public CodeForestPreferencePage() {
+        super(GRID);
+        setPreferenceStore(Activator.getDefault().getPreferenceStore());
+        setDescription("Modes of collecting metric values, which take effect when a new forest is created.");
+    }
+    
+    /**
+     * Initializes this preference page.
+     * @param workbench the workbench
+     */
+    public void init(IWorkbench workbench) {
+    }
+    
+    /**
+     * Creates the field editors of this preference page.
+     */
+    @Override
+    protected void createFieldEditors() {
+        IntegerFieldEditor threads = new IntegerFieldEditor(THREADS, "Number of threads:", getFieldEditorParent());
+        threads.setValidRange(1, MAX_THREADS);
+        addField(threads);
+        
+        addField(new BooleanFieldEditor(PIPELINE_MODE, "Parse files through a pipeline with bounded memory", getFieldEditorParent()));
+        addField(new BooleanFieldEditor(CACHE_ENABLED, "Reuse cached metric values of unchanged files", getFieldEditorParent()));
+        addField(new BooleanFieldEditor(SYNTACTIC_MODE, "Parse files without resolving bindings first (updates metric values)", getFieldEditorParent()));
+        addField(new BooleanFieldEditor(PROGRESSIVE_MODE, "Open a forest before all the metric values are collected", getFieldEditorParent()));
+        addField(new BooleanFieldEditor(INCREMENTAL_MODE, "Update metric values when files are changed", getFieldEditorParent()));
+        addField(new BooleanFieldEditor(COMPRESSION_ENABLED, "Compress exported metric values", getFieldEditorParent()));
+    }
+}
@@ -305,6 +305,7 @@ public class ForestTree extends MetricsTree {
      */
     public void setMetricValues(SettingData data) {
         IMetric metric;
+        setScalingMode(data.getScalingMode());
         
         metric = data.getTrunkHeight();
         if (metric.isClassMetric()) {
@@ -323,6 +323,7 @@ public class FractalTree extends MetricsTree {
      */
     public void setMetricValues(SettingData data) {
         IMetric metric;
+        setScalingMode(data.getScalingMode());
         
         metric = data.getTrunkHeight();
         if (metric.isClassMetric()) {
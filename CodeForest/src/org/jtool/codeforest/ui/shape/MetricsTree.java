@@ -5,9 +5,9 @@
 package org.jtool.codeforest.ui.shape;
 
 import org.jtool.codeforest.metrics.IMetric;
-import org.jtool.codeforest.metrics.MetricSort;
 import org.jtool.codeforest.metrics.UnsupportedMetricsException;
 import org.jtool.codeforest.metrics.java.ClassMetrics;
+import org.jtool.codeforest.metrics.java.MetricNormalizer;
 import org.jtool.codeforest.metrics.java.ProjectMetrics;
 
 /**
@@ -21,6 +21,11 @@ public abstract class MetricsTree extends AbstractShape {
      */
     protected final ClassMetrics classMetrics;
     
+    /**
+     * The mode of the scaling of metric values.
+     */
+    protected int scalingMode = MetricNormalizer.MAX_SCALING;
+    
     /**
      * Creates a tree with metric values.
      * @param mclass the metrics of a class represented by this tree
@@ -38,6 +43,14 @@ public abstract class MetricsTree extends AbstractShape {
         return classMetrics;
     }
     
+    /**
+     * Sets the mode of the scaling of metric values.
+     * @param mode the scaling mode
+     */
+    public void setScalingMode(int mode) {
+        scalingMode = mode;
+    }
+    
     /**
      * Obtains the value of a specified metric.
      * @param metric the metric whose value will be obtained
@@ -71,25 +84,12 @@ public abstract class MetricsTree extends AbstractShape {
     /**
      * Obtains the value of a specified metric.
      * @param metric the metric whose value will be obtained
-     * @return the metric value per the average of all the values
+     * @return the metric value per the average of all the values, or the value scaled by the selected mode
      */
     protected double getMetricValuePerAverage(IMetric metric) {
         try {
-            double value = metric.getValue(classMetrics);
-            if (value < 0) {
-                return -1;
-            }
-            
             ProjectMetrics mproject = classMetrics.getPackageMetrics().getProjectMetrics();
-            double cnum = mproject.getMetricValue(MetricSort.NUMBER_OF_CLASSES);
-            double average = metric.getTotalValue(classMetrics) / cnum;
-            if (average != 0) {
-                value = value / average / 1;
-            } else {
-                value = 0;
-            }
-            
-            return value;
+            return mproject.getNormalizer().getRatePerAverage(metric, classMetrics, scalingMode);
             
         } catch (UnsupportedMetricsException e) {
             System.out.println(e.getMessage());
@@ -101,23 +101,12 @@ public abstract class MetricsTree extends AbstractShape {
     /**
      * Obtains the value of a specified metric.
      * @param metric the metric whose value will be obtained
-     * @return the metric value per the maximum of all the values
+     * @return the metric value per the maximum of all the values, or the value scaled by the selected mode
      */
     protected double getMetricValuePerMax(IMetric metric) {
         try {
-            double value = metric.getValue(classMetrics);
-            if (value < 0) {
-                return -1;
-            }
-            
-            double max = metric.getMaximumValue(classMetrics);
-            if (max != 0) {
-                value = value / max;
-            } else {
-                value = 0;
-            }
-            
-            return value;
+            ProjectMetrics mproject = classMetrics.getPackageMetrics().getProjectMetrics();
+            return mproject.getNormalizer().getRatePerMax(metric, classMetrics, scalingMode);
             
         } catch (UnsupportedMetricsException e) {
             System.out.println(e.getMessage());
@@ -9,6 +9,7 @@ import org.jtool.eclipse.model.java.JavaClass;
 import org.jtool.eclipse.model.java.JavaField;
 import org.jtool.eclipse.model.java.JavaMethod;
 import org.jtool.codeforest.metrics.java.ClassMetrics;
+import org.jtool.codeforest.metrics.java.InheritanceHierarchy;
 import org.jtool.codeforest.metrics.java.FieldMetrics;
 import org.jtool.codeforest.metrics.java.MethodMetrics;
 import org.jtool.codeforest.metrics.java.PackageMetrics;
@@ -221,6 +222,14 @@ public class PropertyView {
         propertyList.add(new PropertyData("Abstract", getBoolean(mclass.getJavaClass().isAbstract()), false, null));
         propertyList.add(new PropertyData("Visibility", getVisibility(mclass.getJavaClass()), false, null));
         
+        InheritanceHierarchy hierarchy = mclass.getPackageMetrics().getProjectMetrics().getInheritanceHierarchy();
+        if (hierarchy != null) {
+            List<String> names = hierarchy.getSubClassNames(mclass.getQualifiedName());
+            if (names.size() > 0) {
+                propertyList.add(new PropertyData("Subclasses", getNames(names), false, null));
+            }
+        }
+        
         List<PropertyData> properties = new ArrayList<PropertyData>();
         Map<String, Double> metrics = mclass.getMetricValues();
         for (String name : metrics.keySet()) {
@@ -240,6 +249,22 @@ public class PropertyView {
         }
     }
     
+    /**
+     * Obtains the string that concatenates given names.
+     * @param names the collection of the names
+     * @return the string that represents the names
+     */
+    private String getNames(List<String> names) {
+        StringBuffer buf = new StringBuffer();
+        for (String name : names) {
+            if (buf.length() > 0) {
+                buf.append(", ");
+            }
+            buf.append(name);
+        }
+        return buf.toString();
+    }
+    
     /**
      * Obtains the string that represents the visibility of a given class.
      * @param jclass the class
@@ -5,7 +5,9 @@
 package org.jtool.codeforest.ui.view;
 
 import org.jtool.codeforest.metrics.IMetric;
+import org.jtool.codeforest.metrics.MetricProviderRegistry;
 import org.jtool.codeforest.metrics.MetricSort;
+import org.jtool.codeforest.metrics.java.MetricNormalizer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -55,6 +57,16 @@ public class SettingData {
      */
     public static final String LEAF_COLOR = "Leaf color";
     
+    /**
+     * The label representing the scaling of metric values.
+     */
+    public static final String SCALING = "Scaling";
+    
+    /**
+     * The labels of the scaling modes, which are indexed by the modes.
+     */
+    private static final String[] SCALING_ITEMS = { "Average/Max", "Percentile", "Robust z-score" };
+    
     /**
      * The metric of the trunk height.
      */
@@ -95,6 +107,11 @@ public class SettingData {
      */
     private IMetric leafColor = null;
     
+    /**
+     * The mode of the scaling of metric values.
+     */
+    private int scalingMode = MetricNormalizer.MAX_SCALING;
+    
     /**
      * A flag indicating if the update of a forest view is needed or not.
      */
@@ -187,7 +204,9 @@ public class SettingData {
      * @return the copy of the setting data
      */
     public SettingData cloneSettingData() {
-        return new SettingData(trunkHeight, trunkRadius, trunkColor, foliageHeight, foliageRadius, foliageColor, leafNumber, leafColor);
+        SettingData data = new SettingData(trunkHeight, trunkRadius, trunkColor, foliageHeight, foliageRadius, foliageColor, leafNumber, leafColor);
+        data.scalingMode = scalingMode;
+        return data;
     }
     
     /**
@@ -302,6 +321,56 @@ public class SettingData {
         needsUpdateForestView = false;
     }
     
+    /**
+     * Sets the mode of the scaling of metric values.
+     * @param name the label of the scaling mode
+     */
+    public void setScalingMode(String name) {
+        setScalingMode(getScalingItemIndex(name));
+    }
+    
+    /**
+     * Sets the mode of the scaling of metric values.
+     * @param mode the scaling mode
+     */
+    public void setScalingMode(int mode) {
+        boolean update = scalingMode != mode;
+        scalingMode = mode;
+        
+        needsUpdateForestView = needsUpdateForestView | update;
+        needsUpdateTreeView = needsUpdateForestView;
+    }
+    
+    /**
+     * Returns the mode of the scaling of metric values.
+     * @return the scaling mode
+     */
+    public int getScalingMode() {
+        return scalingMode;
+    }
+    
+    /**
+     * Obtains all the items related to the scaling of metric values.
+     * @return the array of the scaling items
+     */
+    public String[] getScalingItems() {
+        return SCALING_ITEMS.clone();
+    }
+    
+    /**
+     * Obtains the index number of a specified item related to the scaling of metric values.
+     * @param name the name of the scaling item
+     * @return the index number of the scaling item, which equals the scaling mode
+     */
+    public int getScalingItemIndex(String name) {
+        for (int i = 0; i < SCALING_ITEMS.length; i++) {
+            if (SCALING_ITEMS[i].compareTo(name) == 0) {
+                return i;
+            }
+        }
+        return MetricNormalizer.MAX_SCALING;
+    }
+    
     /**
      * Returns the metric of the trunk height.
      * @return the metric of the trunk height
@@ -366,6 +435,21 @@ public class SettingData {
         return leafColor;
     }
     
+    /**
+     * Returns the names of all the metrics selected in this setting data.
+     * @return the collection of the metric names
+     */
+    public List<String> getSelectedMetricNames() {
+        IMetric[] metrics = { trunkHeight, trunkRadius, trunkColor, foliageHeight, foliageRadius, foliageColor, leafNumber, leafColor };
+        List<String> names = new ArrayList<String>();
+        for (IMetric metric : metrics) {
+            if (metric != null && !names.contains(metric.getName())) {
+                names.add(metric.getName());
+            }
+        }
+        return names;
+    }
+    
     /**
      * Checks if the update of a forest view is needed or not.
      * @return <code>true</code> if the update is needed, otherwise <code>false</code>
@@ -402,8 +486,9 @@ public class SettingData {
      * @return the metric
      */
     private IMetric getMetric(String name) {
-        for (int i = 0; i < MetricSort.ALL_SELECTABLE.length; i++) {
-            IMetric metric = MetricSort.ALL_SELECTABLE[i];
+        IMetric[] metrics = MetricProviderRegistry.getSelectableMetrics();
+        for (int i = 0; i < metrics.length; i++) {
+            IMetric metric = metrics[i];
             if (metric.getName().compareTo(name) == 0) {
                 return metric;
             }
@@ -416,7 +501,7 @@ public class SettingData {
      * @return the array of the items
      */
     public String[] getHeightItems() {
-        IMetric[] metrics = MetricSort.ALL_SELECTABLE;
+        IMetric[] metrics = MetricProviderRegistry.getSelectableMetrics();
         List<String> items = new ArrayList<String>();
         
         for (int i = 0; i < metrics.length; i++) {
@@ -433,7 +518,7 @@ public class SettingData {
      * @return the array of the items
      */
     public String[] getWidthItems() {
-        IMetric[] metrics = MetricSort.ALL_SELECTABLE;
+        IMetric[] metrics = MetricProviderRegistry.getSelectableMetrics();
         List<String> items = new ArrayList<String>();
         
         for (int i = 0; i < metrics.length; i++) {
@@ -451,7 +536,7 @@ public class SettingData {
      */
     public String[] getClassItems() {
         List<String> items = new ArrayList<String>();
-        IMetric[] metrics = MetricSort.ALL_SELECTABLE;
+        IMetric[] metrics = MetricProviderRegistry.getSelectableMetrics();
         
         for (int i = 0; i < metrics.length; i++) {
             if (metrics[i].isClassMetric()) {
@@ -467,7 +552,7 @@ public class SettingData {
      * @return the array of the method items
      */
     public String[] getMethodItems() {
-        IMetric[] metrics = MetricSort.ALL_SELECTABLE;
+        IMetric[] metrics = MetricProviderRegistry.getSelectableMetrics();
         List<String> items = new ArrayList<String>();
         
         for (int i = 0; i < metrics.length; i++) {
@@ -552,6 +637,7 @@ public class SettingData {
         
         System.out.println("Leaf number        = " + leafNumber.getName());
         System.out.println("Leaf color         = " + leafColor.getName());
+        System.out.println("Scaling            = " + SCALING_ITEMS[scalingMode]);
         
         System.out.println("Update forest view = " + needsUpdateForestView);
         System.out.println("Update tree view   = " + needsUpdateTreeView);
@@ -80,6 +80,11 @@ public class SettingView {
      */
     private Combo fcolorSel;
     
+    /**
+     * A combo that selects the scaling of metric values.
+     */
+    private Combo scalingSel;
+    
     /**
      * A button for undoing.
      */
@@ -218,6 +223,9 @@ public class SettingView {
         
         fcolorSel = createMetricSelection(settings, SettingData.FOLIAGE_COLOR, settingData.getClassItems());
         fcolorSel.addSelectionListener(new FoliageColorSelectionListener());
+        
+        scalingSel = createMetricSelection(settings, SettingData.SCALING, settingData.getScalingItems());
+        scalingSel.addSelectionListener(new ScalingSelectionListener());
     }
     
     /**
@@ -299,6 +307,7 @@ public class SettingView {
                     fheightSel.setEnabled(false);
                     fradiusSel.setEnabled(false);
                     fcolorSel.setEnabled(false);
+                    scalingSel.setEnabled(false);
                 } else {
                     theightSel.setEnabled(true);
                     tradiusSel.setEnabled(true);
@@ -306,6 +315,7 @@ public class SettingView {
                     fheightSel.setEnabled(true);
                     fradiusSel.setEnabled(true);
                     fcolorSel.setEnabled(true);
+                    scalingSel.setEnabled(true);
                 }
             }
             
@@ -437,6 +447,7 @@ public class SettingView {
         settingData.setData(data.getTrunkHeight(), data.getTrunkRadius(), data.getTrunkColor(),
           data.getFoliageHeight(), data.getFoliageRadius(), data.getFoliageColor(), 
           data.getLeafNumber(), data.getLeafColor());
+        settingData.setScalingMode(data.getScalingMode());
         
         update();
         updateForest();
@@ -452,6 +463,7 @@ public class SettingView {
         fheightSel.select(settingData.getClassItemIndex(settingData.getFoliageHeight().getName()));
         fradiusSel.select(settingData.getClassItemIndex(settingData.getFoliageRadius().getName()));
         fcolorSel.select(settingData.getClassItemIndex(settingData.getFoliageColor().getName()));
+        scalingSel.select(settingData.getScalingMode());
     }
     
     /**
@@ -714,4 +726,32 @@ public class SettingView {
         public void widgetDefaultSelected(SelectionEvent e) {
         }
     }
+    
+    /**
+     * A listener for the selection of the scaling of metric values.
+     * @author Katsuhisa Maruyama
+     */
+    class ScalingSelectionListener implements SelectionListener {
+        
+        /**
+         * Invoked when selection occurs in the control.
+         * @param e an event containing information about the selection
+         */
+        public void widgetSelected(SelectionEvent e) {
+            Combo combo = (Combo)e.getSource();
+            String name = combo.getItem(combo.getSelectionIndex());
+            settingData.setScalingMode(name);
+            storeSettingData();
+            
+            recordSettingAction("Scaling", name);
+            updateForest();
+        }
+        
+        /**
+         * Invoked when default selection occurs in the control.
+         * @param e an event containing information about the default selection
+         */
+        public void widgetDefaultSelected(SelectionEvent e) {
+        }
+    }
 }
@@ -4,6 +4,7 @@
 
 package org.jtool.codeforest.ui.view.forest;
 
+import org.jtool.codeforest.ui.shape.Ground;
 import org.jtool.codeforest.ui.view.SettingData;
 import org.jtool.codeforest.metrics.MetricSort;
 import org.jtool.codeforest.metrics.java.ProjectMetrics;
@@ -28,6 +29,11 @@ public class Forest extends ForestNodeGroup {
      */
     public double layoutSize;
     
+    /**
+     * A flag indicating whether packages are added to this forest one by one while their metrics are built.
+     */
+    private boolean progressive = false;
+    
     /**
      * Creates a forest with the setting data.
      * @param data the setting data that forms the forest
@@ -60,6 +66,29 @@ public class Forest extends ForestNodeGroup {
         setLayout();
     }
     
+    /**
+     * Sets the layout position of a forest to which packages are added one by one.
+     * @param estimatedClasses the estimated number of classes in the project
+     */
+    void setProgressiveLayoutPosition(int estimatedClasses) {
+        layoutSize = Math.sqrt(Math.max(estimatedClasses, 1));
+        if (layoutSize > 160.0) {
+            layoutSize = 160.0;
+        }
+        contentVisible = true;
+        progressive = true;
+        
+        setBounds(0, 0, layoutSize, layoutSize);
+    }
+    
+    /**
+     * Tests if packages are added to this forest one by one while their metrics are built.
+     * @return <code>true</code> if the packages are added one by one, otherwise <code>false</code>
+     */
+    public boolean isProgressive() {
+        return progressive;
+    }
+    
     /**
      * Creates a scene graph containing a given branch group.
      * @param forest the branch group representing a forest
@@ -79,6 +108,24 @@ public class Forest extends ForestNodeGroup {
         transG.addChild(createSceneGraph());
     }
     
+    /**
+     * Creates a branch group containing the scene graph of a group added to this forest after the forest was drawn.
+     * @param group the group laid out within this forest
+     * @return the branch group that can be attached to the live scene graph
+     */
+    public BranchGroup createSceneGraph(ForestNodeGroup group) {
+        BranchGroup branch = new BranchGroup();
+        setCapability(branch);
+        
+        TransformGroup transG = new TransformGroup();
+        Transform3D trans3D = new Transform3D();
+        trans3D.setTranslation(new Vector3d(-layoutSize / 2, 0.0d, -layoutSize / 2));
+        transG.setTransform(trans3D);
+        branch.addChild(transG);
+        transG.addChild(group.createSceneGraph());
+        return branch;
+    }
+    
     /**
      * Creates the background of a tree view.
      * @param group the transform group of the scene graph
@@ -97,6 +144,13 @@ public class Forest extends ForestNodeGroup {
     public TransformGroup createSceneGraph() {
         TransformGroup trans = new TransformGroup();
         
+        if (progressive) {
+            Ground shape = new Ground(layoutSize, layoutSize, 0.005d);
+            shape.setLocation(0, 0, 0);
+            shape.createSceneGraph();
+            trans.addChild(shape);
+        }
+        
         for (int i = 0; i < nodes.size(); i++) {
             ForestNode node = nodes.get(i);
             TransformGroup group = node.createSceneGraph();
@@ -23,6 +23,26 @@ public class ForestBuilder {
      */
     private ProjectMetrics projectMetrics;
     
+    /**
+     * The horizontal position at which the next package is placed in a progressive forest.
+     */
+    private double cursorX;
+    
+    /**
+     * The depth position of the row in which the next package is placed in a progressive forest.
+     */
+    private double cursorZ;
+    
+    /**
+     * The depth of the row in which the next package is placed in a progressive forest.
+     */
+    private double rowDepth;
+    
+    /**
+     * The estimated number of classes in a progressive forest.
+     */
+    private int estimatedClasses;
+    
     /**
      * Creates a builder that builds a forest.
      * @param mproject the project metrics
@@ -32,11 +52,13 @@ public class ForestBuilder {
     }
     
     /**
-     * Builds a forest.
+     * Builds a forest. Metrics selected in the setting data that are calculated lazily are calculated in advance.
      * @param data the setting data that forms a forest
      * @return the forest
      */
     public Forest build(SettingData data) {
+        projectMetrics.evaluateMetrics(data.getSelectedMetricNames());
+        
         Forest forest = new Forest(data);
         forest.setMetrics(projectMetrics);
         
@@ -45,6 +67,63 @@ public class ForestBuilder {
         return forest;
     }
     
+    /**
+     * Builds an empty forest to which packages are added one by one while their metrics are built.
+     * @param data the setting data that forms a forest
+     * @param estimatedClasses the estimated number of classes in the project
+     * @return the empty forest
+     */
+    public Forest buildProgressive(SettingData data, int estimatedClasses) {
+        Forest forest = new Forest(data);
+        forest.setMetrics(projectMetrics);
+        forest.setProgressiveLayoutPosition(estimatedClasses);
+        
+        this.estimatedClasses = Math.max(estimatedClasses, 1);
+        cursorX = 0;
+        cursorZ = 0;
+        rowDepth = 0;
+        return forest;
+    }
+    
+    /**
+     * Lays out a package next to the packages already added to a progressive forest.
+     * Packages are placed in rows, and each of them occupies a square area in proportion to the number of its classes.
+     * @param forest the progressive forest
+     * @param mpackage the metrics of the package
+     * @param data the setting data that forms the forest
+     * @return the group of the visual objects for the package
+     */
+    public ForestNodeGroup buildPackage(Forest forest, PackageMetrics mpackage, SettingData data) {
+        ForestNodeGroup clump = new ForestNodeGroup(forest, data);
+        clump.setMetrics(mpackage);
+        for (ClassMetrics mclass : mpackage.getClassMetrics()) {
+            ForestNode shape = new ForestNode(clump, data);
+            shape.setMetrics(mclass);
+            clump.add(shape);
+        }
+        forest.add(clump);
+        
+        double side = forest.layoutSize * Math.sqrt((double)mpackage.getClassMetrics().size() / estimatedClasses);
+        if (side > forest.layoutSize) {
+            side = forest.layoutSize;
+        }
+        if (cursorX + side > forest.layoutSize) {
+            cursorX = 0;
+            cursorZ = cursorZ + rowDepth;
+            rowDepth = 0;
+        }
+        
+        clump.setBounds(cursorX, cursorZ, side, side);
+        clump.setBaseSize();
+        clump.setLayout();
+        
+        cursorX = cursorX + side;
+        if (rowDepth < side) {
+            rowDepth = side;
+        }
+        return clump;
+    }
+    
     /**
      * Creates a node with the hierarchy regarding packages.
      * @param forest the forest
@@ -9,6 +9,7 @@ import java.awt.GraphicsConfiguration;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import javax.media.j3d.BranchGroup;
 import javax.media.j3d.Canvas3D;
 import javax.media.j3d.TransformGroup;
 import javax.media.j3d.Transform3D;
@@ -51,6 +52,14 @@ public class ForestCanvas3D extends Canvas3D implements MouseListener, MouseMoti
         universe.setForest(forest);
     }
     
+    /**
+     * Adds a branch group representing a part of a forest to this drawing canvas.
+     * @param bg the branch group
+     */
+    public void addGroup(BranchGroup bg) {
+        universe.addGroup(bg);
+    }
+    
     /**
      * Repaints this drawing canvas.
      */
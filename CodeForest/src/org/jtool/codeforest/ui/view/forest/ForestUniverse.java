@@ -68,4 +68,13 @@ public class ForestUniverse extends CodeForestUniverse {
         picker(bg);
         forestBranchGroup.addChild(bg);
     }
+    
+    /**
+     * Attaches a branch group representing a part of the forest to the live scene graph.
+     * @param bg the branch group
+     */
+    public void addGroup(BranchGroup bg) {
+        picker(bg);
+        forestBranchGroup.addChild(bg);
+    }
 }
@@ -4,6 +4,7 @@
 
 package org.jtool.codeforest.ui.view.forest;
 
+import org.jtool.codeforest.metrics.java.PackageMetrics;
 import org.jtool.codeforest.metrics.java.ProjectMetrics;
 import org.jtool.codeforest.ui.CodeForestFrame;
 import org.jtool.codeforest.ui.view.SettingData;
@@ -31,6 +32,16 @@ public class ForestView {
      */
     private ForestBuilder builder;
     
+    /**
+     * A forest to which packages are added one by one, or <code>null</code> if the forest is built at once.
+     */
+    private Forest progressiveForest;
+    
+    /**
+     * The estimated number of classes in the progressive forest.
+     */
+    private int estimatedClasses;
+    
     /**
      * Creates a forest view.
      * @param parent the parent of the forest view
@@ -67,10 +78,38 @@ public class ForestView {
      * @param data the setting data that forms the forest
      */
     public void build(ProjectMetrics projectMetrics, SettingData data) {
+        progressiveForest = null;
         builder = new ForestBuilder(projectMetrics);
         canvas.setForest(builder.build(data));
     }
     
+    /**
+     * Builds an empty forest to which packages are added one by one while their metrics are built.
+     * @param projectMetrics the metrics of the project related to the forest
+     * @param data the setting data that forms the forest
+     * @param estimatedClasses the estimated number of classes in the project
+     */
+    public void beginProgressive(ProjectMetrics projectMetrics, SettingData data, int estimatedClasses) {
+        this.estimatedClasses = estimatedClasses;
+        builder = new ForestBuilder(projectMetrics);
+        progressiveForest = builder.buildProgressive(data, estimatedClasses);
+        canvas.setForest(progressiveForest);
+    }
+    
+    /**
+     * Adds a package whose metrics were built to the progressive forest.
+     * @param mpackage the metrics of the package
+     * @param data the setting data that forms the forest
+     */
+    public void addPackage(PackageMetrics mpackage, SettingData data) {
+        if (progressiveForest == null) {
+            return;
+        }
+        
+        ForestNodeGroup clump = builder.buildPackage(progressiveForest, mpackage, data);
+        canvas.addGroup(progressiveForest.createSceneGraph(clump));
+    }
+    
     /**
      * Repaints this forest view.
      */
@@ -83,6 +122,15 @@ public class ForestView {
      * @param data the setting data that forms a forest
      */
     public void update(SettingData data) {
+        if (progressiveForest != null) {
+            ProjectMetrics projectMetrics = (ProjectMetrics)progressiveForest.getMetrics();
+            progressiveForest = builder.buildProgressive(data, estimatedClasses);
+            for (PackageMetrics mpackage : projectMetrics.getPackageMetrics()) {
+                builder.buildPackage(progressiveForest, mpackage, data);
+            }
+            canvas.setForest(progressiveForest);
+            return;
+        }
         canvas.setForest(builder.build(data));
     }
     
@@ -93,5 +141,6 @@ public class ForestView {
         canvas.dispose();
         canvas = null;
         builder = null;
+        progressiveForest = null;
     }
 }
@@ -0,0 +1,402 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.util;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A class writing elements into an XML file one by one, without building a DOM instance.
+ * The file has the same content as the one that <code>XMLWriter</code> writes from the DOM instance with the same elements.
+ * Attributes are written in the order of their names, and elements are indented in the same layout as the transformer.
+ * Characters in attribute values are escaped in the same way as the transformer, including tabs and line breaks,
+ * which the writer of XML events would write as they are. So the tags are written by this class itself.
+ * @author Katsuhisa Maruyama
+ */
+public class StreamingXMLWriter {
+    
+    /**
+     * The characters that may be escaped in attribute values.
+     */
+    private static final String ESCAPED_CHARS = "\t\n\r&<>\"'";
+    
+    /**
+     * The layout of the output of the transformer, or <code>null</code> if it has not been examined.
+     */
+    private static Layout layout = null;
+    
+    /**
+     * The writer of the XML file.
+     */
+    private Writer writer;
+    
+    /**
+     * The name of the element whose start tag has not been written yet, or <code>null</code> if there is no such element.
+     */
+    private String pendingName = null;
+    
+    /**
+     * The attributes of the element whose start tag has not been written yet, which are sorted by their names.
+     */
+    private Map<String, String> pendingAttributes = new TreeMap<String, String>();
+    
+    /**
+     * The names of the elements whose start tags have been written and whose end tags have not been written.
+     */
+    private List<String> openNames = new ArrayList<String>();
+    
+    /**
+     * Creates a writer that writes into an XML file.
+     * The file is written in the default encoding of the platform as <code>XMLWriter</code> writes.
+     * @param file the XML file
+     * @throws IOException if the file cannot be opened
+     */
+    public StreamingXMLWriter(File file) throws IOException {
+        this(new FileOutputStream(file));
+    }
+    
+    /**
+     * Creates a writer that writes into an output stream, which is closed when this writer is closed.
+     * The content is written in the default encoding of the platform as <code>XMLWriter</code> writes.
+     * @param out the output stream
+     */
+    public StreamingXMLWriter(OutputStream out) {
+        writer = new BufferedWriter(new OutputStreamWriter(out));
+    }
+    
+    /**
+     * Writes the XML declaration.
+     * @throws IOException if an I/O error occurs
+     */
+    public void startDocument() throws IOException {
+        writer.write(getLayout().prolog);
+    }
+    
+    /**
+     * Finishes writing the document.
+     * @throws IOException if an I/O error occurs
+     */
+    public void endDocument() throws IOException {
+        writer.write(getLayout().epilog);
+        writer.flush();
+    }
+    
+    /**
+     * Closes the XML file.
+     */
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("StAX: Export error occurred: " + e.getMessage() + ".");
+        }
+    }
+    
+    /**
+     * Starts an element. Its attributes can be added until the next element starts or this element ends.
+     * @param name the name of the element
+     * @throws XMLStreamException if an error occurs in writing the XML events
+     */
+    public void startElement(String name) throws XMLStreamException {
+        if (pendingName != null) {
+            writeStartTag(false);
+        }
+        pendingName = name;
+    }
+    
+    /**
+     * Adds an attribute to the element that has started last.
+     * A <code>null</code> value is written as an empty string as a DOM instance does.
+     * @param name the name of the attribute
+     * @param value the value of the attribute
+     */
+    public void addAttribute(String name, String value) {
+        if (value == null) {
+            value = "";
+        }
+        pendingAttributes.put(name, value);
+    }
+    
+    /**
+     * Ends the element that has started last.
+     * @throws XMLStreamException if an error occurs in writing the XML events
+     */
+    public void endElement() throws XMLStreamException {
+        if (pendingName != null) {
+            writeStartTag(true);
+            return;
+        }
+        
+        String name = openNames.remove(openNames.size() - 1);
+        try {
+            writer.write(getLayout().getIndent(openNames.size()));
+            writer.write("</");
+            writer.write(name);
+            writer.write('>');
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+    
+    /**
+     * Writes the start tag of the pending element with its attributes.
+     * @param empty <code>true</code> if the element has no child, otherwise <code>false</code>
+     * @throws XMLStreamException if an error occurs in writing the XML events
+     */
+    private void writeStartTag(boolean empty) throws XMLStreamException {
+        Layout layout = getLayout();
+        try {
+            if (openNames.size() > 0) {
+                writer.write(layout.getIndent(openNames.size()));
+            }
+            
+            writer.write('<');
+            writer.write(pendingName);
+            for (String name : pendingAttributes.keySet()) {
+                writer.write(' ');
+                writer.write(name);
+                writer.write("=\"");
+                layout.writeEscaped(writer, pendingAttributes.get(name));
+                writer.write('"');
+            }
+            
+            if (empty) {
+                writer.write("/>");
+            } else {
+                writer.write('>');
+                openNames.add(pendingName);
+            }
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+        
+        pendingName = null;
+        pendingAttributes.clear();
+    }
+    
+    /**
+     * Obtains the layout of the output of the transformer that <code>XMLWriter</code> uses.
+     * The layout depends on the runtime, so that it is examined by transforming a small document once.
+     * @return the layout
+     */
+    private static synchronized Layout getLayout() {
+        if (layout == null) {
+            layout = examineLayout();
+        }
+        return layout;
+    }
+    
+    /**
+     * Examines the layout by transforming a document with three nested elements.
+     * @return the layout of the transformer, or the default layout if it cannot be examined
+     */
+    private static Layout examineLayout() {
+        String lineSeparator = System.getProperty("line.separator");
+        String[] escapes = examineEscapes();
+        Layout defaultLayout = new Layout("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>", lineSeparator, "", lineSeparator, escapes);
+        
+        try {
+            Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+            Element aElem = doc.createElement("a");
+            doc.appendChild(aElem);
+            Element bElem = doc.createElement("b");
+            aElem.appendChild(bElem);
+            bElem.appendChild(doc.createElement("c"));
+            
+            StringWriter out = new StringWriter();
+            XMLWriter.createTransformer().transform(new DOMSource(doc), new StreamResult(out));
+            String text = out.toString();
+            
+            int a = text.indexOf("<a>");
+            int b = text.indexOf("<b>");
+            int c = text.indexOf("<c/>");
+            int end = text.indexOf("</a>");
+            if (a < 0 || b < a || c < b || end < c) {
+                return defaultLayout;
+            }
+            
+            String first = text.substring(a + 3, b);
+            String second = text.substring(b + 3, c);
+            if (!second.startsWith(first)) {
+                return defaultLayout;
+            }
+            
+            String indent = second.substring(first.length());
+            String newline = first.substring(0, first.length() - indent.length());
+            return new Layout(text.substring(0, a), newline, indent, text.substring(end + 4), escapes);
+        
+        } catch (Exception e) {
+            System.err.println("StAX: Layout of the transformer is unknown: " + e.getMessage() + ".");
+        }
+        return defaultLayout;
+    }
+    
+    /**
+     * Examines how the transformer escapes the characters that need escaping in attribute values,
+     * by transforming an element that has an attribute for each of the characters.
+     * @return the escaped forms of the characters indexed by the characters, or the default forms if they cannot be examined
+     */
+    private static String[] examineEscapes() {
+        String[] escapes = new String[ESCAPED_CHARS.length()];
+        for (int i = 0; i < escapes.length; i++) {
+            escapes[i] = getDefaultEscape(ESCAPED_CHARS.charAt(i));
+        }
+        
+        try {
+            Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+            Element elem = doc.createElement("e");
+            for (int i = 0; i < escapes.length; i++) {
+                elem.setAttribute("a" + i, String.valueOf(ESCAPED_CHARS.charAt(i)));
+            }
+            doc.appendChild(elem);
+            
+            StringWriter out = new StringWriter();
+            XMLWriter.createTransformer().transform(new DOMSource(doc), new StreamResult(out));
+            String text = out.toString();
+            
+            for (int i = 0; i < escapes.length; i++) {
+                String start = " a" + i + "=\"";
+                int begin = text.indexOf(start);
+                if (begin >= 0) {
+                    begin = begin + start.length();
+                    int end = text.indexOf('"', begin);
+                    if (end > begin) {
+                        escapes[i] = text.substring(begin, end);
+                    }
+                }
+            }
+            
+        } catch (Exception e) {
+            System.err.println("StAX: Escapes of the transformer are unknown: " + e.getMessage() + ".");
+        }
+        return escapes;
+    }
+    
+    /**
+     * Returns the escaped form of a character that the transformer writes in an attribute value by default.
+     * @param ch the character
+     * @return the escaped form
+     */
+    private static String getDefaultEscape(char ch) {
+        switch (ch) {
+            case '&':
+                return "&amp;";
+            case '<':
+                return "&lt;";
+            case '>':
+                return "&gt;";
+            case '"':
+                return "&quot;";
+            case '\'':
+                return "'";
+        }
+        return "&#" + (int)ch + ";";
+    }
+    
+    /**
+     * Holds the text that the transformer puts around and between elements.
+     * @author Katsuhisa Maruyama
+     */
+    private static class Layout {
+        
+        /**
+         * The text before the root element.
+         */
+        final String prolog;
+        
+        /**
+         * The line separator written before a nested tag.
+         */
+        final String newline;
+        
+        /**
+         * The indentation for one level of nesting.
+         */
+        final String indent;
+        
+        /**
+         * The text after the root element.
+         */
+        final String epilog;
+        
+        /**
+         * The escaped forms of the characters that may be escaped in attribute values.
+         */
+        final String[] escapes;
+        
+        /**
+         * Creates a layout.
+         * @param prolog the text before the root element
+         * @param newline the line separator written before a nested tag
+         * @param indent the indentation for one level of nesting
+         * @param epilog the text after the root element
+         * @param escapes the escaped forms of the characters that may be escaped in attribute values
+         */
+        Layout(String prolog, String newline, String indent, String epilog, String[] escapes) {
+            this.prolog = prolog;
+            this.newline = newline;
+            this.indent = indent;
+            this.epilog = epilog;
+            this.escapes = escapes;
+        }
+        
+        /**
+         * Writes an attribute value, escaping its characters in the same way as the transformer.
+         * Control characters other than tabs and line breaks, which cannot appear in XML documents, are written as character references.
+         * @param writer the writer
+         * @param value the attribute value
+         * @throws IOException if an I/O error occurs
+         */
+        void writeEscaped(Writer writer, String value) throws IOException {
+            int start = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char ch = value.charAt(i);
+                int index = ESCAPED_CHARS.indexOf(ch);
+                String escape = null;
+                if (index >= 0) {
+                    escape = escapes[index];
+                } else if (ch < ' ') {
+                    escape = "&#" + (int)ch + ";";
+                }
+                
+                if (escape != null) {
+                    writer.write(value, start, i - start);
+                    writer.write(escape);
+                    start = i + 1;
+                }
+            }
+            writer.write(value, start, value.length() - start);
+        }
+        
+        /**
+         * Returns the text written before a tag at a given level.
+         * @param level the level of nesting
+         * @return the line separator followed by the indentation
+         */
+        String getIndent(int level) {
+            StringBuilder buf = new StringBuilder(newline);
+            for (int i = 0; i < level; i++) {
+                buf.append(indent);
+            }
+            return buf.toString();
+        }
+    }
+}
@@ -30,9 +30,7 @@ public class XMLWriter {
      */
     public static void write(File file, Document doc) {
         try {
-            Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            Transformer transformer = createTransformer();
             DOMSource src = new DOMSource(doc);
             
             StringWriter writer = new StringWriter();
@@ -50,4 +48,16 @@ public class XMLWriter {
             System.err.println("DOM: Export error occurred: " + e.getMessage() + ".");
         }
     }
+    
+    /**
+     * Creates a transformer that writes the contents of a DOM instance.
+     * @return the transformer
+     * @throws TransformerException if the transformer cannot be created
+     */
+    static Transformer createTransformer() throws TransformerException {
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        return transformer;
+    }
 }